@@ -0,0 +1,381 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.ui;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+
+import lcmc.HwEventBus;
+import lcmc.common.domain.Application;
+import lcmc.common.ui.Access;
+import lcmc.crm.domain.ClusterStatus;
+import lcmc.crm.domain.CrmXml;
+import lcmc.crm.ui.CrmGraph;
+import lcmc.crm.ui.resource.CloneInfo;
+import lcmc.crm.ui.resource.GroupInfo;
+import lcmc.crm.ui.resource.ServiceInfo;
+import lcmc.crm.ui.resource.ServicesInfo;
+import lcmc.crm.ui.resource.update.ResourceUpdater;
+import lcmc.drbd.domain.BlockDevice;
+import lcmc.drbd.domain.DrbdHost;
+import lcmc.drbd.domain.DrbdXml;
+import lcmc.drbd.ui.DrbdGraph;
+import lcmc.drbd.ui.resource.BlockDevInfo;
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.DistributionDetector;
+import lcmc.host.domain.parser.HostParser;
+import lcmc.testutils.SyntheticCluster;
+import lcmc.vm.domain.NetworkParser;
+import lcmc.vm.domain.VMParser;
+import lcmc.vm.domain.VmsXml;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Runs what runs with every status update of a cluster, without the gui:
+ * the hw info and the vms of every node, the drbd config and the drbd
+ * events, the crm status and the update of the resources. The statusUpdate
+ * benchmark runs all of them, the others run one stage, so that it can be
+ * seen, where a regression comes from.
+ *
+ * The outputs come from the SyntheticCluster with the nodes, primitives,
+ * drbd volumes and vms in the cluster parameter, the parseRecordedHostInfo
+ * parses the recorded hw info from the samples. The hosts, the parsers and
+ * the cluster status are the real objects, the browser, the graphs and the
+ * resource and block device infos are mocks.
+ *
+ * The throughput is in updates per millisecond, the sample time gives the
+ * p99 latency and the gc profiler the allocated bytes per update
+ * (gc.alloc.rate.norm). The results are written to target/jmh-result.json:
+ *
+ * mvn -P Benchmarks test-compile exec:exec -Dbenchmark=StatusPipelineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusPipelineBenchmark {
+    private static final Application.RunMode RUN_MODE = Application.RunMode.LIVE;
+    /** The consecutive updates must differ, otherwise they are skipped. */
+    private static final int UPDATES = 4;
+
+    /** nodes:primitives:drbd volumes:vms */
+    @Param({"3:100:8:12", "4:500:16:40", "8:2000:64:160"})
+    private String cluster;
+
+    private String[] nodes;
+    private String[][] hwInfos;
+    private String[][] vmsInfos;
+    private String[][][] drbdEvents;
+    private String[] crmStatuses;
+    private String drbdConfig;
+    private String recordedHwInfo;
+    private int update = 0;
+
+    private Application application;
+    private final NetworkParser networkParser = new NetworkParser();
+    private Host[] hosts;
+    private HostParser[] hostParsers;
+    private VmsXml[] vmsXmls;
+    private DrbdXml drbdXml;
+    private ClusterStatus clusterStatus;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String[] sizes = cluster.split(":");
+        final SyntheticCluster syntheticCluster = new SyntheticCluster(Integer.parseInt(sizes[0]),
+                                                                       Integer.parseInt(sizes[1]),
+                                                                       Integer.parseInt(sizes[2]),
+                                                                       Integer.parseInt(sizes[3]));
+        nodes = syntheticCluster.getNodes();
+        hwInfos = new String[UPDATES][nodes.length];
+        vmsInfos = new String[UPDATES][nodes.length];
+        drbdEvents = new String[UPDATES][nodes.length][];
+        crmStatuses = new String[UPDATES];
+        for (int u = 0; u < UPDATES; u++) {
+            for (int n = 0; n < nodes.length; n++) {
+                hwInfos[u][n] = syntheticCluster.hwInfo(n, u);
+                vmsInfos[u][n] = syntheticCluster.vmsXml(n, u);
+                final List<String> events = syntheticCluster.drbdEvents(n, u);
+                drbdEvents[u][n] = events.toArray(new String[events.size()]);
+            }
+            crmStatuses[u] = syntheticCluster.crmStatus(u);
+        }
+        drbdConfig = syntheticCluster.drbdConfig();
+        recordedHwInfo = readSample("hw-info.txt");
+
+        application = new Application();
+        final Access access = new Access();
+        final HwEventBus hwEventBus = new HwEventBus();
+        hosts = new Host[nodes.length];
+        hostParsers = new HostParser[nodes.length];
+        vmsXmls = new VmsXml[nodes.length];
+        for (int n = 0; n < nodes.length; n++) {
+            final DrbdHost drbdHost = new DrbdHost();
+            hosts[n] = new Host(drbdHost, null, null, null, null, null, null, application, null, null, null);
+            hosts[n].setHostname(nodes[n]);
+            hostParsers[n] = new HostParser(hosts[n],
+                                            drbdHost,
+                                            hwEventBus,
+                                            VmsXml::new,
+                                            DrbdXml::new,
+                                            null,
+                                            application,
+                                            new DistributionDetector(hosts[n]));
+            hosts[n].setHostParser(hostParsers[n]);
+            hostParsers[n].parseHostInfo(hwInfos[0][n]);
+            vmsXmls[n] = parseVms(n, 0);
+        }
+        drbdXml = new DrbdXml();
+        drbdXml.update(drbdConfig);
+
+        final CrmXml crmXml = new CrmXml();
+        ReflectionTestUtils.setField(crmXml, "host", hosts[0]);
+        clusterStatus = new ClusterStatus();
+        ReflectionTestUtils.setField(clusterStatus, "application", application);
+        ReflectionTestUtils.setField(clusterStatus, "access", access);
+        ReflectionTestUtils.setField(clusterStatus, "host", hosts[0]);
+        ReflectionTestUtils.setField(clusterStatus, "crmXML", crmXml);
+        clusterStatus.parseStatus(crmStatuses[0]);
+    }
+
+    /** One status update of the whole cluster. */
+    @Benchmark
+    public boolean statusUpdate(final Gui gui) {
+        final int u = nextUpdate();
+        for (int n = 0; n < nodes.length; n++) {
+            hostParsers[n].parseHostInfo(hwInfos[u][n]);
+            vmsXmls[n] = parseVms(n, u);
+        }
+        drbdXml = updateDrbdConfig();
+        parseDrbdEvents(gui, u);
+        final boolean updated = clusterStatus.parseStatus(crmStatuses[u]);
+        if (updated) {
+            newResourceUpdater().updateAllResources(gui.servicesInfo,
+                                                    gui.browser,
+                                                    clusterStatus,
+                                                    RUN_MODE,
+                                                    clusterStatus.getChangedCrmIds());
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public HostParser[] parseHostInfo() {
+        final int u = nextUpdate();
+        for (int n = 0; n < nodes.length; n++) {
+            hostParsers[n].parseHostInfo(hwInfos[u][n]);
+        }
+        return hostParsers;
+    }
+
+    @Benchmark
+    public HostParser parseRecordedHostInfo() {
+        hostParsers[0].parseHostInfo(recordedHwInfo);
+        return hostParsers[0];
+    }
+
+    @Benchmark
+    public VmsXml[] parseVms() {
+        final int u = nextUpdate();
+        for (int n = 0; n < nodes.length; n++) {
+            vmsXmls[n] = parseVms(n, u);
+        }
+        return vmsXmls;
+    }
+
+    @Benchmark
+    public DrbdXml updateDrbdConfig() {
+        final DrbdXml newDrbdXml = new DrbdXml();
+        newDrbdXml.update(drbdConfig, drbdXml);
+        return newDrbdXml;
+    }
+
+    @Benchmark
+    public int parseDrbdEvents(final Gui gui) {
+        return parseDrbdEvents(gui, nextUpdate());
+    }
+
+    /** Parses the crm status with the cib and the resource status. */
+    @Benchmark
+    public boolean parseCrmStatus() {
+        return clusterStatus.parseStatus(crmStatuses[nextUpdate()]);
+    }
+
+    @Benchmark
+    public ResourceUpdater updateAllResources(final Gui gui) {
+        final ResourceUpdater resourceUpdater = newResourceUpdater();
+        resourceUpdater.updateAllResources(gui.servicesInfo, gui.browser, clusterStatus, RUN_MODE);
+        return resourceUpdater;
+    }
+
+    private int nextUpdate() {
+        update = (update + 1) % UPDATES;
+        return update;
+    }
+
+    private VmsXml parseVms(final int node, final int u) {
+        final VmsXml vmsXml = new VmsXml();
+        ReflectionTestUtils.setField(vmsXml, "vmParser", new VMParser());
+        ReflectionTestUtils.setField(vmsXml, "networkParser", networkParser);
+        vmsXml.init(hosts[node]);
+        vmsXml.parseXml(vmsInfos[u][node], vmsXmls[node]);
+        return vmsXml;
+    }
+
+    private int parseDrbdEvents(final Gui gui, final int u) {
+        int changed = 0;
+        for (int n = 0; n < nodes.length; n++) {
+            for (final String event : drbdEvents[u][n]) {
+                if (drbdXml.parseDrbdEvent(nodes[n], gui.drbdGraph, event)) {
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /** Like from the provider, a new one for every update. */
+    private ResourceUpdater newResourceUpdater() {
+        final ResourceUpdater resourceUpdater = new ResourceUpdater();
+        ReflectionTestUtils.setField(resourceUpdater, "application", application);
+        return resourceUpdater;
+    }
+
+    private static String readSample(final String name) throws IOException {
+        try (InputStream in = StatusPipelineBenchmark.class.getResourceAsStream("/lcmc/samples/" + name);
+             Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    /** Returns a mock, that answers by the method name, or with the defaults. */
+    private static <T> T stub(final Class<T> type, final Map<String, Answer<?>> answers) {
+        final Answer<Object> defaultAnswer = invocation -> {
+            final Answer<?> answer = answers.get(invocation.getMethod().getName());
+            return answer == null ? RETURNS_DEFAULTS.answer(invocation) : answer.answer(invocation);
+        };
+        return mock(type, defaultAnswer);
+    }
+
+    /**
+     * The swing parts. The resource infos are created for the crm ids, as
+     * they are asked for, groups for the "grp_" and clones for the "cl_"
+     * prefix, like in the SyntheticCib, and the block device infos for the
+     * backing disks.
+     *
+     * The mocks remember every call, so they are reset after every
+     * invocation. They answer by the default answer, that stays after the
+     * reset. The mocks add their own time to the results, but it's the same
+     * in every run.
+     */
+    @State(Scope.Benchmark)
+    public static class Gui {
+        private final Map<String, ServiceInfo> services = new HashMap<String, ServiceInfo>();
+        private final Map<String, BlockDevInfo> blockDevInfos = new HashMap<String, BlockDevInfo>();
+        private ClusterBrowser browser;
+        private ServicesInfo servicesInfo;
+        private CrmGraph crmGraph;
+        private DrbdGraph drbdGraph;
+
+        @Setup
+        public void setUp() {
+            crmGraph = mock(CrmGraph.class);
+            servicesInfo = mock(ServicesInfo.class);
+            browser = stub(ClusterBrowser.class, ImmutableMap.<String, Answer<?>>of(
+                    "getCrmGraph", invocation -> crmGraph,
+                    "getServiceInfoFromCRMId", invocation -> getService((String) invocation.getArguments()[0])));
+            drbdGraph = stub(DrbdGraph.class, ImmutableMap.<String, Answer<?>>of(
+                    "findBlockDevInfo", invocation -> getBlockDevInfo((String) invocation.getArguments()[0],
+                                                                      (String) invocation.getArguments()[1])));
+        }
+
+        @TearDown(Level.Invocation)
+        public void reset() {
+            final List<Object> mocks = new ArrayList<Object>(services.values());
+            mocks.addAll(blockDevInfos.values());
+            mocks.add(browser);
+            mocks.add(servicesInfo);
+            mocks.add(crmGraph);
+            mocks.add(drbdGraph);
+            Mockito.reset(mocks.toArray());
+        }
+
+        private ServiceInfo getService(final String crmId) {
+            if (crmId == null) {
+                return null;
+            }
+            ServiceInfo service = services.get(crmId);
+            if (service == null) {
+                final Class<? extends ServiceInfo> type;
+                if (crmId.startsWith("grp_")) {
+                    type = GroupInfo.class;
+                } else if (crmId.startsWith("cl_")) {
+                    type = CloneInfo.class;
+                } else {
+                    type = ServiceInfo.class;
+                }
+                service = stub(type, ImmutableMap.<String, Answer<?>>of("getHeartbeatId", invocation -> crmId));
+                services.put(crmId, service);
+            }
+            return service;
+        }
+
+        private BlockDevInfo getBlockDevInfo(final String hostName, final String disk) {
+            final String key = hostName + ':' + disk;
+            BlockDevInfo blockDevInfo = blockDevInfos.get(key);
+            if (blockDevInfo == null) {
+                final BlockDevice blockDevice = new BlockDevice(null, disk);
+                blockDevInfo = stub(BlockDevInfo.class,
+                                    ImmutableMap.<String, Answer<?>>of("getBlockDevice", invocation -> blockDevice));
+                blockDevInfos.put(key, blockDevInfo);
+            }
+            return blockDevInfo;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import lcmc.testutils.SyntheticCib;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares the parsing, the xpath evaluation and the serialization with new
+ * factories every time, like it was done before, and with the reused
+ * objects from the XMLTools. The samples are the cib, "virsh dumpxml" and
+ * "drbdadm dump-xml" outputs.
+ *
+ * mvn -P Benchmarks test-compile exec:exec -Dbenchmark=XMLToolsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLToolsBenchmark {
+    @Param({"cib", "virsh-dumpxml", "drbdadm-dump-xml"})
+    private String sample;
+
+    private String xml;
+    private String path;
+    private Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("cib".equals(sample)) {
+            xml = SyntheticCib.cib(100);
+            path = "pcmk/cib/configuration/resources/primitive";
+        } else if ("virsh-dumpxml".equals(sample)) {
+            xml = readSample("virsh-dumpxml.xml");
+            path = "domain/devices/disk";
+        } else {
+            xml = readSample("drbdadm-dump-xml.xml");
+            path = "config/resource/host";
+        }
+        document = XMLTools.getXMLDocument(xml);
+    }
+
+    @Benchmark
+    public Document parseWithNewFactory() throws Exception {
+        return DocumentBuilderFactory.newInstance()
+                                     .newDocumentBuilder()
+                                     .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public Document parseWithXMLTools() {
+        return XMLTools.getXMLDocument(xml);
+    }
+
+    @Benchmark
+    public NodeList evaluateWithNewXPath() throws Exception {
+        return (NodeList) XPathFactory.newInstance().newXPath().evaluate(path, document, XPathConstants.NODESET);
+    }
+
+    @Benchmark
+    public NodeList evaluateWithXMLTools() throws Exception {
+        return XMLTools.evaluateNodes(path, document);
+    }
+
+    @Benchmark
+    public String serializeWithNewTransformer() throws Exception {
+        final StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String serializeWithXMLTools() throws Exception {
+        return XMLTools.toXML(document);
+    }
+
+    private static String readSample(final String name) throws IOException {
+        try (InputStream in = XMLToolsBenchmark.class.getResourceAsStream("/lcmc/samples/" + name);
+             Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.HostParser;
+import lcmc.testutils.SyntheticCib;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the DOM and the StAX parsing of the cib and of the resource
+ * status. Run it with the gc profiler to see the allocation rate:
+ *
+ * mvn -P Benchmarks test-compile exec:exec -Dbenchmark=CibParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CibParserBenchmark {
+    @Param({"50", "500", "5000"})
+    private int resources;
+
+    @Mock
+    private Host host;
+    @Mock
+    private HostParser hostParser;
+    @InjectMocks
+    private CrmXml crmXml;
+    private String cib;
+    private String resStatus;
+
+    @Setup
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(host.getHostParser()).thenReturn(hostParser);
+        when(hostParser.getPacemakerVersion()).thenReturn("1.1.12");
+        cib = SyntheticCib.cib(resources);
+        resStatus = SyntheticCib.resourceStatus(resources);
+    }
+
+    @Benchmark
+    public CibQuery parseCibQueryWithDom() {
+        return crmXml.parseCibQueryWithDom(cib);
+    }
+
+    @Benchmark
+    public CibQuery parseCibQueryStreaming() {
+        return crmXml.parseCibQueryStreaming(cib);
+    }
+
+    @Benchmark
+    public Map<String, CrmXml.ResourceStatus> parseResStatusWithDom() {
+        return crmXml.parseResStatusWithDom(resStatus);
+    }
+
+    @Benchmark
+    public Map<String, CrmXml.ResourceStatus> parseResStatusStreaming() {
+        return CibStreamParser.parseResStatus(resStatus);
+    }
+}
@@ -93,6 +93,7 @@ public class ArgumentParser {
     private static final String KNOWN_HOSTS_OP = "known-hosts";
     private static final String OUT_OP = "out";
     private static final String DEBUG_OP = "debug";
+    private static final String DEBUG_CLASS_OP = "debug-class";
     private static final String CLUSTER_OP = "cluster";
     private static final String HOST_OP = "host";
     private static final String USER_OP = "user";
@@ -167,6 +168,10 @@ public class ArgumentParser {
         options.addOption(null, KNOWN_HOSTS_OP, true, "location of known_hosts file ($HOME/.ssh/known_hosts)");
         options.addOption(null, OUT_OP, true, "where to redirect the standard out");
         options.addOption(null, DEBUG_OP, true, "debug level, 0 - none, 3 - all");
+        options.addOption(null,
+                          DEBUG_CLASS_OP,
+                          true,
+                          "debug level of a class or package, e.g. lcmc.cluster.service.ssh=2");
         options.addOption("c", CLUSTER_OP, true, "define a cluster");
         final Option hostOp = new Option("h", HOST_OP, true, "define a cluster, used with --cluster option");
         hostOp.setArgs(10000);
@@ -204,6 +209,16 @@ public class ArgumentParser {
                     throw new ParseException("cannot parse debug level: " + level);
                 }
             }
+            if (cmd.hasOption(DEBUG_CLASS_OP)) {
+                for (final String classLevel : cmd.getOptionValues(DEBUG_CLASS_OP)) {
+                    final int index = classLevel.lastIndexOf('=');
+                    if (index <= 0 || !lcmc.common.domain.util.Tools.isNumber(classLevel.substring(index + 1))) {
+                        throw new ParseException("cannot parse debug level: " + classLevel);
+                    }
+                    LoggerFactory.setDebugLevel(classLevel.substring(0, index),
+                                                Integer.parseInt(classLevel.substring(index + 1)));
+                }
+            }
             if (cmd.hasOption(SKIP_NET_INTERFACE_OP)) {
                 Arrays.stream(cmd.getOptionValues(SKIP_NET_INTERFACE_OP)).forEach(application::addSkipNetInterface);
             }
@@ -0,0 +1,391 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.event.CoalescableEvent;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Event bus, that delivers the events in its own thread, after a short
+ * window. Events of the same type with the same coalescing key, that come in
+ * this window, are delivered only once, the latest one wins. If there are
+ * too many events waiting, the poster delivers them itself.
+ *
+ * The dispatch latency and the time spent in every subscriber are recorded,
+ * so that the slow subscribers can be found.
+ *
+ * With the "EventBus.Async" default set to "n" the events are delivered
+ * right away, like in the Guava's event bus.
+ */
+public class CoalescingEventBus extends EventBus {
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingEventBus.class);
+
+    private final String busName;
+    private final boolean async = "y".equals(Tools.getDefault("EventBus.Async"));
+    private final int coalesceWindow = Tools.getDefaultInt("EventBus.CoalesceWindow");
+    private final int maxPendingEvents = Tools.getDefaultInt("EventBus.MaxPendingEvents");
+    private final int slowSubscriber = Tools.getDefaultInt("EventBus.SlowSubscriber");
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+    /** Registering and unregistering of the objects. */
+    private final Lock mSubscribersLock = new ReentrantLock();
+    /** Coalescing key -> event, in the order of the first post. */
+    private final Map<Object, PendingEvent> pendingEvents = new LinkedHashMap<Object, PendingEvent>();
+    private final Lock mPendingEventsLock = new ReentrantLock();
+    private boolean flushScheduled = false;
+    private long coalescedEvents = 0;
+    /** Only one thread delivers the events at a time, so that they stay in order. */
+    private final Lock mDispatchLock = new ReentrantLock();
+    private ScheduledThreadPoolExecutor scheduler = null;
+
+    public CoalescingEventBus(final String busName) {
+        super(busName);
+        this.busName = busName;
+    }
+
+    /**
+     * Registers the @Subscribe methods of the object. A method, that is
+     * overridden, is registered only once, the object, that is registered
+     * already, is ignored.
+     */
+    @Override
+    public void register(final Object object) {
+        mSubscribersLock.lock();
+        try {
+            for (final Subscriber subscriber : subscribers) {
+                if (subscriber.target == object) {
+                    return;
+                }
+            }
+            final Set<List<Object>> signatures = new HashSet<List<Object>>();
+            for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+                for (final Method method : clazz.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(Subscribe.class) && !method.isBridge()) {
+                        final Class<?>[] parameterTypes = method.getParameterTypes();
+                        if (parameterTypes.length != 1) {
+                            throw new IllegalArgumentException("Method " + method
+                                                               + " has @Subscribe annotation, but requires "
+                                                               + parameterTypes.length + " arguments.");
+                        }
+                        /* the most derived method, the invoke calls the override anyway */
+                        if (!signatures.add(Arrays.<Object>asList(method.getName(), parameterTypes[0]))) {
+                            continue;
+                        }
+                        method.setAccessible(true);
+                        subscribers.add(new Subscriber(object,
+                                                       method,
+                                                       method.isAnnotationPresent(AllowConcurrentEvents.class)));
+                    }
+                }
+            }
+        } finally {
+            mSubscribersLock.unlock();
+        }
+    }
+
+    @Override
+    public void unregister(final Object object) {
+        mSubscribersLock.lock();
+        try {
+            final List<Subscriber> removed = new ArrayList<Subscriber>();
+            for (final Subscriber subscriber : subscribers) {
+                if (subscriber.target == object) {
+                    removed.add(subscriber);
+                }
+            }
+            if (removed.isEmpty()) {
+                throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + object
+                                                   + " registered?");
+            }
+            subscribers.removeAll(removed);
+        } finally {
+            mSubscribersLock.unlock();
+        }
+    }
+
+    @Override
+    public void post(final Object event) {
+        final PendingEvent pendingEvent = new PendingEvent(event, System.nanoTime());
+        if (!async) {
+            dispatch(pendingEvent);
+            return;
+        }
+        final boolean flushNow;
+        mPendingEventsLock.lock();
+        try {
+            final Object key = getCoalescingKey(event);
+            final PendingEvent previous = pendingEvents.remove(key);
+            if (previous != null) {
+                coalescedEvents++;
+                pendingEvent.postTime = previous.postTime;
+            }
+            pendingEvents.put(key, pendingEvent);
+            flushNow = pendingEvents.size() >= maxPendingEvents;
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                getScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, coalesceWindow, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            mPendingEventsLock.unlock();
+        }
+        if (flushNow) {
+            LOG.debug1("post: " + busName + ": too many pending events, delivering in the caller");
+            flush();
+        }
+    }
+
+    /** Delivers all the pending events in the current thread. */
+    public void flush() {
+        mDispatchLock.lock();
+        try {
+            while (true) {
+                final List<PendingEvent> events;
+                mPendingEventsLock.lock();
+                try {
+                    flushScheduled = false;
+                    if (pendingEvents.isEmpty()) {
+                        return;
+                    }
+                    events = new ArrayList<PendingEvent>(pendingEvents.values());
+                    pendingEvents.clear();
+                } finally {
+                    mPendingEventsLock.unlock();
+                }
+                for (final PendingEvent pendingEvent : events) {
+                    dispatch(pendingEvent);
+                }
+            }
+        } finally {
+            mDispatchLock.unlock();
+        }
+    }
+
+    /** Returns how many events are waiting to be delivered. */
+    public int getPendingEvents() {
+        mPendingEventsLock.lock();
+        try {
+            return pendingEvents.size();
+        } finally {
+            mPendingEventsLock.unlock();
+        }
+    }
+
+    /** Returns how many events were replaced by a newer event. */
+    public long getCoalescedEvents() {
+        mPendingEventsLock.lock();
+        try {
+            return coalescedEvents;
+        } finally {
+            mPendingEventsLock.unlock();
+        }
+    }
+
+    /** Returns the dispatch statistics of all the subscribers, the slowest first. */
+    public List<SubscriberStats> getSubscriberStats() {
+        final List<SubscriberStats> stats = new ArrayList<SubscriberStats>();
+        for (final Subscriber subscriber : subscribers) {
+            stats.add(new SubscriberStats(subscriber.toString(),
+                                          subscriber.invocations.get(),
+                                          subscriber.handlerNanos.get(),
+                                          subscriber.latencyNanos.get(),
+                                          subscriber.maxLatencyNanos.get()));
+        }
+        stats.sort((s1, s2) -> Long.compare(s2.getTotalHandlerMillis(), s1.getTotalHandlerMillis()));
+        return stats;
+    }
+
+    private Object getCoalescingKey(final Object event) {
+        if (event instanceof CoalescableEvent) {
+            return Arrays.asList(event.getClass(), ((CoalescableEvent) event).getCoalescingKey());
+        }
+        /* never coalesced */
+        return new Object();
+    }
+
+    private void dispatch(final PendingEvent pendingEvent) {
+        final Object event = pendingEvent.event;
+        boolean delivered = false;
+        for (final Subscriber subscriber : subscribers) {
+            if (subscriber.eventType.isInstance(event)) {
+                delivered = true;
+                subscriber.invoke(event, pendingEvent.postTime);
+            }
+        }
+        if (!delivered && !(event instanceof DeadEvent)) {
+            dispatch(new PendingEvent(new DeadEvent(this, event), pendingEvent.postTime));
+        }
+    }
+
+    private ScheduledThreadPoolExecutor getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, busName + "-event-bus");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    private final class Subscriber {
+        private final Object target;
+        private final Method method;
+        private final Class<?> eventType;
+        private final boolean allowConcurrentEvents;
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong handlerNanos = new AtomicLong();
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        Subscriber(final Object target, final Method method, final boolean allowConcurrentEvents) {
+            this.target = target;
+            this.method = method;
+            this.eventType = method.getParameterTypes()[0];
+            this.allowConcurrentEvents = allowConcurrentEvents;
+        }
+
+        void invoke(final Object event, final long postTime) {
+            final long start = System.nanoTime();
+            try {
+                if (allowConcurrentEvents) {
+                    method.invoke(target, event);
+                } else {
+                    synchronized (target) {
+                        method.invoke(target, event);
+                    }
+                }
+            } catch (final InvocationTargetException e) {
+                LOG.appError("dispatch: " + busName + ": " + this + " failed", e.getCause());
+            } catch (final IllegalAccessException e) {
+                throw new RuntimeException("dispatch: " + busName + ": " + this + " not accessible", e);
+            }
+            final long end = System.nanoTime();
+            invocations.incrementAndGet();
+            handlerNanos.addAndGet(end - start);
+            final long latency = end - postTime;
+            latencyNanos.addAndGet(latency);
+            long max = maxLatencyNanos.get();
+            while (latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+                max = maxLatencyNanos.get();
+            }
+            final long millis = TimeUnit.NANOSECONDS.toMillis(end - start);
+            if (millis > slowSubscriber) {
+                LOG.debug("dispatch: " + busName + ": slow subscriber: " + this + ": " + millis + " ms");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return target.getClass().getSimpleName() + "." + method.getName()
+                   + "(" + eventType.getSimpleName() + ")";
+        }
+    }
+
+    private static final class PendingEvent {
+        private final Object event;
+        private long postTime;
+
+        PendingEvent(final Object event, final long postTime) {
+            this.event = event;
+            this.postTime = postTime;
+        }
+    }
+
+    /** Dispatch statistics of one subscriber. */
+    public static final class SubscriberStats {
+        private final String subscriber;
+        private final long invocations;
+        private final long handlerNanos;
+        private final long latencyNanos;
+        private final long maxLatencyNanos;
+
+        SubscriberStats(final String subscriber,
+                        final long invocations,
+                        final long handlerNanos,
+                        final long latencyNanos,
+                        final long maxLatencyNanos) {
+            this.subscriber = subscriber;
+            this.invocations = invocations;
+            this.handlerNanos = handlerNanos;
+            this.latencyNanos = latencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+        }
+
+        public String getSubscriber() {
+            return subscriber;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        public long getTotalHandlerMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(handlerNanos);
+        }
+
+        /** Average time from the post to the end of the delivery. */
+        public double getAverageLatencyMillis() {
+            if (invocations == 0) {
+                return 0;
+            }
+            return latencyNanos / (double) invocations / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public long getMaxLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+        }
+
+        @Override
+        public String toString() {
+            return subscriber + ": " + invocations + " events, " + getTotalHandlerMillis() + " ms, latency avg "
+                   + String.format("%.1f", getAverageLatencyMillis()) + " ms, max " + getMaxLatencyMillis() + " ms";
+        }
+    }
+}
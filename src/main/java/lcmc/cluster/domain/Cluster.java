@@ -38,7 +38,7 @@ import lcmc.host.domain.Host;
 import lcmc.drbd.domain.BlockDevice;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.cluster.ui.ClusterTab;
-import lcmc.cluster.ui.SSHGui;
+import lcmc.cluster.service.HostConnector;
 import lcmc.cluster.service.storage.BlockDeviceService;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
@@ -78,6 +78,8 @@ public class Cluster implements Comparable<Cluster> {
     private final Set<Host> proxyHosts = new LinkedHashSet<Host>();
     @Inject
     private BlockDeviceService blockDeviceService;
+    @Inject
+    private HostConnector hostConnector;
 
     public void setName(final String name) {
         this.name = name;
@@ -198,42 +200,12 @@ public class Cluster implements Comparable<Cluster> {
         return null;
     }
 
-    /** Connect all hosts in the cluster. Returns false, if it was canceled. */
+    /**
+     * Connect all hosts in the cluster, the first one alone, the others in
+     * parallel. Returns false, if it was canceled.
+     */
     public boolean connect(final Window rootPane, final boolean progressIndicator, final int index) {
-        boolean first = true;
-        String dsaKey = null;
-        String rsaKey = null;
-        String pwd = null;
-        for (final Host host : hosts) {
-            host.setIsLoading();
-            if (host.isConnected()) {
-                host.setLoadingDone();
-                continue;
-            }
-            if (!first) {
-                host.getSSH().setPasswords(dsaKey, rsaKey, pwd);
-            }
-            if (rootPane == null) {
-                host.connect(null, progressIndicator, index);
-            } else {
-                host.connect(new SSHGui(rootPane, host, null), progressIndicator, index);
-            }
-            host.getSSH().waitForConnection();
-            if (first) {
-                /* wait till it's connected and try the others with the
-                 * same password/key. */
-                if (host.getSSH().isConnectionCanceled()) {
-                    return false;
-                }
-                if (host.isConnected()) {
-                    dsaKey = host.getSSH().getLastSuccessfulDsaKey();
-                    rsaKey = host.getSSH().getLastSuccessfulRsaKey();
-                    pwd = host.getSSH().getLastSuccessfulPassword();
-                }
-            }
-            first = false;
-        }
-        return true;
+        return hostConnector.connect(hosts, rootPane, progressIndicator, index);
     }
 
     /**
@@ -0,0 +1,143 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import lcmc.cluster.ui.SSHGui;
+import lcmc.common.domain.util.Tools;
+import lcmc.host.domain.Host;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Connects the hosts of the clusters.
+ *
+ * The first host that is not connected yet is connected alone, so that the
+ * keys or the password, that worked for it, are tried first on the other
+ * hosts. The other hosts are connected in parallel, but not more than
+ * "HostConnector.Threads" at a time in all the clusters. A host takes its
+ * thread until it is loaded, so that the installing of the gui-helper and
+ * the getting of the host info are limited too.
+ */
+@Named
+@Singleton
+public class HostConnector {
+    private static final Logger LOG = LoggerFactory.getLogger(HostConnector.class);
+    private final ThreadPoolExecutor executor;
+
+    public HostConnector() {
+        final int threads = Tools.getDefaultInt("HostConnector.Threads");
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads,
+                                          threads,
+                                          60,
+                                          TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          runnable -> {
+                                              final Thread thread = new Thread(runnable,
+                                                                               "host-connector-"
+                                                                               + threadNumber.incrementAndGet());
+                                              thread.setDaemon(true);
+                                              return thread;
+                                          });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Connects the hosts and returns, when all of them are connected or
+     * failed. The hosts are still loading after that. Returns false, if the
+     * connecting of the first host was canceled.
+     */
+    public boolean connect(final Collection<Host> hosts,
+                           final Window rootPane,
+                           final boolean progressIndicator,
+                           final int index) {
+        Host firstHost = null;
+        final List<CountDownLatch> connectedLatches = new ArrayList<CountDownLatch>();
+        for (final Host host : hosts) {
+            host.setIsLoading();
+            if (host.isConnected()) {
+                host.setLoadingDone();
+                continue;
+            }
+            if (firstHost == null) {
+                /* wait till it's connected and try the others with the
+                 * same password/key. */
+                connectHost(host, rootPane, progressIndicator, index);
+                if (host.getSSH().isConnectionCanceled()) {
+                    return false;
+                }
+                firstHost = host;
+                continue;
+            }
+            if (firstHost.isConnected()) {
+                host.getSSH().setPasswords(firstHost.getSSH().getLastSuccessfulDsaKey(),
+                                           firstHost.getSSH().getLastSuccessfulRsaKey(),
+                                           firstHost.getSSH().getLastSuccessfulPassword());
+            }
+            final CountDownLatch connectedLatch = new CountDownLatch(1);
+            connectedLatches.add(connectedLatch);
+            final long queued = System.nanoTime();
+            executor.execute(() -> {
+                LOG.debug1("connect: {}: waited {} ms",
+                           host.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queued));
+                try {
+                    connectHost(host, rootPane, progressIndicator, index);
+                } finally {
+                    connectedLatch.countDown();
+                }
+                host.waitOnLoading();
+            });
+        }
+        for (final CountDownLatch connectedLatch : connectedLatches) {
+            try {
+                connectedLatch.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private void connectHost(final Host host,
+                             final Window rootPane,
+                             final boolean progressIndicator,
+                             final int index) {
+        if (rootPane == null) {
+            host.connect(null, progressIndicator, index);
+        } else {
+            host.connect(new SSHGui(rootPane, host, null), progressIndicator, index);
+        }
+        host.getSSH().waitForConnection();
+    }
+}
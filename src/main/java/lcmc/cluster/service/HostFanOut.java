@@ -0,0 +1,216 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.common.ui.main.ProgressIndicator;
+import lcmc.host.domain.Host;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Runs the commands of a multi-host action on all the hosts at once.
+ *
+ * The commands for one host are run one after another in the order of the
+ * items, the hosts are run in parallel, but not more than "HostFanOut.Threads"
+ * at a time. All the commands are run, even if some of them fail, the failed
+ * hosts are reported together at the end. The whole action has one progress
+ * indicator.
+ */
+@Named
+@Singleton
+public class HostFanOut {
+    private static final Logger LOG = LoggerFactory.getLogger(HostFanOut.class);
+    /** Set in the fan-out threads, the nested actions are run in the same thread. */
+    private static final ThreadLocal<Boolean> IN_FAN_OUT = new ThreadLocal<Boolean>();
+
+    @Inject
+    private ProgressIndicator progressIndicator;
+    private final ThreadPoolExecutor executor;
+
+    public HostFanOut() {
+        final int threads = Tools.getDefaultInt("HostFanOut.Threads");
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads,
+                                          threads,
+                                          60,
+                                          TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          runnable -> {
+                                              final Thread thread = new Thread(runnable,
+                                                                               "host-fan-out-"
+                                                                               + threadNumber.incrementAndGet());
+                                              thread.setDaemon(true);
+                                              return thread;
+                                          });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the command on all the hosts and returns whether it succeeded on
+     * all of them.
+     */
+    public boolean execute(final String description, final Collection<Host> hosts, final HostCommand<Host> command) {
+        return execute(description, hosts, host -> host, command);
+    }
+
+    /**
+     * Runs the command for all the items, the items of the same host in
+     * their order. Returns whether it succeeded for all of them.
+     */
+    public <T> boolean execute(final String description,
+                               final Collection<T> items,
+                               final Function<T, Host> hostOf,
+                               final HostCommand<T> command) {
+        if (items.isEmpty()) {
+            return true;
+        }
+        progressIndicator.startProgressIndicator(description);
+        final Set<String> failedHosts = executeQuietly(description, items, hostOf, command);
+        progressIndicator.stopProgressIndicator(description);
+        if (failedHosts.isEmpty()) {
+            return true;
+        }
+        progressIndicator.progressIndicatorFailed(
+                   Tools.getString("HostFanOut.Failed", new String[]{description, Tools.join(", ", failedHosts)}));
+        return false;
+    }
+
+    /**
+     * Runs the command on all the hosts without the progress indicator and
+     * returns the names of the hosts, where it failed. The caller reports
+     * the failure.
+     */
+    public Set<String> executeQuietly(final String description,
+                                      final Collection<Host> hosts,
+                                      final HostCommand<Host> command) {
+        return executeQuietly(description, hosts, host -> host, command);
+    }
+
+    private <T> Set<String> executeQuietly(final String description,
+                                           final Collection<T> items,
+                                           final Function<T, Host> hostOf,
+                                           final HostCommand<T> command) {
+        final Map<Host, List<T>> hostItems = new LinkedHashMap<Host, List<T>>();
+        for (final T item : items) {
+            hostItems.computeIfAbsent(hostOf.apply(item), host -> new ArrayList<T>()).add(item);
+        }
+        final Set<String> failedHosts = new LinkedHashSet<String>();
+        if (hostItems.size() == 1 || Boolean.TRUE.equals(IN_FAN_OUT.get())) {
+            for (final Map.Entry<Host, List<T>> entry : hostItems.entrySet()) {
+                if (!executeOnHost(description, entry.getKey(), entry.getValue(), command)) {
+                    failedHosts.add(entry.getKey().getName());
+                }
+            }
+        } else {
+            final Map<Host, Future<Boolean>> futures = new LinkedHashMap<Host, Future<Boolean>>();
+            for (final Map.Entry<Host, List<T>> entry : hostItems.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> {
+                    IN_FAN_OUT.set(true);
+                    try {
+                        return executeOnHost(description, entry.getKey(), entry.getValue(), command);
+                    } finally {
+                        IN_FAN_OUT.remove();
+                    }
+                }));
+            }
+            for (final Map.Entry<Host, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    if (!entry.getValue().get()) {
+                        failedHosts.add(entry.getKey().getName());
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failedHosts.add(entry.getKey().getName());
+                } catch (final ExecutionException e) {
+                    LOG.appWarning("execute: " + description + ": " + entry.getKey().getName(), e);
+                    failedHosts.add(entry.getKey().getName());
+                }
+            }
+        }
+        return failedHosts;
+    }
+
+    /**
+     * Runs the action on all the hosts, the action fails only with an
+     * exception.
+     */
+    public boolean run(final String description, final Collection<Host> hosts, final Consumer<Host> action) {
+        return run(description, hosts, host -> host, action);
+    }
+
+    /**
+     * Runs the action for all the items, the items of the same host in
+     * their order. The action fails only with an exception.
+     */
+    public <T> boolean run(final String description,
+                           final Collection<T> items,
+                           final Function<T, Host> hostOf,
+                           final Consumer<T> action) {
+        return execute(description, items, hostOf, item -> {
+            action.accept(item);
+            return true;
+        });
+    }
+
+    private <T> boolean executeOnHost(final String description,
+                                      final Host host,
+                                      final Iterable<T> items,
+                                      final HostCommand<T> command) {
+        boolean ok = true;
+        for (final T item : items) {
+            try {
+                if (!command.execute(item)) {
+                    ok = false;
+                }
+            } catch (final RuntimeException e) {
+                LOG.appWarning("executeOnHost: " + description + ": " + host.getName(), e);
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /** Command for one item, returns whether it succeeded. */
+    public interface HostCommand<T> {
+        boolean execute(T item);
+    }
+}
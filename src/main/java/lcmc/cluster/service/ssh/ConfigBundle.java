@@ -0,0 +1,227 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Config files, that are installed on a host together with one script.
+ *
+ * The script is uploaded in one piece, instead of running one command for
+ * every file. A file, whose content is already on the host, is not sent
+ * again: it is left alone, or copied on the host from the file that it is
+ * compared with, so that it can be staged in a temporary directory.
+ */
+public final class ConfigBundle {
+    private static final Pattern CHECKSUM_PATTERN = Pattern.compile("^([0-9a-f]{32})\\s+\\*?(\\S.*)$");
+    private static final String HERE_DOC_END = "LCMC_CONFIG_END";
+
+    private final List<ConfigFile> files = new ArrayList<ConfigFile>();
+    private String preCommand = null;
+    private String postCommand = null;
+
+    /**
+     * Adds the config file.
+     *
+     * @param installedFilename
+     *          file on the host with the same content, if it did not change,
+     *          or null if the file should be always sent
+     */
+    public ConfigBundle file(final String config,
+                             final String remoteFilename,
+                             final String mode,
+                             final boolean makeBackup,
+                             final String installedFilename) {
+        files.add(new ConfigFile(config, remoteFilename, mode, makeBackup, installedFilename));
+        return this;
+    }
+
+    /** Command that runs before the files are installed. */
+    public ConfigBundle preCommand(final String preCommand) {
+        this.preCommand = preCommand;
+        return this;
+    }
+
+    /** Command that runs after all the files were installed. */
+    public ConfigBundle postCommand(final String postCommand) {
+        this.postCommand = postCommand;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    /** Returns the command, that prints the md5 sums of the installed files, or null. */
+    String checksumCommand() {
+        final Set<String> installed = new LinkedHashSet<String>();
+        for (final ConfigFile file : files) {
+            if (file.installedFilename != null) {
+                installed.add(file.installedFilename);
+            }
+        }
+        if (installed.isEmpty()) {
+            return null;
+        }
+        final StringBuilder command = new StringBuilder(100);
+        command.append("md5sum");
+        for (final String filename : installed) {
+            command.append(' ').append(filename);
+        }
+        command.append(" 2>/dev/null;true");
+        return command.toString();
+    }
+
+    /** Parses the md5sum output. Returns file name -> md5 map. */
+    static Map<String, String> parseChecksums(final String output) {
+        if (output == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> checksums = new HashMap<String, String>();
+        for (final String line : output.split("\\r?\\n")) {
+            final Matcher m = CHECKSUM_PATTERN.matcher(line);
+            if (m.matches()) {
+                checksums.put(m.group(2), m.group(1));
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Returns the script, that installs the files, that are not on the host
+     * yet. The files are written like with the "echo", so they end with a
+     * new line.
+     */
+    String installScript(final Map<String, String> installedChecksums) {
+        final StringBuilder script = new StringBuilder(1000);
+        script.append("#!/bin/bash\n");
+        if (preCommand != null) {
+            script.append(preCommand).append('\n');
+        }
+        final Set<String> dirs = new HashSet<String>();
+        for (final ConfigFile file : files) {
+            final boolean unchanged = file.installedFilename != null
+                                      && file.md5.equals(installedChecksums.get(file.installedFilename));
+            if (unchanged && file.installedFilename.equals(file.remoteFilename)) {
+                continue;
+            }
+            final String newFilename = file.remoteFilename + ".new";
+            if (file.makeBackup) {
+                script.append("cp ").append(file.remoteFilename).append("{,.bak} 2>/dev/null\n");
+            }
+            final int index = file.remoteFilename.lastIndexOf('/');
+            if (index > 0 && dirs.add(file.remoteFilename.substring(0, index + 1))) {
+                script.append("mkdir -p ").append(file.remoteFilename.substring(0, index + 1)).append('\n');
+            }
+            if (unchanged) {
+                script.append("cp ").append(file.installedFilename).append(' ').append(newFilename);
+                script.append(" || exit\n");
+            } else {
+                final String end = hereDocEnd(file.config);
+                script.append("cat >").append(newFilename).append(" <<'").append(end).append("' || exit\n");
+                script.append(file.config).append('\n');
+                script.append(end).append('\n');
+            }
+            if (file.mode != null) {
+                script.append("chmod ").append(file.mode).append(' ').append(newFilename).append(" || exit\n");
+            }
+            script.append("mv ").append(newFilename).append(' ').append(file.remoteFilename).append(" || exit\n");
+            if (file.makeBackup) {
+                script.append("if ! diff ").append(file.remoteFilename).append("{,.bak}>/dev/null 2>&1; then ");
+                script.append("mv ").append(file.remoteFilename).append("{.bak,.`date +'%s'`} 2>/dev/null;");
+                script.append(" else rm -f ").append(file.remoteFilename).append(".bak; fi\n");
+            }
+        }
+        if (postCommand != null) {
+            script.append(postCommand).append('\n');
+        }
+        return script.toString();
+    }
+
+    /** Returns the number of files, that will be sent with the script. */
+    int changedFiles(final Map<String, String> installedChecksums) {
+        int changed = 0;
+        for (final ConfigFile file : files) {
+            if (file.installedFilename == null
+                || !file.md5.equals(installedChecksums.get(file.installedFilename))) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    /** Returns the file names on the host, for logging without the contents. */
+    List<String> remoteFilenames() {
+        final List<String> filenames = new ArrayList<String>(files.size());
+        for (final ConfigFile file : files) {
+            filenames.add(file.remoteFilename);
+        }
+        return filenames;
+    }
+
+    private static String hereDocEnd(final String config) {
+        String end = HERE_DOC_END;
+        int i = 0;
+        while (config.contains(end)) {
+            i++;
+            end = HERE_DOC_END + i;
+        }
+        return end;
+    }
+
+    private static final class ConfigFile {
+        private final String config;
+        private final String remoteFilename;
+        private final String mode;
+        private final boolean makeBackup;
+        private final String installedFilename;
+        /* the md5 of the file on the host, with the new line at the end */
+        private final String md5;
+
+        ConfigFile(final String config,
+                   final String remoteFilename,
+                   final String mode,
+                   final boolean makeBackup,
+                   final String installedFilename) {
+            this.config = config;
+            this.remoteFilename = remoteFilename;
+            this.mode = mode;
+            this.makeBackup = makeBackup;
+            this.installedFilename = installedFilename;
+            this.md5 = Hashing.md5().hashString(config + '\n', StandardCharsets.UTF_8).toString();
+        }
+    }
+}
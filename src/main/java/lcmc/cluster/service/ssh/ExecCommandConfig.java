@@ -29,6 +29,7 @@ import lcmc.common.domain.ConvertCmdCallback;
 import lcmc.common.domain.ExecCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
+import lcmc.common.domain.NewByteOutputCallback;
 import lcmc.common.domain.NewOutputCallback;
 import lcmc.common.domain.util.Tools;
 
@@ -37,11 +38,13 @@ public class ExecCommandConfig {
 
     private Host host;
     private ConnectionThread connectionThread;
+    private SshExecutor sshExecutor;
     private SSHGui sshGui;
     private String command = null;
     private String commandString = null;
     private ExecCallback execCallback = null;
     private NewOutputCallback newOutputCallback = null;
+    private NewByteOutputCallback newByteOutputCallback = null;
     private boolean commandVisible = true;
     private boolean outputVisible = true;
     private int sshCommandTimeout = Ssh.DEFAULT_COMMAND_TIMEOUT;
@@ -60,6 +63,11 @@ public class ExecCommandConfig {
         return this;
     }
 
+    public ExecCommandConfig sshExecutor(final SshExecutor sshExecutor) {
+        this.sshExecutor = sshExecutor;
+        return this;
+    }
+
     public ExecCommandConfig sshGui(final SSHGui sshGui) {
         this.sshGui = sshGui;
         return this;
@@ -85,6 +93,12 @@ public class ExecCommandConfig {
         return this;
     }
 
+    /** The output is handed over as it comes, it's not shown in the terminal. */
+    public ExecCommandConfig newByteOutputCallback(final NewByteOutputCallback newByteOutputCallback) {
+        this.newByteOutputCallback = newByteOutputCallback;
+        return this;
+    }
+
     public ExecCommandConfig silentCommand() {
         this.commandVisible = false;
         return this;
@@ -166,6 +180,10 @@ public class ExecCommandConfig {
         return connectionThread;
     }
 
+    public SshExecutor getSshExecutor() {
+        return sshExecutor;
+    }
+
     public SSHGui getSshGui() {
         return sshGui;
     }
@@ -188,6 +206,10 @@ public class ExecCommandConfig {
         return newOutputCallback;
     }
 
+    public NewByteOutputCallback getNewByteOutputCallback() {
+        return newByteOutputCallback;
+    }
+
     public boolean isCommandVisible() {
         return commandVisible;
     }
@@ -23,6 +23,9 @@ package lcmc.cluster.service.ssh;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -37,12 +40,16 @@ import lcmc.cluster.ui.SSHGui;
 import lcmc.common.domain.ExecCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
+import lcmc.common.domain.NewByteOutputCallback;
 import lcmc.common.domain.NewOutputCallback;
 import lcmc.common.domain.util.Tools;
 import lombok.SneakyThrows;
 
-/** This class is a thread that executes commands. */
-public final class ExecCommandThread extends Thread {
+/**
+ * This class executes commands. It runs on the host's {@link SshExecutor}
+ * and can be joined like a thread.
+ */
+public final class ExecCommandThread implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ExecCommandThread.class);
 
     private final Host host;
@@ -51,14 +58,19 @@ public final class ExecCommandThread extends Thread {
     private final String command;
     private final ExecCallback execCallback;
     private final NewOutputCallback newOutputCallback;
+    private final NewByteOutputCallback newByteOutputCallback;
     private final boolean outputVisible;
     private final boolean commandVisible;
     private final MainPanel mainPanel;
     private final ProgressIndicator progressIndicator;
+    private final SshExecutor sshExecutor;
+    private final CountDownLatch finished = new CountDownLatch(1);
 
     private volatile boolean cancelIt = false;
     private final Lock mSessionLock = new ReentrantLock();
     private Session sess = null;
+    /** Writes to the stdin can come from several threads. */
+    private final Lock mStdinLock = new ReentrantLock();
     private final int sshCommandTimeout;
 
     private static final int ERROR_EXIT_CODE = 255;
@@ -75,9 +87,11 @@ public final class ExecCommandThread extends Thread {
         this.host = execCommandConfig.getHost();
         this.connectionThread = execCommandConfig.getConnectionThread();
         this.sshGui = execCommandConfig.getSshGui();
+        this.sshExecutor = execCommandConfig.getSshExecutor();
 
         this.execCallback = execCommandConfig.getExecCallback();
         this.newOutputCallback = execCommandConfig.getNewOutputCallback();
+        this.newByteOutputCallback = execCommandConfig.getNewByteOutputCallback();
         this.commandVisible = execCommandConfig.isCommandVisible();
         this.sshCommandTimeout = execCommandConfig.getSshCommandTimeout();
 
@@ -93,7 +107,7 @@ public final class ExecCommandThread extends Thread {
             this.outputVisible = execCommandConfig.isOutputVisible();
             this.command = execCommandConfig.getCommand();
         }
-        LOG.debug2("ExecCommandThread: command: " + command);
+        LOG.debug2("ExecCommandThread: command: {}", command);
     }
 
     /**
@@ -102,18 +116,50 @@ public final class ExecCommandThread extends Thread {
      */
     @Override
     public void run() {
-        if (!connectionThread.isConnectionEstablished()) {
-            if (execCallback != null) {
-                execCallback.doneError("not connected", 139);
+        try {
+            if (cancelIt) {
+                /* canceled while waiting in the queue */
+                if (execCallback != null) {
+                    execCallback.doneError("", 130);
+                }
+            } else if (!connectionThread.isConnectionEstablished()) {
+                if (execCallback != null) {
+                    execCallback.doneError("not connected", 139);
+                }
+            } else {
+                if (commandVisible || outputVisible) {
+                    mainPanel.expandTerminalSplitPane(MainPanel.TerminalSize.EXPAND);
+                }
+                exec();
+                if (commandVisible || outputVisible) {
+                    mainPanel.expandTerminalSplitPane(MainPanel.TerminalSize.COLLAPSE);
+                }
             }
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    void start() {
+        sshExecutor.execute(this, newOutputCallback != null || newByteOutputCallback != null);
+    }
+
+    /** Returns whether the command is still queued or running. */
+    public boolean isAlive() {
+        return finished.getCount() > 0;
+    }
+
+    /** Waits for the command to finish. */
+    public void join() throws InterruptedException {
+        finished.await();
+    }
+
+    /** Waits at most millis for the command to finish, 0 means forever. */
+    public void join(final long millis) throws InterruptedException {
+        if (millis == 0) {
+            join();
         } else {
-            if (commandVisible || outputVisible) {
-                mainPanel.expandTerminalSplitPane(MainPanel.TerminalSize.EXPAND);
-            }
-            exec();
-            if (commandVisible || outputVisible) {
-                mainPanel.expandTerminalSplitPane(MainPanel.TerminalSize.COLLAPSE);
-            }
+            finished.await(millis, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -132,8 +178,38 @@ public final class ExecCommandThread extends Thread {
         }
     }
 
+    /**
+     * Sends the text to the stdin of the running command. Returns false, if
+     * the command doesn't run.
+     */
+    public boolean write(final String text) {
+        mSessionLock.lock();
+        final Session thisSession;
+        try {
+            thisSession = sess;
+        } finally {
+            mSessionLock.unlock();
+        }
+        if (thisSession == null || cancelIt) {
+            return false;
+        }
+        mStdinLock.lock();
+        try {
+            final OutputStream stdin = thisSession.getStdin();
+            stdin.write(text.getBytes(ENCODING));
+            stdin.flush();
+            return true;
+        } catch (final IOException e) {
+            LOG.appWarning("write: " + host.getName() + ": " + e.getMessage());
+            return false;
+        } finally {
+            mStdinLock.unlock();
+        }
+    }
+
     static private class ConnectionTimeout {
-        private boolean timeout = false;
+        private volatile boolean timeout = false;
+        private ScheduledFuture<?> timeoutTask = null;
 
         private void setTimeout() {
             timeout = true;
@@ -142,6 +218,12 @@ public final class ExecCommandThread extends Thread {
         private boolean wasTimeout() {
             return timeout;
         }
+
+        private void cancelTimeoutTask() {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+        }
     }
 
     public ExecCommandThread block() {
@@ -163,12 +245,15 @@ public final class ExecCommandThread extends Thread {
             try {
                 openSshSession(connectionTimeout);
             } catch (final IOException e) {
+                connectionTimeout.cancelTimeoutTask();
                 handleSshSessionFailure();
                 break;
             }
             final String cmd = command1.trim();
             writeCommandToTerminal(cmd);
+            final long commandStart = System.nanoTime();
             final SshOutput ret = execOneCommand(cmd);
+            sshExecutor.getMetrics().commandFinished(System.nanoTime() - commandStart);
             ans.append(ret.getOutput());
             final int exitCode = ret.getExitCode();
             if (exitCode != 0) {
@@ -210,7 +295,10 @@ public final class ExecCommandThread extends Thread {
             throws IOException {
         /* it may hang here if we lost connection, so it will be
          * interrupted after a timeout. */
+        final long openStart = System.nanoTime();
         final Session newSession = connectionThread.getConnection().openSession();
+        connectionTimeout.cancelTimeoutTask();
+        sshExecutor.getMetrics().channelOpened(System.nanoTime() - openStart);
         mSessionLock.lock();
         try {
             sess = newSession;
@@ -225,10 +313,9 @@ public final class ExecCommandThread extends Thread {
 
     private ConnectionTimeout setupConnectionTimeout() {
         final ConnectionTimeout connectionTimeout = new ConnectionTimeout();
-        final Thread thread = new Thread(new Runnable() {
+        connectionTimeout.timeoutTask = sshExecutor.scheduleTimeout(new Runnable() {
             @Override
             public void run() {
-                Tools.sleep(Tools.getDefaultInt("SSH.ConnectTimeout"));
                 if (!connectionTimeout.wasTimeout()) {
                     LOG.debug1("run: " + host.getName() + ": open ssh session: timeout");
                     connectionTimeout.setTimeout();
@@ -242,8 +329,7 @@ public final class ExecCommandThread extends Thread {
                     }
                 }
             }
-        });
-        thread.start();
+        }, Tools.getDefaultInt("SSH.ConnectTimeout"));
         return connectionTimeout;
     }
 
@@ -275,10 +361,10 @@ public final class ExecCommandThread extends Thread {
             to enter sudo password by every command.
             (It would be exposed) */
             thisSession.requestPTY("dumb", 0, 0, 0, 0, null);
-            LOG.debug2("execOneCommand: command: "
-                       + host.getName()
-                       + ": "
-                       + host.getSudoCommand(host.getHoppedCommand(oneCommand), true));
+            LOG.debug2(() -> "execOneCommand: command: "
+                             + host.getName()
+                             + ": "
+                             + host.getSudoCommand(host.getHoppedCommand(oneCommand), true));
             thisSession.execCommand("bash -c '"
                                     + Tools.escapeSingleQuotes("export LC_ALL=C;"
                                                                + host.getSudoCommand(host.getHoppedCommand(oneCommand),
@@ -302,7 +388,7 @@ public final class ExecCommandThread extends Thread {
             exitCode = ERROR_EXIT_CODE;
             cancelTheSession();
         }
-        LOG.debug2("execOneCommand: output: " + exitCode + ": " + host.getName() + ": " + outputString);
+        LOG.debug2("execOneCommand: output: {}: {}: {}", exitCode, host.getName(), outputString);
         return new SshOutput(outputString, exitCode);
     }
 
@@ -313,6 +399,8 @@ public final class ExecCommandThread extends Thread {
         final InputStream stderr = thisSession.getStderr();
         final byte[] buff = new byte[EXEC_OUTPUT_BUFFER_SIZE];
         boolean skipNextLine = false;
+        /* the sudo prompt comes only before the output of the command */
+        boolean byteOutputStarted = false;
         final StringBuilder res = new StringBuilder("");
         while (true) {
             final String sudoPwd = host.getSudoPassword();
@@ -354,17 +442,32 @@ public final class ExecCommandThread extends Thread {
                 /* OK, either STDOUT_DATA or STDERR_DATA (or both) */
                 /* ... is set. */
             }
+            if (byteOutputStarted) {
+                readStdoutBytes(stdout, buff);
+                res.append(readStderr(stderr, buff));
+                if (cancelIt) {
+                    return res.toString();
+                }
+                continue;
+            }
             final StringBuilder output = readStdout(stdout, buff);
+            boolean sudoFailed = false;
             if (output.indexOf(Ssh.SUDO_PROMPT) >= 0) {
                 if (sudoPwd == null) {
                     enterSudoPassword();
                 }
                 final String pwd = host.getSudoPassword() + '\n';
-                stdin.write(pwd.getBytes("UTF-8"));
+                mStdinLock.lock();
+                try {
+                    stdin.write(pwd.getBytes("UTF-8"));
+                } finally {
+                    mStdinLock.unlock();
+                }
                 skipNextLine = true;
                 continue;
             } else if (output.indexOf(Ssh.SUDO_FAIL) >= 0) {
                 host.setSudoPassword(null);
+                sudoFailed = true;
             } else {
                 if (skipNextLine) {
                     /* this is the "enter" after pwd */
@@ -379,18 +482,19 @@ public final class ExecCommandThread extends Thread {
             }
             final StringBuilder errOutput = readStderr(stderr, buff);
             res.append(errOutput);
+            if (newByteOutputCallback != null && !cancelIt && output.length() > 0) {
+                final byte[] bytes = output.toString().getBytes(ENCODING);
+                newByteOutputCallback.output(bytes, 0, bytes.length);
+                byteOutputStarted = !sudoFailed;
+            }
             if (newOutputCallback != null && !cancelIt) {
-                LOG.debug2("execOneCommand: output: "
-                           + ": "
-                           + host.getName()
-                           + ": "
-                           + output.toString());
+                LOG.debug2("execOneCommand: output: : {}: {}", host.getName(), output);
                 newOutputCallback.output(output.toString());
             }
             if (cancelIt) {
                 return res.toString();
             }
-            if (newOutputCallback == null) {
+            if (newOutputCallback == null && newByteOutputCallback == null) {
                 res.append(output);
             }
         }
@@ -419,6 +523,16 @@ public final class ExecCommandThread extends Thread {
         return output;
     }
 
+    /** Hands over the output, as it comes, to the byte output callback. */
+    private void readStdoutBytes(final InputStream stdout, final byte[] buff) throws IOException {
+        while (stdout.available() > 0 && !cancelIt) {
+            final int len = stdout.read(buff);
+            if (len > 0) {
+                newByteOutputCallback.output(buff, 0, len);
+            }
+        }
+    }
+
     private StringBuilder readStderr(final InputStream stderr, final byte[] buff) throws IOException {
         final StringBuilder output = new StringBuilder();
         while (stderr.available() > 0 && !cancelIt) {
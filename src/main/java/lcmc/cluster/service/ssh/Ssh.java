@@ -23,6 +23,9 @@
 package lcmc.cluster.service.ssh;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -91,6 +94,8 @@ public class Ssh {
     private Provider<Authentication> authenticationProvider;
     @Inject
     private GuiHelperFiles guiHelperFiles;
+    @Inject
+    private SshExecutor sshExecutor;
 
     boolean reconnect() {
         swingUtils.isNotSwingThread();
@@ -127,6 +132,7 @@ public class Ssh {
         this.sshGui = sshGui;
         this.connectionCallback = connectionCallback;
         this.host = host;
+        sshExecutor.init(host);
         if (connectionThread != null && connectionThread.isConnectionEstablished()) {
             connectionThread.setConnectionFailed(false);
             // already connected
@@ -234,7 +240,7 @@ public class Ssh {
         } finally {
             mConnectionLock.unlock();
         }
-        LOG.debug("disconnect: host: " + host.getName());
+        LOG.debug("disconnect: host: " + host.getName() + ": " + sshExecutor.getMetrics());
         host.getTerminalPanel().addCommand(LOGOUT_COMMAND);
         host.getTerminalPanel().nextCommand();
     }
@@ -331,6 +337,7 @@ public class Ssh {
 
         execCommandConfig.host(host)
                          .connectionThread(connectionThread)
+                         .sshExecutor(sshExecutor)
                          .sshGui(sshGui)
                          .execCallback(execCallback)
                          .execute(mainPanel, progressIndicator).block();
@@ -346,6 +353,7 @@ public class Ssh {
         reconnect();
         return execCommandConfig.host(host)
                                 .connectionThread(connectionThread)
+                                .sshExecutor(sshExecutor)
                                 .sshGui(sshGui)
                                 .execute(mainPanel, progressIndicator);
     }
@@ -354,14 +362,50 @@ public class Ssh {
         reconnect();
         return execCommandConfig.host(host)
                                 .connectionThread(connectionThread)
+                                .sshExecutor(sshExecutor)
                                 .sshGui(sshGui)
                                 .capture(mainPanel, progressIndicator);
     }
 
-    /** Installs gui-helper on the remote host. */
+    /**
+     * Installs gui-helper on the remote host, if the installed one has a
+     * different checksum.
+     */
     public void installGuiHelper() {
-        if (!application.getKeepHelper()) {
-            scp(guiHelperFiles.readGuiHelper(), "@GUI-HELPER-PROG@", "0700", false, null, null, null);
+        if (application.getKeepHelper()) {
+            return;
+        }
+        final String md5 = guiHelperFiles.getGuiHelperMd5();
+        final SshOutput installed = execCommandAndWait(new ExecCommandConfig().commandString("GuiHelper.Checksum")
+                                                                              .sshCommandTimeout(10000)
+                                                                              .silentCommand()
+                                                                              .silentOutput());
+        /* md5sum prints "<md5>  <file>" */
+        if (installed.isSuccess() && installed.getOutput() != null && installed.getOutput().startsWith(md5 + ' ')) {
+            LOG.debug1("installGuiHelper: {}: gui-helper is up to date", host.getName());
+            return;
+        }
+        if (!isConnected()) {
+            return;
+        }
+        LOG.debug1("installGuiHelper: {}: installing gui-helper", host.getName());
+        final String fileName = "lcmc-gui-helper-" + UUID.randomUUID();
+        try {
+            final SCPClient scpClient = new SCPClient(connectionThread.getConnection());
+            scpClient.put(guiHelperFiles.getGuiHelperBytes(), fileName, "/tmp", "0700");
+        } catch (final IOException e) {
+            LOG.appWarning("installGuiHelper: could not copy: " + fileName, e);
+            return;
+        }
+        final Map<String, String> replaceHash = Collections.singletonMap("@FILE@", "/tmp/" + fileName);
+        final String installCommand = host.getHostParser().getDistCommand("GuiHelper.Install", replaceHash);
+        final SshOutput output = execCommandAndWait(new ExecCommandConfig()
+                                                        .command(installCommand)
+                                                        .sshCommandTimeout(10000)
+                                                        .silentCommand()
+                                                        .silentOutput());
+        if (!output.isSuccess()) {
+            LOG.appWarning("installGuiHelper: " + host.getName() + ": install failed: " + output.getOutput());
         }
     }
 
@@ -410,10 +454,61 @@ public class Ssh {
                              final boolean makeBackup,
                              final String preCommand,
                              final String postCommand) {
-        LOG.debug1("createConfig: " + dir + fileName + "\n" + config);
+        LOG.debug1("createConfig: {}{}\n{}", dir, fileName, config);
         scp(config, dir + fileName, mode, makeBackup, null, /* install command */ preCommand, postCommand);
     }
 
+    /**
+     * Creates all the configs from the bundle on the host. The md5 sums of
+     * the installed files are fetched first, then the script with the changed
+     * files is copied to the host in one piece and executed.
+     *
+     * @return whether the configs were installed
+     */
+    public boolean createConfigs(final ConfigBundle bundle) {
+        if (!isConnected()) {
+            return false;
+        }
+        Map<String, String> installedChecksums = Collections.emptyMap();
+        final String checksumCommand = bundle.checksumCommand();
+        if (checksumCommand != null) {
+            final SshOutput checksums = execCommandAndWait(new ExecCommandConfig()
+                                                               .command(DistResource.SUDO + checksumCommand)
+                                                               .sshCommandTimeout(10000)
+                                                               .silentCommand()
+                                                               .silentOutput());
+            if (checksums.isSuccess()) {
+                installedChecksums = ConfigBundle.parseChecksums(checksums.getOutput());
+            }
+        }
+        final String script = bundle.installScript(installedChecksums);
+        /* the contents are not logged, they have the shared secrets */
+        LOG.debug1("createConfigs: {}: {} of {} files changed: {}",
+                   host.getName(), bundle.changedFiles(installedChecksums), bundle.size(), bundle.remoteFilenames());
+        final String scriptName = "lcmc-config-" + UUID.randomUUID() + ".sh";
+        try {
+            final SCPClient scpClient = new SCPClient(connectionThread.getConnection());
+            scpClient.put(script.getBytes("UTF-8"), scriptName, "/tmp", "0600");
+        } catch (final IOException e) {
+            LOG.appWarning("createConfigs: could not copy: " + scriptName, e);
+            return false;
+        }
+        final SshOutput output = execCommandAndWait(new ExecCommandConfig()
+                                                        .command(DistResource.SUDO + "bash /tmp/" + scriptName
+                                                                 + "; ret=$?; rm -f /tmp/" + scriptName
+                                                                 + "; exit $ret")
+                                                        .sshCommandTimeout(60000)
+                                                        .silentCommand()
+                                                        .silentOutput());
+        if (!output.isSuccess()) {
+            if (output.getOutput() != null) {
+                scpCommandFailed(output.getOutput());
+            }
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Copies file to the /tmp/ dir on the remote host.
      *
@@ -500,6 +595,11 @@ public class Ssh {
         }
     }
 
+    /** Returns queue depth and latencies of the ssh commands of this host. */
+    public SshExecutorMetrics getExecutorMetrics() {
+        return sshExecutor.getMetrics();
+    }
+
     public boolean isConnectionCanceled() {
         return connectionThread != null && connectionThread.isDisconnectedForGood();
     }
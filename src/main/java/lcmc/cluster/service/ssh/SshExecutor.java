@@ -0,0 +1,116 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service.ssh;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.host.domain.Host;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Executes the ssh commands of one host on a bounded pool of worker threads.
+ *
+ * Long running commands, that stream their output (status, events), get
+ * their own thread, so that they don't block a worker forever. Commands
+ * that are started from a worker of the same host get their own thread
+ * too, otherwise a worker waiting for its nested command could deadlock
+ * the pool.
+ */
+@Named
+public class SshExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(SshExecutor.class);
+    private static final int WORKER_THREADS = Tools.getDefaultInt("SSH.Executor.Threads");
+    private static final int QUEUE_SIZE = Tools.getDefaultInt("SSH.Executor.Queue");
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+    private static final ThreadLocal<SshExecutor> WORKER_OWNER = new ThreadLocal<SshExecutor>();
+
+    @Inject
+    private SshTimeoutService sshTimeoutService;
+    private final SshExecutorMetrics metrics = new SshExecutorMetrics();
+    private final AtomicInteger threadNumber = new AtomicInteger(0);
+    private final ThreadPoolExecutor workers;
+    private String hostName = "";
+
+    public SshExecutor() {
+        workers = new ThreadPoolExecutor(WORKER_THREADS,
+                                         WORKER_THREADS,
+                                         WORKER_KEEP_ALIVE_SECONDS,
+                                         TimeUnit.SECONDS,
+                                         new LinkedBlockingQueue<Runnable>(QUEUE_SIZE),
+                                         runnable -> newThread(() -> {
+                                             WORKER_OWNER.set(this);
+                                             runnable.run();
+                                         }));
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    void init(final Host host) {
+        hostName = host.getName();
+    }
+
+    void execute(final ExecCommandThread execCommandThread, final boolean longRunning) {
+        if (longRunning || WORKER_OWNER.get() == this) {
+            startDedicatedThread(execCommandThread);
+            return;
+        }
+        final long queuedAt = System.nanoTime();
+        metrics.commandQueued();
+        try {
+            workers.execute(() -> {
+                metrics.commandDequeued(System.nanoTime() - queuedAt);
+                execCommandThread.run();
+            });
+        } catch (final RejectedExecutionException e) {
+            metrics.commandDequeued(0);
+            LOG.appWarning("execute: " + hostName + ": ssh queue is full: " + metrics);
+            startDedicatedThread(execCommandThread);
+        }
+    }
+
+    ScheduledFuture<?> scheduleTimeout(final Runnable timeoutTask, final long delayMillis) {
+        return sshTimeoutService.schedule(timeoutTask, delayMillis);
+    }
+
+    SshExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void startDedicatedThread(final Runnable runnable) {
+        metrics.dedicatedThreadStarted();
+        newThread(runnable).start();
+    }
+
+    private Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "ssh-" + hostName + '-' + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
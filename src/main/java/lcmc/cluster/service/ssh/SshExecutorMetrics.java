@@ -0,0 +1,123 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service.ssh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counters of one host's ssh executor. */
+public final class SshExecutorMetrics {
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+    private final AtomicLong dedicatedThreads = new AtomicLong(0);
+    private final Latency queueWait = new Latency();
+    private final Latency channelOpen = new Latency();
+    private final Latency command = new Latency();
+
+    void commandQueued() {
+        final int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    void commandDequeued(final long waitNanos) {
+        queueDepth.decrementAndGet();
+        queueWait.record(waitNanos);
+    }
+
+    void dedicatedThreadStarted() {
+        dedicatedThreads.incrementAndGet();
+    }
+
+    void channelOpened(final long nanos) {
+        channelOpen.record(nanos);
+    }
+
+    void commandFinished(final long nanos) {
+        command.record(nanos);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getDedicatedThreads() {
+        return dedicatedThreads.get();
+    }
+
+    public Latency getQueueWait() {
+        return queueWait;
+    }
+
+    public Latency getChannelOpen() {
+        return channelOpen;
+    }
+
+    public Latency getCommand() {
+        return command;
+    }
+
+    @Override
+    public String toString() {
+        return "queue: " + queueDepth.get() + " (max " + maxQueueDepth.get() + ')'
+               + ", dedicated threads: " + dedicatedThreads.get()
+               + ", queue wait: " + queueWait
+               + ", channel open: " + channelOpen
+               + ", command: " + command;
+    }
+
+    public static final class Latency {
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong totalNanos = new AtomicLong(0);
+        private final AtomicLong maxNanos = new AtomicLong(0);
+
+        void record(final long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getAverageMillis() {
+            final long c = count.get();
+            if (c == 0) {
+                return 0;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / c);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return count.get() + "x avg " + getAverageMillis() + "ms max " + getMaxMillis() + "ms";
+        }
+    }
+}
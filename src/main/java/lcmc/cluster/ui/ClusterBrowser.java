@@ -32,7 +32,7 @@ import lcmc.cluster.ui.network.NetworkFactory;
 import lcmc.cluster.ui.network.NetworkPresenter;
 import lcmc.common.domain.Application;
 import lcmc.common.domain.ExecCallback;
-import lcmc.common.domain.NewOutputCallback;
+import lcmc.common.domain.util.Backoff;
 import lcmc.common.domain.util.Tools;
 import lcmc.common.ui.*;
 import lcmc.common.ui.main.MainData;
@@ -57,6 +57,8 @@ import lcmc.drbd.ui.resource.ResourceInfo;
 import lcmc.drbd.ui.resource.VolumeInfo;
 import lcmc.event.NetworkChangedEvent;
 import lcmc.host.domain.Host;
+import lcmc.host.domain.StatusFrame;
+import lcmc.host.domain.StatusOutputCallback;
 import lcmc.host.ui.ClusterHostsInfo;
 import lcmc.host.ui.HostBrowser;
 import lcmc.logger.Logger;
@@ -80,6 +82,7 @@ import java.awt.*;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -262,8 +265,13 @@ public class ClusterBrowser extends Browser {
     private final Lock mVmsWriteLock = mVmsLock.writeLock();
     private final Lock mVmsUpdateLock = new ReentrantLock();
     private final Map<Host, VmsXml> vmsXML = new HashMap<Host, VmsXml>();
+    /** Domains in the tree by name, for the VirtualDomain resources. */
+    private final Map<String, DomainInfo> domainInfoIndex = new ConcurrentHashMap<String, DomainInfo>();
+    private final DomainChecksums appliedDomainChecksums = new DomainChecksums();
     private DRBDtestData drbdtestData;
     private boolean drbdStatusCanceledByUser = false;
+    private final CoalescedRepaint drbdStatusRepaint =
+            new CoalescedRepaint(Tools.getDefaultInt("ClusterBrowser.DrbdStatus.RepaintDelay"), this::repaintDrbdStatus);
     /** Whether hb status was canceled by user. */
     private boolean crmStatusCanceledByUser = false;
     private final Lock mPtestLock = new ReentrantLock();
@@ -671,6 +679,7 @@ public class ClusterBrowser extends Browser {
     void startServerStatus(final Host host) {
         final String hostName = host.getName();
         final CategoryInfo[] infosToUpdate = new CategoryInfo[]{clusterHostsInfo};
+        final Backoff backoff = newStatusBackoff();
         while (true) {
             if (host.getHostParser().getWaitForServerStatusLatch()) {
                 progressIndicator.startProgressIndicator(hostName, Tools.getString("ClusterBrowser.UpdatingServerInfo"));
@@ -681,7 +690,7 @@ public class ClusterBrowser extends Browser {
             if (serverStatusCanceled) {
                 break;
             }
-            Tools.sleep(10000);
+            backoff.sleep();
             if (serverStatusCanceled) {
                 break;
             }
@@ -718,7 +727,7 @@ public class ClusterBrowser extends Browser {
     public void periodicalVmsUpdate(final Host host) {
         final VmsXml newVmsXml = vmsXmlProvider.get();
         newVmsXml.init(host);
-        if (newVmsXml.parseXml()) {
+        if (newVmsXml.parseXml(getVmsXml(host))) {
             vmsXmlPut(host, newVmsXml);
             updateVms();
         }
@@ -735,7 +744,7 @@ public class ClusterBrowser extends Browser {
         for (final Host host : hosts) {
             final VmsXml newVmsXml = vmsXmlProvider.get();
             newVmsXml.init(host);
-            if (newVmsXml.parseXml()) {
+            if (newVmsXml.parseXml(getVmsXml(host))) {
                 vmsXmlPut(host, newVmsXml);
                 updated = true;
             }
@@ -823,6 +832,7 @@ public class ClusterBrowser extends Browser {
         thread.start();
 
         drbdStatusCanceledByUser = false;
+        final Backoff backoff = newStatusBackoff();
         while (true) {
             host.execDrbdStatusCommand(
                   new ExecCallback() {
@@ -864,83 +874,173 @@ public class ClusterBrowser extends Browser {
                        }
                    },
 
-                   new NewOutputCallback() {
-                       private final StringBuffer outputBuffer = new StringBuffer(300);
-                       @Override
-                       public void output(final String output) {
-                           if ("--nm--".equals(output.trim())) {
-                               if (host.isDrbdStatusOk()) {
-                                   LOG.debug1("startDrbdStatus: host: " + host.getName());
-                                   host.setDrbdStatusOk(false);
-                                   drbdGraph.repaint();
-                                   clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
-                               }
-                               firstTime.countDown();
-                               return;
-                           }
-                           firstTime.countDown();
-                           if (!host.isDrbdStatusOk()) {
-                               LOG.debug1("startDrbdStatus: host: " + host.getName());
-                               host.setDrbdStatusOk(true);
-                               drbdGraph.repaint();
-                               clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
-                           }
-                           outputBuffer.append(output);
-                           String drbdConfig, event;
-                           boolean drbdUpdate = false;
-                           boolean eventUpdate = false;
-                           do {
-                               host.drbdStatusLock();
-                               drbdConfig = host.getHostParser().getOutput("drbd", outputBuffer);
-                               if (drbdConfig != null) {
-                                   final DrbdXml newDrbdXml = drbdXmlProvider.get();
-                                   newDrbdXml.init(cluster.getHostsArray(), hostDrbdParameters);
-                                   newDrbdXml.update(drbdConfig);
-                                   drbdXml = newDrbdXml;
-                                   drbdUpdate = true;
-                                   firstTime.countDown();
-                               }
-                               host.drbdStatusUnlock();
-                               event = host.getHostParser().getOutput("event", outputBuffer);
-                               if (event != null && drbdXml.parseDrbdEvent(host.getName(), drbdGraph, event)) {
-                                   host.setDrbdStatusOk(true);
-                                   eventUpdate = true;
-                               }
-                           } while (event != null || drbdConfig != null);
-                           Tools.chomp(outputBuffer);
-                           if (drbdUpdate) {
-                               swingUtils.invokeLater(new Runnable() {
-                                   @Override
-                                   public void run() {
-                                       globalInfo.setParameters();
-                                       updateDrbdResources();
-                                   }
-                               });
-                           }
-                           if (eventUpdate) {
-                               drbdGraph.repaint();
-                               LOG.debug1("drbd status update: " + host.getName());
-                               clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
-                               firstTime.countDown();
-                               final Thread thread = new Thread(
-                                   new Runnable() {
-                                       @Override
-                                       public void run() {
-                                           repaintSplitPane();
-                                           drbdGraph.updatePopupMenus();
-                                           clusterTreeMenu.repaintMenuTree();
-                                       }
-                                   });
-                               thread.start();
-                           }
-                       }
-                   });
+                   new DrbdStatusOutput(host, firstTime));
             host.waitForHostAndDrbd();
             host.waitForDrbdStatusFinish();
             if (drbdStatusCanceledByUser) {
                 break;
             }
+            backoff.sleep();
+            if (drbdStatusCanceledByUser) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Output of the drbd events. The config and the events come in the
+     * frames, or between the text markers, from the command, that runs in its
+     * own session.
+     */
+    private final class DrbdStatusOutput implements StatusOutputCallback {
+        private final Host host;
+        private final CountDownLatch firstTime;
+        private final StringBuffer outputBuffer = new StringBuffer(300);
+        /* updates from the current output */
+        private boolean drbdUpdate = false;
+        private boolean eventUpdate = false;
+
+        DrbdStatusOutput(final Host host, final CountDownLatch firstTime) {
+            this.host = host;
+            this.firstTime = firstTime;
+        }
+
+        @Override
+        public void output(final String output) {
+            if ("--nm--".equals(output.trim())) {
+                drbdNotLoaded();
+                return;
+            }
+            drbdLoaded();
+            outputBuffer.append(output);
+            String drbdConfig, event;
+            do {
+                host.drbdStatusLock();
+                try {
+                    drbdConfig = host.getHostParser().getOutput("drbd", outputBuffer);
+                    if (drbdConfig != null) {
+                        drbdConfig(drbdConfig);
+                    }
+                } finally {
+                    host.drbdStatusUnlock();
+                }
+                event = host.getHostParser().getOutput("event", outputBuffer);
+                if (event != null) {
+                    drbdEvent(event);
+                }
+            } while (event != null || drbdConfig != null);
+            Tools.chomp(outputBuffer);
+            update();
+        }
+
+        @Override
+        public void frames(final List<StatusFrame> frames) {
+            /* the module can be loaded or unloaded in the middle of the frames */
+            for (final StatusFrame frame : frames) {
+                if ("nm".equals(frame.getType())) {
+                    drbdNotLoaded();
+                    continue;
+                }
+                drbdLoaded();
+                if (!host.getHostParser().isNewInfo(frame.getType(), frame.getTimestamp())) {
+                    continue;
+                }
+                if ("drbd".equals(frame.getType())) {
+                    host.drbdStatusLock();
+                    try {
+                        drbdConfig(frame.getPayload());
+                    } finally {
+                        host.drbdStatusUnlock();
+                    }
+                } else if ("event".equals(frame.getType())) {
+                    drbdEvent(frame.getPayload());
+                }
+            }
+            update();
+        }
+
+        private void drbdNotLoaded() {
+            if (host.isDrbdStatusOk()) {
+                LOG.debug1("startDrbdStatus: host: " + host.getName());
+                host.setDrbdStatusOk(false);
+                drbdGraph.repaint();
+                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+            }
+            firstTime.countDown();
         }
+
+        private void drbdLoaded() {
+            firstTime.countDown();
+            if (!host.isDrbdStatusOk()) {
+                LOG.debug1("startDrbdStatus: host: " + host.getName());
+                host.setDrbdStatusOk(true);
+                drbdGraph.repaint();
+                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+            }
+        }
+
+        private void drbdConfig(final String drbdConfig) {
+            final DrbdXml newDrbdXml = drbdXmlProvider.get();
+            newDrbdXml.init(cluster.getHostsArray(), hostDrbdParameters);
+            newDrbdXml.update(drbdConfig, drbdXml);
+            drbdXml = newDrbdXml;
+            drbdUpdate = true;
+            firstTime.countDown();
+        }
+
+        private void drbdEvent(final String event) {
+            if (drbdXml.parseDrbdEvent(host.getName(), drbdGraph, event)) {
+                host.setDrbdStatusOk(true);
+                eventUpdate = true;
+            }
+        }
+
+        private void update() {
+            if (drbdUpdate) {
+                swingUtils.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        globalInfo.setParameters();
+                        updateDrbdResources();
+                    }
+                });
+            }
+            if (eventUpdate) {
+                LOG.debug1("drbd status update: " + host.getName());
+                firstTime.countDown();
+                scheduleDrbdStatusRepaint();
+            }
+            drbdUpdate = false;
+            eventUpdate = false;
+        }
+    }
+
+    /** Delays between the restarts of the status commands. */
+    private static Backoff newStatusBackoff() {
+        return new Backoff(Tools.getDefaultInt("StatusChannel.Backoff.Initial"),
+                           Tools.getDefaultInt("StatusChannel.Backoff.Max"));
+    }
+
+    /**
+     * Repaints the drbd graph, table and menus once for all drbd events
+     * from all hosts, that come in the next ClusterBrowser.DrbdStatus.RepaintDelay
+     * milliseconds.
+     */
+    private void scheduleDrbdStatusRepaint() {
+        drbdStatusRepaint.request();
+    }
+
+    private void repaintDrbdStatus() {
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                drbdGraph.repaint();
+                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+                repaintSplitPane();
+                drbdGraph.updatePopupMenus();
+                clusterTreeMenu.repaintMenuTree();
+            }
+        });
     }
 
     public void stopCrmStatus() {
@@ -1035,35 +1135,12 @@ public class ClusterBrowser extends Browser {
                         } else {
                             final String status = clusterStatusOutput.substring(i);
                             clusterStatusOutput.delete(0, clusterStatusOutput.length());
-                            if (CLUSTER_STATUS_ERROR.equals(status)) {
-                                final boolean oldStatus = host.isCrmStatusOk();
-                                clusterStatus0.setOnlineNode(host.getName(), "no");
-                                setCrmStatus(host, false);
-                                if (oldStatus) {
-                                   crmGraph.repaint();
-                                }
-                            } else {
-                                if (clusterStatus0.parseStatus(status)) {
-                                    LOG.debug1("processClusterOutput: host: " + host.getName());
-                                    final ServicesInfo ssi = servicesInfo;
-                                    rscDefaultsInfo.setParameters(clusterStatus0.getRscDefaultsValuePairs());
-                                    ssi.setGlobalConfig(clusterStatus0);
-                                    resourceUpdaterProvider.get().updateAllResources(ssi, ssi.getBrowser(), clusterStatus0, runMode);
-                                    if (firstTime.getCount() == 1) {
-                                        /* one more time so that id-refs work.*/
-                                        resourceUpdaterProvider.get().updateAllResources(ssi, ssi.getBrowser(), clusterStatus0, runMode);
-                                    }
-                                    clusterTreeMenu.repaintMenuTree();
-                                    clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
-                                }
-                                final String online = clusterStatus0.isOnlineNode(host.getName());
-                                if ("yes".equals(online)) {
-                                    setCrmStatus(host, true);
-                                    setCrmStatus();
-                                } else {
-                                    setCrmStatus(host, false);
-                                }
-                            }
+                            processClusterStatus(status,
+                                                 CLUSTER_STATUS_ERROR.equals(status),
+                                                 clusterStatus0,
+                                                 host,
+                                                 firstTime,
+                                                 runMode);
                         }
                         firstTime.countDown();
                     }
@@ -1074,6 +1151,91 @@ public class ClusterBrowser extends Browser {
         clStatusUnlock();
     }
 
+    /**
+     * Parses the cluster status, that came between the ---start--- and
+     * ---done--- markers or in one frame.
+     */
+    private void processClusterStatus(final String status,
+                                      final boolean error,
+                                      final ClusterStatus clusterStatus0,
+                                      final Host host,
+                                      final CountDownLatch firstTime,
+                                      final Application.RunMode runMode) {
+        if (error) {
+            final boolean oldStatus = host.isCrmStatusOk();
+            clusterStatus0.setOnlineNode(host.getName(), "no");
+            setCrmStatus(host, false);
+            if (oldStatus) {
+               crmGraph.repaint();
+            }
+        } else {
+            final boolean updated = clusterStatus0.parseStatus(status);
+            if (clusterStatus0.isCibDeltaOutOfSync()) {
+                LOG.debug("processClusterOutput: host: " + host.getName()
+                          + ": cib delta out of sync, restarting");
+                host.setCrmStatusDelta(clusterStatus0.isCibDeltaSupported());
+                clusterStatus0.resetCibDelta();
+                host.stopCrmStatus();
+            }
+            if (updated) {
+                LOG.debug1("processClusterOutput: host: " + host.getName());
+                final ServicesInfo ssi = servicesInfo;
+                rscDefaultsInfo.setParameters(clusterStatus0.getRscDefaultsValuePairs());
+                ssi.setGlobalConfig(clusterStatus0);
+                resourceUpdaterProvider.get().updateAllResources(ssi,
+                                                                 ssi.getBrowser(),
+                                                                 clusterStatus0,
+                                                                 runMode,
+                                                                 clusterStatus0.getChangedCrmIds());
+                if (firstTime.getCount() == 1) {
+                    /* one more time so that id-refs work.*/
+                    resourceUpdaterProvider.get().updateAllResources(ssi, ssi.getBrowser(), clusterStatus0, runMode);
+                }
+                clusterTreeMenu.repaintMenuTree();
+                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
+            }
+            final String online = clusterStatus0.isOnlineNode(host.getName());
+            if ("yes".equals(online)) {
+                setCrmStatus(host, true);
+                setCrmStatus();
+            } else {
+                setCrmStatus(host, false);
+            }
+        }
+    }
+
+    /** Parses the cluster status from the frames, see parseClusterOutput. */
+    void parseClusterFrames(final List<StatusFrame> frames,
+                            final Host host,
+                            final CountDownLatch firstTime,
+                            final Application.RunMode runMode) {
+        final ClusterStatus clusterStatus0 = this.clusterStatus;
+        clStatusLock();
+        if (crmStatusCanceledByUser || clusterStatus0 == null) {
+            clStatusUnlock();
+            firstTime.countDown();
+            return;
+        }
+        for (final StatusFrame frame : frames) {
+            if ("crm".equals(frame.getType())) {
+                final String status = frame.getPayload();
+                if (!status.contains("is stopped")) {
+                    processClusterStatus(status,
+                                         "error".equals(status.trim()),
+                                         clusterStatus0,
+                                         host,
+                                         firstTime,
+                                         runMode);
+                }
+                firstTime.countDown();
+            } else {
+                LOG.debug1("parseClusterFrames: host: " + host.getName() + ": " + frame.getType() + ": "
+                           + frame.getPayload());
+            }
+        }
+        clStatusUnlock();
+    }
+
     void startCrmStatus() {
         final CountDownLatch firstTime = new CountDownLatch(1);
         final String clusterName = getCluster().getName();
@@ -1102,14 +1264,11 @@ public class ClusterBrowser extends Browser {
         thread.start();
         crmStatusCanceledByUser = false;
         final Application.RunMode runMode = Application.RunMode.LIVE;
+        final Backoff backoff = newStatusBackoff();
         while (true) {
             final Host host = getDCHost();
             if (host == null) {
-                try {
-                    Thread.sleep(5000);
-                } catch (final InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
+                backoff.sleep();
                 continue;
             }
             //clStatusCanceled = false;
@@ -1142,7 +1301,7 @@ public class ClusterBrowser extends Browser {
                         }
                     },
 
-                    new NewOutputCallback() {
+                    new StatusOutputCallback() {
                         //TODO: check this buffer's size
                         private final StringBuffer clusterStatusOutput = new StringBuffer(300);
 
@@ -1150,16 +1309,17 @@ public class ClusterBrowser extends Browser {
                         public void output(final String output) {
                             parseClusterOutput(output, clusterStatusOutput, host, firstTime, runMode);
                         }
+
+                        @Override
+                        public void frames(final List<StatusFrame> frames) {
+                            parseClusterFrames(frames, host, firstTime, runMode);
+                        }
                     });
             host.waitForCrmStatusFinish();
             if (crmStatusCanceledByUser) {
                 break;
             }
-            try {
-                Thread.sleep(5000);
-            } catch (final InterruptedException ex) {
-                Thread.currentThread().interrupt();
-            }
+            backoff.sleep();
         }
     }
 
@@ -1189,32 +1349,38 @@ public class ClusterBrowser extends Browser {
     /** Updates VM nodes. */
     public void updateVms() {
         LOG.debug1("updateVMS: status update");
-        final Collection<String> domainNames = new TreeSet<String>();
-        for (final Host host : getClusterHosts()) {
-            final VmsXml vmsXml = getVmsXml(host);
-            if (vmsXml != null) {
-                domainNames.addAll(vmsXml.getDomainNames());
-            }
-        }
+        final Map<String, String> domainChecksums = getDomainChecksums();
         final Collection<DefaultMutableTreeNode> nodesToRemove = new ArrayList<DefaultMutableTreeNode>();
         final Collection<DomainInfo> currentVMSVDIs = new ArrayList<DomainInfo>();
+        final Collection<DomainInfo> changedVMSVDIs = new ArrayList<DomainInfo>();
+        /* names of the tree nodes, that stay, null for the new domains */
+        final List<String> childNames = new ArrayList<String>();
 
         mVmsUpdateLock.lock();
         boolean nodeChanged = false;
         if (vmsNode != null) {
             for (final Object info : clusterTreeMenu.nodesToInfos(vmsNode.children())) {
                 final DomainInfo domainInfo = (DomainInfo) info;
-                if (domainNames.contains(domainInfo.toString())) {
+                final String name = domainInfo.toString();
+                final String checksum = domainChecksums.remove(name);
+                if (checksum != null) {
                     /* keeping */
                     currentVMSVDIs.add(domainInfo);
-                    domainNames.remove(domainInfo.toString());
-                    domainInfo.updateParameters(); /* update old */
+                    childNames.add(domainInfo.getName());
+                    domainInfoIndex.put(name, domainInfo);
+                    if (appliedDomainChecksums.apply(name, checksum) || domainInfo.isInTransition()) {
+                        changedVMSVDIs.add(domainInfo); /* update old */
+                    }
                 } else {
                     if (!domainInfo.getResource().isNew()) {
                         /* remove not existing vms */
                         nodesToRemove.add(domainInfo.getNode());
                         domainInfo.setNode(null);
+                        domainInfoIndex.remove(name);
+                        appliedDomainChecksums.remove(name);
                         nodeChanged = true;
+                    } else {
+                        childNames.add(domainInfo.getName());
                     }
                 }
             }
@@ -1225,29 +1391,32 @@ public class ClusterBrowser extends Browser {
             mVmsUpdateLock.unlock();
             return;
         }
-        for (final String domainName : domainNames) {
-            int i = 0;
-            for (final Object info : clusterTreeMenu.nodesToInfos(vmsNode.children())) {
-                final DomainInfo domainInfo = (DomainInfo) info;
-                final String name = domainInfo.getName();
-                if (domainName != null && name != null && domainName.compareTo(domainInfo.getName()) < 0) {
-                    break;
-                }
-                i++;
-            }
+        for (final Map.Entry<String, String> domainEntry : domainChecksums.entrySet()) {
+            final String domainName = domainEntry.getKey();
+            final int i = DomainChecksums.getInsertIndex(childNames, domainName);
             /* add new vms nodes */
             final DomainInfo domainInfo = domainInfoProvider.get();
             domainInfo.einit(domainName, this);
             currentVMSVDIs.add(domainInfo);
             clusterTreeMenu.createMenuItem(vmsNode, domainInfo, i);
-            domainInfo.updateParameters();
+            childNames.add(i, domainName);
+            domainInfoIndex.put(domainName, domainInfo);
+            appliedDomainChecksums.apply(domainName, domainEntry.getValue());
+            changedVMSVDIs.add(domainInfo);
             nodeChanged = true;
         }
+        for (final DomainInfo domainInfo : changedVMSVDIs) {
+            domainInfo.updateParameters();
+        }
+        LOG.debug1("updateVms: domains: " + currentVMSVDIs.size() + ", updated: " + changedVMSVDIs.size());
         mVmsUpdateLock.unlock();
         if (nodeChanged) {
             clusterTreeMenu.reloadNodeDontSelect(vmsNode);
         }
         for (final ServiceInfo si : getExistingServiceList(null)) {
+            if (!(si instanceof VirtualDomainInfo)) {
+                continue;
+            }
             final DomainInfo vmsvdi = si.connectWithVMS();
             if (vmsvdi != null) {
                 /* keep the not connected ones.*/
@@ -1263,6 +1432,23 @@ public class ClusterBrowser extends Browser {
         }
     }
 
+    /** Returns checksums of all domains from all hosts, sorted by domain name. */
+    private Map<String, String> getDomainChecksums() {
+        final Map<String, Map<String, String>> hostDomainChecksums = new LinkedHashMap<String, Map<String, String>>();
+        for (final Host host : getClusterHosts()) {
+            final VmsXml vmsXml = getVmsXml(host);
+            if (vmsXml == null) {
+                continue;
+            }
+            final Map<String, String> domainChecksums = new LinkedHashMap<String, String>();
+            for (final String domainName : vmsXml.getDomainNames()) {
+                domainChecksums.put(domainName, vmsXml.getDomainChecksum(domainName));
+            }
+            hostDomainChecksums.put(host.getName(), domainChecksums);
+        }
+        return DomainChecksums.merge(hostDomainChecksums);
+    }
+
     public VMListInfo getVmsInfo() {
         return (VMListInfo) vmsNode.getUserObject();
     }
@@ -1947,6 +2133,10 @@ public class ClusterBrowser extends Browser {
      */
     public DomainInfo findVMSVirtualDomainInfo(final String name) {
         if (vmsNode != null && name != null) {
+            final DomainInfo indexed = domainInfoIndex.get(name);
+            if (indexed != null && indexed.getNode() != null) {
+                return indexed;
+            }
             for (final Object info : clusterTreeMenu.nodesToInfos(vmsNode.children())) {
                 final DomainInfo domainInfo = (DomainInfo) info;
                 if (name.equals(domainInfo.getName())) {
@@ -2186,7 +2376,7 @@ public class ClusterBrowser extends Browser {
                         h = menuHost;
                     }
                     action.run(h);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(h));
+                    final PtestData ptestData = CRM.getPtest(h, clusterStatus.getCibVersion());
                     component.setToolTipText(ptestData.getToolTip());
                     clusterStatus.setPtestResult(ptestData);
                 } finally {
@@ -0,0 +1,73 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.ui;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the repaint once for all the requests, that come within the delay
+ * after the first one. All the instances share one scheduler thread.
+ */
+final class CoalescedRepaint {
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private final ScheduledExecutorService scheduler;
+    private final int delay;
+    private final Runnable repaint;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    CoalescedRepaint(final int delay, final Runnable repaint) {
+        this(SCHEDULER, delay, repaint);
+    }
+
+    CoalescedRepaint(final ScheduledExecutorService scheduler, final int delay, final Runnable repaint) {
+        this.scheduler = scheduler;
+        this.delay = delay;
+        this.repaint = repaint;
+    }
+
+    /** Schedules the repaint, unless it is already scheduled. */
+    void request() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                scheduled.set(false);
+                repaint.run();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "coalesced-repaint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.ui;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checksums of the domains, for which the domain nodes were last updated,
+ * so that the unchanged domains are not updated again.
+ */
+final class DomainChecksums {
+    private final Map<String, String> appliedChecksums = new HashMap<String, String>();
+
+    /**
+     * Returns checksums of all domains from all hosts, sorted by domain name.
+     * The checksum changes, if the domain changes on any host.
+     */
+    static Map<String, String> merge(final Map<String, Map<String, String>> hostDomainChecksums) {
+        final Map<String, StringBuilder> checksums = new TreeMap<String, StringBuilder>();
+        for (final Map.Entry<String, Map<String, String>> hostEntry : hostDomainChecksums.entrySet()) {
+            for (final Map.Entry<String, String> domainEntry : hostEntry.getValue().entrySet()) {
+                StringBuilder checksum = checksums.get(domainEntry.getKey());
+                if (checksum == null) {
+                    checksum = new StringBuilder();
+                    checksums.put(domainEntry.getKey(), checksum);
+                }
+                checksum.append(hostEntry.getKey()).append(':').append(domainEntry.getValue()).append(' ');
+            }
+        }
+        final Map<String, String> domainChecksums = new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, StringBuilder> checksumEntry : checksums.entrySet()) {
+            domainChecksums.put(checksumEntry.getKey(), checksumEntry.getValue().toString());
+        }
+        return domainChecksums;
+    }
+
+    /**
+     * Returns position of the new domain in the sorted domain nodes. The new
+     * domains without name are skipped.
+     */
+    static int getInsertIndex(final List<String> childNames, final String domainName) {
+        int low = 0;
+        int high = childNames.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int named = mid;
+            while (named < high && childNames.get(named) == null) {
+                named++;
+            }
+            if (named == high) {
+                high = mid;
+            } else if (domainName.compareTo(childNames.get(named)) < 0) {
+                high = named;
+            } else {
+                low = named + 1;
+            }
+        }
+        return low;
+    }
+
+    /** Stores the checksum and returns whether the domain changed since the last update. */
+    boolean apply(final String domainName, final String checksum) {
+        return !checksum.equals(appliedChecksums.put(domainName, checksum));
+    }
+
+    /** Forgets the removed domain. */
+    void remove(final String domainName) {
+        appliedChecksums.remove(domainName);
+    }
+}
@@ -54,6 +54,11 @@ public final class DrbdLogs extends ClusterLogs {
         return "DrbdLog.log";
     }
 
+    @Override
+    protected String logFollowCommand() {
+        return "DrbdLog.logFollow";
+    }
+
     /** Returns which pattern names are selected by default. */
     @Override
     protected Set<String> getSelectedSet() {
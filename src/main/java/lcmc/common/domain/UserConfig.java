@@ -36,16 +36,11 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -133,15 +128,7 @@ public final class UserConfig extends XMLTools {
     /** Saves data about clusters and hosts to the supplied output stream. */
     private String saveXML(final OutputStream outputStream, final boolean saveAll) throws IOException {
         LOG.debug1("saveXML: start");
-        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-        final DocumentBuilder db;
-        try {
-             db = dbf.newDocumentBuilder();
-        } catch (final ParserConfigurationException pce) {
-             throw new IOException("saveXML: cannot configure parser", pce);
-        }
-        final Document doc = db.newDocument();
+        final Document doc = createDocument();
         final Element root = (Element) doc.appendChild(doc.createElement("drbdgui"));
         if (application.getLoginSave()) {
             final String downloadUser = application.getDownloadUser();
@@ -187,16 +174,10 @@ public final class UserConfig extends XMLTools {
             }
         }
 
-        final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        final Transformer transformer;
-        try {
-            transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.ENCODING, ENCODING);
-        } catch (final TransformerConfigurationException tce) {
-            throw new IOException("saveXML: transformer config failed", tce);
-        }
+        final Transformer transformer = getTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.setOutputProperty(OutputKeys.ENCODING, ENCODING);
         final Source doms = new DOMSource(doc);
         final Result streamResult = new StreamResult(outputStream);
         try {
@@ -210,10 +191,14 @@ public final class UserConfig extends XMLTools {
 
     /**
      * Starts specified clusters and connects to the hosts of this clusters.
+     * The clusters are connected in parallel, after the first host was
+     * connected, and the keys or the password, that worked for it, are tried
+     * first.
      */
     public void startClusters(final Collection<Cluster> selectedClusters) {
         final Set<Cluster> clusters = allClusters.getClusterSet();
         if (clusters != null) {
+            Host connectedHost = null;
             /* clusters */
             for (final Cluster cluster : clusters) {
                 if (selectedClusters != null && !selectedClusters.contains(cluster)) {
@@ -228,38 +213,66 @@ public final class UserConfig extends XMLTools {
                 if (cluster.getHosts().isEmpty()) {
                     continue;
                 }
-                final boolean ok = cluster.connect(null, true, 1);
-                if (!ok) {
-                    swingUtils.invokeLater(new Runnable() {
+                if (connectedHost == null) {
+                    connectCluster(cluster);
+                    for (final Host host : cluster.getHosts()) {
+                        if (host.isConnected()) {
+                            connectedHost = host;
+                            break;
+                        }
+                    }
+                } else {
+                    final Host firstHost = cluster.getHosts().iterator().next();
+                    firstHost.getSSH().setPasswords(connectedHost.getSSH().getLastSuccessfulDsaKey(),
+                                                    connectedHost.getSSH().getLastSuccessfulRsaKey(),
+                                                    connectedHost.getSSH().getLastSuccessfulPassword());
+                    final Thread thread = new Thread(new Runnable() {
                         @Override
                         public void run() {
-                            clustersPanel.removeTabWithCluster(cluster);
+                            connectCluster(cluster);
                         }
                     });
-                    continue;
+                    thread.start();
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects the hosts of the cluster and adds the cluster view, after
+     * they are loaded.
+     */
+    private void connectCluster(final Cluster cluster) {
+        final boolean ok = cluster.connect(null, true, 1);
+        if (!ok) {
+            swingUtils.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    clustersPanel.removeTabWithCluster(cluster);
                 }
-                final Runnable runnable = new Runnable() {
+            });
+            return;
+        }
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                for (final Host host : cluster.getHosts()) {
+                    host.waitOnLoading();
+                }
+                swingUtils.invokeLater(new Runnable() {
                     @Override
                     public void run() {
-                        for (final Host host : cluster.getHosts()) {
-                            host.waitOnLoading();
+                        final ClusterTab clusterTab = cluster.getClusterTab();
+                        if (clusterTab != null) {
+                            clusterTab.addClusterView();
+                            clusterTab.requestFocus();
                         }
-                        swingUtils.invokeLater(new Runnable() {
-                            @Override
-                            public void run() {
-                                final ClusterTab clusterTab = cluster.getClusterTab();
-                                if (clusterTab != null) {
-                                    clusterTab.addClusterView();
-                                    clusterTab.requestFocus();
-                                }
-                            }
-                        });
                     }
-                };
-                final Thread thread = new Thread(runnable);
-                thread.start();
+                });
             }
-        }
+        };
+        final Thread thread = new Thread(runnable);
+        thread.start();
     }
 
     /**
@@ -22,16 +22,37 @@
 
 package lcmc.common.domain;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -39,6 +60,27 @@ import org.xml.sax.SAXException;
  */
 public class XMLTools {
     private static final Logger LOG = LoggerFactory.getLogger(XMLTools.class);
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    /*
+     * The factories are thread safe only for creating the objects, the
+     * document builders, transformers and xpath expressions are not, so
+     * every thread reuses its own.
+     */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+            ThreadLocal.withInitial(XMLTools::createDocumentBuilder);
+    private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(XMLTools::createTransformer);
+    private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(XMLTools::createXPath);
+    /** Compiled xpath expressions by path. */
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATH_EXPRESSIONS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
 
     public static Node getChildNode(final Node node, final String tag) {
         final NodeList nodeList = node.getChildNodes();
@@ -87,22 +129,191 @@ public class XMLTools {
             return null;
         }
         final String xml = xmlraw.trim();
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        if (factory == null || xml.isEmpty() || "no resources defined!".equals(xml)) {
+        if (xml.isEmpty() || "no resources defined!".equals(xml)) {
             return null;
         }
-        final Document document;
         try {
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            return getXMLDocument(new StringReader(xml));
         } catch (final SAXException sxe) {
             LOG.appError("getXMLDocument: could not parse: " + xml, sxe);
             return null;
-        } catch (final ParserConfigurationException pce) {
-            throw new RuntimeException("getXMLException: parser configuration", pce);
+        }
+    }
+
+    /** Parses the xml from the reader, without copying it into bytes first. */
+    public static Document getXMLDocument(final Reader reader) throws SAXException {
+        final DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        try {
+            return builder.parse(new InputSource(reader));
         } catch (final IOException ioe) {
             throw new RuntimeException("getXMLException: io error", ioe);
+        } finally {
+            builder.reset();
+        }
+    }
+
+    /** Returns a new empty document. */
+    public static Document createDocument() {
+        return DOCUMENT_BUILDER.get().newDocument();
+    }
+
+    /**
+     * Returns the transformer of this thread, with the default output
+     * properties.
+     */
+    public static Transformer getTransformer() {
+        final Transformer transformer = TRANSFORMER.get();
+        transformer.reset();
+        return transformer;
+    }
+
+    /** Returns the node as xml string. */
+    public static String toXML(final Node node) throws TransformerException {
+        final StringWriter writer = new StringWriter();
+        getTransformer().transform(new DOMSource(node), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    /**
+     * Returns the compiled xpath expression. The expressions are compiled once
+     * in every thread and must not be shared with other threads.
+     */
+    public static XPathExpression getXPathExpression(final String path) throws XPathExpressionException {
+        final Map<String, XPathExpression> expressions = XPATH_EXPRESSIONS.get();
+        XPathExpression expression = expressions.get(path);
+        if (expression == null) {
+            expression = XPATH.get().compile(path);
+            expressions.put(path, expression);
+        }
+        return expression;
+    }
+
+    /** Returns the nodes, that match the path. */
+    public static NodeList evaluateNodes(final String path, final Node node) throws XPathExpressionException {
+        return (NodeList) getXPathExpression(path).evaluate(node, XPathConstants.NODESET);
+    }
+
+    /** Returns StAX reader for the xml string. */
+    public static XMLStreamReader createXMLStreamReader(final String xml) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+    }
+
+    /**
+     * Moves to the next child element of the current element. Returns false
+     * at the end of the current element.
+     */
+    public static boolean nextChildElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Skips the current element with all its children. */
+    public static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
         }
-        return document;
+    }
+
+    /** Returns the text of the current element, the child elements are skipped. */
+    public static String readText(final XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (depth == 1
+                       && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /** Returns the current element with all its children as a DOM element. */
+    public static Element readElement(final XMLStreamReader reader, final Document document)
+                                                                                      throws XMLStreamException {
+        final Element element = createElement(reader, document);
+        Element current = element;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final Element child = createElement(reader, document);
+                current.appendChild(child);
+                current = child;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (current == element) {
+                    break;
+                }
+                current = (Element) current.getParentNode();
+            } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                       && !reader.isWhiteSpace()) {
+                current.appendChild(document.createTextNode(reader.getText()));
+            }
+        }
+        return element;
+    }
+
+    private static Element createElement(final XMLStreamReader reader, final Document document) {
+        final String prefix = reader.getPrefix();
+        final Element element;
+        if (prefix == null || prefix.isEmpty()) {
+            element = document.createElement(reader.getLocalName());
+        } else {
+            element = document.createElement(prefix + ':' + reader.getLocalName());
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    public static void close(final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (final XMLStreamException e) {
+                LOG.debug("close: " + e.getMessage());
+            }
+        }
+    }
+
+    private static DocumentBuilder createDocumentBuilder() {
+        synchronized (DOCUMENT_BUILDER_FACTORY) {
+            try {
+                return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            } catch (final ParserConfigurationException pce) {
+                throw new RuntimeException("getXMLException: parser configuration", pce);
+            }
+        }
+    }
+
+    private static Transformer createTransformer() {
+        synchronized (TRANSFORMER_FACTORY) {
+            try {
+                return TRANSFORMER_FACTORY.newTransformer();
+            } catch (final TransformerConfigurationException tce) {
+                throw new RuntimeException("getTransformer: transformer configuration", tce);
+            }
+        }
+    }
+
+    private static XPath createXPath() {
+        return XPathFactory.newInstance().newXPath();
     }
 }
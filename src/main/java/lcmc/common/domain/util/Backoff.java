@@ -0,0 +1,63 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.domain.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between the restarts of a command, that should run all the time,
+ * like the status commands. The delay doubles with every restart up to the
+ * maximum and only a random part of it from one half up is slept, so that
+ * the commands of the hosts don't restart at the same time. After a command
+ * ran longer than the maximum delay, the delay starts again with the initial
+ * delay.
+ */
+public final class Backoff {
+    private final int initialDelay;
+    private final int maxDelay;
+    private int delay;
+    /** Time of the last wake up, in milliseconds. */
+    private long lastWakeUp;
+
+    public Backoff(final int initialDelay, final int maxDelay) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        delay = initialDelay;
+        lastWakeUp = System.currentTimeMillis();
+    }
+
+    /** Sleeps before the next restart. */
+    public void sleep() {
+        Tools.sleep(nextDelay());
+    }
+
+    int nextDelay() {
+        final long now = System.currentTimeMillis();
+        if (now - lastWakeUp >= maxDelay) {
+            delay = initialDelay;
+        }
+        final int half = delay / 2;
+        final int jitteredDelay = half + ThreadLocalRandom.current().nextInt(delay - half + 1);
+        delay = (int) Math.min(maxDelay, 2L * delay);
+        lastWakeUp = now + jitteredDelay;
+        return jitteredDelay;
+    }
+}
@@ -1,6 +1,7 @@
 package lcmc.common.domain.util;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,6 +10,8 @@ import java.util.Collections;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.google.common.hash.Hashing;
+import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.Synchronized;
 import lombok.val;
@@ -17,6 +20,11 @@ public class GuiHelperFiles {
     private static final String GUI_HELPER_DIR = "/help-progs/lcmc-gui-helper/";
     private static final String GUI_HELPER_FILENAME = GUI_HELPER_DIR + "Main.pl";
     private final URI dirUri;
+    /** The gui-helper, as it is installed on the hosts, with the new line at the end. */
+    @Getter(lazy = true)
+    private final byte[] guiHelperBytes = (readGuiHelper() + '\n').getBytes(StandardCharsets.UTF_8);
+    @Getter(lazy = true)
+    private final String guiHelperMd5 = Hashing.md5().hashBytes(getGuiHelperBytes()).toString();
 
     @SneakyThrows
     public GuiHelperFiles() {
@@ -0,0 +1,136 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.awt.KeyboardFocusManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.swing.Timer;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.common.ui.main.MainData;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * One timer for all the animations of the graphs.
+ *
+ * The timer runs in the swing thread and only while there are some
+ * animations. While no window of the gui is focused, it slows down to
+ * "AnimationClock.UnfocusedFPS" frames per second.
+ */
+@Named
+@Singleton
+public class AnimationClock {
+    private static final Logger LOG = LoggerFactory.getLogger(AnimationClock.class);
+
+    @Inject
+    private MainData mainData;
+    private final Collection<Animation> animations = new ArrayList<Animation>();
+    private final Lock mAnimationsLock = new ReentrantLock();
+    private final Timer timer;
+    private final int unfocusedFps;
+
+    public AnimationClock() {
+        unfocusedFps = Tools.getDefaultInt("AnimationClock.UnfocusedFPS");
+        timer = new Timer(0, e -> tick());
+    }
+
+    /** Starts the animation, that runs till its tick returns false. */
+    public void start(final Animation animation) {
+        mAnimationsLock.lock();
+        try {
+            animations.add(animation);
+            if (!timer.isRunning()) {
+                final int interval = getInterval();
+                timer.setInitialDelay(interval);
+                timer.setDelay(interval);
+                timer.start();
+            }
+        } finally {
+            mAnimationsLock.unlock();
+        }
+    }
+
+    boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    /** Ticks all the animations, the timer stops with the last one. */
+    void tick() {
+        final long now = System.currentTimeMillis();
+        final List<Animation> running;
+        mAnimationsLock.lock();
+        try {
+            running = new ArrayList<Animation>(animations);
+        } finally {
+            mAnimationsLock.unlock();
+        }
+        final Collection<Animation> finished = new ArrayList<Animation>();
+        for (final Animation animation : running) {
+            try {
+                if (!animation.tick(now)) {
+                    finished.add(animation);
+                }
+            } catch (final RuntimeException e) {
+                LOG.appWarning("tick: animation failed", e);
+                finished.add(animation);
+            }
+        }
+        mAnimationsLock.lock();
+        try {
+            animations.removeAll(finished);
+            if (animations.isEmpty()) {
+                timer.stop();
+            } else {
+                timer.setDelay(getInterval());
+            }
+        } finally {
+            mAnimationsLock.unlock();
+        }
+    }
+
+    /** Returns the time between the frames in milliseconds. */
+    int getInterval() {
+        final int interval = (int) (1000 / mainData.getAnimFPS());
+        if (unfocusedFps > 0 && !isFocused()) {
+            return Math.max(interval, 1000 / unfocusedFps);
+        }
+        return interval;
+    }
+
+    private boolean isFocused() {
+        return KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow() != null;
+    }
+
+    /** Frame of an animation. */
+    public interface Animation {
+        /** Draws the next frame and returns whether the animation goes on. */
+        boolean tick(long now);
+    }
+}
@@ -69,6 +69,12 @@ public final class CmdLog extends HostLogs {
         return getLogsCommand;
     }
 
+    /** The command log is not a file, that could be followed. */
+    @Override
+    protected String logFollowCommand() {
+        return null;
+    }
+
     @Override
     protected JComponent[] getAdditionalComponents() {
         final MyButton processed = widgetFactory.createButton(Tools.getString("CmdLog.Processed.Btn"));
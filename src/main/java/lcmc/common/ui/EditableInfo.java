@@ -35,6 +35,7 @@ import lcmc.common.domain.Unit;
 import lcmc.common.domain.Value;
 import lcmc.common.domain.util.Tools;
 import lcmc.common.ui.utils.ButtonCallback;
+import lcmc.common.ui.PendingParameterChecks.PendingCheck;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.common.ui.utils.SwingUtils;
 import lcmc.common.ui.utils.WidgetListener;
@@ -50,13 +51,17 @@ import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,6 +75,8 @@ public abstract class EditableInfo extends Info {
     public static final boolean WIZARD = true;
     /** Hash from parameter to boolean value if the last entered value was correct. */
     private final Map<String, Boolean> paramCorrectValueMap = new ConcurrentHashMap<String, Boolean>();
+    /** Compiled regexps of the parameters of this form. */
+    private final Map<String, Pattern> paramPatterns = new ConcurrentHashMap<String, Pattern>();
     private final Table<String, String, JPanel> sectionPanels = HashBasedTable.create();
     /** Old apply button, is used for wizards. */
     private MyButton oldApplyButton = null;
@@ -92,8 +99,12 @@ public abstract class EditableInfo extends Info {
     private WidgetFactory widgetFactory;
     @Inject
     private Access access;
+    @Inject
+    private ParameterCheckScheduler parameterCheckScheduler;
 
     private Optional<ResourceValue> resource;
+    private PendingParameterChecks pendingChecks = null;
+    private final Lock mPendingChecksLock = new ReentrantLock();
 
     public void einit(final Optional<ResourceValue> resource, final String name, final Browser browser) {
         super.init(name, browser);
@@ -423,63 +434,132 @@ public abstract class EditableInfo extends Info {
         return moreOptionsPanel;
     }
 
-    /** Checks ands sets paramter fields. */
+    /**
+     * Checks ands sets paramter fields. The changes, that come shortly after
+     * each other, are checked at once. Only the changed parameters and the
+     * parameters that depend on them are checked again, the others are taken
+     * from the cache.
+     */
     public void checkParameterFields(final Widget paramWi,
                                      final Widget realParamWi,
                                      final String param,
                                      final String[] params,
                                      final MyButton thisApplyButton) {
-        final Thread thread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                final Check check;
-                if (realParamWi == null) {
-                    swingUtils.waitForSwing();
-                    check = checkResourceFields(param, params);
-                } else {
-                    swingUtils.invokeLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (paramWi.getValue() == null || paramWi.getValue().isNothingSelected()) {
-                                realParamWi.setValueAndWait(null);
-                            } else {
-                                final Value value = paramWi.getValue();
-                                realParamWi.setValueAndWait(value);
-                            }
-                        }
-                    });
-                    swingUtils.waitForSwing();
-                    check = checkResourceFields(param, params);
-                }
-                swingUtils.invokeLater(new Runnable() {
+        getPendingChecks().add(new PendingCheck(paramWi, realParamWi, param, params, thisApplyButton));
+    }
+
+    private PendingParameterChecks getPendingChecks() {
+        mPendingChecksLock.lock();
+        try {
+            if (pendingChecks == null) {
+                pendingChecks = new PendingParameterChecks(parameterCheckScheduler, new Runnable() {
                     @Override
                     public void run() {
-                        if (resource.get().isNew()) {
-                            check.addChanged("new resource");
-                        }
-                        if (thisApplyButton == applyButton) {
-                            /* not a wizard button */
-                            if (isDialogStarted()) {
-                                check.addIncorrect("dialog started");
-                            }
-                            thisApplyButton.setEnabled(check);
-                        } else {
-                            /* wizard button */
-                            thisApplyButton.setEnabledCorrect(check);
-                        }
-                        if (revertButton != null) {
-                            revertButton.setEnabledChanged(check);
-                        }
-                        final String toolTip = getToolTipText(param, paramWi);
-                        paramWi.setToolTipText(toolTip);
-                        if (realParamWi != null) {
-                            realParamWi.setToolTipText(toolTip);
+                        try {
+                            runPendingChecks();
+                        } catch (final RuntimeException e) {
+                            LOG.appError("checkParameterFields: check failed", e);
                         }
                     }
                 });
             }
+            return pendingChecks;
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+    }
+
+    private void runPendingChecks() {
+        final PendingParameterChecks.Batch batch = getPendingChecks().take();
+        final List<PendingCheck> checks = batch.getChecks();
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                for (final PendingCheck pendingCheck : checks) {
+                    final Widget realParamWi = pendingCheck.realParamWi;
+                    if (realParamWi == null) {
+                        continue;
+                    }
+                    final Value value = pendingCheck.paramWi.getValue();
+                    if (value == null || value.isNothingSelected()) {
+                        realParamWi.setValueAndWait(null);
+                    } else {
+                        realParamWi.setValueAndWait(value);
+                    }
+                }
+            }
+        });
+        swingUtils.waitForSwing();
+        if (getPendingChecks().requeueIfStale(batch)) {
+            return;
+        }
+        /* the wizard and the info panel are checked separately */
+        final Map<MyButton, List<PendingCheck>> checksByButton = new LinkedHashMap<MyButton, List<PendingCheck>>();
+        for (final PendingCheck pendingCheck : checks) {
+            List<PendingCheck> buttonChecks = checksByButton.get(pendingCheck.applyButton);
+            if (buttonChecks == null) {
+                buttonChecks = new ArrayList<PendingCheck>();
+                checksByButton.put(pendingCheck.applyButton, buttonChecks);
+            }
+            buttonChecks.add(pendingCheck);
+        }
+        for (final Map.Entry<MyButton, List<PendingCheck>> buttonChecks : checksByButton.entrySet()) {
+            checkFields(buttonChecks.getKey(), buttonChecks.getValue());
+        }
+    }
+
+    private void checkFields(final MyButton thisApplyButton, final List<PendingCheck> checks) {
+        final PendingCheck lastCheck = checks.get(checks.size() - 1);
+        final String[] params = lastCheck.params;
+        String param = lastCheck.param;
+        for (final PendingCheck pendingCheck : checks) {
+            if (pendingCheck.param == null) {
+                /* everything */
+                param = null;
+                break;
+            }
+            paramCorrectValueMap.remove(pendingCheck.param);
+            for (final String dependentParam : getDependentParams(pendingCheck.param)) {
+                paramCorrectValueMap.remove(dependentParam);
+            }
+        }
+        final Check check = checkResourceFields(param, params);
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (resource.get().isNew()) {
+                    check.addChanged("new resource");
+                }
+                if (thisApplyButton == applyButton) {
+                    /* not a wizard button */
+                    if (isDialogStarted()) {
+                        check.addIncorrect("dialog started");
+                    }
+                    thisApplyButton.setEnabled(check);
+                } else {
+                    /* wizard button */
+                    thisApplyButton.setEnabledCorrect(check);
+                }
+                if (revertButton != null) {
+                    revertButton.setEnabledChanged(check);
+                }
+                for (final PendingCheck pendingCheck : checks) {
+                    final String toolTip = getToolTipText(pendingCheck.param, pendingCheck.paramWi);
+                    pendingCheck.paramWi.setToolTipText(toolTip);
+                    if (pendingCheck.realParamWi != null) {
+                        pendingCheck.realParamWi.setToolTipText(toolTip);
+                    }
+                }
+            }
         });
-        thread.start();
+    }
+
+    /**
+     * Returns parameters, that have to be checked again, if the parameter
+     * changes.
+     */
+    protected Collection<String> getDependentParams(final String param) {
+        return Collections.emptyList();
     }
 
     /** Get stored value in the combo box. */
@@ -581,10 +661,14 @@ public abstract class EditableInfo extends Info {
             }
         }
         if (regexp != null) {
-            final Pattern p = Pattern.compile(regexp);
             if (newValue == null || newValue.isNothingSelected()) {
                 return true;
             }
+            Pattern p = paramPatterns.get(regexp);
+            if (p == null) {
+                p = Pattern.compile(regexp);
+                paramPatterns.put(regexp, p);
+            }
             final Matcher m = p.matcher(newValue.getValueForConfig());
             return m.matches();
         }
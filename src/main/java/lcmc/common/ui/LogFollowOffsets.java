@@ -0,0 +1,79 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Byte offsets in the log file of every host, up to which the log was
+ * already shown in the follow mode.
+ *
+ * The follow command gets the offset as @OFFSET@ and prints the current
+ * size of the log file on the first line, followed by the matching lines
+ * between the offset and that size. The offset -1 means, that the offset
+ * is not known yet and only the size is printed.
+ */
+final class LogFollowOffsets {
+    private static final Logger LOG = LoggerFactory.getLogger(LogFollowOffsets.class);
+    static final long UNKNOWN_OFFSET = -1;
+
+    private final Map<String, Long> offsets = new HashMap<String, Long>();
+
+    long getOffset(final String host) {
+        final Long offset = offsets.get(host);
+        if (offset == null) {
+            return UNKNOWN_OFFSET;
+        }
+        return offset;
+    }
+
+    /**
+     * Remembers the new size of the log file from the output of the follow
+     * command and returns the new lines. If the output can't be parsed, the
+     * offset is forgotten and null is returned.
+     */
+    String update(final String host, final String output) {
+        if (output == null) {
+            return null;
+        }
+        final int headerEnd = output.indexOf('\n');
+        final String header = headerEnd < 0 ? output : output.substring(0, headerEnd);
+        try {
+            offsets.put(host, Long.parseLong(header.trim()));
+        } catch (final NumberFormatException e) {
+            LOG.debug1("update: " + host + ": unexpected follow output: " + header);
+            offsets.remove(host);
+            return null;
+        }
+        if (headerEnd < 0) {
+            return "";
+        }
+        return output.substring(headerEnd + 1);
+    }
+
+    void clear() {
+        offsets.clear();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.AbstractListModel;
+
+/**
+ * Log lines, that are shown in a list, so that only the visible lines are
+ * rendered. It keeps at most maxRows lines in a ring buffer, the oldest
+ * lines are removed, when new lines are appended.
+ *
+ * It must be used on the EDT.
+ */
+final class LogListModel extends AbstractListModel<LogListModel.Row> {
+    private final Row[] rows;
+    private int first = 0;
+    private int size = 0;
+
+    LogListModel(final int maxRows) {
+        rows = new Row[maxRows];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Row getElementAt(final int index) {
+        return rows[(first + index) % rows.length];
+    }
+
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        final int oldSize = size;
+        Arrays.fill(rows, null);
+        first = 0;
+        size = 0;
+        fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+
+    void append(final List<Row> newRows) {
+        final int from = Math.max(0, newRows.size() - rows.length);
+        final int added = newRows.size() - from;
+        if (added == 0) {
+            return;
+        }
+        final int removed = Math.max(0, size + added - rows.length);
+        if (removed > 0) {
+            for (int i = 0; i < removed; i++) {
+                rows[(first + i) % rows.length] = null;
+            }
+            first = (first + removed) % rows.length;
+            size -= removed;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        for (final Row row : newRows.subList(from, newRows.size())) {
+            rows[(first + size) % rows.length] = row;
+            size++;
+        }
+        fireIntervalAdded(this, size - added, size - 1);
+    }
+
+    /** One log line, the lines from the alternating hosts have the other color. */
+    static final class Row {
+        private final String text;
+        private final boolean otherColor;
+
+        Row(final String text, final boolean otherColor) {
+            this.text = text;
+            this.otherColor = otherColor;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        boolean isOtherColor() {
+            return otherColor;
+        }
+
+        /** The text is copied, when the rows are copied to the clipboard. */
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Merges syslog lines from many hosts into one time ordered list.
+ *
+ * The timestamp of every line is parsed only once. The lines of each host
+ * are already nearly in order, so they are sorted on their own and then
+ * merged with a k-way merge. Lines without timestamp keep the time of the
+ * previous line, so that they stay with the line that they continue.
+ */
+final class LogMerger {
+    private static final Pattern TIME_PATTERN =
+            Pattern.compile("(Jan|Feb|Mar|Apr|May|Jun|Jul|Aug|Sep|Oct|Nov|Dec) +(\\d+) +(\\d+):(\\d+):(\\d+)");
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final long NO_TIME = -1;
+    private static final Comparator<Line> BY_TIME = new Comparator<Line>() {
+        @Override
+        public int compare(final Line l1, final Line l2) {
+            return Long.compare(l1.time, l2.time);
+        }
+    };
+
+    /** Merges the output of all hosts. */
+    List<Line> merge(final List<String> outputs) {
+        final List<List<Line>> hostLines = new ArrayList<List<Line>>(outputs.size());
+        int size = 0;
+        for (final String output : outputs) {
+            final List<Line> lines = parse(output);
+            Collections.sort(lines, BY_TIME);
+            hostLines.add(lines);
+            size += lines.size();
+        }
+        return kWayMerge(hostLines, size);
+    }
+
+    static List<Line> parse(final String output) {
+        final List<Line> lines = new ArrayList<Line>();
+        if (output == null || output.isEmpty()) {
+            return lines;
+        }
+        final Matcher m = TIME_PATTERN.matcher("");
+        long time = NO_TIME;
+        int start = 0;
+        while (start < output.length()) {
+            int end = output.indexOf('\n', start);
+            if (end < 0) {
+                end = output.length();
+            }
+            final int next = end + 1;
+            if (end > start && output.charAt(end - 1) == '\r') {
+                end--;
+            }
+            final String text = output.substring(start, end);
+            m.reset(text);
+            if (m.lookingAt()) {
+                time = getTime(m);
+            }
+            lines.add(new Line(text, time));
+            start = next;
+        }
+        return lines;
+    }
+
+    private static long getTime(final Matcher m) {
+        final long month = MONTHS.indexOf(m.group(1)) / 3;
+        final long day = Long.parseLong(m.group(2));
+        final long hour = Long.parseLong(m.group(3));
+        final long min = Long.parseLong(m.group(4));
+        final long sec = Long.parseLong(m.group(5));
+        return (((month * 32 + day) * 24 + hour) * 60 + min) * 60 + sec;
+    }
+
+    private static List<Line> kWayMerge(final List<List<Line>> hostLines, final int size) {
+        final List<Line> merged = new ArrayList<Line>(size);
+        final PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(Math.max(1, hostLines.size()));
+        for (int i = 0; i < hostLines.size(); i++) {
+            if (!hostLines.get(i).isEmpty()) {
+                heads.add(new Cursor(hostLines.get(i), i));
+            }
+        }
+        while (!heads.isEmpty()) {
+            final Cursor cursor = heads.poll();
+            merged.add(cursor.current());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /** Position in the lines of one host. Ties are resolved by host order. */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final List<Line> lines;
+        private final int hostIndex;
+        private int position = 0;
+
+        Cursor(final List<Line> lines, final int hostIndex) {
+            this.lines = lines;
+            this.hostIndex = hostIndex;
+        }
+
+        Line current() {
+            return lines.get(position);
+        }
+
+        boolean advance() {
+            position++;
+            return position < lines.size();
+        }
+
+        @Override
+        public int compareTo(final Cursor other) {
+            final int byTime = Long.compare(current().time, other.current().time);
+            if (byTime != 0) {
+                return byTime;
+            }
+            return hostIndex < other.hostIndex ? -1 : (hostIndex == other.hostIndex ? 0 : 1);
+        }
+    }
+
+    /** One log line with its parsed time. */
+    static final class Line {
+        private final String text;
+        private final long time;
+
+        Line(final String text, final long time) {
+            this.text = text;
+            this.time = time;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /** Returns the host field of a syslog line or null. */
+        String getHost() {
+            final String[] tok = text.trim().split("\\s+", 5);
+            if (tok.length > 3) {
+                return tok[3];
+            }
+            return null;
+        }
+    }
+}
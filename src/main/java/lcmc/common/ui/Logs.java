@@ -24,38 +24,41 @@
 package lcmc.common.ui;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.swing.BoxLayout;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.ImageIcon;
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JTextPane;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
 
 import lcmc.cluster.ui.widget.WidgetFactory;
 import lcmc.common.ui.utils.SwingUtils;
@@ -66,6 +69,7 @@ import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.common.domain.util.Tools;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
+import lcmc.cluster.service.ssh.ExecCommandThread;
 
 /**
  * An implementation of an dialog with log files from many hosts.
@@ -73,7 +77,27 @@ import lcmc.cluster.service.ssh.ExecCommandConfig;
 @Named
 public class Logs extends ConfigDialog {
     private static final Logger LOG = LoggerFactory.getLogger(Logs.class);
-    private final JTextPane logTextArea = new JTextPane();
+    /** Lines that are appended to the list at once. */
+    private static final int APPEND_CHUNK_LINES = 1000;
+    private static final Color COLOR1 = Color.BLACK;
+    private static final Color COLOR2 = Color.BLUE;
+    /** Space for the insets of the rendered line. */
+    private static final int LOG_LIST_PADDING = 10;
+    private static final ScheduledThreadPoolExecutor FOLLOW_SCHEDULER = createFollowScheduler();
+    /** Only the visible lines are rendered, the list has at most Logs.MaxLines lines. */
+    private final LogListModel logListModel = new LogListModel(Tools.getDefaultInt("Logs.MaxLines"));
+    private final JList<LogListModel.Row> logList = new JList<LogListModel.Row>(logListModel);
+    /** Width of the longest line, accessed on the EDT. */
+    private int logListWidth = 0;
+    private final JCheckBox followCheckBox = new JCheckBox(Tools.getString("Dialog.Logs.FollowCheckBox"));
+    private final LogMerger logMerger = new LogMerger();
+    /** Guarded by mRefreshLock. */
+    private final LogFollowOffsets followOffsets = new LogFollowOffsets();
+    /** Accessed on the EDT. */
+    private ScheduledFuture<?> followFuture = null;
+    /** Host of the last appended line, the color changes with the host. */
+    private String prevHost = "";
+    private boolean otherColor = true;
     private final Map<String, JCheckBox> patternToCheckBoxMap = new HashMap<String, JCheckBox>();
     private final Lock mRefreshLock = new ReentrantLock();
     private final Collection<JComponent> additionalComponents = new ArrayList<JComponent>();
@@ -84,12 +108,31 @@ public class Logs extends ConfigDialog {
 
     /**
      * Command that gets the log. The command must be specified in the
-     * DistResource or some such.
+     * DistResource or some such. If the log can be followed, the command
+     * prints the size of the log file first, like the follow command.
      */
     protected String logFileCommand() {
         return "Logs.hbLog";
     }
 
+    /**
+     * Command that gets the log from the @OFFSET@ byte of the log file on,
+     * see LogFollowOffsets. Null, if the log can't be followed.
+     */
+    protected String logFollowCommand() {
+        return "Logs.hbLogFollow";
+    }
+
+    private static ScheduledThreadPoolExecutor createFollowScheduler() {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "logs-follow");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
     protected final String grepPattern() {
         final StringBuilder pattern = new StringBuilder(40);
         pattern.append('\'');
@@ -164,17 +207,59 @@ public class Logs extends ConfigDialog {
      */
     protected final void refreshLogs() {
         enableAllComponents(false);
+        followOffsets.clear();
         final Host[] hosts = getHosts();
-        final Thread[] threads = new Thread[hosts.length];
-        final String[] texts = new String[hosts.length];
+        final List<String> outputs = getLogOutputs(hosts, logFileCommand());
+        if (logFollowCommand() != null) {
+            /* the follow mode goes on from the log file sizes, that come first */
+            for (int i = 0; i < hosts.length; i++) {
+                final String newLines = followOffsets.update(hosts[i].getName(), outputs.get(i));
+                if (newLines != null) {
+                    outputs.set(i, newLines);
+                }
+            }
+        }
+        final List<LogMerger.Line> lines = logMerger.merge(outputs);
+        prevHost = "";
+        otherColor = true;
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                logListModel.clear();
+                logListWidth = 0;
+            }
+        });
+        appendLines(lines);
+        enableComponents();
+        enableAllComponents(true);
+    }
 
-        final Map<String, String> replaceHash = getOptionsHash();
+    /**
+     * Appends only the lines, that were written to the log files after the
+     * last offsets.
+     */
+    private void followLogs() {
+        final Host[] hosts = getHosts();
+        final List<String> outputs = getLogOutputs(hosts, logFollowCommand());
+        final List<String> newLines = new ArrayList<String>(outputs.size());
+        for (int i = 0; i < hosts.length; i++) {
+            newLines.add(followOffsets.update(hosts[i].getName(), outputs.get(i)));
+        }
+        appendLines(logMerger.merge(newLines));
+    }
+
+    /** Runs the log command on all hosts in parallel and returns the outputs. */
+    private List<String> getLogOutputs(final Host[] hosts, final String logCommand) {
+        final ExecCommandThread[] threads = new ExecCommandThread[hosts.length];
+        final String[] texts = new String[hosts.length];
 
         int i = 0;
         final String stacktrace = Tools.getStackTrace();
         for (final Host host : hosts) {
             final int index = i;
-            final String command = host.getHostParser().getDistCommand(logFileCommand(), replaceHash);
+            final Map<String, String> replaceHash = getOptionsHash();
+            replaceHash.put("@OFFSET@", Long.toString(followOffsets.getOffset(host.getName())));
+            final String command = host.getHostParser().getDistCommand(logCommand, replaceHash);
             threads[index] = host.execCommand(new ExecCommandConfig()
                                                    .command(command)
                                                    .execCallback(new ExecCallback() {
@@ -194,107 +279,101 @@ public class Logs extends ConfigDialog {
                                                    .silentOutput());
             i++;
         }
-        i = 0;
-        final StringBuilder ans = new StringBuilder("");
-        for (final Thread t : threads) {
+        for (final ExecCommandThread t : threads) {
             try {
                 t.join();
             } catch (final InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-            ans.append(texts[i]);
-            i++;
         }
-        final String[] output = ans.toString().split("\r\n");
-        final String[] months = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
-        final Pattern p = Pattern.compile('(' + Tools.join("|", months) + ") +(\\d+) +(\\d+):(\\d+):(\\d+).*");
-        final Map<String, Integer> monthsHash = new HashMap<String, Integer>();
-        i = 0;
-        for (final String m : months) {
-            monthsHash.put(m, i);
-            i++;
+        return Arrays.asList(texts);
+    }
+
+    /**
+     * Appends the lines to the list in chunks. The oldest lines are removed,
+     * so that it doesn't have more than Logs.MaxLines lines.
+     */
+    private void appendLines(final List<LogMerger.Line> lines) {
+        final int maxLines = Tools.getDefaultInt("Logs.MaxLines");
+        final int from = Math.max(0, lines.size() - maxLines);
+        List<LogListModel.Row> chunk = new ArrayList<LogListModel.Row>(APPEND_CHUNK_LINES);
+        for (final LogMerger.Line line : lines.subList(from, lines.size())) {
+            chunk.add(new LogListModel.Row(line.getText(), isOtherColor(line.getHost())));
+            if (chunk.size() >= APPEND_CHUNK_LINES) {
+                appendRows(chunk);
+                chunk = new ArrayList<LogListModel.Row>(APPEND_CHUNK_LINES);
+            }
         }
-        Arrays.sort(output,
-                    new Comparator<String>() {
-                        @Override
-                        public int compare(final String o1, final String o2) {
-                            final Matcher m1 = p.matcher(o1);
-                            final Matcher m2 = p.matcher(o2);
-                            if (m1.matches() && m2.matches()) {
-                                final int month1 = monthsHash.get(m1.group(1));
-                                final int month2 = monthsHash.get(m2.group(1));
-
-                                final int day1 = Integer.parseInt(m1.group(2));
-                                final int day2 = Integer.parseInt(m2.group(2));
-
-                                final int hour1 = Integer.parseInt(m1.group(3));
-                                final int hour2 = Integer.parseInt(m2.group(3));
-
-                                final int min1 = Integer.parseInt(m1.group(4));
-                                final int min2 = Integer.parseInt(m2.group(4));
-
-                                final int sec1 = Integer.parseInt(m1.group(5));
-                                final int sec2 = Integer.parseInt(m2.group(5));
-
-                                if (month1 != month2) {
-                                    return month1 < month2 ? -1 : 1;
-                                }
-                                if (day1 != day2) {
-                                    return day1 < day2 ? -1 : 1;
-                                }
-                                if (hour1 != hour2) {
-                                    return hour1 < hour2 ? -1 : 1;
-                                }
-                                if (min1 != min2) {
-                                    return min1 < min2 ? -1 : 1;
-                                }
-                                if (sec1 != sec2) {
-                                    return sec1 < sec2 ? -1 : 1;
-                                }
-                            }
-                            return 0;
-                        }
-                    }
-                   );
-        logTextArea.setText("");
-        final Document doc = logTextArea.getStyledDocument();
-        final SimpleAttributeSet color1 = new SimpleAttributeSet();
-        final SimpleAttributeSet color2 = new SimpleAttributeSet();
-        StyleConstants.setForeground(color1, Color.BLACK);
-        StyleConstants.setForeground(color2, Color.BLUE);
-        SimpleAttributeSet color = null;
-        int start = 0;
-        int a = 0;
-        String prevHost = "";
-        for (final String line : output) {
-            final String[] tok = line.split("\\s+");
-            if (tok.length > 3) {
-                final String host = tok[3];
-                if (!host.equals(prevHost)) {
-                    if (a == 0) {
-                        a++;
-                        color = color1;
-                    } else {
-                        a--;
-                        color = color2;
-                    }
-                }
-                prevHost = host;
+        if (!chunk.isEmpty()) {
+            appendRows(chunk);
+        }
+    }
+
+    /** Returns the color of the line, it changes with every host change. */
+    private boolean isOtherColor(final String host) {
+        if (host != null) {
+            if (!host.equals(prevHost)) {
+                otherColor = !otherColor;
             }
-            final SimpleAttributeSet color0 = color;
-            final int start0 = start;
-            try {
-                doc.insertString(start0, line + '\n', color0);
-            } catch (final BadLocationException e) {
-                LOG.appError("refreshLogs: could not insert line", e);
+            prevHost = host;
+        }
+        return otherColor;
+    }
+
+    /**
+     * Appends the rows and scrolls to the end. The width of the list is set
+     * from the new rows, so that the list doesn't measure all of them.
+     */
+    private void appendRows(final List<LogListModel.Row> rows) {
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                final FontMetrics fontMetrics = logList.getFontMetrics(logList.getFont());
+                for (final LogListModel.Row row : rows) {
+                    logListWidth = Math.max(logListWidth, fontMetrics.stringWidth(row.getText()));
+                }
+                logList.setFixedCellWidth(logListWidth + LOG_LIST_PADDING);
+                logListModel.append(rows);
+                logList.ensureIndexIsVisible(logListModel.getSize() - 1);
             }
+        });
+    }
 
-            logTextArea.setCaretPosition(logTextArea.getDocument().getLength());
-            start += line.length() + 1;
+    /**
+     * Gets the new lines every Logs.FollowInterval milliseconds, until the
+     * follow check box is deselected. It is deselected, when the dialog
+     * is closed.
+     */
+    private void startFollowing() {
+        final long interval = Tools.getDefaultInt("Logs.FollowInterval");
+        followFuture = FOLLOW_SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+                                                                   @Override
+                                                                   public void run() {
+                                                                       followLogsTick();
+                                                                   }
+                                                               },
+                                                               interval,
+                                                               interval,
+                                                               TimeUnit.MILLISECONDS);
+    }
+
+    private void stopFollowing() {
+        final ScheduledFuture<?> future = followFuture;
+        followFuture = null;
+        if (future != null) {
+            future.cancel(false);
         }
+    }
 
-        enableComponents();
-        enableAllComponents(true);
+    private void followLogsTick() {
+        if (!mRefreshLock.tryLock()) {
+            return;
+        }
+        try {
+            followLogs();
+        } finally {
+            mRefreshLock.unlock();
+        }
     }
 
     @Override
@@ -342,6 +421,19 @@ public class Logs extends ConfigDialog {
             additionalComponents.add(ac);
             pane.add(ac);
         }
+        if (logFollowCommand() != null) {
+            followCheckBox.setBackground(Tools.getDefaultColor("ConfigDialog.Background.Dark"));
+            followCheckBox.addItemListener(new ItemListener() {
+                @Override
+                public void itemStateChanged(final ItemEvent e) {
+                    stopFollowing();
+                    if (e.getStateChange() == ItemEvent.SELECTED) {
+                        startFollowing();
+                    }
+                }
+            });
+            pane.add(followCheckBox);
+        }
         return pane;
     }
 
@@ -365,10 +457,32 @@ public class Logs extends ConfigDialog {
         final JPanel pane = new JPanel();
         pane.setLayout(new BoxLayout(pane, BoxLayout.PAGE_AXIS));
         pane.setBackground(Tools.getDefaultColor("ConfigDialog.Background.Dark"));
-        logTextArea.setEditable(false);
-        logTextArea.setText("loading...");
+        logList.setPrototypeCellValue(new LogListModel.Row("loading...", false));
+        logList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(final JList<?> list,
+                                                          final Object value,
+                                                          final int index,
+                                                          final boolean isSelected,
+                                                          final boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (!isSelected) {
+                    setForeground(((LogListModel.Row) value).isOtherColor() ? COLOR2 : COLOR1);
+                }
+                return this;
+            }
+        });
+        logListModel.append(Collections.singletonList(new LogListModel.Row("loading...", false)));
+        logList.addHierarchyListener(new HierarchyListener() {
+            @Override
+            public void hierarchyChanged(final HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && !logList.isShowing()) {
+                    followCheckBox.setSelected(false);
+                }
+            }
+        });
         pane.add(getGrepChoicesPane());
-        final JScrollPane sp = new JScrollPane(logTextArea);
+        final JScrollPane sp = new JScrollPane(logList);
         sp.setPreferredSize(new Dimension(Short.MAX_VALUE, Short.MAX_VALUE));
         pane.add(sp);
         pane.setMaximumSize(new Dimension(Short.MAX_VALUE, pane.getPreferredSize().height));
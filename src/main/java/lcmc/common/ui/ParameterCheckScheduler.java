@@ -0,0 +1,56 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import lcmc.common.domain.util.Tools;
+
+/**
+ * One thread, that checks the parameter fields of all the forms, instead of
+ * a new thread for every change. The check is started after the delay, so
+ * that the fast changes are checked at once.
+ */
+@Named
+@Singleton
+public class ParameterCheckScheduler {
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final int checkDelay = Tools.getDefaultInt("EditableInfo.CheckDelay");
+
+    public ParameterCheckScheduler() {
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "parameter-checks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Runs the check after the delay, unless the returned future is canceled first. */
+    public ScheduledFuture<?> schedule(final Runnable checkTask) {
+        return scheduler.schedule(checkTask, checkDelay, TimeUnit.MILLISECONDS);
+    }
+}
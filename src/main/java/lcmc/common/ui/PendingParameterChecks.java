@@ -0,0 +1,140 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lcmc.cluster.ui.widget.Widget;
+import lcmc.common.ui.utils.MyButton;
+
+/**
+ * Changed parameters of one form, that wait to be checked. Every change
+ * postpones the check, so that the fast changes are checked at once. The
+ * check, that was overtaken by a newer change, is put back and done
+ * together with it.
+ */
+final class PendingParameterChecks {
+    private final ParameterCheckScheduler parameterCheckScheduler;
+    /** Runs the pending checks in the scheduler thread. */
+    private final Runnable checkTask;
+    /** Changed parameters by the parameter, null is the whole form. */
+    private final Map<String, PendingCheck> pendingChecks = new LinkedHashMap<String, PendingCheck>();
+    private final Lock mPendingChecksLock = new ReentrantLock();
+    private ScheduledFuture<?> pendingChecksFuture = null;
+    /** Is incremented with every change, so that an old check can be recognized. */
+    private int generation = 0;
+
+    PendingParameterChecks(final ParameterCheckScheduler parameterCheckScheduler, final Runnable checkTask) {
+        this.parameterCheckScheduler = parameterCheckScheduler;
+        this.checkTask = checkTask;
+    }
+
+    /** Adds the change and postpones the check. */
+    void add(final PendingCheck pendingCheck) {
+        mPendingChecksLock.lock();
+        try {
+            pendingChecks.put(pendingCheck.param, pendingCheck);
+            generation++;
+            if (pendingChecksFuture != null) {
+                pendingChecksFuture.cancel(false);
+            }
+            pendingChecksFuture = parameterCheckScheduler.schedule(checkTask);
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+    }
+
+    /** Takes all the pending checks. */
+    Batch take() {
+        mPendingChecksLock.lock();
+        try {
+            final Batch batch = new Batch(new ArrayList<PendingCheck>(pendingChecks.values()), generation);
+            pendingChecks.clear();
+            return batch;
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+    }
+
+    /**
+     * Puts the checks back, if there was a change after they were taken, the
+     * newer check will check them all. Returns whether they were put back.
+     */
+    boolean requeueIfStale(final Batch batch) {
+        mPendingChecksLock.lock();
+        try {
+            if (batch.generation == generation) {
+                return false;
+            }
+            final Map<String, PendingCheck> newerChecks = new LinkedHashMap<String, PendingCheck>(pendingChecks);
+            pendingChecks.clear();
+            for (final PendingCheck pendingCheck : batch.checks) {
+                pendingChecks.put(pendingCheck.param, pendingCheck);
+            }
+            pendingChecks.putAll(newerChecks);
+            return true;
+        } finally {
+            mPendingChecksLock.unlock();
+        }
+    }
+
+    /** Checks, that were taken together. */
+    static final class Batch {
+        private final List<PendingCheck> checks;
+        private final int generation;
+
+        private Batch(final List<PendingCheck> checks, final int generation) {
+            this.checks = checks;
+            this.generation = generation;
+        }
+
+        List<PendingCheck> getChecks() {
+            return checks;
+        }
+    }
+
+    /** Changed parameter, that waits to be checked. */
+    static final class PendingCheck {
+        final Widget paramWi;
+        final Widget realParamWi;
+        final String param;
+        final String[] params;
+        final MyButton applyButton;
+
+        PendingCheck(final Widget paramWi,
+                     final Widget realParamWi,
+                     final String param,
+                     final String[] params,
+                     final MyButton applyButton) {
+            this.paramWi = paramWi;
+            this.realParamWi = realParamWi;
+            this.param = param;
+            this.params = params;
+            this.applyButton = applyButton;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import edu.uci.ics.jung.graph.util.Pair;
 import edu.uci.ics.jung.visualization.BasicVisualizationServer;
 import edu.uci.ics.jung.visualization.GraphZoomScrollPane;
 import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
 import edu.uci.ics.jung.visualization.RenderContext;
 import edu.uci.ics.jung.visualization.VisualizationImageServer;
 import edu.uci.ics.jung.visualization.VisualizationServer;
@@ -60,6 +61,7 @@ import java.awt.Font;
 import java.awt.GradientPaint;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
@@ -115,6 +117,8 @@ public abstract class ResourceGraph {
     private static final Logger LOG = LoggerFactory.getLogger(ResourceGraph.class);
     /** Empty shape for arrows. (to not show an arrow). */
     private static final Shape EMPTY_SHAPE = new Area();
+    /** Pixels around the vertex that are repainted with it. */
+    private static final int VERTEX_BOUNDS_MARGIN = 3;
     /** Singleton instance of the Line2D edge shape. */
     private static final Shape INSTANCE = new Line2D.Float(0.0f, 0.0f, 1.0f, 0.0f);
     /** Singleton instance of dotted line edge shape. */
@@ -150,8 +154,8 @@ public abstract class ResourceGraph {
     private final Collection<JComponent> testAnimationList = new ArrayList<JComponent>();
     /** This mutex is for protecting the test animation list. */
     private final Lock mTestAnimationListLock = new ReentrantLock();
-    private volatile Thread animationThread = null;
-    private final Lock mAnimationThreadLock = new ReentrantLock();
+    /** Whether the animations of this graph are on the animation clock. */
+    private boolean animationRunning = false;
     private final Map<Vertex, Integer> vertexWidth = new HashMap<Vertex, Integer>();
     private final Map<Vertex, Integer> vertexHeight = new HashMap<Vertex, Integer>();
     /** Whether something in the graph changed that requires visualizationViewer to restart. */
@@ -160,8 +164,12 @@ public abstract class ResourceGraph {
     /** Whether only test or real thing should show. */
     private volatile Application.RunMode runModeFlag = Application.RunMode.LIVE;
     private final Lock mRunModeFlag = new ReentrantLock();
-    private volatile Thread testAnimationThread = null;
-    private final Lock mTestAnimationThreadLock = new ReentrantLock();
+    /** Whether the test animation of this graph is on the animation clock. */
+    private boolean testAnimationRunning = false;
+    /** The test animation waits for this latch before it shows the test. */
+    private CountDownLatch testAnimationLatch = null;
+    private long nextRunModeSwitch = 0;
+    private Application.RunMode runModeFlagLast = Application.RunMode.LIVE;
     /** List of edges that are made only during test. */
     private volatile Edge testEdge = null;
     /** List of edges that are being tested during test. */
@@ -179,62 +187,70 @@ public abstract class ResourceGraph {
     private MainData mainData;
     @Inject
     private ProgressIndicator progressIndicator;
+    @Inject
+    private AnimationClock animationClock;
 
     /** Starts the animation if vertex is being updated. */
     public final void startAnimation(final Info info) {
-        final int animInterval = (int) (1000 / mainData.getAnimFPS());
         mAnimationListLock.lock();
-        if (animationList.isEmpty()) {
-            /* start animation thread */
-            mAnimationThreadLock.lock();
-            if (animationThread == null) {
-                animationThread = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        while (true) {
-                            try {
-                                Thread.sleep(animInterval);
-                            } catch (final InterruptedException ex) {
-                                Thread.currentThread().interrupt();
-                            }
-
-                            mAnimationListLock.lock();
-                            if (animationList.isEmpty()) {
-                                mAnimationListLock.unlock();
-                                repaint();
-                                mAnimationThreadLock.lock();
-                                animationThread = null;
-                                mAnimationThreadLock.unlock();
-                                break;
-                            }
-                            for (final Info animation : animationList) {
-                                animation.incAnimationIndex();
-                            }
-                            mAnimationListLock.unlock();
-                            repaint();
-                        }
-                    }
-                });
-                animationThread.start();
+        try {
+            if (!animationRunning) {
+                animationRunning = true;
+                animationClock.start(this::animationTick);
             }
-            mAnimationThreadLock.unlock();
+            animationList.add(info);
+        } finally {
+            mAnimationListLock.unlock();
         }
-        animationList.add(info);
-        mAnimationListLock.unlock();
     }
 
     public final void stopAnimation(final Info info) {
+        final boolean removed;
+        mAnimationListLock.lock();
+        try {
+            removed = animationList.remove(info);
+        } finally {
+            mAnimationListLock.unlock();
+        }
+        if (removed) {
+            repaintVertex(getVertex(info));
+        }
+    }
+
+    /**
+     * Moves the animations to the next frame and repaints only the vertices
+     * that are animated.
+     */
+    private boolean animationTick(final long now) {
+        final Collection<Vertex> animated = new ArrayList<Vertex>();
         mAnimationListLock.lock();
         try {
-            animationList.remove(info);
+            if (animationList.isEmpty()) {
+                animationRunning = false;
+                return false;
+            }
+            for (final Info animation : animationList) {
+                animation.incAnimationIndex();
+                animated.add(getVertex(animation));
+            }
         } finally {
             mAnimationListLock.unlock();
         }
+        Rectangle dirty = null;
+        for (final Vertex v : animated) {
+            final Rectangle bounds = getVertexBounds(v);
+            if (bounds != null) {
+                dirty = dirty == null ? bounds : dirty.union(bounds);
+            }
+        }
+        if (dirty != null) {
+            visualizationViewer.repaint(dirty);
+        }
+        return true;
     }
 
     /** Starts the animation if vertex is being tested. */
     public final void startTestAnimation(final JComponent component, final CountDownLatch startTestLatch) {
-        final int animInterval = (int) (1000 / mainData.getAnimFPS());
         mTestAnimationListLock.lock();
         mRunModeFlag.lock();
         runModeFlag = Application.RunMode.LIVE;
@@ -245,81 +261,72 @@ public abstract class ResourceGraph {
                 Tools.setMenuOpaque(component, false);
             }
         });
-        if (testAnimationList.isEmpty()) {
-            mTestAnimationThreadLock.lock();
-            if (testAnimationThread == null) {
-                /* start test animation thread */
-                testAnimationThread = new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        FOREVER: while (true) {
-                            try {
-                                startTestLatch.await();
-                            } catch (final InterruptedException ignored) {
-                                Thread.currentThread().interrupt();
-                            }
-                            mRunModeFlag.lock();
-                            final Application.RunMode runModeFlagLast;
-                            try {
-                                /* invert run mode */
-                                if (Application.isTest(runModeFlag)) {
-                                    runModeFlag = Application.RunMode.LIVE;
-                                } else {
-                                    runModeFlag = Application.RunMode.TEST;
-                                }
-                                runModeFlagLast = runModeFlag;
-                            } finally {
-                                mRunModeFlag.unlock();
-                            }
-                            repaint();
-                            int sleep = 300;
-                            if (Application.isTest(runModeFlag)) {
-                                sleep = 1200;
-                            }
-                            for (int s = 0; s < sleep; s += animInterval) {
-                                mRunModeFlag.lock();
-                                if (runModeFlag == runModeFlagLast) {
-                                    mRunModeFlag.unlock();
-                                } else {
-                                    mRunModeFlag.unlock();
-                                    repaint();
-                                }
-                                if (!component.isShowing()) {
-                                    stopTestAnimation(component);
-                                }
-                                mTestAnimationListLock.lock();
-
-                                if (testAnimationList.isEmpty()) {
-                                    mTestAnimationListLock.unlock();
-                                    mRunModeFlag.lock();
-                                    try {
-                                        runModeFlag = Application.RunMode.LIVE;
-                                    } finally {
-                                        mRunModeFlag.unlock();
-                                    }
-                                    repaint();
-                                    mTestAnimationThreadLock.lock();
-                                    try {
-                                        testAnimationThread = null;
-                                    } finally {
-                                        mTestAnimationThreadLock.unlock();
-                                    }
-                                    break FOREVER;
-                                }
-                                mTestAnimationListLock.unlock();
-                                Tools.sleep(animInterval);
-                            }
-                        }
-                    }
-                });
-                testAnimationThread.start();
-            }
-            mTestAnimationThreadLock.unlock();
+        if (!testAnimationRunning) {
+            testAnimationRunning = true;
+            testAnimationLatch = startTestLatch;
+            nextRunModeSwitch = 0;
+            runModeFlagLast = Application.RunMode.LIVE;
+            animationClock.start(this::testAnimationTick);
         }
         testAnimationList.add(component);
         mTestAnimationListLock.unlock();
     }
 
+    /**
+     * Switches between the test and the real view, after the test was
+     * started, the test view is shown longer.
+     */
+    private boolean testAnimationTick(final long now) {
+        final Collection<JComponent> components;
+        mTestAnimationListLock.lock();
+        try {
+            if (testAnimationList.isEmpty()) {
+                testAnimationRunning = false;
+                mRunModeFlag.lock();
+                try {
+                    runModeFlag = Application.RunMode.LIVE;
+                } finally {
+                    mRunModeFlag.unlock();
+                }
+                repaint();
+                return false;
+            }
+            components = new ArrayList<JComponent>(testAnimationList);
+        } finally {
+            mTestAnimationListLock.unlock();
+        }
+        for (final JComponent component : components) {
+            if (!component.isShowing()) {
+                stopTestAnimation(component);
+            }
+        }
+        if (testAnimationLatch.getCount() > 0) {
+            return true;
+        }
+        mRunModeFlag.lock();
+        final boolean changed;
+        try {
+            if (now >= nextRunModeSwitch) {
+                /* invert run mode */
+                if (Application.isTest(runModeFlag)) {
+                    runModeFlag = Application.RunMode.LIVE;
+                    nextRunModeSwitch = now + 300;
+                } else {
+                    runModeFlag = Application.RunMode.TEST;
+                    nextRunModeSwitch = now + 1200;
+                }
+            }
+            changed = runModeFlag != runModeFlagLast;
+            runModeFlagLast = runModeFlag;
+        } finally {
+            mRunModeFlag.unlock();
+        }
+        if (changed) {
+            repaint();
+        }
+        return true;
+    }
+
     public final void stopTestAnimation(final JComponent component) {
         mTestAnimationListLock.lock();
         try {
@@ -450,6 +457,37 @@ public abstract class ResourceGraph {
         visualizationViewer.repaint();
     }
 
+    /** Repaints only the vertex. */
+    protected final void repaintVertex(final Vertex v) {
+        final Rectangle bounds = getVertexBounds(v);
+        if (bounds != null) {
+            visualizationViewer.repaint(bounds);
+        }
+    }
+
+    /**
+     * Returns the bounds of the vertex in the view, with a small margin for
+     * the antialiasing, or null if the vertex is not in the graph.
+     */
+    private Rectangle getVertexBounds(final Vertex v) {
+        if (v == null || visualizationViewer == null || !getGraph().containsVertex(v)) {
+            return null;
+        }
+        final Point2D pos = layout.transform(v);
+        if (pos == null) {
+            return null;
+        }
+        final MultiLayerTransformer transformer = visualizationViewer.getRenderContext().getMultiLayerTransformer();
+        final Point2D loc = transformer.transform(Layer.LAYOUT, pos);
+        final int width = getVertexWidth(v);
+        final int height = getVertexHeight(v);
+        final Shape bounds = new Rectangle2D.Double(loc.getX() - width / 2 - VERTEX_BOUNDS_MARGIN,
+                                                    loc.getY() - height / 2 - VERTEX_BOUNDS_MARGIN,
+                                                    width + 2 * VERTEX_BOUNDS_MARGIN,
+                                                    height + 2 * VERTEX_BOUNDS_MARGIN);
+        return transformer.transform(Layer.VIEW, bounds).getBounds();
+    }
+
     protected final Graph<Vertex, Edge> getGraph() {
         return graph;
     }
@@ -339,9 +339,46 @@ public final class AppDefaults extends ListResourceBundle {
         {"SSH.KexTimeout",           0}, /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout.Long", 0},     /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout",      180000}, /* milliseconds */
+        {"SSH.Executor.Threads",     8},     /* command workers per host */
+        {"SSH.Executor.Queue",       256},   /* queued commands per host */
+        {"HostFanOut.Threads",       8},     /* hosts of a multi-host action at a time */
+        {"HostConnector.Threads",    8},     /* hosts that connect and load at a time */
         {"ProgressBar.Sleep",        100},   /* milliseconds */
         {"ProgressBar.Delay",        50},    /* milliseconds */
 
+        /* cib parsing, "n" parses the whole DOM */
+        {"CrmXml.StreamingParser", "y"},
+        {"CrmXml.RaMetaDataCacheDir", System.getProperty("user.home") + "/.lcmc/ra-metadata"},
+
+        /* drbd events that come in this time are repainted at once */
+        {"ClusterBrowser.DrbdStatus.RepaintDelay", 100}, /* milliseconds */
+
+        /* status commands of a host in one helper process, "n" runs every one in its own session */
+        {"StatusChannel.Multiplexed", "y"},
+        /* restarts of the status commands */
+        {"StatusChannel.Backoff.Initial", 1000},  /* milliseconds */
+        {"StatusChannel.Backoff.Max",     20000}, /* milliseconds */
+
+        /* changes of the parameters, that come in this time, are checked at once */
+        {"EditableInfo.CheckDelay",  100}, /* milliseconds */
+
+        /* hw and cluster events, "n" delivers them right away */
+        {"EventBus.Async",           "y"},
+        {"EventBus.CoalesceWindow",  50},    /* milliseconds */
+        {"EventBus.MaxPendingEvents", 256},  /* more are delivered by the poster */
+        {"EventBus.SlowSubscriber",  200},   /* milliseconds, logged */
+
+        /* terminal panel */
+        {"TerminalPanel.MaxLines",   5000},
+        {"TerminalPanel.FlushChars", 65536}, /* appended at once */
+
+        /* log viewer */
+        {"Logs.MaxLines",            20000},
+        {"Logs.FollowInterval",      5000},  /* milliseconds */
+
+        /* graph animations, while no window of the gui is focused, 0 runs them at full fps */
+        {"AnimationClock.UnfocusedFPS", 2},
+
         /* score */
         {"Score.Infinity",                    100000},
         {"Score.MinusInfinity",               -100000},
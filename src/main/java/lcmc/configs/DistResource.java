@@ -33,6 +33,27 @@ import java.util.ListResourceBundle;
 public final class DistResource extends ListResourceBundle {
     /** Sudo placeholder. */
     public static final String SUDO = "@DMCSUDO@";
+    /** Finds the first readable heartbeat log file. */
+    private static final String HB_LOG_FILE =
+            "for f in /var/log/ha.log /var/log/syslog /var/log/messages; do test -r $f && break; done;";
+    /** Finds the first readable log file with the drbd messages. */
+    private static final String DRBD_LOG_FILE =
+            "for f in /var/log/kern.log /var/log/messages; do test -r $f && break; done;";
+    /**
+     * Prints the size of the $f log file on the first line, the follow
+     * mode goes on from there.
+     */
+    private static final String LOG_SIZE = " s=$(stat -c %s $f 2>/dev/null || echo 0); echo $s;";
+    /** Prints the last lines up to the size, that match the @GREPPATTERN@. */
+    static final String TAIL_LOG = LOG_SIZE + " head -c $s $f 2>/dev/null | grep @GREPPATTERN@ | tail -500";
+    /**
+     * Prints the lines from the @OFFSET@ byte up to the size, that match the
+     * @GREPPATTERN@. If the file got smaller, it was rotated and is read from
+     * the beginning. The offset -1 prints only the size.
+     */
+    static final String FOLLOW_LOG =
+            LOG_SIZE + " o=@OFFSET@; test $o -gt $s && o=0;"
+            + " test $o -lt 0 || tail -c +$((o + 1)) $f | head -c $((s - o)) | grep @GREPPATTERN@; true";
 
     private static final Object[][] contents = {
         {"Support", "no"},
@@ -88,7 +109,16 @@ public final class DistResource extends ListResourceBundle {
         {"TestCommand", "uptime"},
 
         {"GetHostAllInfo", SUDO + "@GUI-HELPER@ all"},
+        /* the gui-helper is copied with scp to @FILE@ and installed, if the checksum differs */
+        {"GuiHelper.Checksum", SUDO + "md5sum @GUI-HELPER-PROG@ 2>/dev/null; true"},
+        {"GuiHelper.Install",
+         SUDO + "install -m 0700 @FILE@ @GUI-HELPER-PROG@; ret=$?; rm -f @FILE@; exit $ret"},
         {"HostHWInfoDaemon", SUDO + "@GUI-HELPER@ hw-info-daemon"},
+        /* --delta=<InfoDeltaApplier.DELTA_VERSION> */
+        {"HostHWInfoDaemon.Delta", SUDO + "@GUI-HELPER@ hw-info-daemon --delta=1"},
+        /* hw info, drbd events and cluster events in one process, see StatusChannel,
+           --frames=<StatusFrameDecoder frames version> */
+        {"HostStatusMux", SUDO + "@GUI-HELPER@ status-mux --frames=1"},
         {"GetHostHWInfo", SUDO + "@GUI-HELPER@ hw-info"},
         {"GetHostHWInfoLVM", SUDO + "@GUI-HELPER@ hw-info-lvm"},
         {"GetHostHWInfoLazy", "nice -n 19 " + SUDO + "@GUI-HELPER@ hw-info-lazy"},
@@ -142,6 +172,15 @@ public final class DistResource extends ListResourceBundle {
         {"Heartbeat.getOCFParameters",
          SUDO + "@GUI-HELPER@ get-resource-agents;"},
 
+        {"Heartbeat.getOCFParametersSelected",
+         SUDO + "@GUI-HELPER@ get-resource-agents selected @RAS@;"},
+
+        {"Heartbeat.getOCFParametersConfiguredExcept",
+         SUDO + "@GUI-HELPER@ get-resource-agents configured-except @RAS@;"},
+
+        {"Heartbeat.getOCFChecksums",
+         SUDO + "@GUI-HELPER@ get-resource-agents checksums;"},
+
         /* vmxpath env is needed so that vmware meta-data does not hang */
         {"Heartbeat.getClusterMetadata",
          SUDO + "@GUI-HELPER@ get-cluster-metadata"},
@@ -149,6 +188,10 @@ public final class DistResource extends ListResourceBundle {
         {"Heartbeat.getClStatus",
          SUDO + "@GUI-HELPER@ get-cluster-events"},
 
+        /* --delta=<CibDeltaApplier.DELTA_VERSION> */
+        {"Heartbeat.getClStatus.Delta",
+         SUDO + "@GUI-HELPER@ get-cluster-events --delta=1"},
+
         {"Heartbeat.startHeartbeat",
          SUDO + "/etc/init.d/heartbeat start"},
 
@@ -374,14 +417,15 @@ public final class DistResource extends ListResourceBundle {
         {"HostBrowser.getCrmConfigureShow",
          SUDO + "PAGER=cat /usr/sbin/crm configure show"},
 
-        {"Logs.hbLog",
-         "(grep @GREPPATTERN@ /var/log/ha.log 2>/dev/null"
-         + " || grep @GREPPATTERN@ /var/log/syslog 2>/dev/null"
-         + " || grep @GREPPATTERN@ /var/log/messages)|tail -500"},
+        /* size of the log file and the matching lines */
+        {"Logs.hbLog", HB_LOG_FILE + TAIL_LOG},
+
+        {"DrbdLog.log", DRBD_LOG_FILE + TAIL_LOG},
+
+        /* size of the log file and the matching lines from @OFFSET@ on */
+        {"Logs.hbLogFollow", HB_LOG_FILE + FOLLOW_LOG},
 
-        {"DrbdLog.log",
-         "(grep @GREPPATTERN@ /var/log/kern.log 2>/dev/null"
-         +  " || grep @GREPPATTERN@ /var/log/messages)| tail -500"},
+        {"DrbdLog.logFollow", DRBD_LOG_FILE + FOLLOW_LOG},
 
         {"Pacemaker.Service.Ver", "0"},
 
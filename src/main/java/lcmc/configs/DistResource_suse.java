@@ -87,7 +87,9 @@ public final class DistResource_suse extends ListResourceBundle {
          DistResource.SUDO + "/sbin/chkconfig --del openais"},
 
         {"DrbdLog.log",
-         "grep @GREPPATTERN@ /var/log/messages | tail -500"},
+         "f=/var/log/messages;" + DistResource.TAIL_LOG},
+        {"DrbdLog.logFollow",
+         "f=/var/log/messages;" + DistResource.FOLLOW_LOG},
         {"KVM.emulator",   "/usr/bin/qemu-kvm"},
 
         /* Openais/Pacemaker native */
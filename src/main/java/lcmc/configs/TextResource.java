@@ -973,6 +973,9 @@ public final class TextResource extends ListResourceBundle {
         {"Dialog.Logs.RefreshButton",
          "Refresh"},
 
+        {"Dialog.Logs.FollowCheckBox",
+         "Follow"},
+
         {"AppError.Title",
          "Application Error"},
 
@@ -2100,6 +2103,12 @@ public final class TextResource extends ListResourceBundle {
         {"VIRSH.ExecutingCommand",
          "Executing virsh command..."},
 
+        {"VIRSH.SetParameters",
+         "Setting virsh parameters"},
+
+        {"HostFanOut.Failed",
+         "{}: failed on {}"},
+
         {"VMSXML.GetConfig",
          "Parsing libvirt config..."},
 
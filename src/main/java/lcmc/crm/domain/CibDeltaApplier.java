@@ -0,0 +1,393 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import lcmc.common.domain.XMLTools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Keeps the cib of the "cibadmin-delta" command as a DOM document and
+ * applies the changed units to it, so that the whole cib doesn't have to be
+ * sent and parsed after every cib event.
+ *
+ * The delta starts with a "delta-version:1 seq:N full:0|1" line, followed by
+ * "@@ key" parts with the xml of a unit, or "@@ removed key" parts. The key
+ * is "cib" for the cib element without children, "fenced" for the fenced
+ * nodes, "configuration name" for a configuration section or
+ * "nodes|resources|constraints|status id" for one element of the section.
+ */
+final class CibDeltaApplier {
+    private static final Logger LOG = LoggerFactory.getLogger(CibDeltaApplier.class);
+    static final int DELTA_VERSION = 1;
+
+    private static final String VERSION_TOKEN = "delta-version";
+    private static final String SEQ_TOKEN = "seq";
+    private static final String FULL_TOKEN = "full";
+
+    private static final String PART_PREFIX = "@@ ";
+    private static final String REMOVED_PART = "removed ";
+    private static final String CIB_UNIT = "cib";
+    private static final String FENCED_UNIT = "fenced";
+    private static final String CONFIGURATION_SECTION = "configuration";
+    private static final String STATUS_SECTION = "status";
+    private static final String RESOURCES_SECTION = "resources";
+    private static final String CONSTRAINTS_SECTION = "constraints";
+    private static final String EMPTY_CIB = "<pcmk><cib><configuration><nodes/><resources/><constraints/>"
+                                            + "</configuration><status/></cib></pcmk>";
+    /** Attributes of constraints, that refer to resources. */
+    private static final String[] CONSTRAINT_RSC_ATTRIBUTES = {"rsc", "with-rsc", "first", "then"};
+    private static final Set<String> RESOURCE_TAGS = Sets.newHashSet("primitive", "group", "clone", "master");
+
+    private Document document = null;
+    private final Map<String, Node> units = Maps.newHashMap();
+    private int seq = 0;
+    private boolean versionMismatch = false;
+    private boolean outOfSync = false;
+    /** Changed resource ids of the last delta, absent if everything could have changed. */
+    private Optional<Set<String>> changedIds = Optional.absent();
+    /** Node names of the node states, that changed with the last delta, absent if anything else changed. */
+    private Optional<Set<String>> changedNodes = Optional.absent();
+
+    /** Applies the delta and returns whether something in the cib has changed. */
+    boolean apply(final String delta) {
+        final int headerEnd = delta.indexOf('\n');
+        final Optional<Map<String, String>> header = parseHeader(delta, headerEnd);
+        if (!header.isPresent()) {
+            return false;
+        }
+        final int newSeq = getInt(header.get(), SEQ_TOKEN);
+        final boolean full = "1".equals(header.get().get(FULL_TOKEN));
+        if (full) {
+            document = XMLTools.getXMLDocument(EMPTY_CIB);
+            units.clear();
+        } else if (document == null) {
+            LOG.debug("apply: no full cib yet, waiting");
+            return false;
+        } else if (newSeq != seq + 1) {
+            LOG.appWarning("apply: missed cib delta: " + seq + " -> " + newSeq);
+            outOfSync = true;
+            return false;
+        }
+        seq = newSeq;
+        final Set<String> ids = Sets.newHashSet();
+        final Set<String> nodes = Sets.newHashSet();
+        boolean allChanged = full;
+        boolean onlyNodeStates = !full;
+        boolean changed = false;
+        String key = null;
+        final StringBuilder xml = new StringBuilder();
+        for (final String line : delta.substring(headerEnd + 1).split("\n")) {
+            if (line.startsWith(PART_PREFIX)) {
+                if (key != null) {
+                    allChanged |= applyUnit(key, xml.toString(), ids, nodes);
+                    onlyNodeStates &= isNodeStateUnit(key);
+                    changed = true;
+                }
+                key = line.substring(PART_PREFIX.length()).trim();
+                xml.setLength(0);
+            } else {
+                xml.append(line).append('\n');
+            }
+        }
+        if (key != null) {
+            allChanged |= applyUnit(key, xml.toString(), ids, nodes);
+            onlyNodeStates &= isNodeStateUnit(key);
+            changed = true;
+        }
+        if (allChanged) {
+            changedIds = Optional.absent();
+        } else {
+            changedIds = Optional.<Set<String>>of(ids);
+        }
+        if (onlyNodeStates) {
+            changedNodes = Optional.<Set<String>>of(nodes);
+        } else {
+            changedNodes = Optional.absent();
+        }
+        return changed;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    /** Returns resource ids, that changed with the last delta, or absent, if it's not known. */
+    Optional<Set<String>> getChangedIds() {
+        return changedIds;
+    }
+
+    /**
+     * Returns lower case node names, whose node states changed with the last
+     * delta, or absent, if something else than the node states and the cib
+     * attributes changed.
+     */
+    Optional<Set<String>> getChangedNodes() {
+        return changedNodes;
+    }
+
+    /** Returns true if the helper sends another version of deltas. */
+    boolean isVersionMismatch() {
+        return versionMismatch;
+    }
+
+    /** Returns true if a delta could not be applied and the full cib is needed. */
+    boolean isOutOfSync() {
+        return outOfSync;
+    }
+
+    /** Returns the cib xml, serialized from the document. */
+    String getCibXml() {
+        if (document == null) {
+            return null;
+        }
+        final StringBuilder cib = new StringBuilder();
+        appendXml(cib, document.getDocumentElement());
+        return cib.toString();
+    }
+
+    /** Applies one unit and returns true if the change is not limited to some resources. */
+    private boolean applyUnit(final String key, final String xml, final Set<String> ids, final Set<String> nodes) {
+        if (key.startsWith(REMOVED_PART)) {
+            final Node oldNode = units.remove(key.substring(REMOVED_PART.length()));
+            if (oldNode == null) {
+                return false;
+            }
+            collectChangedIds(key.substring(REMOVED_PART.length()), oldNode, ids, nodes);
+            oldNode.getParentNode().removeChild(oldNode);
+            return isGlobalUnit(key.substring(REMOVED_PART.length()));
+        }
+        final Element cibElement = (Element) XMLTools.getChildNode(document.getDocumentElement(), "cib");
+        if (CIB_UNIT.equals(key)) {
+            applyCibAttributes(cibElement, xml);
+            return false;
+        }
+        final Node oldNode = units.remove(key);
+        final Node newNode = parseUnit(xml);
+        if (oldNode != null) {
+            collectChangedIds(key, oldNode, ids, nodes);
+        }
+        if (newNode == null) {
+            if (oldNode != null) {
+                oldNode.getParentNode().removeChild(oldNode);
+            }
+            return isGlobalUnit(key);
+        }
+        collectChangedIds(key, newNode, ids, nodes);
+        if (oldNode == null) {
+            getParent(key, cibElement).appendChild(newNode);
+        } else {
+            /* keep the position, the order of resources matters */
+            oldNode.getParentNode().replaceChild(newNode, oldNode);
+        }
+        units.put(key, newNode);
+        return isGlobalUnit(key);
+    }
+
+    private Node parseUnit(final String xml) {
+        if (xml.trim().isEmpty()) {
+            return null;
+        }
+        final Document unitDocument = XMLTools.getXMLDocument(xml);
+        if (unitDocument == null) {
+            return null;
+        }
+        return document.importNode(unitDocument.getDocumentElement(), true);
+    }
+
+    private void applyCibAttributes(final Element cibElement, final String xml) {
+        final Document cibDocument = XMLTools.getXMLDocument(xml);
+        if (cibDocument == null) {
+            return;
+        }
+        final NamedNodeMap oldAttributes = cibElement.getAttributes();
+        while (oldAttributes.getLength() > 0) {
+            cibElement.removeAttribute(oldAttributes.item(0).getNodeName());
+        }
+        final NamedNodeMap attributes = cibDocument.getDocumentElement().getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            final Node attribute = attributes.item(i);
+            cibElement.setAttribute(attribute.getNodeName(), attribute.getNodeValue());
+        }
+    }
+
+    private Node getParent(final String key, final Element cibElement) {
+        if (FENCED_UNIT.equals(key)) {
+            return document.getDocumentElement();
+        }
+        final String section = getSection(key);
+        if (STATUS_SECTION.equals(section)) {
+            return XMLTools.getChildNode(cibElement, STATUS_SECTION);
+        }
+        final Node configuration = XMLTools.getChildNode(cibElement, CONFIGURATION_SECTION);
+        if (CONFIGURATION_SECTION.equals(section)) {
+            return configuration;
+        }
+        return XMLTools.getChildNode(configuration, section);
+    }
+
+    /**
+     * Resource units can change only the resources in them, constraint
+     * units the resources they refer to. Node states don't change any
+     * resource parameters. Everything else can change all resources.
+     */
+    private boolean isGlobalUnit(final String key) {
+        final String section = getSection(key);
+        return !RESOURCES_SECTION.equals(section)
+               && !CONSTRAINTS_SECTION.equals(section)
+               && !STATUS_SECTION.equals(section);
+    }
+
+    /** The cib attributes have only the dc, that can be set without parsing the configuration again. */
+    private boolean isNodeStateUnit(final String key) {
+        final String unitKey = key.startsWith(REMOVED_PART) ? key.substring(REMOVED_PART.length()) : key;
+        return CIB_UNIT.equals(unitKey) || STATUS_SECTION.equals(getSection(unitKey));
+    }
+
+    private void collectChangedIds(final String key, final Node unit, final Set<String> ids, final Set<String> nodes) {
+        final String section = getSection(key);
+        if (RESOURCES_SECTION.equals(section)) {
+            collectResourceIds(unit, ids);
+        } else if (CONSTRAINTS_SECTION.equals(section)) {
+            collectConstraintResourceIds(unit, ids);
+        } else if (STATUS_SECTION.equals(section)) {
+            final String uname = XMLTools.getAttribute(unit, "uname");
+            if (uname != null) {
+                nodes.add(uname.toLowerCase(Locale.US));
+            }
+        }
+    }
+
+    private void collectResourceIds(final Node node, final Set<String> ids) {
+        if (RESOURCE_TAGS.contains(node.getNodeName())) {
+            final String id = XMLTools.getAttribute(node, "id");
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            collectResourceIds(children.item(i), ids);
+        }
+    }
+
+    private void collectConstraintResourceIds(final Node node, final Set<String> ids) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+        for (final String attribute : CONSTRAINT_RSC_ATTRIBUTES) {
+            final String id = XMLTools.getAttribute(node, attribute);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        if ("resource_ref".equals(node.getNodeName())) {
+            final String id = XMLTools.getAttribute(node, "id");
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            collectConstraintResourceIds(children.item(i), ids);
+        }
+    }
+
+    private String getSection(final String key) {
+        final int space = key.indexOf(' ');
+        if (space < 0) {
+            return key;
+        }
+        return key.substring(0, space);
+    }
+
+    private void appendXml(final StringBuilder xml, final Node node) {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            xml.append(escape(node.getNodeValue()));
+            return;
+        }
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+        xml.append('<').append(node.getNodeName());
+        final NamedNodeMap attributes = node.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            xml.append(' ').append(attributes.item(i).getNodeName()).append("=\"")
+               .append(escape(attributes.item(i).getNodeValue())).append('"');
+        }
+        final NodeList children = node.getChildNodes();
+        if (children.getLength() == 0) {
+            xml.append("/>");
+            return;
+        }
+        xml.append('>');
+        for (int i = 0; i < children.getLength(); i++) {
+            appendXml(xml, children.item(i));
+        }
+        xml.append("</").append(node.getNodeName()).append('>');
+    }
+
+    private String escape(final String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+
+    private Optional<Map<String, String>> parseHeader(final String delta, final int headerEnd) {
+        if (headerEnd < 0) {
+            LOG.appWarning("parseHeader: delta without header");
+            return Optional.absent();
+        }
+        final Map<String, String> header = Maps.newHashMap();
+        for (final String token : delta.substring(0, headerEnd).trim().split("\\s+")) {
+            final int colon = token.indexOf(':');
+            if (colon > 0) {
+                header.put(token.substring(0, colon), token.substring(colon + 1));
+            }
+        }
+        if (!Integer.toString(DELTA_VERSION).equals(header.get(VERSION_TOKEN))) {
+            LOG.appWarning("parseHeader: unsupported delta version: " + header.get(VERSION_TOKEN));
+            versionMismatch = true;
+            outOfSync = true;
+            return Optional.absent();
+        }
+        return Optional.of(header);
+    }
+
+    private int getInt(final Map<String, String> header, final String token) {
+        try {
+            return Integer.parseInt(header.get(token));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+}
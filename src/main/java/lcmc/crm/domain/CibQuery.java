@@ -444,4 +444,54 @@ final class CibQuery {
     Map<String, Value> getOpDefaultsParams() {
         return opDefaultsParams;
     }
+
+    /**
+     * Returns a copy of this cib query, that shares the maps with it. The
+     * maps must be replaced, not changed, in the copy.
+     */
+    CibQuery copy() {
+        final CibQuery copy = new CibQuery();
+        copy.crmConfig = crmConfig;
+        copy.resourceParameters = resourceParameters;
+        copy.resourceParametersNvpairsIds = resourceParametersNvpairsIds;
+        copy.resourceType = resourceType;
+        copy.orphanedResourcesList = orphanedResourcesList;
+        copy.resourcesInLRMList = resourcesInLRMList;
+        copy.resourceInstanceAttrId = resourceInstanceAttrId;
+        copy.colocationRsc = colocationRsc;
+        copy.colocationId = colocationId;
+        copy.orderRsc = orderRsc;
+        copy.orderId = orderId;
+        copy.orderIdRscSets = orderIdRscSets;
+        copy.colocationIdRscSets = colocationIdRscSets;
+        copy.rscSetConnections = rscSetConnections;
+        copy.nodeParameters = nodeParameters;
+        copy.locations = locations;
+        copy.pingLocations = pingLocations;
+        copy.locationsId = locationsId;
+        copy.idToLocation = idToLocation;
+        copy.resHostToLocId = resHostToLocId;
+        copy.resPingToLocId = resPingToLocId;
+        copy.operations = operations;
+        copy.operationsRefs = operationsRefs;
+        copy.metaAttrsId = metaAttrsId;
+        copy.metaAttrsRefs = metaAttrsRefs;
+        copy.operationsId = operationsId;
+        copy.resOpIds = resOpIds;
+        copy.nodeOnline = nodeOnline;
+        copy.nodePending = nodePending;
+        copy.fencedNodes = fencedNodes;
+        copy.groupsToResources = groupsToResources;
+        copy.cloneToResource = cloneToResource;
+        copy.masterList = masterList;
+        copy.designatedCoOrdinator = designatedCoOrdinator;
+        copy.nodeFailedCount = nodeFailedCount;
+        copy.resourceFailedCloneIds = resourceFailedCloneIds;
+        copy.nodePingCount = nodePingCount;
+        copy.rscDefaultsId = rscDefaultsId;
+        copy.rscDefaultsParams = rscDefaultsParams;
+        copy.rscDefaultsParamsNvpairIds = rscDefaultsParamsNvpairIds;
+        copy.opDefaultsParams = opDefaultsParams;
+        return copy;
+    }
 }
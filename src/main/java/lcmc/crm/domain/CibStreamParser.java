@@ -0,0 +1,553 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import lcmc.common.domain.XMLTools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Parses the cib and the resource status with StAX, without building the
+ * DOM of the whole document.
+ *
+ * The resource status is parsed in one pass. The resources and the node
+ * states, that are most of the cib, are read straight from the reader and
+ * their attributes are handed over to the CibQueryBuilder, the lrm
+ * operations are skipped. The other small sections are read one element at
+ * a time (a node, a constraint) and only this element is handed over as a
+ * DOM element, so that their parsing is shared with the DOM parser.
+ */
+final class CibStreamParser {
+    private static final Logger LOG = LoggerFactory.getLogger(CibStreamParser.class);
+
+    private CibStreamParser() {
+    }
+
+    /** Returns CibQuery object with information from the cib string. */
+    static CibQuery parseCibQuery(final String query, final CrmXml.CibQueryBuilder cibQueryBuilder) {
+        final String xml = query == null ? "" : query.trim();
+        if (xml.isEmpty()) {
+            LOG.appWarning("parseCibQuery: cib error: " + query);
+            return new CibQuery();
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = XMLTools.createXMLStreamReader(xml);
+            final Document document = XMLTools.createDocument();
+            return new CibSections(reader, document, cibQueryBuilder).parse();
+        } catch (final XMLStreamException e) {
+            LOG.appError("parseCibQuery: could not parse: " + xml, e);
+            return new CibQuery();
+        } finally {
+            XMLTools.close(reader);
+        }
+    }
+
+    /** Returns a hash with resource information. (running_on) */
+    static Map<String, CrmXml.ResourceStatus> parseResStatus(final String resStatus) {
+        if (resStatus == null) {
+            return null;
+        }
+        final String xml = resStatus.trim();
+        if (xml.isEmpty() || "no resources defined!".equals(xml)) {
+            return null;
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = XMLTools.createXMLStreamReader(xml);
+            /* get root <resource_status> */
+            if (!XMLTools.nextChildElement(reader) || !"resource_status".equals(reader.getLocalName())) {
+                return null;
+            }
+            final Map<String, CrmXml.ResourceStatus> resStatusMap = new HashMap<String, CrmXml.ResourceStatus>();
+            /*      <resource...> */
+            while (XMLTools.nextChildElement(reader)) {
+                if ("resource".equals(reader.getLocalName())) {
+                    final String id = reader.getAttributeValue(null, "id");
+                    resStatusMap.put(id, parseResource(reader));
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            return resStatusMap;
+        } catch (final XMLStreamException e) {
+            LOG.appError("parseResStatus: could not parse: " + xml, e);
+            return null;
+        } finally {
+            XMLTools.close(reader);
+        }
+    }
+
+    private static CrmXml.ResourceStatus parseResource(final XMLStreamReader reader) throws XMLStreamException {
+        final boolean managed = "managed".equals(reader.getAttributeValue(null, "managed"));
+        Map<String, String> allocationScores = new HashMap<String, String>();
+        List<String> runningOnList = null;
+        List<String> masterOnList = null;
+        List<String> slaveOnList = null;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if (CrmXml.TARGET_ROLE_STARTED.equalsIgnoreCase(name)) {
+                if (runningOnList == null) {
+                    runningOnList = new ArrayList<String>();
+                }
+                runningOnList.add(XMLTools.readText(reader));
+            } else if (CrmXml.TARGET_ROLE_MASTER.equalsIgnoreCase(name)) {
+                if (masterOnList == null) {
+                    masterOnList = new ArrayList<String>();
+                }
+                masterOnList.add(XMLTools.readText(reader));
+            } else if (CrmXml.TARGET_ROLE_SLAVE.equalsIgnoreCase(name)) {
+                if (slaveOnList == null) {
+                    slaveOnList = new ArrayList<String>();
+                }
+                slaveOnList.add(XMLTools.readText(reader));
+            } else if ("scores".equals(name)) {
+                allocationScores = parseAllocationScores(reader);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+        return new CrmXml.ResourceStatus(runningOnList, masterOnList, slaveOnList, allocationScores, managed);
+    }
+
+    private static Map<String, String> parseAllocationScores(final XMLStreamReader reader)
+                                                                                      throws XMLStreamException {
+        final Map<String, String> allocationScores = new LinkedHashMap<String, String>();
+        while (XMLTools.nextChildElement(reader)) {
+            if ("score".equals(reader.getLocalName())) {
+                allocationScores.put(reader.getAttributeValue(null, "host"), reader.getAttributeValue(null, "score"));
+            }
+            XMLTools.skipElement(reader);
+        }
+        return allocationScores;
+    }
+
+    /**
+     * Walks the cib sections in the document order. Like in the DOM parser
+     * only the first section of every kind is used.
+     */
+    private static final class CibSections {
+        private final XMLStreamReader reader;
+        private final Document document;
+        private final CrmXml.CibQueryBuilder cibQueryBuilder;
+        private final Set<String> seenSections = new HashSet<String>();
+
+        CibSections(final XMLStreamReader reader,
+                    final Document document,
+                    final CrmXml.CibQueryBuilder cibQueryBuilder) {
+            this.reader = reader;
+            this.document = document;
+            this.cibQueryBuilder = cibQueryBuilder;
+        }
+
+        CibQuery parse() throws XMLStreamException {
+            /* get root <pacemaker> */
+            if (!XMLTools.nextChildElement(reader) || !"pcmk".equals(reader.getLocalName())) {
+                LOG.appWarning("parseCibQuery: there is no pcmk node");
+                return new CibQuery();
+            }
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("fenced".equals(name) && firstSection(name)) {
+                    cibQueryBuilder.addFencedNodes(XMLTools.readElement(reader, document));
+                } else if ("cib".equals(name) && firstSection(name)) {
+                    /* Designated Co-ordinator */
+                    cibQueryBuilder.setDcUuid(reader.getAttributeValue(null, "dc-uuid"));
+                    parseCib();
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            if (!seenSections.contains("cib")) {
+                LOG.appWarning("parseCibQuery: there is no cib node");
+                return new CibQuery();
+            }
+            if (!seenSections.contains("configuration")) {
+                LOG.appWarning("parseCibQuery: there is no configuration node");
+                return new CibQuery();
+            }
+            if (!seenSections.contains("crm_config")) {
+                LOG.appWarning("parseCibQuery: there is no crm_config node");
+                return new CibQuery();
+            }
+            if (!seenSections.contains("resources")) {
+                LOG.appWarning("parseCibQuery: there is no resources node");
+                return cibQueryBuilder.buildCrmConfigOnly();
+            }
+            return cibQueryBuilder.build();
+        }
+
+        /** <cib> */
+        private void parseCib() throws XMLStreamException {
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("configuration".equals(name) && firstSection(name)) {
+                    parseConfiguration();
+                } else if ("status".equals(name) && firstSection(name)) {
+                    /* <node_state ...> */
+                    parseNodeStates();
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        /** <configuration> */
+        private void parseConfiguration() throws XMLStreamException {
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if (!firstSection(name)) {
+                    XMLTools.skipElement(reader);
+                } else if ("rsc_defaults".equals(name)) {
+                    cibQueryBuilder.addRscDefaults(XMLTools.readElement(reader, document));
+                } else if ("op_defaults".equals(name)) {
+                    cibQueryBuilder.addOpDefaults(XMLTools.readElement(reader, document));
+                } else if ("crm_config".equals(name)) {
+                    cibQueryBuilder.addCrmConfig(XMLTools.readElement(reader, document));
+                } else if ("nodes".equals(name)) {
+                    parseChildElements("node");
+                } else if ("resources".equals(name)) {
+                    while (XMLTools.nextChildElement(reader)) {
+                        parseResource(null);
+                    }
+                } else if ("constraints".equals(name)) {
+                    parseChildElements(null);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        /**
+         * Hands over the child elements of the current section, or only the
+         * ones with the specified name.
+         */
+        private void parseChildElements(final String childName) throws XMLStreamException {
+            final String section = reader.getLocalName();
+            while (XMLTools.nextChildElement(reader)) {
+                if (childName != null && !childName.equals(reader.getLocalName())) {
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                final Element element = XMLTools.readElement(reader, document);
+                if ("nodes".equals(section)) {
+                    cibQueryBuilder.addNode(element);
+                } else if ("constraints".equals(section)) {
+                    cibQueryBuilder.addConstraint(element);
+                }
+            }
+        }
+
+        /**
+         * <primitive>, <group>, <clone> or <master>. The parent id is the id
+         * of the group or the clone, that has this resource, or null.
+         */
+        private void parseResource(final String parentId) throws XMLStreamException {
+            final String name = reader.getLocalName();
+            final String id = reader.getAttributeValue(null, "id");
+            if ("primitive".equals(name)) {
+                parsePrimitive(parentId, id);
+            } else if ("group".equals(name)) {
+                parseGroup(parentId, id);
+            } else if (parentId == null
+                       && ("master".equals(name) || "master_slave".equals(name) || "clone".equals(name))) {
+                parseClone(id, !"clone".equals(name));
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+
+        private void parsePrimitive(final String parentId, final String crmId) throws XMLStreamException {
+            final String raClass = reader.getAttributeValue(null, "class");
+            if (!cibQueryBuilder.addPrimitive(parentId,
+                                              crmId,
+                                              reader.getAttributeValue(null, "template"),
+                                              raClass,
+                                              reader.getAttributeValue(null, "provider"),
+                                              reader.getAttributeValue(null, "type"))) {
+                XMLTools.skipElement(reader);
+                return;
+            }
+            cibQueryBuilder.addResourceAttributes(crmId);
+            final boolean stonith = ResourceAgent.STONITH_CLASS_NAME.equals(raClass);
+            final Set<String> attributeSections = new HashSet<String>();
+            while (XMLTools.nextChildElement(reader)) {
+                if (!parseAttributeSection(crmId, stonith, attributeSections)) {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        private void parseGroup(final String parentId, final String groupId) throws XMLStreamException {
+            cibQueryBuilder.addGroup(parentId, groupId);
+            boolean metaAttributes = false;
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("primitive".equals(name)) {
+                    parsePrimitive(groupId, reader.getAttributeValue(null, "id"));
+                } else if ("meta_attributes".equals(name) && !metaAttributes) {
+                    metaAttributes = true;
+                    parseMetaAttributes(groupId, true);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        private void parseClone(final String cloneId, final boolean master) throws XMLStreamException {
+            cibQueryBuilder.addClone(cloneId);
+            final Set<String> attributeSections = new HashSet<String>();
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("primitive".equals(name) || "group".equals(name)) {
+                    parseResource(cloneId);
+                } else if (!parseAttributeSection(cloneId, false, attributeSections)) {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            cibQueryBuilder.addCloneEnd(cloneId, master);
+        }
+
+        /**
+         * Parses <instance_attributes>, <operations> or <meta_attributes> of
+         * a primitive or a clone, only the first of every kind, like the DOM
+         * parser. Returns false, if the current element was not parsed.
+         */
+        private boolean parseAttributeSection(final String crmId,
+                                              final boolean stonith,
+                                              final Set<String> attributeSections) throws XMLStreamException {
+            final String name = reader.getLocalName();
+            if ("instance_attributes".equals(name) && attributeSections.add(name)) {
+                cibQueryBuilder.addInstanceAttributes(crmId, reader.getAttributeValue(null, "id"));
+                parseNvpairs(new NvpairHandler() {
+                    @Override
+                    public void nvpair(final String nvpairId, final String nvpairName, final String value) {
+                        cibQueryBuilder.addInstanceAttribute(crmId, nvpairId, nvpairName, value, stonith);
+                    }
+                });
+            } else if ("operations".equals(name) && attributeSections.add(name)) {
+                if (cibQueryBuilder.addOperations(crmId,
+                                                  reader.getAttributeValue(null, "id"),
+                                                  reader.getAttributeValue(null, "id-ref"))) {
+                    parseOperations(crmId);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            } else if ("meta_attributes".equals(name) && attributeSections.add(name)) {
+                parseMetaAttributes(crmId, false);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private void parseMetaAttributes(final String crmId, final boolean group) throws XMLStreamException {
+            if (!cibQueryBuilder.addMetaAttributes(crmId,
+                                                   reader.getAttributeValue(null, "id"),
+                                                   reader.getAttributeValue(null, "id-ref"))) {
+                XMLTools.skipElement(reader);
+                return;
+            }
+            parseNvpairs(new NvpairHandler() {
+                @Override
+                public void nvpair(final String nvpairId, final String name, final String value) {
+                    cibQueryBuilder.addMetaAttribute(crmId, nvpairId, name, value, group);
+                }
+            });
+        }
+
+        /** <op> from <operations> */
+        private void parseOperations(final String crmId) throws XMLStreamException {
+            while (XMLTools.nextChildElement(reader)) {
+                if (!"op".equals(reader.getLocalName())) {
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                final String opId = reader.getAttributeValue(null, "id");
+                final String name = reader.getAttributeValue(null, "name");
+                final String timeout = reader.getAttributeValue(null, "timeout");
+                final String interval = reader.getAttributeValue(null, "interval");
+                final String startDelay = reader.getAttributeValue(null, "start-delay");
+                /* OCF_CHECK_LEVEL in the first nvpair of the first instance attributes */
+                String checkLevelName = null;
+                String checkLevelValue = null;
+                boolean instanceAttributes = false;
+                while (XMLTools.nextChildElement(reader)) {
+                    if ("instance_attributes".equals(reader.getLocalName()) && !instanceAttributes) {
+                        instanceAttributes = true;
+                        while (XMLTools.nextChildElement(reader)) {
+                            if ("nvpair".equals(reader.getLocalName()) && checkLevelName == null) {
+                                checkLevelName = reader.getAttributeValue(null, "name");
+                                checkLevelValue = reader.getAttributeValue(null, "value");
+                            }
+                            XMLTools.skipElement(reader);
+                        }
+                    } else {
+                        XMLTools.skipElement(reader);
+                    }
+                }
+                cibQueryBuilder.addOperation(crmId,
+                                             opId,
+                                             name,
+                                             timeout,
+                                             interval,
+                                             startDelay,
+                                             checkLevelName,
+                                             checkLevelValue);
+            }
+        }
+
+        /** <node_state ...> from <status> */
+        private void parseNodeStates() throws XMLStreamException {
+            while (XMLTools.nextChildElement(reader)) {
+                if ("node_state".equals(reader.getLocalName())) {
+                    parseNodeState();
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        /**
+         * Parses the transient attributes and the lrm resources of the node
+         * state. The lrm operations, most of the status, are skipped.
+         */
+        private void parseNodeState() throws XMLStreamException {
+            final String uname = reader.getAttributeValue(null, "uname");
+            if (!cibQueryBuilder.addNodeState(uname,
+                                              reader.getAttributeValue(null, "id"),
+                                              reader.getAttributeValue(null, "join"),
+                                              reader.getAttributeValue(null, "in_ccm"),
+                                              reader.getAttributeValue(null, "crmd"))) {
+                XMLTools.skipElement(reader);
+                return;
+            }
+            /* the lrm resources are added after all the transient attributes, like in the DOM parser */
+            final List<String[]> lrmResources = new ArrayList<String[]>();
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("transient_attributes".equals(name)) {
+                    parseTransientAttributes(uname);
+                } else if ("lrm".equals(name)) {
+                    parseLrm(lrmResources);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            for (final String[] lrmResource : lrmResources) {
+                cibQueryBuilder.addLrmResource(uname, lrmResource[0], lrmResource[1], lrmResource[2], lrmResource[3]);
+            }
+        }
+
+        /** <nvpair> from the first <instance_attributes> */
+        private void parseTransientAttributes(final String uname) throws XMLStreamException {
+            boolean instanceAttributes = false;
+            while (XMLTools.nextChildElement(reader)) {
+                if ("instance_attributes".equals(reader.getLocalName()) && !instanceAttributes) {
+                    instanceAttributes = true;
+                    parseNvpairs(new NvpairHandler() {
+                        @Override
+                        public void nvpair(final String nvpairId, final String name, final String value) {
+                            cibQueryBuilder.addTransientAttribute(uname, name, value);
+                        }
+                    });
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        /** Id, class, provider and type of every <lrm_resource> from the first <lrm_resources> */
+        private void parseLrm(final Collection<String[]> lrmResources) throws XMLStreamException {
+            boolean lrmResourcesSeen = false;
+            while (XMLTools.nextChildElement(reader)) {
+                if (!"lrm_resources".equals(reader.getLocalName()) || lrmResourcesSeen) {
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                lrmResourcesSeen = true;
+                while (XMLTools.nextChildElement(reader)) {
+                    if ("lrm_resource".equals(reader.getLocalName())) {
+                        lrmResources.add(new String[]{reader.getAttributeValue(null, "id"),
+                                                      reader.getAttributeValue(null, "class"),
+                                                      reader.getAttributeValue(null, "provider"),
+                                                      reader.getAttributeValue(null, "type")});
+                    }
+                    /* <lrm_rsc_op> */
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        /**
+         * Hands over the nvpairs of the current attributes element, they are
+         * in the first <attributes> element before pacemaker.
+         */
+        private void parseNvpairs(final NvpairHandler nvpairHandler) throws XMLStreamException {
+            if (!cibQueryBuilder.isBeforePacemaker()) {
+                parseDirectNvpairs(nvpairHandler);
+                return;
+            }
+            boolean attributes = false;
+            while (XMLTools.nextChildElement(reader)) {
+                if ("attributes".equals(reader.getLocalName()) && !attributes) {
+                    attributes = true;
+                    parseDirectNvpairs(nvpairHandler);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+
+        private void parseDirectNvpairs(final NvpairHandler nvpairHandler) throws XMLStreamException {
+            while (XMLTools.nextChildElement(reader)) {
+                if ("nvpair".equals(reader.getLocalName())) {
+                    nvpairHandler.nvpair(reader.getAttributeValue(null, "id"),
+                                         reader.getAttributeValue(null, "name"),
+                                         reader.getAttributeValue(null, "value"));
+                }
+                XMLTools.skipElement(reader);
+            }
+        }
+
+        private boolean firstSection(final String name) {
+            return seenSections.add(name);
+        }
+    }
+
+    private interface NvpairHandler {
+        void nvpair(String nvpairId, String name, String value);
+    }
+}
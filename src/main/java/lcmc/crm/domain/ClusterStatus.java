@@ -24,6 +24,7 @@
 package lcmc.crm.domain;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
 import lcmc.cluster.service.ssh.SshOutput;
@@ -44,6 +45,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class parses pacemaker/heartbeat status, stores information
@@ -58,9 +60,18 @@ public class ClusterStatus {
     /** On which node the resource is running or is a slave. */
     private volatile Map<String, CrmXml.ResourceStatus> resStateMap = null;
     private volatile PtestData ptestResult = null;
+    /** Ptest result, whose shadow cib is in the shadowCibQuery. */
+    private PtestData shadowCibPtestResult = null;
+    /** Cib versions of all cluster statuses, so that they are not reused after a reconnect. */
+    private static final AtomicLong CIB_VERSIONS = new AtomicLong();
+    /** Changes with every cib or resource status update. */
+    private volatile long cibVersion = CIB_VERSIONS.incrementAndGet();
     private String oldStatus = null;
     private String oldCib = null;
     private boolean oldAdvancedMode = false;
+    private volatile CibDeltaApplier cibDeltaApplier = new CibDeltaApplier();
+    /** Resources, whose cib changed with the last status, absent if all of them could have changed. */
+    private volatile Optional<Set<String>> changedCrmIds = Optional.absent();
     private Host host;
     @Inject
     private Application application;
@@ -457,6 +468,7 @@ public class ClusterStatus {
                 if (!status.equals(oldStatus)) {
                     LOG.debug1("parseCommand: status update: " + host.getName());
                     oldStatus = status;
+                    cibVersion = CIB_VERSIONS.incrementAndGet();
                     parseResStatus(status);
                     return true;
                 }
@@ -466,8 +478,32 @@ public class ClusterStatus {
                 if (!cib.equals(oldCib) || oldAdvancedMode != advancedMode) {
                     LOG.debug1("parseCommand: cib update: " + host.getName());
                     oldCib = cib;
+                    cibVersion = CIB_VERSIONS.incrementAndGet();
                     oldAdvancedMode = advancedMode;
                     parseCibQuery(cib);
+                    changedCrmIds = Optional.absent();
+                    return true;
+                }
+            } else if ("cibadmin-delta".equals(cmd)) {
+                final String delta = Tools.join("\n", data.toArray(new String[data.size()]));
+                final boolean advancedMode = access.isAdvancedMode();
+                final boolean cibChanged = cibDeltaApplier.apply(delta);
+                if (cibChanged || (oldAdvancedMode != advancedMode && cibDeltaApplier.getDocument() != null)) {
+                    LOG.debug1("parseCommand: cib delta update: " + host.getName());
+                    cibVersion = CIB_VERSIONS.incrementAndGet();
+                    final Optional<Set<String>> changedNodes = cibDeltaApplier.getChangedNodes();
+                    if (cibChanged && oldAdvancedMode == advancedMode && changedNodes.isPresent()) {
+                        /* only the node states changed, the configuration doesn't have to be parsed again */
+                        cibQuery = crmXML.parseNodeStates(cibQuery, cibDeltaApplier.getDocument(), changedNodes.get());
+                    } else {
+                        cibQuery = crmXML.parseCibQuery(cibDeltaApplier.getDocument());
+                    }
+                    if (cibChanged && oldAdvancedMode == advancedMode) {
+                        changedCrmIds = addReferringIds(cibDeltaApplier.getChangedIds());
+                    } else {
+                        changedCrmIds = Optional.absent();
+                    }
+                    oldAdvancedMode = advancedMode;
                     return true;
                 }
             }
@@ -486,6 +522,7 @@ public class ClusterStatus {
 
         /* remove all hashes */
         boolean updated = false;
+        changedCrmIds = Optional.<Set<String>>of(Collections.<String>emptySet());
         for (final String linenl : lines) {
             final String line = linenl.trim();
             if ("---start---".equals(line) || "init".equals(line) || "evt:cib_changed".equals(line)) {
@@ -533,18 +570,77 @@ public class ClusterStatus {
         cibQuery = crmXML.parseCibQuery(query);
     }
 
+    /**
+     * Adds resources, that have meta attributes or operations from the
+     * changed resources.
+     */
+    private Optional<Set<String>> addReferringIds(final Optional<Set<String>> ids) {
+        if (!ids.isPresent()) {
+            return ids;
+        }
+        final Set<String> allIds = Sets.newHashSet(ids.get());
+        addReferringIds(cibQuery.getMetaAttrsRefs(), ids.get(), allIds);
+        addReferringIds(cibQuery.getOperationsRefs(), ids.get(), allIds);
+        return Optional.<Set<String>>of(allIds);
+    }
+
+    private void addReferringIds(final Map<String, String> refs, final Set<String> ids, final Set<String> allIds) {
+        for (final Map.Entry<String, String> ref : refs.entrySet()) {
+            if (ids.contains(ref.getValue())) {
+                allIds.add(ref.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns resources, whose cib changed with the last parsed status, or
+     * absent, if all of them could have changed.
+     */
+    public Optional<Set<String>> getChangedCrmIds() {
+        return changedCrmIds;
+    }
+
+    /** Returns whether the cib deltas can't be applied and the full cib must be requested again. */
+    public boolean isCibDeltaOutOfSync() {
+        return cibDeltaApplier.isOutOfSync();
+    }
+
+    /** Returns false if the helper sends an unknown version of the cib deltas. */
+    public boolean isCibDeltaSupported() {
+        return !cibDeltaApplier.isVersionMismatch();
+    }
+
+    /** Forgets the applied cib deltas, the next status must start with the full cib. */
+    public void resetCibDelta() {
+        cibDeltaApplier = new CibDeltaApplier();
+    }
+
     public void setPtestResult(final PtestData ptestResult) {
-        this.ptestResult = ptestResult;
         if (ptestResult == null) {
-            shadowCibQuery = new CibQuery();
-        } else {
-            shadowCibQuery = crmXML.parseCibQuery(
-                "<pcmk>" + ptestResult.getShadowCib() + "</pcmk>");
+            this.ptestResult = null;
+            return;
+        }
+        /* the cached ptest result has the same shadow cib */
+        if (ptestResult != shadowCibPtestResult) {
+            shadowCibQuery = crmXML.parseCibQuery("<pcmk>" + ptestResult.getShadowCib() + "</pcmk>");
+            shadowCibPtestResult = ptestResult;
         }
+        this.ptestResult = ptestResult;
+    }
+
+    /**
+     * Returns the version of the cib, that changes with every update. It is
+     * unique in all cluster statuses.
+     */
+    public long getCibVersion() {
+        return cibVersion;
     }
 
     /** Return last known raw cib. */
     public String getCibXml() {
+        if (oldCib == null) {
+            return cibDeltaApplier.getCibXml();
+        }
         return oldCib;
     }
 }
@@ -66,6 +66,10 @@ import java.util.regex.Pattern;
 @Named
 public class CrmXml {
     private static final Logger LOG = LoggerFactory.getLogger(CrmXml.class);
+    /** ra-checksum:class provider name checksum */
+    private static final Pattern RA_CHECKSUM_PATTERN = Pattern.compile("^ra-checksum:(\\S+) (\\S+) (\\S+) (\\S+)$");
+    /** Parse the cib and the resource status with StAX instead of DOM. */
+    private static final boolean STREAMING_PARSER = "y".equals(Tools.getDefault("CrmXml.StreamingParser"));
     private static final Table<String, String, String> RA_NON_ADVANCED_PARAM = HashBasedTable.create();
     static final Value PCMK_TRUE_VALUE = new StringValue("true");
     static final Value PCMK_FALSE_VALUE = new StringValue("false");
@@ -103,8 +107,8 @@ public class CrmXml {
                                                                    new StringValue("demote"),
                                                                    new StringValue("stop")};
     public static final String TARGET_ROLE_STOPPED = "stopped";
-    private static final String TARGET_ROLE_STARTED = "started";
-    private static final String TARGET_ROLE_MASTER = "master";
+    static final String TARGET_ROLE_STARTED = "started";
+    static final String TARGET_ROLE_MASTER = "master";
     public static final String TARGET_ROLE_SLAVE = "slave";
     public static final Value INFINITY_VALUE = new StringValue("INFINITY");
     public static final Value PLUS_INFINITY_VALUE = new StringValue("+INFINITY");
@@ -176,6 +180,8 @@ public class CrmXml {
     public static final String PARAM_OCF_CHECK_LEVEL = "OCF_CHECK_LEVEL";
 
     private static final Pattern UNIT_PATTERN = Pattern.compile("^(\\d+)(\\D*)$");
+    /** Clone id with the instance number. */
+    private static final Pattern CLONE_INSTANCE_PATTERN = Pattern.compile("(.*):(\\d+)$");
 
     static {
         /* target-role */
@@ -333,6 +339,8 @@ public class CrmXml {
     private StartTests startTests;
     @Inject
     private Provider<ResourceUpdater> resourceUpdaterProvider;
+    @Inject
+    private ResourceAgentMetaDataCache resourceAgentMetaDataCache;
 
     public static Unit getUnitMilliSec() {
         return new Unit("ms", "ms", "Millisecond", "Milliseconds");
@@ -713,12 +721,20 @@ public class CrmXml {
         groupResourceAgent.setMetaDataLoaded(true);
 
         initResourceAgentsWithoutMetaData();
-        initOCFMetaDataConfigured();
+        final Map<String, String> raChecksums = getResourceAgentChecksums();
+        final String raCacheKey = getResourceAgentCacheKey();
+        final Map<String, ResourceAgentMetaDataCache.Entry> cachedRas = initOCFMetaDataCached(raCacheKey, raChecksums);
+        final List<ResourceAgentMetaDataCache.Entry> configuredRas = new ArrayList<ResourceAgentMetaDataCache.Entry>();
+        if (cachedRas.isEmpty()) {
+            initOCFMetaDataConfigured();
+        } else {
+            initOCFMetaDataConfiguredNotCached(raChecksums, cachedRas, configuredRas);
+        }
         LOG.debug("CRMXML: cluster loaded");
         final Thread t = new Thread(new Runnable() {
             @Override
             public void run() {
-                initOCFMetaDataAll();
+                initOCFMetaDataChanged(raCacheKey, raChecksums, cachedRas, configuredRas);
                 final String hn = host.getName();
                 final String text = Tools.getString("CRMXML.GetRAMetaData.Done");
                 progressIndicator.startProgressIndicator(hn, text);
@@ -834,16 +850,156 @@ public class CrmXml {
      */
     private void initOCFMetaDataConfigured() {
         initOCFResourceAgentsWithMetaData(host.getHostParser().getDistCommand("Heartbeat.getOCFParametersConfigured",
-                                          (ConvertCmdCallback) null));
+                                                                              (ConvertCmdCallback) null),
+                                          Collections.<String, String>emptyMap(),
+                                          new ArrayList<ResourceAgentMetaDataCache.Entry>());
+    }
+
+    /**
+     * Initialize the configured resource agents with their meta data, that
+     * were not in the cache, because they are new or changed.
+     */
+    private void initOCFMetaDataConfiguredNotCached(
+                                       final Map<String, String> raChecksums,
+                                       final Map<String, ResourceAgentMetaDataCache.Entry> cachedRas,
+                                       final Collection<ResourceAgentMetaDataCache.Entry> configuredRas) {
+        final String ras = "'" + Tools.join("' '", cachedRas.keySet()) + "'";
+        initOCFResourceAgentsWithMetaData(host.getHostParser().getDistCommand(
+                                                 "Heartbeat.getOCFParametersConfiguredExcept",
+                                                 new ConvertCmdCallback() {
+                                                     @Override
+                                                     public String convert(final String command) {
+                                                         return command.replace("@RAS@", ras);
+                                                     }
+                                                 }),
+                                          raChecksums,
+                                          configuredRas);
+    }
+
+    /**
+     * Initialize resource agents with their meta data from the local cache,
+     * if their files didn't change on the host. Returns the used entries.
+     */
+    private Map<String, ResourceAgentMetaDataCache.Entry> initOCFMetaDataCached(
+                                                                         final String raCacheKey,
+                                                                         final Map<String, String> raChecksums) {
+        final Map<String, ResourceAgentMetaDataCache.Entry> cachedRas =
+                                                      new LinkedHashMap<String, ResourceAgentMetaDataCache.Entry>();
+        if (raChecksums.isEmpty()) {
+            return cachedRas;
+        }
+        for (final ResourceAgentMetaDataCache.Entry entry : resourceAgentMetaDataCache.load(raCacheKey).values()) {
+            if (entry.getChecksum().equals(raChecksums.get(entry.getRaKey()))) {
+                parseMetaDataAndFillHashes(entry.getServiceName(),
+                                           entry.getProvider(),
+                                           entry.getMetaData(),
+                                           entry.isMasterSlave());
+                cachedRas.put(entry.getRaKey(), entry);
+            }
+        }
+        LOG.debug("initOCFMetaDataCached: " + cachedRas.size() + " resource agents from the cache");
+        return cachedRas;
     }
 
-    /** Initialize resource agents with their meta data. */
-    private void initOCFMetaDataAll() {
-        initOCFResourceAgentsWithMetaData(host.getHostParser().getDistCommand("Heartbeat.getOCFParameters",
-                                          (ConvertCmdCallback) null));
+    /**
+     * Initialize resource agents with their meta data, all of them or only
+     * the ones that were not in the cache or configured, and save them to the
+     * cache.
+     */
+    private void initOCFMetaDataChanged(final String raCacheKey,
+                                        final Map<String, String> raChecksums,
+                                        final Map<String, ResourceAgentMetaDataCache.Entry> cachedRas,
+                                        final Collection<ResourceAgentMetaDataCache.Entry> configuredRas) {
+        final List<ResourceAgentMetaDataCache.Entry> fetchedRas = new ArrayList<ResourceAgentMetaDataCache.Entry>();
+        if (cachedRas.isEmpty()) {
+            initOCFResourceAgentsWithMetaData(host.getHostParser().getDistCommand("Heartbeat.getOCFParameters",
+                                                                                  (ConvertCmdCallback) null),
+                                              raChecksums,
+                                              fetchedRas);
+        } else {
+            final List<String> changedRas = getResourceAgentsWithoutMetaData();
+            if (changedRas.isEmpty() && configuredRas.isEmpty()) {
+                return;
+            }
+            if (!changedRas.isEmpty()) {
+                LOG.debug("initOCFMetaDataChanged: changed resource agents: " + changedRas.size());
+                final String ras = "'" + Tools.join("' '", changedRas) + "'";
+                initOCFResourceAgentsWithMetaData(host.getHostParser().getDistCommand(
+                                                         "Heartbeat.getOCFParametersSelected",
+                                                         new ConvertCmdCallback() {
+                                                             @Override
+                                                             public String convert(final String command) {
+                                                                 return command.replace("@RAS@", ras);
+                                                             }
+                                                         }),
+                                                  raChecksums,
+                                                  fetchedRas);
+            }
+        }
+        if (raChecksums.isEmpty()) {
+            return;
+        }
+        final List<ResourceAgentMetaDataCache.Entry> entries =
+                                                   new ArrayList<ResourceAgentMetaDataCache.Entry>(cachedRas.values());
+        entries.addAll(configuredRas);
+        entries.addAll(fetchedRas);
+        resourceAgentMetaDataCache.save(raCacheKey, entries);
     }
 
-    private void initOCFResourceAgentsWithMetaData(final String command) {
+    /** Returns checksums of the resource agents on the host by "class:provider:name". */
+    private Map<String, String> getResourceAgentChecksums() {
+        final Map<String, String> raChecksums = new HashMap<String, String>();
+        final String command = host.getHostParser().getDistCommand("Heartbeat.getOCFChecksums",
+                                                                   (ConvertCmdCallback) null);
+        final SshOutput ret = host.captureCommand(new ExecCommandConfig().command(command)
+                                                                         .silentCommand()
+                                                                         .silentOutput()
+                                                                         .sshCommandTimeout(60000));
+        if (ret.getExitCode() != 0 || ret.getOutput() == null) {
+            return raChecksums;
+        }
+        for (final String line : ret.getOutput().split("\\r?\\n")) {
+            final Matcher m = RA_CHECKSUM_PATTERN.matcher(line);
+            if (m.matches()) {
+                raChecksums.put(ResourceAgentMetaDataCache.Entry.getRaKey(m.group(1), m.group(2), m.group(3)),
+                                m.group(4));
+            }
+        }
+        return raChecksums;
+    }
+
+    /** The meta-data can change with the software on the host or with the lcmc-gui-helper. */
+    private String getResourceAgentCacheKey() {
+        return host.getHostname()
+               + ' ' + host.getHostParser().getPacemakerVersion()
+               + ' ' + host.getHostParser().getHeartbeatVersion()
+               + ' ' + Tools.getRelease();
+    }
+
+    /** Returns "class:provider:name" of the ocf and stonith resource agents without meta data. */
+    private List<String> getResourceAgentsWithoutMetaData() {
+        final List<String> ras = new ArrayList<String>();
+        for (final String raClass : new String[]{ResourceAgent.OCF_CLASS_NAME, ResourceAgent.STONITH_CLASS_NAME}) {
+            final List<ResourceAgent> raList = classToServicesMap.get(raClass);
+            if (raList == null) {
+                continue;
+            }
+            for (final ResourceAgent ra : raList) {
+                if (!ra.isMetaDataLoaded()) {
+                    ras.add(ResourceAgentMetaDataCache.Entry.getRaKey(raClass, ra.getProvider(), ra.getServiceName()));
+                }
+            }
+        }
+        return ras;
+    }
+
+    /**
+     * Parses the meta data of the resource agents and collects the ones,
+     * whose checksum is known, for the cache.
+     */
+    private void initOCFResourceAgentsWithMetaData(final String command,
+                                                   final Map<String, String> raChecksums,
+                                                   final Collection<ResourceAgentMetaDataCache.Entry> fetchedRas) {
         final SshOutput ret = host.captureCommand(new ExecCommandConfig().command(command)
                                                                          .silentCommand()
                                                                          .silentOutput()
@@ -856,12 +1012,14 @@ public class CrmXml {
             return;
         }
         final String[] lines = output.split("\\r?\\n");
+        final Pattern cp = Pattern.compile("^class:\\s*(.*?)\\s*$");
         final Pattern pp = Pattern.compile("^provider:\\s*(.*?)\\s*$");
         final Pattern mp = Pattern.compile("^master:\\s*(.*?)\\s*$");
         final Pattern bp = Pattern.compile("<resource-agent.*\\s+name=\"(.*?)\".*");
         final Pattern sp = Pattern.compile("^ra-name:\\s*(.*?)\\s*$");
         final Pattern ep = Pattern.compile("</resource-agent>");
         final StringBuilder xml = new StringBuilder("");
+        String resourceClass = null;
         String provider = null;
         String serviceName = null;
         boolean nextRA = false;
@@ -872,6 +1030,11 @@ public class CrmXml {
             ...
             </resource-agent>
             */
+            final Matcher cm = cp.matcher(line);
+            if (cm.matches()) {
+                resourceClass = cm.group(1);
+                continue;
+            }
             final Matcher pm = pp.matcher(line);
             if (pm.matches()) {
                 provider = pm.group(1);
@@ -897,6 +1060,16 @@ public class CrmXml {
                 final Matcher m2 = ep.matcher(line);
                 if (m2.matches()) {
                     parseMetaDataAndFillHashes(serviceName, provider, xml.toString(), masterSlave);
+                    final String raKey = ResourceAgentMetaDataCache.Entry.getRaKey(resourceClass,
+                                                                                   provider,
+                                                                                   serviceName);
+                    final String checksum = raChecksums.get(raKey);
+                    if (serviceName != null && checksum != null) {
+                        fetchedRas.add(new ResourceAgentMetaDataCache.Entry(raKey,
+                                                                            checksum,
+                                                                            masterSlave,
+                                                                            xml.toString()));
+                    }
                     serviceName = null;
                     nextRA = false;
                     xml.delete(0, xml.length());
@@ -1974,15 +2147,12 @@ public class CrmXml {
             for (int j = 0; j < nvpairsRes.getLength(); j++) {
                 final Node optionNode = nvpairsRes.item(j);
                 if (optionNode.getNodeName().equals("nvpair")) {
-                    final String nvpairId = XMLTools.getAttribute(optionNode, "id");
-                    String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    if (stonith && "priority".equals(name)) {
-                        /* so it does not clash with meta attr priority */
-                        name = STONITH_PRIORITY_INSTANCE_ATTR;
-                    }
-                    params.put(name, value);
-                    nvpairIds.put(name, nvpairId);
+                    putInstanceAttribute(params,
+                                         nvpairIds,
+                                         XMLTools.getAttribute(optionNode, "id"),
+                                         XMLTools.getAttribute(optionNode, "name"),
+                                         XMLTools.getAttribute(optionNode, "value"),
+                                         stonith);
                 }
             }
         }
@@ -2002,21 +2172,16 @@ public class CrmXml {
                 for (int k = 0; k < ops.getLength(); k++) {
                     final Node opNode = ops.item(k);
                     if (opNode.getNodeName().equals("op")) {
-                        final String opId = XMLTools.getAttribute(opNode, "id");
                         final String name = XMLTools.getAttribute(opNode, "name");
-                        final String timeout = XMLTools.getAttribute(opNode, "timeout");
-                        final String interval = XMLTools.getAttribute(opNode, "interval");
-                        final String startDelay = XMLTools.getAttribute(opNode, "start-delay");
-
-                        operationsMap.put(crmId, name, "interval", parseValue("interval", interval));
-                        operationsMap.put(crmId, name, "timeout", parseValue("timeout", timeout));
-                        operationsMap.put(crmId, name, "start-delay", parseValue("startDelay", startDelay));
-
-                        opIds.put(name, opId);
-                        if ("monitor".equals(name)) {
-                            final String checkLevel = parseCheckLevelMonitorAttribute(opNode);
-                            operationsMap.put(crmId, name, PARAM_OCF_CHECK_LEVEL, new StringValue(checkLevel));
-                        }
+                        putOperation(crmId,
+                                     opIds,
+                                     operationsMap,
+                                     XMLTools.getAttribute(opNode, "id"),
+                                     name,
+                                     XMLTools.getAttribute(opNode, "timeout"),
+                                     XMLTools.getAttribute(opNode, "interval"),
+                                     XMLTools.getAttribute(opNode, "start-delay"),
+                                     "monitor".equals(name) ? parseCheckLevelMonitorAttribute(opNode) : null);
                     }
                 }
             } else {
@@ -2045,14 +2210,12 @@ public class CrmXml {
                 for (int l = 0; l < nvpairsMA.getLength(); l++) {
                     final Node maNode = nvpairsMA.item(l);
                     if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = XMLTools.getAttribute(maNode, "id");
-                        final String name = XMLTools.getAttribute(maNode, "name");
-                        String value = XMLTools.getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
+                        putMetaAttribute(params,
+                                         nvpairIds,
+                                         XMLTools.getAttribute(maNode, "id"),
+                                         XMLTools.getAttribute(maNode, "name"),
+                                         XMLTools.getAttribute(maNode, "value"),
+                                         false);
                     }
                 }
             } else {
@@ -2071,8 +2234,11 @@ public class CrmXml {
         if (nvpairNode == null) {
             return "";
         }
-        final String name = XMLTools.getAttribute(nvpairNode, "name");
-        final String value = XMLTools.getAttribute(nvpairNode, "value");
+        return parseCheckLevel(XMLTools.getAttribute(nvpairNode, "name"), XMLTools.getAttribute(nvpairNode, "value"));
+    }
+
+    /** Returns OCF_CHECK_LEVEL from the instance attribute of the monitor op. */
+    private String parseCheckLevel(final String name, final String value) {
         if (PARAM_OCF_CHECK_LEVEL.equals(name)) {
             return value;
         } else {
@@ -2081,6 +2247,58 @@ public class CrmXml {
         }
     }
 
+    private void putInstanceAttribute(final Map<String, String> params,
+                                      final Map<String, String> nvpairIds,
+                                      final String nvpairId,
+                                      final String name,
+                                      final String value,
+                                      final boolean stonith) {
+        if (stonith && "priority".equals(name)) {
+            /* so it does not clash with meta attr priority */
+            params.put(STONITH_PRIORITY_INSTANCE_ATTR, value);
+            nvpairIds.put(STONITH_PRIORITY_INSTANCE_ATTR, nvpairId);
+        } else {
+            params.put(name, value);
+            nvpairIds.put(name, nvpairId);
+        }
+    }
+
+    /** Meta attributes, target-role and is-managed, of primitives, groups and clones. */
+    private void putMetaAttribute(final Map<String, String> params,
+                                  final Map<String, String> nvpairIds,
+                                  final String nvpairId,
+                                  final String name,
+                                  final String value,
+                                  final boolean group) {
+        final String attrName = group && "ordered".equals(name) ? GROUP_ORDERED_META_ATTR : name;
+        if (TARGET_ROLE_META_ATTR.equals(name)) {
+            params.put(attrName, value.toLowerCase(Locale.US));
+        } else {
+            params.put(attrName, value);
+        }
+        nvpairIds.put(attrName, nvpairId);
+    }
+
+    /** Puts the op, the check level is only for the monitor op. */
+    private void putOperation(final String crmId,
+                              final Map<String, String> opIds,
+                              final MultiKeyMap<String, Value> operationsMap,
+                              final String opId,
+                              final String name,
+                              final String timeout,
+                              final String interval,
+                              final String startDelay,
+                              final String checkLevel) {
+        operationsMap.put(crmId, name, "interval", parseValue("interval", interval));
+        operationsMap.put(crmId, name, "timeout", parseValue("timeout", timeout));
+        operationsMap.put(crmId, name, "start-delay", parseValue("startDelay", startDelay));
+
+        opIds.put(name, opId);
+        if (checkLevel != null) {
+            operationsMap.put(crmId, name, PARAM_OCF_CHECK_LEVEL, new StringValue(checkLevel));
+        }
+    }
+
     private void parseGroupNode(final Node groupNode,
                                 final Collection<String> resList,
                                 final Map<String, List<String>> groupsToResourcesMap,
@@ -2152,17 +2370,12 @@ public class CrmXml {
                 for (int l = 0; l < nvpairsMA.getLength(); l++) {
                     final Node maNode = nvpairsMA.item(l);
                     if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = XMLTools.getAttribute(maNode, "id");
-                        String name = XMLTools.getAttribute(maNode, "name");
-                        String value = XMLTools.getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        if ("ordered".equals(name)) {
-                            name = GROUP_ORDERED_META_ATTR;
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
+                        putMetaAttribute(params,
+                                         nvpairIds,
+                                         XMLTools.getAttribute(maNode, "id"),
+                                         XMLTools.getAttribute(maNode, "name"),
+                                         XMLTools.getAttribute(maNode, "value"),
+                                         true);
                     }
                 }
             } else {
@@ -2185,20 +2398,17 @@ public class CrmXml {
                                     final Map<String, String> operationsIdtoCRMId,
                                     final Map<String, String> metaAttrsIdRefs,
                                     final Map<String, String> metaAttrsIdToCRMId) {
-        final String templateId = XMLTools.getAttribute(primitiveNode, "template");
         final String crmId = XMLTools.getAttribute(primitiveNode, "id");
-        if (templateId != null) {
-            LOG.info("parsePrimitive: templates not implemented, ignoring: " + crmId + '/' + templateId);
-            return;
-        }
         final String raClass = XMLTools.getAttribute(primitiveNode, "class");
-        String provider = XMLTools.getAttribute(primitiveNode, "provider");
-        if (provider == null) {
-            provider = ResourceAgent.HEARTBEAT_PROVIDER;
+        if (!putPrimitive(crmId,
+                          XMLTools.getAttribute(primitiveNode, "template"),
+                          raClass,
+                          XMLTools.getAttribute(primitiveNode, "provider"),
+                          XMLTools.getAttribute(primitiveNode, "type"),
+                          groupResList,
+                          resourceTypeMap)) {
+            return;
         }
-        final String type = XMLTools.getAttribute(primitiveNode, "type");
-        resourceTypeMap.put(crmId, getResourceAgent(type, provider, raClass));
-        groupResList.add(crmId);
         parseAttributes(primitiveNode,
                         crmId,
                         parametersMap,
@@ -2215,6 +2425,24 @@ public class CrmXml {
                         ResourceAgent.STONITH_CLASS_NAME.equals(raClass));
     }
 
+    /** Puts the resource agent of the primitive, returns false if it's a template, that is not parsed. */
+    private boolean putPrimitive(final String crmId,
+                                 final String templateId,
+                                 final String raClass,
+                                 final String provider,
+                                 final String type,
+                                 final Collection<String> groupResList,
+                                 final Map<String, ResourceAgent> resourceTypeMap) {
+        if (templateId != null) {
+            LOG.info("parsePrimitive: templates not implemented, ignoring: " + crmId + '/' + templateId);
+            return false;
+        }
+        final String raProvider = provider == null ? ResourceAgent.HEARTBEAT_PROVIDER : provider;
+        resourceTypeMap.put(crmId, getResourceAgent(type, raProvider, raClass));
+        groupResList.add(crmId);
+        return true;
+    }
+
     private Map<String, String> parseAllocationScores(final NodeList scores) {
         final Map<String, String> allocationScores = new LinkedHashMap<String, String>();
         for (int i = 0; i < scores.getLength(); i++) {
@@ -2230,6 +2458,14 @@ public class CrmXml {
 
     /** Returns a hash with resource information. (running_on) */
     Map<String, ResourceStatus> parseResStatus(final String resStatus) {
+        if (STREAMING_PARSER) {
+            return CibStreamParser.parseResStatus(resStatus);
+        }
+        return parseResStatusWithDom(resStatus);
+    }
+
+    /** Returns a hash with resource information, parsed from the whole DOM. */
+    Map<String, ResourceStatus> parseResStatusWithDom(final String resStatus) {
         final Map<String, ResourceStatus> resStatusMap = new HashMap<String, ResourceStatus>();
         final Document document = XMLTools.getXMLDocument(resStatus);
         if (document == null) {
@@ -2314,33 +2550,44 @@ public class CrmXml {
             for (int j = 0; j < nvpairsRes.getLength(); j++) {
                 final Node optionNode = nvpairsRes.item(j);
                 if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    /* TODO: last-failure-" */
-                    if ("pingd".equals(name)) {
-                        pingCountMap.put(uname, value);
-                    } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
-                        final String resId = name.substring(FAIL_COUNT_PREFIX.length());
-                        final String unameLowerCase = uname.toLowerCase(Locale.US);
-                        failedMap.put(unameLowerCase, resId, value);
-                        final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                        final Matcher m = p.matcher(resId);
-                        if (m.matches()) {
-                            final String crmId = m.group(1);
-                            Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
-                            if (clones == null) {
-                                clones = new LinkedHashSet<String>();
-                                failedClonesMap.put(unameLowerCase, crmId, clones);
-                            }
-                            clones.add(m.group(2));
-                            failedMap.put(uname.toLowerCase(Locale.US), crmId, value);
-                        }
-                    }
+                    parseTransientAttribute(uname,
+                                            XMLTools.getAttribute(optionNode, "name"),
+                                            XMLTools.getAttribute(optionNode, "value"),
+                                            failedMap,
+                                            failedClonesMap,
+                                            pingCountMap);
                 }
             }
         }
     }
 
+    private void parseTransientAttribute(final String uname,
+                                         final String name,
+                                         final String value,
+                                         final Table<String, String, String> failedMap,
+                                         final Table<String, String, Set<String>> failedClonesMap,
+                                         final Map<String, String> pingCountMap) {
+        /* TODO: last-failure-" */
+        if ("pingd".equals(name)) {
+            pingCountMap.put(uname, value);
+        } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
+            final String resId = name.substring(FAIL_COUNT_PREFIX.length());
+            final String unameLowerCase = uname.toLowerCase(Locale.US);
+            failedMap.put(unameLowerCase, resId, value);
+            final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+            if (m.matches()) {
+                final String crmId = m.group(1);
+                Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
+                if (clones == null) {
+                    clones = new LinkedHashSet<String>();
+                    failedClonesMap.put(unameLowerCase, crmId, clones);
+                }
+                clones.add(m.group(2));
+                failedMap.put(uname.toLowerCase(Locale.US), crmId, value);
+            }
+        }
+    }
+
     /** Parses node, to get info like if it is in stand by. */
     void parseNode(final String node, final Node nodeNode, final Table<String ,String, String> nodeParametersMap) {
         /* <instance_attributes> */
@@ -2429,131 +2676,88 @@ public class CrmXml {
 
     /** Returns CibQuery object with information from the cib node. */
     CibQuery parseCibQuery(final String query) {
+        if (STREAMING_PARSER) {
+            return parseCibQueryStreaming(query);
+        }
+        return parseCibQueryWithDom(query);
+    }
+
+    /** Returns CibQuery object with information from the cib, parsed with StAX. */
+    CibQuery parseCibQueryStreaming(final String query) {
+        return CibStreamParser.parseCibQuery(query, new CibQueryBuilder());
+    }
+
+    /** Returns CibQuery object with information from the cib, parsed to the whole DOM. */
+    CibQuery parseCibQueryWithDom(final String query) {
         final Document document = XMLTools.getXMLDocument(query);
-        final CibQuery cibQueryData = new CibQuery();
         if (document == null) {
             LOG.appWarning("parseCibQuery: cib error: " + query);
-            return cibQueryData;
+            return new CibQuery();
         }
+        return parseCibQuery(document);
+    }
+
+    /** Returns CibQuery object with information from the already parsed cib. */
+    CibQuery parseCibQuery(final Document document) {
         /* get root <pacemaker> */
         final Node pcmkNode = XMLTools.getChildNode(document, "pcmk");
         if (pcmkNode == null) {
             LOG.appWarning("parseCibQuery: there is no pcmk node");
-            return cibQueryData;
+            return new CibQuery();
         }
+        final CibQueryBuilder cibQueryBuilder = new CibQueryBuilder();
 
         /* get fenced nodes */
-        final Set<String> fencedNodes = new HashSet<String>();
         final Node fencedNode = XMLTools.getChildNode(pcmkNode, "fenced");
         if (fencedNode != null) {
-            final NodeList nodes = fencedNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node hostNode = nodes.item(i);
-                if (hostNode.getNodeName().equals("node")) {
-                    final String h = XMLTools.getText(hostNode);
-                    if (h != null) {
-                        fencedNodes.add(h.toLowerCase(Locale.US));
-                    }
-                }
-            }
+            cibQueryBuilder.addFencedNodes(fencedNode);
         }
 
         /* get <cib> */
         final Node cibNode = XMLTools.getChildNode(pcmkNode, "cib");
         if (cibNode == null) {
             LOG.appWarning("parseCibQuery: there is no cib node");
-            return cibQueryData;
+            return new CibQuery();
         }
         /* Designated Co-ordinator */
-        final String dcUuid = XMLTools.getAttribute(cibNode, "dc-uuid");
+        cibQueryBuilder.setDcUuid(XMLTools.getAttribute(cibNode, "dc-uuid"));
         //TODO: more attributes are here
 
         /* <configuration> */
         final Node confNode = XMLTools.getChildNode(cibNode, "configuration");
         if (confNode == null) {
             LOG.appWarning("parseCibQuery: there is no configuration node");
-            return cibQueryData;
+            return new CibQuery();
         }
 
         /* <rsc_defaults> */
         final Node rscDefaultsNode = XMLTools.getChildNode(confNode, "rsc_defaults");
-        String rscDefaultsId = null;
-        final Map<String, String> rscDefaultsParams = new HashMap<String, String>();
-        final Map<String, String> rscDefaultsParamsNvpairIds = new HashMap<String, String>();
         if (rscDefaultsNode != null) {
-            rscDefaultsId = parseResourceDefaults(rscDefaultsNode, rscDefaultsParams, rscDefaultsParamsNvpairIds);
+            cibQueryBuilder.addRscDefaults(rscDefaultsNode);
         }
 
         /* <op_defaults> */
         final Node opDefaultsNode = XMLTools.getChildNode(confNode, "op_defaults");
-        final Map<String, Value> opDefaultsParams = new HashMap<String, Value>();
         if (opDefaultsNode != null) {
-            parseOpDefaults(opDefaultsNode, opDefaultsParams);
+            cibQueryBuilder.addOpDefaults(opDefaultsNode);
         }
-        
-        
+
         /* <crm_config> */
         final Node crmConfNode = XMLTools.getChildNode(confNode, "crm_config");
         if (crmConfNode == null) {
             LOG.appWarning("parseCibQuery: there is no crm_config node");
-            return cibQueryData;
-        }
-
-        /*      <cluster_property_set> */
-        final Node cpsNode = XMLTools.getChildNode(crmConfNode, "cluster_property_set");
-        if (cpsNode == null) {
-            LOG.appWarning("parseCibQuery: there is no cluster_property_set node");
-        } else {
-            final NodeList nvpairs;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = XMLTools.getChildNode(cpsNode, "attributes");
-                nvpairs = attrNode.getChildNodes();
-            } else {
-                nvpairs = cpsNode.getChildNodes();
-            }
-            final Map<String, String> crmConfMap =
-                new HashMap<String, String>();
-            /*              <nvpair...> */
-            for (int i = 0; i < nvpairs.getLength(); i++) {
-                final Node optionNode = nvpairs.item(i);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    crmConfMap.put(name, value);
-                }
-            }
-            cibQueryData.setCrmConfig(crmConfMap);
+            return new CibQuery();
         }
+        cibQueryBuilder.addCrmConfig(crmConfNode);
 
         /* <nodes> */
-        /* xml node with cluster node make stupid variable names, but let's
-        * keep the convention. */
-        String dc = null;
-        final Table<String, String, String> nodeParametersMap = HashBasedTable.create();
         final Node nodesNode = XMLTools.getChildNode(confNode, "nodes");
-        final Map<String, String> nodeOnline = new HashMap<String, String>();
-        final Map<String, String> nodeID = new HashMap<String, String>();
         if (nodesNode != null) {
             final NodeList nodes = nodesNode.getChildNodes();
             for (int i = 0; i < nodes.getLength(); i++) {
                 final Node nodeNode = nodes.item(i);
                 if (nodeNode.getNodeName().equals("node")) {
-                    /* TODO: doing nothing with the info, just getting the dc,
-                    * for now.
-                    */
-                    final String id = XMLTools.getAttribute(nodeNode, "id");
-                    final String uname = XMLTools.getAttribute(nodeNode, "uname");
-                    if (!nodeID.containsKey(uname)) {
-                        nodeID.put(uname, id);
-                    }
-                    if (dcUuid != null && dcUuid.equals(id)) {
-                        dc = uname;
-                    }
-                    parseNode(uname, nodeNode, nodeParametersMap);
-                    if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
-                    }
+                    cibQueryBuilder.addNode(nodeNode);
                 }
             }
         }
@@ -2562,37 +2766,235 @@ public class CrmXml {
         final Node resourcesNode = XMLTools.getChildNode(confNode, "resources");
         if (resourcesNode == null) {
             LOG.appWarning("parseCibQuery: there is no resources node");
-            return cibQueryData;
+            return cibQueryBuilder.buildCrmConfigOnly();
+        }
+        final NodeList primitivesGroups = resourcesNode.getChildNodes();
+        for (int i = 0; i < primitivesGroups.getLength(); i++) {
+            cibQueryBuilder.addResource(primitivesGroups.item(i));
+        }
+
+        /* <constraints> */
+        final Node constraintsNode = XMLTools.getChildNode(confNode, "constraints");
+        if (constraintsNode != null) {
+            final NodeList constraints = constraintsNode.getChildNodes();
+            for (int i = 0; i < constraints.getLength(); i++) {
+                cibQueryBuilder.addConstraint(constraints.item(i));
+            }
+        }
+
+        /* <status> */
+        final Node statusNode = XMLTools.getChildNode(cibNode, "status");
+        if (statusNode != null) {
+            /* <node_state ...> */
+            final NodeList nodes = statusNode.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                final Node nodeStateNode = nodes.item(i);
+                if ("node_state".equals(nodeStateNode.getNodeName())) {
+                    cibQueryBuilder.addNodeState(nodeStateNode);
+                }
+            }
+        }
+        return cibQueryBuilder.build();
+    }
+
+    /**
+     * Returns CibQuery with the node states of the changed nodes parsed again
+     * from the document and everything else taken from the previous CibQuery,
+     * that was parsed from the same configuration.
+     */
+    CibQuery parseNodeStates(final CibQuery previous, final Document document, final Set<String> changedNodes) {
+        final Node pcmkNode = XMLTools.getChildNode(document, "pcmk");
+        final Node cibNode = pcmkNode == null ? null : XMLTools.getChildNode(pcmkNode, "cib");
+        final Node confNode = cibNode == null ? null : XMLTools.getChildNode(cibNode, "configuration");
+        if (confNode == null || previous.getResourceType() == null) {
+            /* there are no resources, nothing to keep */
+            return parseCibQuery(document);
+        }
+        final CibQueryBuilder cibQueryBuilder = new CibQueryBuilder();
+        cibQueryBuilder.setDcUuid(XMLTools.getAttribute(cibNode, "dc-uuid"));
+        cibQueryBuilder.addConfiguredResources(previous);
+
+        /* <nodes> for the dc and the node ids */
+        final Node nodesNode = XMLTools.getChildNode(confNode, "nodes");
+        if (nodesNode != null) {
+            final NodeList nodes = nodesNode.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                final Node nodeNode = nodes.item(i);
+                if (nodeNode.getNodeName().equals("node")) {
+                    cibQueryBuilder.addNode(nodeNode);
+                }
+            }
+        }
+
+        /* <status> */
+        final Node statusNode = XMLTools.getChildNode(cibNode, "status");
+        if (statusNode != null) {
+            final NodeList nodes = statusNode.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                final Node nodeStateNode = nodes.item(i);
+                if ("node_state".equals(nodeStateNode.getNodeName())) {
+                    final String uname = XMLTools.getAttribute(nodeStateNode, "uname");
+                    if (uname != null && changedNodes.contains(uname.toLowerCase(Locale.US))) {
+                        cibQueryBuilder.addNodeState(nodeStateNode);
+                    }
+                }
+            }
         }
-        /*      <primitive> */
-        final Map<String, Map<String, String>> parametersMap = new HashMap<String, Map<String, String>>();
-        final Map<String, Map<String, String>> parametersNvpairsIdsMap = new HashMap<String, Map<String, String>>();
-        final Map<String, ResourceAgent> resourceTypeMap = new HashMap<String, ResourceAgent>();
-        final Set<String> orphanedList = new HashSet<String>();
+        return cibQueryBuilder.buildNodeStates(previous, changedNodes);
+    }
+
+    /**
+     * Collects the information from the cib elements into the CibQuery. The
+     * elements can come from the DOM document or from the streaming parser,
+     * they must come in the cib order: the cib attributes, the configuration
+     * sections and then the status.
+     */
+    final class CibQueryBuilder {
+        private final Set<String> fencedNodes = new HashSet<String>();
+        private String dcUuid = null;
+        private String rscDefaultsId = null;
+        private final Map<String, String> rscDefaultsParams = new HashMap<String, String>();
+        private final Map<String, String> rscDefaultsParamsNvpairIds = new HashMap<String, String>();
+        private final Map<String, Value> opDefaultsParams = new HashMap<String, Value>();
+        private Map<String, String> crmConfMap = null;
+        /* xml node with cluster node make stupid variable names, but let's
+        * keep the convention. */
+        private String dc = null;
+        private final Table<String, String, String> nodeParametersMap = HashBasedTable.create();
+        private final Map<String, String> nodeOnline = new HashMap<String, String>();
+        private final Map<String, String> nodeID = new HashMap<String, String>();
+
+        private final Map<String, Map<String, String>> parametersMap = new HashMap<String, Map<String, String>>();
+        private final Map<String, Map<String, String>> parametersNvpairsIdsMap =
+                                                                new HashMap<String, Map<String, String>>();
+        private final Map<String, ResourceAgent> resourceTypeMap = new HashMap<String, ResourceAgent>();
+        private final Set<String> orphanedList = new HashSet<String>();
         /* host -> inLRMList list */
-        final Map<String, Set<String>> inLRMList = new HashMap<String, Set<String>>();
-        final Map<String, String> resourceInstanceAttrIdMap = new HashMap<String, String>();
-        final MultiKeyMap<String, Value> operationsMap = new MultiKeyMap<String, Value>();
-        final Map<String, String> metaAttrsIdMap = new HashMap<String, String>();
-        final Map<String, String> operationsIdMap = new HashMap<String, String>();
-        final Map<String, Map<String, String>> resOpIdsMap = new HashMap<String, Map<String, String>>();
+        private final Map<String, Set<String>> inLRMList = new HashMap<String, Set<String>>();
+        private final Map<String, String> resourceInstanceAttrIdMap = new HashMap<String, String>();
+        private final MultiKeyMap<String, Value> operationsMap = new MultiKeyMap<String, Value>();
+        private final Map<String, String> metaAttrsIdMap = new HashMap<String, String>();
+        private final Map<String, String> operationsIdMap = new HashMap<String, String>();
+        private final Map<String, Map<String, String>> resOpIdsMap = new HashMap<String, Map<String, String>>();
         /* must be linked, so that clone from group is before the group itself.
         */
-        final Map<String, List<String>> groupsToResourcesMap = new LinkedHashMap<String, List<String>>();
-        final Map<String, String> cloneToResourceMap = new HashMap<String, String>();
-        final List<String> masterList = new ArrayList<String>();
-        final Table<String, String, String> failedMap = HashBasedTable.create();
-        final Table<String, String, Set<String>> failedClonesMap = HashBasedTable.create();
-        final Map<String, String> pingCountMap = new HashMap<String, String>();
-        groupsToResourcesMap.put("none", new ArrayList<String>());
+        private final Map<String, List<String>> groupsToResourcesMap = new LinkedHashMap<String, List<String>>();
+        private final Map<String, String> cloneToResourceMap = new HashMap<String, String>();
+        private final List<String> masterList = new ArrayList<String>();
+        private final Table<String, String, String> failedMap = HashBasedTable.create();
+        private final Table<String, String, Set<String>> failedClonesMap = HashBasedTable.create();
+        private final Map<String, String> pingCountMap = new HashMap<String, String>();
+        private final Map<String, String> operationsIdRefs = new HashMap<String, String>();
+        private final Map<String, String> operationsIdtoCRMId = new HashMap<String, String>();
+        private final Map<String, String> metaAttrsIdRefs = new HashMap<String, String>();
+        private final Map<String, String> metaAttrsIdToCRMId = new HashMap<String, String>();
+
+        private final Map<String, ColocationData> colocationIdMap = new LinkedHashMap<String, ColocationData>();
+        private final Map<String, List<ColocationData>> colocationRscMap = new HashMap<String, List<ColocationData>>();
+        private final Map<String, OrderData> orderIdMap = new LinkedHashMap<String, OrderData>();
+        private final Map<String, List<RscSet>> orderIdRscSetsMap = new HashMap<String, List<RscSet>>();
+        private final Map<String, List<RscSet>> colocationIdRscSetsMap = new HashMap<String, List<RscSet>>();
+        private final List<RscSetConnectionData> rscSetConnections = new ArrayList<RscSetConnectionData>();
+        private final Map<String, List<OrderData>> orderRscMap = new HashMap<String, List<OrderData>>();
+        private final Map<String, Map<String, HostLocation>> locationMap =
+                                                                new HashMap<String, Map<String, HostLocation>>();
+        private final Map<String, HostLocation> pingLocationMap = new HashMap<String, HostLocation>();
+        private final Map<String, List<String>> locationsIdMap = new HashMap<String, List<String>>();
+        private final Table<String, String, String> resHostToLocIdMap = HashBasedTable.create();
+        private final Map<String, String> resPingToLocIdMap = new HashMap<String, String>();
+        private final Set<String> nodePending = new HashSet<String>();
+
+        private final boolean beforePacemaker = Tools.versionBeforePacemaker(host);
+        private final String rscString         = beforePacemaker ? "from" : "rsc";
+        private final String rscRoleString     = beforePacemaker ? "from_role" : "rsc-role";
+        private final String withRscString     = beforePacemaker ? "to" : "with-rsc";
+        private final String withRscRoleString = beforePacemaker ? "to_role" : "with-rsc-role";
+        private final String firstString       = beforePacemaker ? "to" : "first";
+        private final String thenString        = beforePacemaker ? "from" : "then";
+        private final String firstActionString = beforePacemaker ? "to_action" : "first-action";
+        private final String thenActionString  = beforePacemaker ? "action" : "then-action";
+
+        CibQueryBuilder() {
+            groupsToResourcesMap.put("none", new ArrayList<String>());
+        }
+
+        /** <fenced> */
+        void addFencedNodes(final Node fencedNode) {
+            final NodeList nodes = fencedNode.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                final Node hostNode = nodes.item(i);
+                if (hostNode.getNodeName().equals("node")) {
+                    final String h = XMLTools.getText(hostNode);
+                    if (h != null) {
+                        fencedNodes.add(h.toLowerCase(Locale.US));
+                    }
+                }
+            }
+        }
 
-        final NodeList primitivesGroups = resourcesNode.getChildNodes();
-        final Map<String, String> operationsIdRefs = new HashMap<String, String>();
-        final Map<String, String> operationsIdtoCRMId = new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdRefs = new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdToCRMId = new HashMap<String, String>();
-        for (int i = 0; i < primitivesGroups.getLength(); i++) {
-            final Node primitiveGroupNode = primitivesGroups.item(i);
+        void setDcUuid(final String dcUuid) {
+            this.dcUuid = dcUuid;
+        }
+
+        /** <rsc_defaults> */
+        void addRscDefaults(final Node rscDefaultsNode) {
+            rscDefaultsId = parseResourceDefaults(rscDefaultsNode, rscDefaultsParams, rscDefaultsParamsNvpairIds);
+        }
+
+        /** <op_defaults> */
+        void addOpDefaults(final Node opDefaultsNode) {
+            parseOpDefaults(opDefaultsNode, opDefaultsParams);
+        }
+
+        /** <crm_config> */
+        void addCrmConfig(final Node crmConfNode) {
+            /*      <cluster_property_set> */
+            final Node cpsNode = XMLTools.getChildNode(crmConfNode, "cluster_property_set");
+            if (cpsNode == null) {
+                LOG.appWarning("parseCibQuery: there is no cluster_property_set node");
+            } else {
+                final NodeList nvpairs;
+                if (beforePacemaker) {
+                    /* <attributtes> only til 2.1.4 */
+                    final Node attrNode = XMLTools.getChildNode(cpsNode, "attributes");
+                    nvpairs = attrNode.getChildNodes();
+                } else {
+                    nvpairs = cpsNode.getChildNodes();
+                }
+                crmConfMap = new HashMap<String, String>();
+                /*              <nvpair...> */
+                for (int i = 0; i < nvpairs.getLength(); i++) {
+                    final Node optionNode = nvpairs.item(i);
+                    if (optionNode.getNodeName().equals("nvpair")) {
+                        final String name = XMLTools.getAttribute(optionNode, "name");
+                        final String value = XMLTools.getAttribute(optionNode, "value");
+                        crmConfMap.put(name, value);
+                    }
+                }
+            }
+        }
+
+        /** <node> from <nodes> */
+        void addNode(final Node nodeNode) {
+            /* TODO: doing nothing with the info, just getting the dc,
+            * for now.
+            */
+            final String id = XMLTools.getAttribute(nodeNode, "id");
+            final String uname = XMLTools.getAttribute(nodeNode, "uname");
+            if (!nodeID.containsKey(uname)) {
+                nodeID.put(uname, id);
+            }
+            if (dcUuid != null && dcUuid.equals(id)) {
+                dc = uname;
+            }
+            parseNode(uname, nodeNode, nodeParametersMap);
+            if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
+                nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+            }
+        }
+
+        /** <primitive>, <group>, <clone> or <master> from <resources> */
+        void addResource(final Node primitiveGroupNode) {
             final String nodeName = primitiveGroupNode.getNodeName();
             if ("primitive".equals(nodeName)) {
                 final List<String> resList = groupsToResourcesMap.get("none");
@@ -2692,265 +3094,525 @@ public class CrmXml {
             }
         }
 
-        /* operationsRefs crm id -> crm id */
-        final Map<String, String> operationsRefs = new HashMap<String, String>();
-        for (final String crmId : operationsIdRefs.keySet()) {
-            final String idRef = operationsIdRefs.get(crmId);
-            operationsRefs.put(crmId, operationsIdtoCRMId.get(idRef));
+        /** <rsc_colocation>, <rsc_order> or <rsc_location> from <constraints> */
+        void addConstraint(final Node constraintNode) {
+            if (constraintNode.getNodeName().equals("rsc_colocation")) {
+                final String colId = XMLTools.getAttribute(constraintNode, "id");
+                final String rsc = XMLTools.getAttribute(constraintNode, rscString);
+                final String withRsc = XMLTools.getAttribute(constraintNode, withRscString);
+                if (rsc == null || withRsc == null) {
+                    final List<RscSet> rscSets = new ArrayList<RscSet>();
+                    parseResourceSets(constraintNode, colId, null, rscSets, rscSetConnections);
+                    colocationIdRscSetsMap.put(colId, rscSets);
+                }
+                final String rscRole = XMLTools.getAttribute(constraintNode, rscRoleString);
+                final String withRscRole = XMLTools.getAttribute(constraintNode, withRscRoleString);
+                final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
+                final ColocationData colocationData =
+                                             new ColocationData(colId, rsc, withRsc, rscRole, withRscRole, score);
+                colocationIdMap.put(colId, colocationData);
+                List<ColocationData> withs = colocationRscMap.get(rsc);
+                if (withs == null) {
+                    withs = new ArrayList<ColocationData>();
+                }
+                withs.add(colocationData);
+                colocationRscMap.put(rsc, withs);
+            } else if (constraintNode.getNodeName().equals("rsc_order")) {
+                String rscFirst = XMLTools.getAttribute(constraintNode, firstString);
+                String rscThen = XMLTools.getAttribute(constraintNode, thenString);
+                final String ordId = XMLTools.getAttribute(constraintNode, "id");
+                if (rscFirst == null || rscThen == null) {
+                    final List<RscSet> rscSets = new ArrayList<RscSet>();
+                    parseResourceSets(constraintNode, null, ordId, rscSets, rscSetConnections);
+                    orderIdRscSetsMap.put(ordId, rscSets);
+                }
+                final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
+                final String symmetrical = XMLTools.getAttribute(constraintNode, "symmetrical");
+                String firstAction = XMLTools.getAttribute(constraintNode, firstActionString);
+                String thenAction = XMLTools.getAttribute(constraintNode, thenActionString);
+                final String type = XMLTools.getAttribute(constraintNode, "type");
+                if (type != null && "before".equals(type)) {
+                    /* exchange resoruces */
+                    final String rsc = rscFirst;
+                    rscFirst = rscThen;
+                    rscThen = rsc;
+                    final String act = firstAction;
+                    firstAction = thenAction;
+                    thenAction = act;
+                }
+                final OrderData orderData = new OrderData(ordId,
+                                                          rscFirst,
+                                                          rscThen,
+                                                          score,
+                                                          symmetrical,
+                                                          firstAction,
+                                                          thenAction);
+                orderIdMap.put(ordId, orderData);
+                List<OrderData> thens = orderRscMap.get(rscFirst);
+                if (thens == null) {
+                    thens = new ArrayList<OrderData>();
+                }
+                thens.add(orderData);
+                orderRscMap.put(rscFirst, thens);
+            } else if ("rsc_location".equals(constraintNode.getNodeName())) {
+                final String locId = XMLTools.getAttribute(constraintNode, "id");
+                final String node  = XMLTools.getAttribute(constraintNode, "node");
+                final String rsc   = XMLTools.getAttribute(constraintNode, "rsc");
+                final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
+
+                List<String> locs = locationsIdMap.get(rsc);
+                if (locs == null) {
+                    locs = new ArrayList<String>();
+                    locationsIdMap.put(rsc, locs);
+                }
+                Map<String, HostLocation> hostScoreMap = locationMap.get(rsc);
+                if (hostScoreMap == null) {
+                    hostScoreMap = new HashMap<String, HostLocation>();
+                    locationMap.put(rsc, hostScoreMap);
+                }
+                final String role = null; // TODO
+                if (node != null) {
+                    resHostToLocIdMap.put(rsc, node.toLowerCase(Locale.US), locId);
+                    if (score != null) {
+                        hostScoreMap.put(node.toLowerCase(Locale.US), new HostLocation(score, "eq", null, role));
+                    }
+                }
+                locs.add(locId);
+                final Node ruleNode = XMLTools.getChildNode(constraintNode, "rule");
+                if (ruleNode != null) {
+                    final String score2 = XMLTools.getAttribute(ruleNode, SCORE_CONSTRAINT_PARAM);
+                    final String booleanOp = XMLTools.getAttribute(ruleNode, "boolean-op");
+                    // TODO: I know only "and", ignoring everything we
+                    // don't know.
+                    final Node expNode = XMLTools.getChildNode(ruleNode, "expression");
+                    if (expNode != null
+                        && "expression".equals(expNode.getNodeName())) {
+                        final String attr = XMLTools.getAttribute(expNode, "attribute");
+                        final String op = XMLTools.getAttribute(expNode, "operation");
+                        final String value = XMLTools.getAttribute(expNode, "value");
+                        if ((booleanOp == null || "and".equals(booleanOp))
+                            && "#uname".equals(attr)
+                            && value != null) {
+                            hostScoreMap.put(value.toLowerCase(Locale.US),
+                                             new HostLocation(score2, op, null, role));
+                            resHostToLocIdMap.put(rsc, value.toLowerCase(Locale.US), locId);
+                        } else if ((booleanOp == null || "and".equals(booleanOp)) && "pingd".equals(attr)) {
+                            pingLocationMap.put(rsc, new HostLocation(score2, op, value, null));
+                            resPingToLocIdMap.put(rsc, locId);
+                        } else {
+                            LOG.appWarning("parseCibQuery: could not parse rsc_location: " + locId);
+                        }
+                    }
+                }
+            }
         }
 
-        /* mettaAttrsRefs crm id -> crm id */
-        final Map<String, String> metaAttrsRefs = new HashMap<String, String>();
-        for (final String crmId : metaAttrsIdRefs.keySet()) {
-            final String idRef = metaAttrsIdRefs.get(crmId);
-            metaAttrsRefs.put(crmId, metaAttrsIdToCRMId.get(idRef));
+        /** <node_state> from <status> */
+        void addNodeState(final Node nodeStateNode) {
+            final String uname = XMLTools.getAttribute(nodeStateNode, "uname");
+            if (!addNodeState(uname,
+                              XMLTools.getAttribute(nodeStateNode, "id"),
+                              XMLTools.getAttribute(nodeStateNode, "join"),
+                              XMLTools.getAttribute(nodeStateNode, "in_ccm"),
+                              XMLTools.getAttribute(nodeStateNode, "crmd"))) {
+                return;
+            }
+            final NodeList nodeStates = nodeStateNode.getChildNodes();
+            /* transient attributes. */
+            for (int j = 0; j < nodeStates.getLength(); j++) {
+                final Node nodeStateChild = nodeStates.item(j);
+                if ("transient_attributes".equals(
+                    nodeStateChild.getNodeName())) {
+                    parseTransientAttributes(uname, nodeStateChild, failedMap, failedClonesMap, pingCountMap);
+                }
+            }
+            final List<String> resList =
+                groupsToResourcesMap.get("none");
+            for (int j = 0; j < nodeStates.getLength(); j++) {
+                final Node nodeStateChild = nodeStates.item(j);
+                if ("lrm".equals(nodeStateChild.getNodeName())) {
+                    parseLrmResources(uname.toLowerCase(Locale.US),
+                            nodeStateChild,
+                            resList,
+                            resourceTypeMap,
+                            parametersMap,
+                            inLRMList,
+                            orphanedList,
+                            failedClonesMap);
+                }
+            }
         }
 
-        /* <constraints> */
-        final Map<String, ColocationData> colocationIdMap = new LinkedHashMap<String, ColocationData>();
-        final Map<String, List<ColocationData>> colocationRscMap = new HashMap<String, List<ColocationData>>();
-        final Map<String, OrderData> orderIdMap = new LinkedHashMap<String, OrderData>();
-        final Map<String, List<RscSet>> orderIdRscSetsMap = new HashMap<String, List<RscSet>>();
-        final Map<String, List<RscSet>> colocationIdRscSetsMap = new HashMap<String, List<RscSet>>();
-        final List<RscSetConnectionData> rscSetConnections = new ArrayList<RscSetConnectionData>();
-        final Map<String, List<OrderData>> orderRscMap = new HashMap<String, List<OrderData>>();
-        final Map<String, Map<String, HostLocation>> locationMap = new HashMap<String, Map<String, HostLocation>>();
-        final Map<String, HostLocation> pingLocationMap = new HashMap<String, HostLocation>();
-        final Map<String, List<String>> locationsIdMap = new HashMap<String, List<String>>();
-        final Table<String, String, String> resHostToLocIdMap = HashBasedTable.create();
-        
-        final Map<String, String> resPingToLocIdMap = new HashMap<String, String>();
-        final Node constraintsNode = XMLTools.getChildNode(confNode, "constraints");
-        if (constraintsNode != null) {
-            final NodeList constraints = constraintsNode.getChildNodes();
-            String rscString         = "rsc";
-            String rscRoleString     = "rsc-role";
-            String withRscString     = "with-rsc";
-            String withRscRoleString = "with-rsc-role";
-            String firstString       = "first";
-            String thenString        = "then";
-            String firstActionString = "first-action";
-            String thenActionString  = "then-action";
-            if (Tools.versionBeforePacemaker(host)) {
-                rscString         = "from";
-                rscRoleString     = "from_role";
-                withRscString     = "to";
-                withRscRoleString = "to_role";
-                firstString       = "to";
-                thenString        = "from";
-                firstActionString = "to_action";
-                thenActionString  = "action";
+        /**
+         * <node_state> attributes, returns false if the node state is
+         * skipped. The streaming parser adds the transient attributes and the
+         * lrm resources after it.
+         */
+        boolean addNodeState(final String uname,
+                             final String id,
+                             final String join,
+                             final String inCCM,
+                             final String crmd) {
+            if (uname == null || id == null || !id.equals(nodeID.get(uname))) {
+                LOG.appWarning("parseCibQuery: skipping " + uname + ' ' + id);
+                return false;
             }
-            for (int i = 0; i < constraints.getLength(); i++) {
-                final Node constraintNode = constraints.item(i);
-                if (constraintNode.getNodeName().equals("rsc_colocation")) {
-                    final String colId = XMLTools.getAttribute(constraintNode, "id");
-                    final String rsc = XMLTools.getAttribute(constraintNode, rscString);
-                    final String withRsc = XMLTools.getAttribute(constraintNode, withRscString);
-                    if (rsc == null || withRsc == null) {
-                        final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseResourceSets(constraintNode, colId, null, rscSets, rscSetConnections);
-                        colocationIdRscSetsMap.put(colId, rscSets);
-                    }
-                    final String rscRole = XMLTools.getAttribute(constraintNode, rscRoleString);
-                    final String withRscRole = XMLTools.getAttribute(constraintNode, withRscRoleString);
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-                    final ColocationData colocationData =
-                                                 new ColocationData(colId, rsc, withRsc, rscRole, withRscRole, score);
-                    colocationIdMap.put(colId, colocationData);
-                    List<ColocationData> withs = colocationRscMap.get(rsc);
-                    if (withs == null) {
-                        withs = new ArrayList<ColocationData>();
-                    }
-                    withs.add(colocationData);
-                    colocationRscMap.put(rsc, withs);
-                } else if (constraintNode.getNodeName().equals("rsc_order")) {
-                    String rscFirst = XMLTools.getAttribute(constraintNode, firstString);
-                    String rscThen = XMLTools.getAttribute(constraintNode, thenString);
-                    final String ordId = XMLTools.getAttribute(constraintNode, "id");
-                    if (rscFirst == null || rscThen == null) {
-                        final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseResourceSets(constraintNode, null, ordId, rscSets, rscSetConnections);
-                        orderIdRscSetsMap.put(ordId, rscSets);
-                    }
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-                    final String symmetrical = XMLTools.getAttribute(constraintNode, "symmetrical");
-                    String firstAction = XMLTools.getAttribute(constraintNode, firstActionString);
-                    String thenAction = XMLTools.getAttribute(constraintNode, thenActionString);
-                    final String type = XMLTools.getAttribute(constraintNode, "type");
-                    if (type != null && "before".equals(type)) {
-                        /* exchange resoruces */
-                        final String rsc = rscFirst;
-                        rscFirst = rscThen;
-                        rscThen = rsc;
-                        final String act = firstAction;
-                        firstAction = thenAction;
-                        thenAction = act;
-                    }
-                    final OrderData orderData = new OrderData(ordId,
-                                                              rscFirst,
-                                                              rscThen,
-                                                              score,
-                                                              symmetrical,
-                                                              firstAction,
-                                                              thenAction);
-                    orderIdMap.put(ordId, orderData);
-                    List<OrderData> thens = orderRscMap.get(rscFirst);
-                    if (thens == null) {
-                        thens = new ArrayList<OrderData>();
-                    }
-                    thens.add(orderData);
-                    orderRscMap.put(rscFirst, thens);
-                } else if ("rsc_location".equals(constraintNode.getNodeName())) {
-                    final String locId = XMLTools.getAttribute(constraintNode, "id");
-                    final String node  = XMLTools.getAttribute(constraintNode, "node");
-                    final String rsc   = XMLTools.getAttribute(constraintNode, "rsc");
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-
-                    List<String> locs = locationsIdMap.get(rsc);
-                    if (locs == null) {
-                        locs = new ArrayList<String>();
-                        locationsIdMap.put(rsc, locs);
-                    }
-                    Map<String, HostLocation> hostScoreMap = locationMap.get(rsc);
-                    if (hostScoreMap == null) {
-                        hostScoreMap = new HashMap<String, HostLocation>();
-                        locationMap.put(rsc, hostScoreMap);
-                    }
-                    final String role = null; // TODO
-                    if (node != null) {
-                        resHostToLocIdMap.put(rsc, node.toLowerCase(Locale.US), locId);
-                        if (score != null) {
-                            hostScoreMap.put(node.toLowerCase(Locale.US), new HostLocation(score, "eq", null, role));
-                        }
-                    }
-                    locs.add(locId);
-                    final Node ruleNode = XMLTools.getChildNode(constraintNode, "rule");
-                    if (ruleNode != null) {
-                        final String score2 = XMLTools.getAttribute(ruleNode, SCORE_CONSTRAINT_PARAM);
-                        final String booleanOp = XMLTools.getAttribute(ruleNode, "boolean-op");
-                        // TODO: I know only "and", ignoring everything we
-                        // don't know.
-                        final Node expNode = XMLTools.getChildNode(ruleNode, "expression");
-                        if (expNode != null
-                            && "expression".equals(expNode.getNodeName())) {
-                            final String attr = XMLTools.getAttribute(expNode, "attribute");
-                            final String op = XMLTools.getAttribute(expNode, "operation");
-                            final String value = XMLTools.getAttribute(expNode, "value");
-                            if ((booleanOp == null || "and".equals(booleanOp))
-                                && "#uname".equals(attr)
-                                && value != null) {
-                                hostScoreMap.put(value.toLowerCase(Locale.US),
-                                                 new HostLocation(score2, op, null, role));
-                                resHostToLocIdMap.put(rsc, value.toLowerCase(Locale.US), locId);
-                            } else if ((booleanOp == null || "and".equals(booleanOp)) && "pingd".equals(attr)) {
-                                pingLocationMap.put(rsc, new HostLocation(score2, op, value, null));
-                                resPingToLocIdMap.put(rsc, locId);
-                            } else {
-                                LOG.appWarning("parseCibQuery: could not parse rsc_location: " + locId);
-                            }
-                        }
-                    }
+            if ("member".equals(join) && "true".equals(inCCM) && !"offline".equals(crmd)) {
+                nodeOnline.put(uname.toLowerCase(Locale.US), "yes");
+            } else {
+                nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+            }
+            if ("pending".equals(join)) {
+                nodePending.add(uname.toLowerCase(Locale.US));
+            }
+            return true;
+        }
+
+        /** <nvpair> from <transient_attributes> of the node state */
+        void addTransientAttribute(final String uname, final String name, final String value) {
+            parseTransientAttribute(uname, name, value, failedMap, failedClonesMap, pingCountMap);
+        }
+
+        /** <lrm_resource> from <lrm> of the node state */
+        void addLrmResource(final String uname,
+                            final String resId,
+                            final String raClass,
+                            final String provider,
+                            final String type) {
+            parseLrmResource(uname.toLowerCase(Locale.US),
+                             resId,
+                             raClass,
+                             provider,
+                             type,
+                             groupsToResourcesMap.get("none"),
+                             resourceTypeMap,
+                             parametersMap,
+                             inLRMList,
+                             orphanedList,
+                             failedClonesMap);
+        }
+
+        /**
+         * <primitive> from <resources>, from a group or from a clone, with
+         * the parent id. Returns false, if the primitive is not parsed.
+         */
+        boolean addPrimitive(final String parentId,
+                             final String crmId,
+                             final String templateId,
+                             final String raClass,
+                             final String provider,
+                             final String type) {
+            return putPrimitive(crmId,
+                                templateId,
+                                raClass,
+                                provider,
+                                type,
+                                groupsToResourcesMap.get(parentId == null ? "none" : parentId),
+                                resourceTypeMap);
+        }
+
+        /** <group> from <resources> or from a clone, with the parent id. */
+        void addGroup(final String parentId, final String groupId) {
+            addResourceAttributes(groupId);
+            if (parentId != null) {
+                groupsToResourcesMap.get(parentId).add(groupId);
+            }
+            if (!groupsToResourcesMap.containsKey(groupId)) {
+                groupsToResourcesMap.put(groupId, new ArrayList<String>());
+            }
+        }
+
+        /** <clone> or <master> from <resources>, before its attributes and resources. */
+        void addClone(final String cloneId) {
+            if (!groupsToResourcesMap.containsKey(cloneId)) {
+                groupsToResourcesMap.put(cloneId, new ArrayList<String>());
+            }
+            addResourceAttributes(cloneId);
+        }
+
+        /** End of <clone> or <master>, after its resources. */
+        void addCloneEnd(final String cloneId, final boolean master) {
+            final List<String> resList = groupsToResourcesMap.get(cloneId);
+            if (!resList.isEmpty()) {
+                cloneToResourceMap.put(cloneId, resList.get(0));
+                if (master) {
+                    masterList.add(cloneId);
                 }
             }
         }
 
-        /* <status> */
-        final Node statusNode = XMLTools.getChildNode(cibNode, "status");
-        final Set<String> nodePending = new HashSet<String>();
-        if (statusNode != null) {
-            /* <node_state ...> */
-            final NodeList nodes = statusNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node nodeStateNode = nodes.item(i);
-                if ("node_state".equals(nodeStateNode.getNodeName())) {
-                    final String uname = XMLTools.getAttribute(nodeStateNode, "uname");
-                    final String id = XMLTools.getAttribute(nodeStateNode, "id");
-                    if (uname == null || !id.equals(nodeID.get(uname))) {
-                        LOG.appWarning("parseCibQuery: skipping " + uname + ' ' + id);
-                        continue;
-                    }
-                    final String join = XMLTools.getAttribute(nodeStateNode, "join");
-                    final String inCCM = XMLTools.getAttribute(nodeStateNode, "in_ccm");
-                    final String crmd = XMLTools.getAttribute(nodeStateNode, "crmd");
-                    if ("member".equals(join) && "true".equals(inCCM) && !"offline".equals(crmd)) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "yes");
-                    } else {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
-                    }
-                    if ("pending".equals(join)) {
-                        nodePending.add(uname.toLowerCase(Locale.US));
-                    }
-                    final NodeList nodeStates = nodeStateNode.getChildNodes();
-                    /* transient attributes. */
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("transient_attributes".equals(
-                            nodeStateChild.getNodeName())) {
-                            parseTransientAttributes(uname, nodeStateChild, failedMap, failedClonesMap, pingCountMap);
-                        }
-                    }
-                    final List<String> resList =
-                        groupsToResourcesMap.get("none");
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("lrm".equals(nodeStateChild.getNodeName())) {
-                            parseLrmResources(uname.toLowerCase(Locale.US),
-                                    nodeStateChild,
-                                    resList,
-                                    resourceTypeMap,
-                                    parametersMap,
-                                    inLRMList,
-                                    orphanedList,
-                                    failedClonesMap);
-                        }
+        /** Starts the attributes of the primitive, group or clone. */
+        void addResourceAttributes(final String crmId) {
+            parametersMap.put(crmId, new HashMap<String, String>());
+            parametersNvpairsIdsMap.put(crmId, new HashMap<String, String>());
+        }
+
+        /** <instance_attributes> of a primitive or a clone */
+        void addInstanceAttributes(final String crmId, final String id) {
+            resourceInstanceAttrIdMap.put(crmId, id);
+        }
+
+        /** <nvpair> from <instance_attributes> */
+        void addInstanceAttribute(final String crmId,
+                                  final String nvpairId,
+                                  final String name,
+                                  final String value,
+                                  final boolean stonith) {
+            putInstanceAttribute(parametersMap.get(crmId),
+                                 parametersNvpairsIdsMap.get(crmId),
+                                 nvpairId,
+                                 name,
+                                 value,
+                                 stonith);
+        }
+
+        /** <operations>, returns false if it refers to other operations and has no ops. */
+        boolean addOperations(final String crmId, final String id, final String idRef) {
+            if (idRef != null) {
+                operationsIdRefs.put(crmId, idRef);
+                return false;
+            }
+            operationsIdMap.put(crmId, id);
+            operationsIdtoCRMId.put(id, crmId);
+            resOpIdsMap.put(crmId, new HashMap<String, String>());
+            return true;
+        }
+
+        /**
+         * <op> from <operations>, with the first instance attribute of the
+         * op, that has the check level of the monitor op.
+         */
+        void addOperation(final String crmId,
+                          final String opId,
+                          final String name,
+                          final String timeout,
+                          final String interval,
+                          final String startDelay,
+                          final String checkLevelName,
+                          final String checkLevelValue) {
+            final String checkLevel;
+            if (!"monitor".equals(name)) {
+                checkLevel = null;
+            } else if (checkLevelName == null) {
+                checkLevel = "";
+            } else {
+                checkLevel = parseCheckLevel(checkLevelName, checkLevelValue);
+            }
+            putOperation(crmId,
+                         resOpIdsMap.get(crmId),
+                         operationsMap,
+                         opId,
+                         name,
+                         timeout,
+                         interval,
+                         startDelay,
+                         checkLevel);
+        }
+
+        /** <meta_attributes>, returns false if it refers to other meta attributes and has no nvpairs. */
+        boolean addMetaAttributes(final String crmId, final String id, final String idRef) {
+            if (idRef != null) {
+                metaAttrsIdRefs.put(crmId, idRef);
+                return false;
+            }
+            metaAttrsIdMap.put(crmId, id);
+            metaAttrsIdToCRMId.put(id, crmId);
+            return true;
+        }
+
+        /** <nvpair> from <meta_attributes> */
+        void addMetaAttribute(final String crmId,
+                              final String nvpairId,
+                              final String name,
+                              final String value,
+                              final boolean group) {
+            putMetaAttribute(parametersMap.get(crmId),
+                             parametersNvpairsIdsMap.get(crmId),
+                             nvpairId,
+                             name,
+                             value,
+                             group);
+        }
+
+        /** Returns whether the attributes are in <attributes> elements, like before pacemaker. */
+        boolean isBeforePacemaker() {
+            return beforePacemaker;
+        }
+
+        /** Adds the configured resources, so that only the other resources in the LRM are orphaned. */
+        void addConfiguredResources(final CibQuery previous) {
+            for (final Map.Entry<String, ResourceAgent> resourceType : previous.getResourceType().entrySet()) {
+                if (!previous.getOrphaned().contains(resourceType.getKey())) {
+                    resourceTypeMap.put(resourceType.getKey(), resourceType.getValue());
+                }
+            }
+        }
+
+        /** Returns CibQuery with the crm config only, if there are no resources. */
+        CibQuery buildCrmConfigOnly() {
+            final CibQuery cibQueryData = new CibQuery();
+            if (crmConfMap != null) {
+                cibQueryData.setCrmConfig(crmConfMap);
+            }
+            return cibQueryData;
+        }
+
+        CibQuery build() {
+            /* operationsRefs crm id -> crm id */
+            final Map<String, String> operationsRefs = new HashMap<String, String>();
+            for (final String crmId : operationsIdRefs.keySet()) {
+                final String idRef = operationsIdRefs.get(crmId);
+                operationsRefs.put(crmId, operationsIdtoCRMId.get(idRef));
+            }
+
+            /* mettaAttrsRefs crm id -> crm id */
+            final Map<String, String> metaAttrsRefs = new HashMap<String, String>();
+            for (final String crmId : metaAttrsIdRefs.keySet()) {
+                final String idRef = metaAttrsIdRefs.get(crmId);
+                metaAttrsRefs.put(crmId, metaAttrsIdToCRMId.get(idRef));
+            }
+
+            final CibQuery cibQueryData = new CibQuery();
+            if (crmConfMap != null) {
+                cibQueryData.setCrmConfig(crmConfMap);
+            }
+            cibQueryData.setDC(dc);
+            cibQueryData.setNodeParameters(nodeParametersMap);
+            cibQueryData.setResourceParameters(parametersMap);
+            cibQueryData.setResourceParametersNvpairsIds(parametersNvpairsIdsMap);
+            cibQueryData.setResourceType(resourceTypeMap);
+            cibQueryData.setInLRM(inLRMList);
+            cibQueryData.setOrphaned(orphanedList);
+            cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
+
+            cibQueryData.setColocationRsc(colocationRscMap);
+            cibQueryData.setColocationId(colocationIdMap);
+
+            cibQueryData.setOrderId(orderIdMap);
+            cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
+            cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
+            cibQueryData.setRscSetConnections(rscSetConnections);
+            cibQueryData.setOrderRsc(orderRscMap);
+
+            cibQueryData.setLocations(locationMap);
+            cibQueryData.setPingLocations(pingLocationMap);
+            cibQueryData.setLocationsId(locationsIdMap);
+            cibQueryData.setResHostToLocId(resHostToLocIdMap);
+            cibQueryData.setResPingToLocId(resPingToLocIdMap);
+            cibQueryData.setOperations(operationsMap);
+            cibQueryData.setOperationsId(operationsIdMap);
+            cibQueryData.setOperationsRefs(operationsRefs);
+            cibQueryData.setMetaAttrsId(metaAttrsIdMap);
+            cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
+            cibQueryData.setResOpIds(resOpIdsMap);
+            cibQueryData.setNodeOnline(nodeOnline);
+            cibQueryData.setNodePending(nodePending);
+            cibQueryData.setGroupsToResources(groupsToResourcesMap);
+            cibQueryData.setCloneToResource(cloneToResourceMap);
+            cibQueryData.setMasterList(masterList);
+            cibQueryData.setNodeFailedCount(failedMap);
+            cibQueryData.setResourceFailedCloneIds(failedClonesMap);
+            cibQueryData.setNodePingCount(pingCountMap);
+            cibQueryData.setRscDefaultsId(rscDefaultsId);
+            cibQueryData.setRscDefaultsParams(rscDefaultsParams);
+            cibQueryData.setRscDefaultsParamsNvpairIds(rscDefaultsParamsNvpairIds);
+            cibQueryData.setOpDefaultsParams(opDefaultsParams);
+            cibQueryData.setFencedNodes(fencedNodes);
+            return cibQueryData;
+        }
+
+        /**
+         * Returns the previous CibQuery with the dc and the node states of the
+         * changed nodes from this builder. The maps of the previous CibQuery
+         * are copied, not changed, it can be still in use.
+         */
+        CibQuery buildNodeStates(final CibQuery previous, final Set<String> changedNodes) {
+            final Map<String, String> newNodeOnline = new HashMap<String, String>(previous.getNodeOnline());
+            final Set<String> newNodePending = new HashSet<String>(previous.getNodePending());
+            final Table<String, String, String> newFailedMap = HashBasedTable.create(previous.getNodeFailedCount());
+            final Table<String, String, Set<String>> newFailedClonesMap =
+                                                        HashBasedTable.create(previous.getResourceFailedCloneIds());
+            final Map<String, Set<String>> newInLRMList = new HashMap<String, Set<String>>(previous.getInLRM());
+            for (final String node : changedNodes) {
+                newNodeOnline.remove(node);
+                if (nodeOnline.containsKey(node)) {
+                    newNodeOnline.put(node, nodeOnline.get(node));
+                }
+                newNodePending.remove(node);
+                if (nodePending.contains(node)) {
+                    newNodePending.add(node);
+                }
+                newFailedMap.row(node).clear();
+                newFailedMap.row(node).putAll(failedMap.row(node));
+                newFailedClonesMap.row(node).clear();
+                newFailedClonesMap.row(node).putAll(failedClonesMap.row(node));
+                newInLRMList.remove(node);
+                if (inLRMList.containsKey(node)) {
+                    newInLRMList.put(node, inLRMList.get(node));
+                }
+            }
+            /* the ping count is not by the lower case node name */
+            final Map<String, String> newPingCountMap = new HashMap<String, String>();
+            for (final Map.Entry<String, String> pingCount : previous.getNodePingCount().entrySet()) {
+                if (!changedNodes.contains(pingCount.getKey().toLowerCase(Locale.US))) {
+                    newPingCountMap.put(pingCount.getKey(), pingCount.getValue());
+                }
+            }
+            newPingCountMap.putAll(pingCountMap);
+
+            /* orphaned resources stay, as long as they are in the LRM of some node */
+            final Set<String> newOrphanedList = new HashSet<String>();
+            final Map<String, ResourceAgent> newResourceTypeMap =
+                                                        new HashMap<String, ResourceAgent>(previous.getResourceType());
+            final Map<String, Map<String, String>> newParametersMap =
+                                        new HashMap<String, Map<String, String>>(previous.getResourceParameters());
+            final Map<String, List<String>> newGroupsToResourcesMap =
+                                        new LinkedHashMap<String, List<String>>(previous.getGroupsToResources());
+            final List<String> newResList = new ArrayList<String>();
+            if (previous.getGroupsToResources().containsKey("none")) {
+                newResList.addAll(previous.getGroupsToResources().get("none"));
+            }
+            newGroupsToResourcesMap.put("none", newResList);
+            final Set<String> orphans = new LinkedHashSet<String>(previous.getOrphaned());
+            orphans.addAll(orphanedList);
+            for (final String orphan : orphans) {
+                if (isInLRM(newInLRMList, orphan)) {
+                    newOrphanedList.add(orphan);
+                    if (!newResourceTypeMap.containsKey(orphan)) {
+                        newResourceTypeMap.put(orphan, resourceTypeMap.get(orphan));
+                        newParametersMap.put(orphan, new HashMap<String, String>());
+                        newResList.add(orphan);
                     }
+                } else {
+                    newResourceTypeMap.remove(orphan);
+                    newParametersMap.remove(orphan);
+                    newResList.remove(orphan);
+                }
+            }
+
+            final CibQuery cibQueryData = previous.copy();
+            cibQueryData.setDC(dc);
+            cibQueryData.setNodeOnline(newNodeOnline);
+            cibQueryData.setNodePending(newNodePending);
+            cibQueryData.setNodeFailedCount(newFailedMap);
+            cibQueryData.setResourceFailedCloneIds(newFailedClonesMap);
+            cibQueryData.setNodePingCount(newPingCountMap);
+            cibQueryData.setInLRM(newInLRMList);
+            cibQueryData.setOrphaned(newOrphanedList);
+            cibQueryData.setResourceType(newResourceTypeMap);
+            cibQueryData.setResourceParameters(newParametersMap);
+            cibQueryData.setGroupsToResources(newGroupsToResourcesMap);
+            return cibQueryData;
+        }
+
+        private boolean isInLRM(final Map<String, Set<String>> inLRM, final String resId) {
+            for (final Set<String> resources : inLRM.values()) {
+                if (resources.contains(resId)) {
+                    return true;
                 }
             }
+            return false;
         }
-        cibQueryData.setDC(dc);
-        cibQueryData.setNodeParameters(nodeParametersMap);
-        cibQueryData.setResourceParameters(parametersMap);
-        cibQueryData.setResourceParametersNvpairsIds(parametersNvpairsIdsMap);
-        cibQueryData.setResourceType(resourceTypeMap);
-        cibQueryData.setInLRM(inLRMList);
-        cibQueryData.setOrphaned(orphanedList);
-        cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
-
-        cibQueryData.setColocationRsc(colocationRscMap);
-        cibQueryData.setColocationId(colocationIdMap);
-
-        cibQueryData.setOrderId(orderIdMap);
-        cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
-        cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
-        cibQueryData.setRscSetConnections(rscSetConnections);
-        cibQueryData.setOrderRsc(orderRscMap);
-
-        cibQueryData.setLocations(locationMap);
-        cibQueryData.setPingLocations(pingLocationMap);
-        cibQueryData.setLocationsId(locationsIdMap);
-        cibQueryData.setResHostToLocId(resHostToLocIdMap);
-        cibQueryData.setResPingToLocId(resPingToLocIdMap);
-        cibQueryData.setOperations(operationsMap);
-        cibQueryData.setOperationsId(operationsIdMap);
-        cibQueryData.setOperationsRefs(operationsRefs);
-        cibQueryData.setMetaAttrsId(metaAttrsIdMap);
-        cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
-        cibQueryData.setResOpIds(resOpIdsMap);
-        cibQueryData.setNodeOnline(nodeOnline);
-        cibQueryData.setNodePending(nodePending);
-        cibQueryData.setGroupsToResources(groupsToResourcesMap);
-        cibQueryData.setCloneToResource(cloneToResourceMap);
-        cibQueryData.setMasterList(masterList);
-        cibQueryData.setNodeFailedCount(failedMap);
-        cibQueryData.setResourceFailedCloneIds(failedClonesMap);
-        cibQueryData.setNodePingCount(pingCountMap);
-        cibQueryData.setRscDefaultsId(rscDefaultsId);
-        cibQueryData.setRscDefaultsParams(rscDefaultsParams);
-        cibQueryData.setRscDefaultsParamsNvpairIds(rscDefaultsParamsNvpairIds);
-        cibQueryData.setOpDefaultsParams(opDefaultsParams);
-        cibQueryData.setFencedNodes(fencedNodes);
-        return cibQueryData;
     }
 
     public String[] getOrderParameters() {
@@ -3235,44 +3897,61 @@ public class CrmXml {
         for (int j = 0; j < lrmResources.getLength(); j++) {
             final Node rscNode = lrmResources.item(j);
             if ("lrm_resource".equals(rscNode.getNodeName())) {
-                final String resId = XMLTools.getAttribute(rscNode, "id");
-                final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                final Matcher m = p.matcher(resId);
-                final String crmId;
-                if (m.matches()) {
-                    crmId = m.group(1);
-                    Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
-                    if (clones == null) {
-                        clones = new LinkedHashSet<String>();
-                        failedClonesMap.put(unameLowerCase, crmId, clones);
-                    }
-                    clones.add(m.group(2));
-                } else {
-                    crmId = resId;
-                }
-                if (!resourceTypeMap.containsKey(crmId)) {
-                    final String raClass = XMLTools.getAttribute(rscNode, "class");
-                    String provider = XMLTools.getAttribute(rscNode, "provider");
-                    if (provider == null) {
-                        provider = ResourceAgent.HEARTBEAT_PROVIDER;
-                    }
-                    final String type = XMLTools.getAttribute(rscNode, "type");
-                    resourceTypeMap.put(crmId, getResourceAgent(type, provider, raClass));
-                    resList.add(crmId);
-                    parametersMap.put(crmId, new HashMap<String, String>());
-                    orphanedList.add(crmId);
-                }
-                /* it is in LRM */
-                Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
-                if (inLRMOnHost == null) {
-                    inLRMOnHost = new HashSet<String>();
-                    inLRMList.put(unameLowerCase, inLRMOnHost);
-                }
-                inLRMOnHost.add(crmId);
+                parseLrmResource(unameLowerCase,
+                                 XMLTools.getAttribute(rscNode, "id"),
+                                 XMLTools.getAttribute(rscNode, "class"),
+                                 XMLTools.getAttribute(rscNode, "provider"),
+                                 XMLTools.getAttribute(rscNode, "type"),
+                                 resList,
+                                 resourceTypeMap,
+                                 parametersMap,
+                                 inLRMList,
+                                 orphanedList,
+                                 failedClonesMap);
             }
         }
     }
 
+    private void parseLrmResource(final String unameLowerCase,
+                                  final String resId,
+                                  final String raClass,
+                                  final String provider,
+                                  final String type,
+                                  final Collection<String> resList,
+                                  final Map<String, ResourceAgent> resourceTypeMap,
+                                  final Map<String, Map<String, String>> parametersMap,
+                                  final Map<String, Set<String>> inLRMList,
+                                  final Collection<String> orphanedList,
+                                  final Table<String, String, Set<String>> failedClonesMap) {
+        final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+        final String crmId;
+        if (m.matches()) {
+            crmId = m.group(1);
+            Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
+            if (clones == null) {
+                clones = new LinkedHashSet<String>();
+                failedClonesMap.put(unameLowerCase, crmId, clones);
+            }
+            clones.add(m.group(2));
+        } else {
+            crmId = resId;
+        }
+        if (!resourceTypeMap.containsKey(crmId)) {
+            final String raProvider = provider == null ? ResourceAgent.HEARTBEAT_PROVIDER : provider;
+            resourceTypeMap.put(crmId, getResourceAgent(type, raProvider, raClass));
+            resList.add(crmId);
+            parametersMap.put(crmId, new HashMap<String, String>());
+            orphanedList.add(crmId);
+        }
+        /* it is in LRM */
+        Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
+        if (inLRMOnHost == null) {
+            inLRMOnHost = new HashSet<String>();
+            inLRMList.put(unameLowerCase, inLRMOnHost);
+        }
+        inLRMOnHost.add(crmId);
+    }
+
     private Unit parseUnit(final String param, final String u) {
         if ("s".equals(u) || "".equals(u)) {
             return getUnitSecond();
@@ -0,0 +1,190 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import com.google.common.hash.Hashing;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Keeps the meta-data of the OCF and stonith resource agents on the local
+ * disk, so that the next connect to the same cluster doesn't have to run
+ * meta-data of every resource agent again.
+ *
+ * There is one file per host and software versions. Every resource agent is
+ * stored with the checksum of its file on the host, the entries, whose
+ * checksum changed, are fetched from the host again.
+ */
+@Named
+@Singleton
+public class ResourceAgentMetaDataCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceAgentMetaDataCache.class);
+    private static final String CACHE_VERSION = "1";
+    private static final String HEADER_PREFIX = "ra-metadata-cache-version:";
+    private static final String ENTRY_PREFIX = "@@ ";
+
+    private final Path cacheDir = Paths.get(Tools.getDefault("CrmXml.RaMetaDataCacheDir"));
+
+    /** Returns cached meta-data for the cache key, by "class:provider:name". */
+    public synchronized Map<String, Entry> load(final String cacheKey) {
+        final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        final Path file = getCacheFile(cacheKey);
+        try (final BufferedReader in = new BufferedReader(new InputStreamReader(
+                                              new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            final String header = in.readLine();
+            if (header == null || !header.equals(getHeader(cacheKey))) {
+                LOG.debug("load: ignoring old ra cache: " + file);
+                return entries;
+            }
+            String[] entryInfo = null;
+            final StringBuilder metaData = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(ENTRY_PREFIX)) {
+                    addEntry(entries, entryInfo, metaData);
+                    entryInfo = line.substring(ENTRY_PREFIX.length()).split(" ");
+                    metaData.setLength(0);
+                } else {
+                    metaData.append(line).append('\n');
+                }
+            }
+            addEntry(entries, entryInfo, metaData);
+        } catch (final NoSuchFileException e) {
+            LOG.debug("load: no ra cache for: " + cacheKey);
+        } catch (final IOException e) {
+            LOG.appWarning("load: could not read the ra cache: " + file, e);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    public synchronized void save(final String cacheKey, final Collection<Entry> entries) {
+        final Path file = getCacheFile(cacheKey);
+        try {
+            Files.createDirectories(cacheDir);
+            final Path tmpFile = Files.createTempFile(cacheDir, "ra-", ".tmp");
+            try (final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                                            new GZIPOutputStream(Files.newOutputStream(tmpFile)), StandardCharsets.UTF_8))) {
+                out.write(getHeader(cacheKey));
+                out.write('\n');
+                for (final Entry entry : entries) {
+                    out.write(ENTRY_PREFIX + entry.getRaKey() + ' ' + entry.getChecksum() + ' '
+                              + (entry.isMasterSlave() ? '1' : '0') + '\n');
+                    out.write(entry.getMetaData());
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug1("save: saved " + entries.size() + " resource agents: " + file);
+        } catch (final IOException e) {
+            LOG.appWarning("save: could not write the ra cache: " + file, e);
+        }
+    }
+
+    private void addEntry(final Map<String, Entry> entries, final String[] entryInfo, final CharSequence metaData) {
+        if (entryInfo == null) {
+            return;
+        }
+        if (entryInfo.length != 3) {
+            LOG.appWarning("addEntry: wrong ra cache entry: " + Tools.join(" ", entryInfo));
+            return;
+        }
+        final Entry entry = new Entry(entryInfo[0], entryInfo[1], "1".equals(entryInfo[2]), metaData.toString());
+        if (entry.getServiceName() != null) {
+            entries.put(entry.getRaKey(), entry);
+        }
+    }
+
+    private Path getCacheFile(final String cacheKey) {
+        return cacheDir.resolve(Hashing.sha1().hashString(cacheKey, StandardCharsets.UTF_8) + ".gz");
+    }
+
+    private String getHeader(final String cacheKey) {
+        return HEADER_PREFIX + CACHE_VERSION + ' ' + cacheKey;
+    }
+
+    /** Meta-data of one resource agent as it came from the host. */
+    public static final class Entry {
+        /** "class:provider:name" */
+        private final String raKey;
+        private final String checksum;
+        private final boolean masterSlave;
+        private final String metaData;
+
+        public Entry(final String raKey, final String checksum, final boolean masterSlave, final String metaData) {
+            this.raKey = raKey;
+            this.checksum = checksum;
+            this.masterSlave = masterSlave;
+            this.metaData = metaData;
+        }
+
+        public static String getRaKey(final String raClass, final String provider, final String serviceName) {
+            return raClass + ':' + provider + ':' + serviceName;
+        }
+
+        public String getRaKey() {
+            return raKey;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public boolean isMasterSlave() {
+            return masterSlave;
+        }
+
+        public String getMetaData() {
+            return metaData;
+        }
+
+        String getProvider() {
+            final String[] parts = raKey.split(":", 3);
+            return parts.length == 3 ? parts[1] : null;
+        }
+
+        String getServiceName() {
+            final String[] parts = raKey.split(":", 3);
+            return parts.length == 3 ? parts[2] : null;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 
 package lcmc.crm.service;
 
+import com.google.common.hash.Hashing;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
 import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.common.domain.Application;
@@ -29,10 +30,14 @@ import lcmc.common.domain.util.Tools;
 import lcmc.configs.DistResource;
 import lcmc.crm.domain.CrmXml;
 import lcmc.crm.domain.HostLocation;
+import lcmc.crm.domain.PtestData;
 import lcmc.host.domain.Host;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -53,13 +58,30 @@ public final class CRM {
     public static final String CIB_OP_MODIFY = "-M";
     public static final String CIB_OP_CREATE = "-C";
     public static final String CIB_OP_REPLACE = "-R";
-    /** Output of the ptest. */
-    private static volatile String ptestOutput = null;
+    /** Number of the cached ptest results. */
+    private static final int PTEST_CACHE_SIZE = 16;
+    /**
+     * Cached ptest results, by the host, the cib version and the test
+     * commands. Hosts are compared by identity, not by name, and the cib
+     * versions are unique in all cluster statuses.
+     */
+    private static final Map<List<Object>, PtestData> PTEST_CACHE =
+                        new LinkedHashMap<List<Object>, PtestData>() {
+                            @Override
+                            protected boolean removeEldestEntry(final Map.Entry<List<Object>, PtestData> eldest) {
+                                return size() > PTEST_CACHE_SIZE;
+                            }
+                        };
+    /** Test commands, that were not tested yet. */
+    private static final Map<Host, List<String>> TEST_COMMANDS = new HashMap<Host, List<String>>();
+    private static final SshOutput TEST_COMMAND_OUTPUT = new SshOutput("", 0);
     private static final ReadWriteLock M_PTEST_LOCK = new ReentrantReadWriteLock();
     private static final Lock M_PTEST_READLOCK = M_PTEST_LOCK.readLock();
     private static final Lock M_PTEST_WRITELOCK = M_PTEST_LOCK.writeLock();
     /** Delimiter that delimits the ptest and test cib part. */
     public static final String PTEST_END_DELIM = "--- PTEST END ---";
+    /** Lines of the ptest output, that are parsed. */
+    private static final String PTEST_ACTIONS_FILTER = "LogActions:|print_elem:";
     /** Location of lcmc-test.xml file. */
     public static final String LCMC_TEST_FILE = "/tmp/lcmc-test-" + UUID.randomUUID() + ".xml";
 
@@ -74,65 +96,92 @@ public final class CRM {
         return cmd.toString();
     }
 
-    /** Executes specified command on the host. */
+    /**
+     * Executes specified command on the host. In the test mode the command
+     * is only added to the test commands of the host, that run together
+     * with the ptest.
+     */
     private static SshOutput execCommand(final Host host, final String command, final Application.RunMode runMode) {
-        M_PTEST_WRITELOCK.lock();
-        try {
-            ptestOutput = null;
-        } finally {
-            M_PTEST_WRITELOCK.unlock();
-        }
         if (Application.isTest(runMode)) {
-            final String testCmd =
-                "if [ ! -e " + LCMC_TEST_FILE + " ]; "
-             + "then " + DistResource.SUDO + "/usr/sbin/cibadmin -Ql > "
-             + LCMC_TEST_FILE + ".new"
-             + ";mv " + LCMC_TEST_FILE + ".new " + LCMC_TEST_FILE
-             + ";fi;"
-             + "export CIB_file=" + LCMC_TEST_FILE + ';';
-            return host.captureCommand(new ExecCommandConfig().command(testCmd + command)
-                                                              .silentCommand()
-                                                              .silentOutput());
+            M_PTEST_WRITELOCK.lock();
+            try {
+                List<String> commands = TEST_COMMANDS.get(host);
+                if (commands == null) {
+                    commands = new ArrayList<String>();
+                    TEST_COMMANDS.put(host, commands);
+                }
+                commands.add(command);
+            } finally {
+                M_PTEST_WRITELOCK.unlock();
+            }
+            return TEST_COMMAND_OUTPUT;
         } else {
+            M_PTEST_WRITELOCK.lock();
+            try {
+                PTEST_CACHE.clear();
+            } finally {
+                M_PTEST_WRITELOCK.unlock();
+            }
             LOG.debug1("execCommand: crm command: " + command);
             return host.captureCommandProgressIndicator(Tools.getString("CIB.ExecutingCommand"),
                                                         new ExecCommandConfig().command(command));
         }
     }
 
-    /** Executes the ptest command and returns results. */
-    public static String getPtest(final Host host) {
+    /**
+     * Executes the test commands and the ptest command and returns results.
+     * The test commands run on the copy of the cib in one ssh command. The
+     * results are cached with the cib version and the test commands, so
+     * that the same changes on the same cib are not tested again.
+     */
+    public static PtestData getPtest(final Host host, final long cibVersion) {
+        final List<String> commands;
+        M_PTEST_WRITELOCK.lock();
+        try {
+            commands = TEST_COMMANDS.remove(host);
+        } finally {
+            M_PTEST_WRITELOCK.unlock();
+        }
+        final String testCommands = commands == null ? "" : Tools.join("\n", commands);
+        final List<Object> key = Arrays.<Object>asList(host,
+                                                       cibVersion,
+                                                       Hashing.md5().hashString(testCommands, StandardCharsets.UTF_8));
         M_PTEST_READLOCK.lock();
         try {
-            if (ptestOutput != null) {
-                return ptestOutput;
+            final PtestData ptestData = PTEST_CACHE.get(key);
+            if (ptestData != null) {
+                LOG.debug1("getPtest: cached: " + host.getName() + ' ' + cibVersion);
+                return ptestData;
             }
         } finally {
             M_PTEST_READLOCK.unlock();
         }
-        final String command = "export PROG=/usr/sbin/crm_simulate;"
+        final String command = DistResource.SUDO + "/usr/sbin/cibadmin -Ql > " + LCMC_TEST_FILE + ".new;"
+                               + "mv " + LCMC_TEST_FILE + ".new " + LCMC_TEST_FILE + ';'
+                               + "export CIB_file=" + LCMC_TEST_FILE + ";\n"
+                               + testCommands
+                               + "\nexport PROG=/usr/sbin/crm_simulate;"
                                + "if [ -e /usr/sbin/ptest ];"
                                + " then export PROG=/usr/sbin/ptest; "
                                + "fi;"
                                + DistResource.SUDO + "$PROG -VVVVV -S -x "
                                + LCMC_TEST_FILE
-                               + " 2>&1;echo '"
+                               /* only the actions are used */
+                               + " 2>&1|grep -i -E '" + PTEST_ACTIONS_FILTER + "';echo '"
                                + PTEST_END_DELIM
                                + "';cat " + LCMC_TEST_FILE + " 2>/dev/null;"
                                + "mv -f " + LCMC_TEST_FILE + "{,.last} 2>/dev/null";
         final SshOutput output = host.captureCommand(new ExecCommandConfig().command(command)
                                                                             .silentCommand()
                                                                             .silentOutput());
+        final PtestData ptestData = new PtestData(output.getOutput());
         M_PTEST_WRITELOCK.lock();
         try {
-            final String po = output.getOutput();
-            if (ptestOutput == null) {
-                ptestOutput = po;
-            }
-            return po;
+            PTEST_CACHE.put(key, ptestData);
         } finally {
             M_PTEST_WRITELOCK.unlock();
         }
+        return ptestData;
     }
 
     private static String getPrimitiveXML(final Host host,
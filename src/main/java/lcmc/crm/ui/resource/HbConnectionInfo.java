@@ -322,7 +322,7 @@ public class HbConnectionInfo extends EditableInfo {
                     final ClusterStatus clStatus = getBrowser().getClusterStatus();
                     clStatus.setPtestResult(null);
                     apply(dcHost, Application.RunMode.TEST);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
+                    final PtestData ptestData = CRM.getPtest(dcHost, clStatus.getCibVersion());
                     component.setToolTipText(ptestData.getToolTip());
                     clStatus.setPtestResult(ptestData);
                 } finally {
@@ -292,8 +292,8 @@ public class HostInfo extends Info {
                 try {
                     final ClusterStatus clStatus = getBrowser().getClusterBrowser().getClusterStatus();
                     clStatus.setPtestResult(null);
-                    CRM.crmConfigureCommit(host, ta.getText(), Application.RunMode.TEST);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
+                    CRM.crmConfigureCommit(dcHost, ta.getText(), Application.RunMode.TEST);
+                    final PtestData ptestData = CRM.getPtest(dcHost, clStatus.getCibVersion());
                     component.setToolTipText(ptestData.getToolTip());
                     clStatus.setPtestResult(ptestData);
                 } finally {
@@ -237,7 +237,7 @@ public class PcmkMultiSelectionInfo extends EditableInfo {
                     final ClusterStatus cs = getBrowser().getClusterStatus();
                     cs.setPtestResult(null);
                     apply(dcHost, Application.RunMode.TEST);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
+                    final PtestData ptestData = CRM.getPtest(dcHost, cs.getCibVersion());
                     component.setToolTipText(ptestData.getToolTip());
                     cs.setPtestResult(ptestData);
                 } finally {
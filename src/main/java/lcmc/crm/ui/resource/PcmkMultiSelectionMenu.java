@@ -29,6 +29,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.swing.JColorChooser;
 
+import lcmc.cluster.service.HostFanOut;
 import lcmc.common.ui.Access;
 import lcmc.common.ui.CallbackAction;
 import lcmc.common.ui.main.MainData;
@@ -66,6 +67,8 @@ public class PcmkMultiSelectionMenu {
     private MainData mainData;
     @Inject
     private Access access;
+    @Inject
+    private HostFanOut hostFanOut;
 
     public List<UpdatableItem> getPulldownMenu(final PcmkMultiSelectionInfo pcmkMultiSelectionInfo) {
         this.pcmkMultiSelectionInfo = pcmkMultiSelectionInfo;
@@ -245,8 +248,7 @@ public class PcmkMultiSelectionMenu {
                                     for (final HostInfo hi : selectedHostInfos) {
                                         hi.getHost().getHostParser().setCommLayerStopping(true);
                                     }
-                                    for (final HostInfo hi : selectedHostInfos) {
-                                        val host = hi.getHost();
+                                    hostFanOut.run(text, getHosts(selectedHostInfos), host -> {
                                         val hostParser = host.getHostParser();
                                         if (!hostParser.isPcmkStartedByCorosync()
                                                 && hostParser.hasPacemakerInitScript()
@@ -263,7 +265,7 @@ public class PcmkMultiSelectionMenu {
                                                 Openais.stopOpenais(host);
                                             }
                                         }
-                                    }
+                                    });
 
                                     for (final HostInfo hi : selectedHostInfos) {
                                         getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
@@ -315,10 +317,7 @@ public class PcmkMultiSelectionMenu {
                                     for (final HostInfo hi : selectedHostInfos) {
                                         hi.getHost().getHostParser().setCommLayerStopping(true);
                                     }
-                                    for (final HostInfo hi : selectedHostInfos) {
-                                        final Host host = hi.getHost();
-                                        Heartbeat.stopHeartbeat(host);
-                                    }
+                                    hostFanOut.run(text, getHosts(selectedHostInfos), Heartbeat::stopHeartbeat);
                                     for (final HostInfo hi : selectedHostInfos) {
                                         getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                                     }
@@ -384,14 +383,13 @@ public class PcmkMultiSelectionMenu {
                                 for (final HostInfo hi : selectedHostInfos) {
                                     hi.getHost().getHostParser().setCommLayerStarting(true);
                                 }
-                                for (final HostInfo hi : selectedHostInfos) {
-                                    final Host h = hi.getHost();
+                                hostFanOut.run(text, getHosts(selectedHostInfos), h -> {
                                     if (h.getHostParser().isPacemakerInRc()) {
                                         Corosync.startCorosyncWithPcmk(h);
                                     } else {
                                         Corosync.startCorosync(h);
                                     }
-                                }
+                                });
                                 for (final HostInfo hi : selectedHostInfos) {
                                     getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                                 }
@@ -449,8 +447,8 @@ public class PcmkMultiSelectionMenu {
                             public void run(final String text) {
                                 for (final HostInfo hi : selectedHostInfos) {
                                     hi.getHost().getHostParser().setCommLayerStarting(true);
-                                    Openais.startOpenais(hi.getHost());
                                 }
+                                hostFanOut.run(text, getHosts(selectedHostInfos), Openais::startOpenais);
                                 for (final HostInfo hi : selectedHostInfos) {
                                     getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                                 }
@@ -497,9 +495,7 @@ public class PcmkMultiSelectionMenu {
                                 for (final HostInfo hi : selectedHostInfos) {
                                     hi.getHost().getHostParser().setCommLayerStarting(true);
                                 }
-                                for (final HostInfo hi : selectedHostInfos) {
-                                    Heartbeat.startHeartbeat(hi.getHost());
-                                }
+                                hostFanOut.run(text, getHosts(selectedHostInfos), Heartbeat::startHeartbeat);
                                 for (final HostInfo hi : selectedHostInfos) {
                                     getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                                 }
@@ -543,9 +539,7 @@ public class PcmkMultiSelectionMenu {
                         .addAction(new MenuAction() {
                             @Override
                             public void run(final String text) {
-                                for (final HostInfo hi : selectedHostInfos) {
-                                    Corosync.startPacemaker(hi.getHost());
-                                }
+                                hostFanOut.run(text, getHosts(selectedHostInfos), Corosync::startPacemaker);
                                 for (final HostInfo hi : selectedHostInfos) {
                                     getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                                 }
@@ -1143,4 +1137,12 @@ public class PcmkMultiSelectionMenu {
     private ClusterBrowser getBrowser() {
         return pcmkMultiSelectionInfo.getBrowser();
     }
+
+    private List<Host> getHosts(final Iterable<HostInfo> hostInfos) {
+        final List<Host> hosts = new ArrayList<Host>();
+        for (final HostInfo hi : hostInfos) {
+            hosts.add(hi.getHost());
+        }
+        return hosts;
+    }
 }
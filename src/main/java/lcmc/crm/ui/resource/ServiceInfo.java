@@ -2285,7 +2285,7 @@ public class ServiceInfo extends EditableInfo {
                     final ClusterStatus cs = getBrowser().getClusterStatus();
                     cs.setPtestResult(null);
                     apply(dcHost, Application.RunMode.TEST);
-                    final PtestData ptestData = new PtestData(CRM.getPtest(dcHost));
+                    final PtestData ptestData = CRM.getPtest(dcHost, cs.getCibVersion());
                     component.setToolTipText(ptestData.getToolTip());
                     cs.setPtestResult(ptestData);
                 } finally {
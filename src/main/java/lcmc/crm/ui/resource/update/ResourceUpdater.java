@@ -61,6 +61,8 @@ public class ResourceUpdater {
     private ClusterBrowser browser;
     private ClusterStatus clusterStatus;
     private Application.RunMode runMode;
+    /** Resources, whose parameters have to be set, absent for all of them. */
+    private Optional<Set<String>> changedCrmIds = Optional.absent();
     private ServicesInfo servicesInfo;
     @Inject
     private Provider<ConstraintPHInfo> constraintPHInfoProvider;
@@ -83,6 +85,20 @@ public class ResourceUpdater {
                                    final ClusterBrowser browser,
                                    final ClusterStatus clusterStatus,
                                    final Application.RunMode runMode) {
+        updateAllResources(servicesInfo, browser, clusterStatus, runMode, Optional.<Set<String>>absent());
+    }
+
+    /**
+     * Same as above, but the parameters are set only for the resources in
+     * changedCrmIds, if they are known. The presence of all resources and
+     * constraints is still checked.
+     */
+    public void updateAllResources(final ServicesInfo servicesInfo,
+                                   final ClusterBrowser browser,
+                                   final ClusterStatus clusterStatus,
+                                   final Application.RunMode runMode,
+                                   final Optional<Set<String>> changedCrmIds) {
+        this.changedCrmIds = changedCrmIds;
         this.servicesInfo = servicesInfo;
         this.browser = browser;
         this.clusterStatus = clusterStatus;
@@ -113,6 +129,10 @@ public class ResourceUpdater {
         crmGraph.updateRemovedElements(serviceIsPresent);
     }
 
+    private boolean isChanged(final String crmId) {
+        return !changedCrmIds.isPresent() || changedCrmIds.get().contains(crmId);
+    }
+
     private void updateOrders() {
         final Map<String, List<CrmXml.OrderData>> orderMap = clusterStatus.getOrderRscMap();
         for (final Map.Entry<String, List<CrmXml.OrderData>> orderEntry : orderMap.entrySet()) {
@@ -172,8 +192,10 @@ public class ResourceUpdater {
     }
 
     private void updateExistingClone(final CloneInfo newCi) {
-        final Map<String, String> resourceNode = clusterStatus.getParamValuePairs(newCi.getHeartbeatId(runMode));
-        newCi.setParameters(resourceNode);
+        if (isChanged(newCi.getHeartbeatId(runMode))) {
+            final Map<String, String> resourceNode = clusterStatus.getParamValuePairs(newCi.getHeartbeatId(runMode));
+            newCi.setParameters(resourceNode);
+        }
         if (Application.isLive(runMode)) {
             newCi.setUpdated(false);
             browser.repaint();
@@ -207,8 +229,10 @@ public class ResourceUpdater {
     }
 
     private void updateExistingGroup(final GroupInfo newGi) {
-        final Map<String, String> resourceNode = clusterStatus.getParamValuePairs(newGi.getHeartbeatId(runMode));
-        newGi.setParameters(resourceNode);
+        if (isChanged(newGi.getHeartbeatId(runMode))) {
+            final Map<String, String> resourceNode = clusterStatus.getParamValuePairs(newGi.getHeartbeatId(runMode));
+            newGi.setParameters(resourceNode);
+        }
         if (Application.isLive(runMode)) {
             newGi.setUpdated(false);
             browser.repaint();
@@ -234,10 +258,13 @@ public class ResourceUpdater {
 
     private void setGroupResources(final String grpOrCloneId, final GroupInfo newGi, final CloneInfo newCi) {
         final Map<ServiceInfo, Map<String, String>> setParametersHash = new HashMap<ServiceInfo, Map<String, String>>();
+        /* null parameters are not set, but the service is still marked as updated */
+        final Map<String, String> groupOrCloneParameters =
+                isChanged(grpOrCloneId) ? clusterStatus.getParamValuePairs(grpOrCloneId) : null;
         if (newCi != null) {
-            setParametersHash.put(newCi, clusterStatus.getParamValuePairs(grpOrCloneId));
+            setParametersHash.put(newCi, groupOrCloneParameters);
         } else if (newGi != null) {
-            setParametersHash.put(newGi, clusterStatus.getParamValuePairs(grpOrCloneId));
+            setParametersHash.put(newGi, groupOrCloneParameters);
         }
         final Optional<List<String>> groupResources = clusterStatus.getGroupResources(grpOrCloneId, runMode);
         if (!groupResources.isPresent()) {
@@ -334,7 +361,7 @@ public class ResourceUpdater {
 
         private void updateService(final ServiceInfo newServiceInfo, final Map<String, String> resourceNode) {
             browser.addNameToServiceInfoHash(newServiceInfo);
-            setParametersHash.put(newServiceInfo, resourceNode);
+            setParametersHash.put(newServiceInfo, isChanged(hbId) ? resourceNode : null);
         }
 
         private ServiceInfo createNewService(ResourceAgent newResourceAgent, Map<String, String> resourceNode) {
@@ -0,0 +1,441 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.drbd.domain;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lcmc.common.domain.StringValue;
+import lcmc.common.domain.Unit;
+import lcmc.common.domain.Value;
+import lcmc.common.domain.XMLTools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * DRBD parameter metadata parsed from the drbdsetup xml-help output: the
+ * parameters, their sections, types, defaults, limits and units.
+ *
+ * The metadata changes only with the DRBD version, so the catalog is parsed
+ * once per distinct xml-help output and shared by all the DrbdXml objects.
+ * It is not changed after it was parsed. The choices, that depend on the
+ * hosts, like the crypto modules, are kept in the DrbdXml.
+ */
+final class DrbdParameterCatalog {
+    private static final Logger LOG = LoggerFactory.getLogger(DrbdParameterCatalog.class);
+    private static final Pattern COMMAND_BEGIN_PATTERN = Pattern.compile("^<command name=\"(.*?)\".*");
+    private static final Pattern COMMAND_END_PATTERN = Pattern.compile("^</command>$");
+    private static final BigInteger KILO = new BigInteger("1024");
+    /** Catalogs of the last few DRBD versions, the outputs are the key. */
+    private static final int MAX_CATALOGS = 4;
+    private static final Map<List<Object>, DrbdParameterCatalog> CATALOGS =
+            new LinkedHashMap<List<Object>, DrbdParameterCatalog>(MAX_CATALOGS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<Object>, DrbdParameterCatalog> eldest) {
+                    return size() > MAX_CATALOGS;
+                }
+            };
+
+    static final DrbdParameterCatalog EMPTY = new DrbdParameterCatalog(Collections.<String>emptyList(), false);
+
+    private final List<String> outputs;
+    private final boolean withResourceName;
+    private final Map<String, DrbdXml.DrbdParam> drbdParamMap = new HashMap<String, DrbdXml.DrbdParam>();
+    /** Map from section to this section's parameters. */
+    private final Map<String, List<String>> sectionParamsMap = new LinkedHashMap<String, List<String>>();
+    /** List of all parameters. */
+    private final List<String> parametersList = new ArrayList<String>();
+    /** List of all global parameters. */
+    private final List<String> globalParametersList = new ArrayList<String>();
+    /** List of all required parameters. */
+    private final Collection<String> requiredParametersList = new HashSet<String>();
+
+    /**
+     * Returns the catalog for the xml-help outputs of the hosts. With more
+     * different outputs, the parameters are merged, the later output wins.
+     * The "name" parameter of the resource section is added, if
+     * withResourceName is true.
+     */
+    static DrbdParameterCatalog get(final List<String> outputs, final boolean withResourceName) {
+        final List<Object> key = Arrays.<Object>asList(withResourceName, new ArrayList<String>(outputs));
+        synchronized (CATALOGS) {
+            DrbdParameterCatalog catalog = CATALOGS.get(key);
+            if (catalog == null) {
+                LOG.debug1("get: parse drbd parameters, outputs: {}", outputs.size());
+                catalog = new DrbdParameterCatalog(outputs, withResourceName);
+                CATALOGS.put(key, catalog);
+            }
+            return catalog;
+        }
+    }
+
+    private DrbdParameterCatalog(final List<String> outputs, final boolean withResourceName) {
+        this.outputs = Collections.unmodifiableList(new ArrayList<String>(outputs));
+        this.withResourceName = withResourceName;
+        if (withResourceName) {
+            addSpecialParameter("resource", "name", true);
+        }
+        for (final String output : outputs) {
+            parseDrbdParameters(output);
+        }
+        if (!parametersList.contains(DrbdXml.PROTOCOL_PARAM)) {
+            /* prior 8.4 */
+            addParameter("resource", DrbdXml.PROTOCOL_PARAM, new StringValue(), DrbdXml.PROTOCOLS, true);
+        }
+        for (final DrbdXml.DrbdParam drbdParam : drbdParamMap.values()) {
+            if (drbdParam.items() != null) {
+                drbdParam.items(Collections.unmodifiableList(drbdParam.items()));
+            }
+        }
+        for (final Map.Entry<String, List<String>> sectionParams : sectionParamsMap.entrySet()) {
+            sectionParams.setValue(Collections.unmodifiableList(sectionParams.getValue()));
+        }
+    }
+
+    List<String> getOutputs() {
+        return outputs;
+    }
+
+    boolean isWithResourceName() {
+        return withResourceName;
+    }
+
+    /** Returns the parameter or null, if there is no such parameter. */
+    DrbdXml.DrbdParam getParam(final String param) {
+        return drbdParamMap.get(param);
+    }
+
+    List<String> getParameters() {
+        return Collections.unmodifiableList(parametersList);
+    }
+
+    List<String> getGlobalParameters() {
+        return Collections.unmodifiableList(globalParametersList);
+    }
+
+    boolean isRequired(final String param) {
+        return requiredParametersList.contains(param);
+    }
+
+    Collection<String> getSections() {
+        return Collections.unmodifiableSet(sectionParamsMap.keySet());
+    }
+
+    /** Returns parameters of the section or null. */
+    List<String> getSectionParams(final String section) {
+        return sectionParamsMap.get(section);
+    }
+
+    boolean hasSection(final String section) {
+        return sectionParamsMap.containsKey(section);
+    }
+
+    String getUnitLong(final String param) {
+        final DrbdXml.DrbdParam drbdParam = drbdParamMap.get(param);
+        return drbdParam == null ? null : drbdParam.unitLong();
+    }
+
+    String getDefaultUnit(final String param) {
+        final DrbdXml.DrbdParam drbdParam = drbdParamMap.get(param);
+        return drbdParam == null ? null : drbdParam.defaultUnit();
+    }
+
+    boolean hasUnitPrefix(final String param) {
+        final String unit = getUnitLong(param);
+        return getDefaultUnit(param) != null
+               && (unit == null || "bytes".equals(unit) || "bytes/second".equals(unit));
+    }
+
+    Unit parseUnit(final String param, final String u) {
+        if (!hasUnitPrefix(param)) {
+            return null;
+        }
+        final String unitType = getUnitLong(param);
+        if (unitType == null || unitType.isEmpty()) {
+            return parseSizeUnit(param, u);
+        } else {
+            return parseByteUnit(param, u);
+        }
+    }
+
+    /** Converts value to unit e.g. bytes. */
+    BigInteger convertToUnit(final String param, final Value value) {
+        final String unitPart = DrbdXml.getUnitPart(getUnitLong(param));
+        final Unit unit = value.getUnit();
+        BigInteger num = new BigInteger(value.getValueForConfig());
+        if (DrbdXml.getUnitPiBytes(unitPart).equals(unit)
+            || DrbdXml.getUnitPi(unitPart).equals(unit)) {
+            num = num.multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO);
+        } else if (DrbdXml.getUnitTiBytes(unitPart).equals(unit)
+                   || DrbdXml.getUnitTi(unitPart).equals(unit)) {
+            num = num.multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO);
+        } else if (DrbdXml.getUnitGiBytes(unitPart).equals(unit)
+                   || DrbdXml.getUnitGi(unitPart).equals(unit)) {
+            num = num.multiply(KILO)
+                     .multiply(KILO)
+                     .multiply(KILO);
+        } else if (DrbdXml.getUnitMiBytes(unitPart).equals(unit)
+                   || DrbdXml.getUnitMi(unitPart).equals(unit)) {
+            num = num.multiply(KILO)
+                     .multiply(KILO);
+        } else if (DrbdXml.getUnitKiBytes(unitPart).equals(unit)
+                   || DrbdXml.getUnitKi(unitPart).equals(unit)) {
+            num = num.multiply(KILO);
+        } else {
+            LOG.appWarning("unknown unit: " + unit);
+        }
+        return num;
+    }
+
+    private Unit parseSizeUnit(final String param, final String u) {
+        final String unitPart = DrbdXml.getUnitPart(getUnitLong(param));
+        if (u == null || u.isEmpty()) {
+            return DrbdXml.getUnitDefault(unitPart);
+        } else if ("k".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitKi(unitPart);
+        } else if ("m".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitMi(unitPart);
+        } else if ("g".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitGi(unitPart);
+        } else if ("t".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitTi(unitPart);
+        } else {
+            LOG.appError("can't parse unit: " + u + " param: " + param);
+        }
+        return null;
+    }
+
+    private Unit parseByteUnit(final String param, final String u) {
+        final String unitPart = DrbdXml.getUnitPart(getUnitLong(param));
+        if (u == null || u.isEmpty()) {
+            return DrbdXml.getUnitBytes(unitPart);
+        } else if ("k".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitKiBytes(unitPart);
+        } else if ("m".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitMiBytes(unitPart);
+        } else if ("g".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitGiBytes(unitPart);
+        } else if ("t".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitTiBytes(unitPart);
+        } else if ("s".equalsIgnoreCase(u)) {
+            return DrbdXml.getUnitSectors(unitPart);
+        } else {
+            LOG.appError("can't parse unit: " + u + " param: " + param);
+        }
+        return null;
+    }
+
+    private DrbdXml.DrbdParam drbdParam(final String param) {
+        DrbdXml.DrbdParam drbdParam = drbdParamMap.get(param);
+        if (drbdParam == null) {
+            drbdParam = new DrbdXml.DrbdParam();
+            drbdParamMap.put(param, drbdParam);
+        }
+        return drbdParam;
+    }
+
+    private void parseDrbdParameters(final String output) {
+        final String[] lines = output.split("\\r?\\n");
+        final StringBuilder xml = new StringBuilder();
+        String section = null;
+
+        for (final String line : lines) {
+            final Matcher m = COMMAND_BEGIN_PATTERN.matcher(line);
+            if (m.matches()) {
+                section = m.group(1);
+            }
+            if (section != null) {
+                xml.append(line);
+                xml.append('\n');
+                final Matcher m2 = COMMAND_END_PATTERN.matcher(line);
+                if (m2.matches()) {
+                    parseSection(section, xml.toString());
+                    section = null;
+                    xml.delete(0, xml.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds parameter to the specified section. This parameter will be not
+     * used in the generated config.
+     */
+    private void addSpecialParameter(final String section, final String param, final boolean required) {
+        if (!parametersList.contains(param)) {
+            parametersList.add(param);
+            if (required) {
+                requiredParametersList.add(param);
+            }
+
+            drbdParam(param).type("string");
+            drbdParam(param).section(section);
+        }
+    }
+
+    /** Add parameter with choice combo box. */
+    private void addParameter(final String section,
+                              final String param,
+                              final Value defaultValue,
+                              final Value[] items,
+                              final boolean required) {
+        addSpecialParameter(section, param, required);
+        sectionParamsMap.put(section, new ArrayList<String>());
+        sectionParamsMap.get(section).add(param);
+        drbdParam(param).defaultValue(defaultValue);
+        final List<Value> l = new ArrayList<Value>();
+        for (final Value item : items) {
+            if (!l.contains(item)) {
+                l.add(item);
+            }
+        }
+        drbdParam(param).items(l);
+        drbdParam(param).type("handler");
+    }
+
+    /** Parses command xml for parameters and fills up the hashes. */
+    private void parseSection(final String section, final String xml) {
+        final Document document = XMLTools.getXMLDocument(xml);
+        if (document == null) {
+            return;
+        }
+
+        /* get root <command> */
+        final Node commandNode = XMLTools.getChildNode(document, "command");
+        if (commandNode == null) {
+            return;
+        }
+        final NodeList options = commandNode.getChildNodes();
+        for (int i = 0; i < options.getLength(); i++) {
+            final Node optionNode = options.item(i);
+
+            /* <option> */
+            if ("option".equals(optionNode.getNodeName())) {
+                final String param = XMLTools.getAttribute(optionNode, "name");
+                final String type = XMLTools.getAttribute(optionNode, "type");
+                if ("flag".equals(type)) {
+                    /* ignore flags */
+                    continue;
+                }
+                if ("handler".equals(type)) {
+                    final List<Value> items = new ArrayList<Value>();
+                    items.add(new StringValue());
+                    drbdParam(param).items(items);
+                    drbdParam(param).defaultValue(DrbdXml.HARDCODED_DEFAULTS.get(param));
+                } else if ("boolean".equals(type)) {
+                    final List<Value> items = new ArrayList<Value>();
+                    items.add(DrbdXml.CONFIG_YES);
+                    items.add(DrbdXml.CONFIG_NO);
+                    drbdParam(param).items(items);
+                    drbdParam(param).defaultValue(DrbdXml.CONFIG_NO);
+                }
+                if ("after-resync-target".equals(param)) {
+                    final List<Value> items = new ArrayList<Value>();
+                    items.add(new StringValue());
+                    items.add(new StringValue("/usr/lib/drbd/crm-unfence-peer.sh"));
+                    drbdParam(param).items(items);
+                } else if ("split-brain".equals(param)) {
+                    final List<Value> items = new ArrayList<Value>();
+                    items.add(new StringValue());
+                    items.add(new StringValue("/usr/lib/drbd/notify-split-brain.sh root"));
+                    drbdParam(param).items(items);
+                }
+                final NodeList optionInfos = optionNode.getChildNodes();
+                for (int j = 0; j < optionInfos.getLength(); j++) {
+                    final Node optionInfo = optionInfos.item(j);
+                    final String tag = optionInfo.getNodeName();
+                    /* <min>, <max>, <handler>, <default> */
+                    if ("min".equals(tag)) {
+                        final Value minValue = new StringValue(XMLTools.getText(optionInfo),
+                                                               parseUnit(param, getDefaultUnit(param)));
+                        drbdParam(param).min(convertToUnit(param, minValue));
+                    } else if ("max".equals(tag)) {
+                        final Value maxValue = new StringValue(XMLTools.getText(optionInfo),
+                                                               parseUnit(param, getDefaultUnit(param)));
+                        drbdParam(param).max(convertToUnit(param, maxValue));
+                    } else if ("handler".equals(tag)) {
+                        drbdParam(param).items().add(new StringValue(XMLTools.getText(optionInfo)));
+                    } else if ("default".equals(tag)) {
+                        drbdParam(param).defaultValue(new StringValue(XMLTools.getText(optionInfo),
+                                                                      parseUnit(param, getDefaultUnit(param))));
+                    } else if ("unit".equals(tag)) {
+                        drbdParam(param).unitLong(XMLTools.getText(optionInfo));
+                    } else if ("unit_prefix".equals(tag)) {
+                        if (!"after".equals(param)
+                            && !"resync-after".equals(param)) {
+                            String option = XMLTools.getText(optionInfo);
+                            if (!"s".equals(option)) {
+                                /* "s" is an exception */
+                                option = option.toUpperCase(Locale.US);
+                            }
+                            if ("1".equals(option)) {
+                                option = "";
+                            }
+                            drbdParam(param).defaultUnit(option);
+                        }
+                    } else if ("desc".equals(tag)) {
+                        drbdParam(param).longDesc(XMLTools.getText(optionInfo));
+                    }
+                }
+                drbdParam(param).type(type);
+                if (!DrbdXml.GLOBAL_SECTION.equals(section)
+                    && !parametersList.contains(param)) {
+                    parametersList.add(param);
+                }
+                if (!"resource".equals(section)
+                    && !globalParametersList.contains(param)
+                    && !("syncer".equals(section) && "after".equals(param))
+                    && !"resync-after".equals(param)) {
+                    globalParametersList.add(param);
+                }
+
+                drbdParam(param).section(section);
+                if (!sectionParamsMap.containsKey(section)) {
+                    sectionParamsMap.put(section, new ArrayList<String>());
+                }
+                if (!sectionParamsMap.get(section).contains(param)) {
+                    sectionParamsMap.get(section).add(param);
+                }
+            }
+        }
+    }
+}
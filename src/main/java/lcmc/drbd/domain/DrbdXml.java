@@ -56,11 +56,11 @@ import javax.inject.Named;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -79,6 +79,15 @@ public class DrbdXml {
     private static final String[] EMPTY_STRING = new String[0];
 
     private static final Pattern UNIT_PATTERN = Pattern.compile("(\\d*)([kmgtsKMGTS]?)");
+    /* since drbd 8.3 there is ro: instead of st: */
+    /* since drbd 8.4 there is ro: instead of st: */
+    private static final Pattern EVENT_STATE_PATTERN =
+            Pattern.compile("^(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
+                            + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?");
+    private static final Pattern EVENT_SYNC_PATTERN = Pattern.compile("^(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*");
+    private static final Pattern EVENT_USER_HELPER_PATTERN = Pattern.compile("^(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*");
+    /* since 8.4 */
+    private static final Pattern EVENT_DEVICE_PATTERN = Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
     public static final String GLOBAL_SECTION = "global";
     public static final Value PROTOCOL_A = new StringValue("A", "A / Asynchronous");
     private static final Value PROTOCOL_B = new StringValue("B", "B / Semi-Synchronous");
@@ -86,8 +95,7 @@ public class DrbdXml {
     public static final String PROTOCOL_PARAM = "protocol";
     public static final String PING_TIMEOUT_PARAM = "ping-timeout";
 
-    private static final BigInteger KILO = new BigInteger("1024");
-    private static final Value[] PROTOCOLS = {PROTOCOL_A, PROTOCOL_B, PROTOCOL_C};
+    static final Value[] PROTOCOLS = {PROTOCOL_A, PROTOCOL_B, PROTOCOL_C};
     private static final Collection<String> NOT_ADVANCED_PARAMS = asList("rate",
                                                                          PROTOCOL_PARAM,
                                                                          PING_TIMEOUT_PARAM,
@@ -115,7 +123,7 @@ public class DrbdXml {
     /** Yes / true drbd config value. */
     public static final Value CONFIG_YES = new StringValue("yes");
     /** No / false drbd config value. */
-    private static final Value CONFIG_NO = new StringValue("no");
+    static final Value CONFIG_NO = new StringValue("no");
     /** Hardcoded defaults, for options that have it but we don't get
         it from the drbdsetup. */
     static final Map<String, Value> HARDCODED_DEFAULTS = new HashMap<String, Value>();
@@ -291,31 +299,23 @@ public class DrbdXml {
         private String section;
     }
 
-    private final Map<String, DrbdParam> drbdParamMap = Maps.newHashMap();
+    /** Parameter metadata shared by all the DrbdXml objects with the same xml-help output. */
+    private DrbdParameterCatalog catalog = DrbdParameterCatalog.EMPTY;
+    /** Choices of the parameters, that depend on the hosts. */
+    private final Map<String, List<Value>> hostChoicesMap = new HashMap<String, List<Value>>();
 
+    /** Returns parameter metadata, it must not be changed. */
     public DrbdParam getDrbdParam(final String param) {
-        val drbdParam = drbdParamMap.get(param);
+        val drbdParam = catalog.getParam(param);
         if (drbdParam != null) {
             return drbdParam;
         }
-        val newDrbdParam = new DrbdParam();
-        drbdParamMap.put(param, newDrbdParam);
-        return newDrbdParam;
+        return new DrbdParam();
     }
 
-
-    /** Map from section to this section's parameters. */
-    private final Map<String, List<String>> sectionParamsMap = new LinkedHashMap<String, List<String>>();
-
     /** Map from parameter name to its correct value. */
     private final Map<String, Boolean> paramCorrectValueMap = new HashMap<String, Boolean>();
 
-    /** List of all parameters. */
-    private final Collection<String> parametersList = new ArrayList<String>();
-    /** List of all global parameters. */
-    private final Collection<String> globalParametersList = new ArrayList<String>();
-    /** List of all required parameters. */
-    private final Collection<String> requiredParametersList = new ArrayList<String>();
     /** Map from resource option to the value. */
     private final Map<String, Map<String, Value>> optionsMap = new HashMap<String, Map<String, Value>>();
 
@@ -346,27 +346,35 @@ public class DrbdXml {
     private final Collection<String> proxyHostNames = new LinkedHashSet<String>();
     /** Map from host to the boolean value if drbd is loaded on this host. */
     private final Map<String, Boolean> hostDrbdLoadedMap = new HashMap<String, Boolean>();
+    /** Parsed resources and the common section, they are not changed after they were parsed. */
+    private final Map<String, ResourceConfig> resourceConfigs = new LinkedHashMap<String, ResourceConfig>();
     private boolean unknownSections = false;
     private String oldConfig = null;
     @Inject
     private ProgressIndicator progressIndicator;
 
     public void init(final Host[] hosts, final Map<Host, String> drbdParameters) {
-        addSpecialParameter("resource", "name", true);
+        final List<String> outputs = new ArrayList<String>();
+        Host lastHost = null;
         for (final Host host : hosts) {
             final String output;
             if (drbdParameters.get(host) == null) {
                 output = updateDrbdParameters(host);
                 drbdParameters.put(host, output);
                 if (output == null) {
-                    return;
+                    break;
                 }
             } else {
                 output = drbdParameters.get(host);
             }
-            /* TODO: move this part somewhere else, it should be called
-               once per invocation or interactively. (drbd-get-xml) */
-            parseDrbdParameters(host, output, hosts);
+            if (!outputs.contains(output)) {
+                outputs.add(output);
+            }
+            lastHost = host;
+        }
+        catalog = DrbdParameterCatalog.get(outputs, true);
+        if (lastHost != null) {
+            updateHostChoices(lastHost, hosts);
         }
     }
 
@@ -381,39 +389,61 @@ public class DrbdXml {
         return ret.getOutput();
     }
 
+    /**
+     * Adds the xml-help output of the host, e.g. after the DRBD upgrade. The
+     * parameters are parsed only, if there is no catalog for this output
+     * yet.
+     */
     public final void parseDrbdParameters(final Host host, final String output, final Host[] hosts) {
-        final String[] lines = output.split("\\r?\\n");
-        final Pattern bp = Pattern.compile("^<command name=\"(.*?)\".*");
-        final Pattern ep = Pattern.compile("^</command>$");
-        final StringBuilder xml = new StringBuilder();
-        String section = null;
-
-        for (final String line : lines) {
-            final Matcher m = bp.matcher(line);
-            if (m.matches()) {
-                section = m.group(1);
+        final List<String> outputs = new ArrayList<String>(catalog.getOutputs());
+        if (!outputs.contains(output)) {
+            outputs.add(output);
+        }
+        catalog = DrbdParameterCatalog.get(outputs, catalog.isWithResourceName());
+        updateHostChoices(host, hosts);
+    }
+
+    /**
+     * Sets the choices, that are not in the xml-help, but depend on the
+     * host: the crypto modules, the host names and the heartbeat path.
+     */
+    private void updateHostChoices(final Host host, final Host[] hosts) {
+        hostChoicesMap.clear();
+        if (catalog.getParam("fence-peer") != null) {
+            final List<Value> items = new ArrayList<Value>();
+            items.add(new StringValue());
+            if (host.getArch() != null && !host.getArch().isEmpty()) {
+                items.add(new StringValue(host.getHeartbeatLibPath() + "/drbd-peer-outdater -t 5"));
+            }
+            items.add(new StringValue("/usr/lib/drbd/crm-fence-peer.sh"));
+            hostChoicesMap.put("fence-peer", items);
+        }
+        if (catalog.getParam("become-primary-on") != null) {
+            final List<Value> items = new ArrayList<Value>();
+            items.add(new StringValue());
+            items.add(new StringValue("both"));
+            for (final Host h : hosts) {
+                items.add(new StringValue(h.getName()));
             }
-            if (section != null) {
-                xml.append(line);
-                xml.append('\n');
-                final Matcher m2 = ep.matcher(line);
-                if (m2.matches()) {
-                    parseSection(section, xml.toString(), host, hosts);
-                    section = null;
-                    xml.delete(0, xml.length());
+            hostChoicesMap.put("become-primary-on", items);
+        }
+        for (final String param : asList("verify-alg", "csums-alg", "data-integrity-alg", "cram-hmac-alg")) {
+            if (catalog.getParam(param) != null) {
+                final List<Value> items = new ArrayList<Value>();
+                items.add(new StringValue());
+                for (final String cr : host.getAvailableCryptoModules()) {
+                    items.add(new StringValue(cr));
                 }
+                hostChoicesMap.put(param, items);
             }
         }
-        if (!parametersList.contains(PROTOCOL_PARAM)) {
-            /* prior 8.4 */
-            addParameter("resource", PROTOCOL_PARAM, new StringValue(), PROTOCOLS, true);
-        }
-
-        val drbdParam = getDrbdParam("after-sb-0pri");
-        if (drbdParam.items() != null) {
+        val drbdParam = catalog.getParam("after-sb-0pri");
+        if (drbdParam != null && drbdParam.items() != null) {
+            final List<Value> items = new ArrayList<Value>(drbdParam.items());
             for (final Host h : hosts) {
-                drbdParam.items().add(new StringValue("discard-node-" + h.getName()));
+                items.add(new StringValue("discard-node-" + h.getName()));
             }
+            hostChoicesMap.put("after-sb-0pri", items);
         }
     }
 
@@ -438,15 +468,27 @@ public class DrbdXml {
      * a drbd event.
      */
     public void update(final String configString) {
+        update(configString, null);
+    }
+
+    /**
+     * Updates the data from the config. The resources, that didn't change
+     * since the previous DrbdXml, are taken over from it.
+     */
+    public void update(final String configString, final DrbdXml previous) {
         if (configString != null && !configString.isEmpty()) {
             oldConfig = configString;
-            parseConfig(configString);
+            if (previous != null && previous != this && previous.catalog == catalog) {
+                parseConfig(configString, previous.resourceConfigs);
+            } else {
+                parseConfig(configString, Collections.<String, ResourceConfig>emptyMap());
+            }
         }
     }
 
     /** Returns all drbd parameters. */
     public Iterable<String> getParameters() {
-        return parametersList;
+        return catalog.getParameters();
     }
 
     public String getParamShortDesc(final String param) {
@@ -463,17 +505,15 @@ public class DrbdXml {
     }
 
     public String getUnitLong(final String param) {
-        return getDrbdParam(param).unitLong();
+        return catalog.getUnitLong(param);
     }
 
     public String getDefaultUnit(String param) {
-        return getDrbdParam(param).defaultUnit();
+        return catalog.getDefaultUnit(param);
     }
 
     public boolean hasUnitPrefix(final String param) {
-        final String unit = getDrbdParam(param).unitLong();
-        return getDrbdParam(param).defaultUnit() != null
-               && (unit == null || "bytes".equals(unit) || "bytes/second".equals(unit));
+        return catalog.hasUnitPrefix(param);
     }
 
     /**
@@ -556,59 +596,13 @@ public class DrbdXml {
         return "string".equals(type);
     }
 
-    /**
-     * Adds parameter to the specified section. This parameter will be not
-     * used in the generated config.
-     */
-    private void addSpecialParameter(final String section, final String param, final boolean required) {
-        if (!parametersList.contains(param)) {
-            parametersList.add(param);
-            if (required) {
-                requiredParametersList.add(param);
-            }
-
-            getDrbdParam(param).type("string");
-            getDrbdParam(param).section(section);
-        }
-    }
-
-    /** Add parameter with choice combo box. */
-    private void addParameter(final String section,
-                              final String param,
-                              final Value defaultValue,
-                              final Value[] items,
-                              final boolean required) {
-        addParameter(section, param, defaultValue, required);
-        final List<Value> l = new ArrayList<Value>();
-        for (final Value item : items) {
-            if (!l.contains(item)) {
-                l.add(item);
-            }
-        }
-        getDrbdParam(param).items(l);
-        getDrbdParam(param).type("handler");
-    }
-
-    private void addParameter(final String section, final String param, final boolean required) {
-        addSpecialParameter(section, param, required);
-        sectionParamsMap.put(section, new ArrayList<String>());
-        sectionParamsMap.get(section).add(param);
-    }
-
-    private void addParameter(final String section,
-                              final String param,
-                              final Value defaultValue,
-                              final boolean required) {
-        addParameter(section, param, required);
-        getDrbdParam(param).defaultValue(defaultValue);
-    }
-
     public String[] getSections() {
-        return sectionParamsMap.keySet().toArray(new String[sectionParamsMap.size()]);
+        final Collection<String> sections = catalog.getSections();
+        return sections.toArray(new String[sections.size()]);
     }
 
     public String[] getSectionParams(final String section) {
-        final List<String> params = sectionParamsMap.get(section);
+        final List<String> params = catalog.getSectionParams(section);
         if (params == null) {
             return EMPTY_STRING;
         }
@@ -616,11 +610,14 @@ public class DrbdXml {
     }
 
     public Iterable<String> getGlobalParams() {
-        return globalParametersList;
+        return catalog.getGlobalParameters();
     }
 
     public Value[] getPossibleChoices(final String param) {
-        final List<Value> items = getDrbdParam(param).items();
+        List<Value> items = hostChoicesMap.get(param);
+        if (items == null) {
+            items = getDrbdParam(param).items();
+        }
         if (items == null) {
             return null;
         } else {
@@ -629,7 +626,7 @@ public class DrbdXml {
     }
 
     public boolean isRequired(final String param) {
-        return requiredParametersList.contains(param);
+        return catalog.isRequired(param);
     }
 
     public boolean isAdvanced(final String param) {
@@ -668,136 +665,6 @@ public class DrbdXml {
         }
     }
 
-    /** Parses command xml for parameters and fills up the hashes. */
-    private void parseSection(final String section, final String xml, final Host host, final Host[] hosts) {
-        final Document document = XMLTools.getXMLDocument(xml);
-
-        /* get root <command> */
-        final Node commandNode = XMLTools.getChildNode(document, "command");
-        if (commandNode == null) {
-            return;
-        }
-        final NodeList options = commandNode.getChildNodes();
-        for (int i = 0; i < options.getLength(); i++) {
-            final Node optionNode = options.item(i);
-
-            /* <option> */
-            if ("option".equals(optionNode.getNodeName())) {
-                final String param = XMLTools.getAttribute(optionNode, "name");
-                final String type = XMLTools.getAttribute(optionNode, "type");
-                if ("flag".equals(type)) {
-                    /* ignore flags */
-                    continue;
-                }
-                if ("handler".equals(type)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    getDrbdParam(param).items(items);
-                    getDrbdParam(param).defaultValue(HARDCODED_DEFAULTS.get(param));
-                } else if ("boolean".equals(type)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(CONFIG_YES);
-                    items.add(CONFIG_NO);
-                    getDrbdParam(param).items(items);
-                    getDrbdParam(param).defaultValue(CONFIG_NO);
-                }
-                if ("fence-peer".equals(param)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    if (host.getArch() != null && !host.getArch().isEmpty()) {
-                        items.add(new StringValue(host.getHeartbeatLibPath() + "/drbd-peer-outdater -t 5"));
-                    }
-                    items.add(new StringValue("/usr/lib/drbd/crm-fence-peer.sh"));
-                    getDrbdParam(param).items(items);
-                } else if ("after-resync-target".equals(param)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    items.add(new StringValue("/usr/lib/drbd/crm-unfence-peer.sh"));
-                    getDrbdParam(param).items(items);
-                } else if ("split-brain".equals(param)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    items.add(new StringValue("/usr/lib/drbd/notify-split-brain.sh root"));
-                    getDrbdParam(param).items(items);
-                } else if ("become-primary-on".equals(param)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    items.add(new StringValue("both"));
-                    for (final Host h : hosts) {
-                        items.add(new StringValue(h.getName()));
-                    }
-                    getDrbdParam(param).items(items);
-                } else if ("verify-alg".equals(param)
-                           || "csums-alg".equals(param)
-                           || "data-integrity-alg".equals(param)
-                           || "cram-hmac-alg".equals(param)) {
-                    final List<Value> items = new ArrayList<Value>();
-                    items.add(new StringValue());
-                    for (final String cr : host.getAvailableCryptoModules()) {
-                        items.add(new StringValue(cr));
-                    }
-                    getDrbdParam(param).items(items);
-                }
-                final NodeList optionInfos = optionNode.getChildNodes();
-                for (int j = 0; j < optionInfos.getLength(); j++) {
-                    final Node optionInfo = optionInfos.item(j);
-                    final String tag = optionInfo.getNodeName();
-                    /* <min>, <max>, <handler>, <default> */
-                    if ("min".equals(tag)) {
-                        final Value minValue = new StringValue(XMLTools.getText(optionInfo),
-                                                               parseUnit(param, getDefaultUnit(param)));
-                        getDrbdParam(param).min(convertToUnit(param, minValue));
-                    } else if ("max".equals(tag)) {
-                        final Value maxValue = new StringValue(XMLTools.getText(optionInfo),
-                                                               parseUnit(param, getDefaultUnit(param)));
-                        getDrbdParam(param).max(convertToUnit(param, maxValue));
-                    } else if ("handler".equals(tag)) {
-                        getDrbdParam(param).items().add(new StringValue(XMLTools.getText(optionInfo)));
-                    } else if ("default".equals(tag)) {
-                        getDrbdParam(param).defaultValue(new StringValue(XMLTools.getText(optionInfo),
-                                                                  parseUnit(param, getDefaultUnit(param))));
-                    } else if ("unit".equals(tag)) {
-                        getDrbdParam(param).unitLong(XMLTools.getText(optionInfo));
-                    } else if ("unit_prefix".equals(tag)) {
-                        if (!"after".equals(param)
-                            && !"resync-after".equals(param)) {
-                            String option = XMLTools.getText(optionInfo);
-                            if (!"s".equals(option)) {
-                                /* "s" is an exception */
-                                option = option.toUpperCase(Locale.US);
-                            }
-                            if ("1".equals(option)) {
-                                option = "";
-                            }
-                            getDrbdParam(param).defaultUnit(option);
-                        }
-                    } else if ("desc".equals(tag)) {
-                        getDrbdParam(param).longDesc(XMLTools.getText(optionInfo));
-                    }
-                }
-                getDrbdParam(param).type(type);
-                if (!GLOBAL_SECTION.equals(section)
-                    && !parametersList.contains(param)) {
-                    parametersList.add(param);
-                }
-                if (!"resource".equals(section)
-                    && !globalParametersList.contains(param)
-                    && !("syncer".equals(section) && "after".equals(param))
-                    && !"resync-after".equals(param)) {
-                    globalParametersList.add(param);
-                }
-
-                getDrbdParam(param).section(section);
-                if (!sectionParamsMap.containsKey(section)) {
-                    sectionParamsMap.put(section, new ArrayList<String>());
-                }
-                if (!sectionParamsMap.get(section).contains(param)) {
-                    sectionParamsMap.get(section).add(param);
-                }
-            }
-        }
-    }
-
     /** Parses section node and creates map with option name value pairs. */
     private void parseConfigSectionNode(final Node sectionNode, final Map<String, Value> nameValueMap) {
         final NodeList options = sectionNode.getChildNodes();
@@ -848,51 +715,57 @@ public class DrbdXml {
     }
 
     /** Parses host node in the drbd config. */
-    private void parseHostConfig(final String resName, final Node hostNode) {
+    private void parseHostConfig(final ResourceConfig rc, final String resName, final Node hostNode) {
         final String hostName = XMLTools.getAttribute(hostNode, "name");
-        parseVolumeConfig(hostName, resName, hostNode); /* before 8.4 */
+        parseVolumeConfig(rc, hostName, resName, hostNode); /* before 8.4 */
         final NodeList options = hostNode.getChildNodes();
         for (int i = 0; i < options.getLength(); i++) {
             final Node option = options.item(i);
             if ("volume".equals(option.getNodeName())) {
-                parseVolumeConfig(hostName, resName, option);
+                parseVolumeConfig(rc, hostName, resName, option);
             } else if ("address".equals(option.getNodeName())) {
-                parseAddress(resName, hostName, option);
+                parseAddress(rc, resName, hostName, option);
             } else if ("proxy".equals(option.getNodeName())) {
-                parseProxyHostConfig(hostName, resName, option);
+                parseProxyHostConfig(rc, hostName, resName, option);
             }
         }
     }
 
-    private void parseAddress(String resName, String hostName, Node option) {
+    private void parseAddress(final ResourceConfig rc,
+                              final String resName,
+                              final String hostName,
+                              final Node option) {
         final String ip = XMLTools.getText(option);
         final String port = XMLTools.getAttribute(option, "port");
         final String family = XMLTools.getAttribute(option, "family");
                 /* ip */
-        Map<String, String> hostIpMap = resourceHostIpMap.get(resName);
+        Map<String, String> hostIpMap = rc.resourceHostIpMap.get(resName);
         if (hostIpMap == null) {
             hostIpMap = new HashMap<String, String>();
-            resourceHostIpMap.put(resName, hostIpMap);
+            rc.resourceHostIpMap.put(resName, hostIpMap);
         }
         hostIpMap.put(hostName, ip);
                 /* port */
-        Map<String, String> hostPortMap = resourceHostPortMap.get(resName);
+        Map<String, String> hostPortMap = rc.resourceHostPortMap.get(resName);
         if (hostPortMap == null) {
             hostPortMap = new HashMap<String, String>();
-            resourceHostPortMap.put(resName, hostPortMap);
+            rc.resourceHostPortMap.put(resName, hostPortMap);
         }
         hostPortMap.put(hostName, port);
                 /* family */
-        Map<String, String> hostFamilyMap = resourceHostFamilyMap.get(resName);
+        Map<String, String> hostFamilyMap = rc.resourceHostFamilyMap.get(resName);
         if (hostFamilyMap == null) {
             hostFamilyMap = new HashMap<String, String>();
-            resourceHostFamilyMap.put(resName, hostFamilyMap);
+            rc.resourceHostFamilyMap.put(resName, hostFamilyMap);
         }
         hostFamilyMap.put(hostName, family);
     }
 
     /** Parses host node in the drbd config. */
-    private void parseVolumeConfig(final String hostName, final String resName, final Node volumeNode) {
+    private void parseVolumeConfig(final ResourceConfig rc,
+                                   final String hostName,
+                                   final String resName,
+                                   final Node volumeNode) {
         String volumeNr = XMLTools.getAttribute(volumeNode, "vnr");
         if (volumeNr == null) {
             volumeNr = "0";
@@ -906,15 +779,15 @@ public class DrbdXml {
                     final String minor = XMLTools.getAttribute(option, "minor");
                     device = "/dev/drbd" + minor;
                 }
-                resourceDeviceMap.put(resName, volumeNr, device);
-                deviceResourceMap.put(device, resName);
-                deviceVolumeMap.put(device, volumeNr);
+                rc.resourceDeviceMap.put(resName, volumeNr, device);
+                rc.deviceResourceMap.put(device, resName);
+                rc.deviceVolumeMap.put(device, volumeNr);
             } else if ("disk".equals(option.getNodeName())) {
                 final String disk = XMLTools.getText(option);
-                Map<String, String> hostDiskMap = resourceHostDiskMap.get(resName, volumeNr);
+                Map<String, String> hostDiskMap = rc.resourceHostDiskMap.get(resName, volumeNr);
                 if (hostDiskMap == null) {
                     hostDiskMap = new HashMap<String, String>();
-                    resourceHostDiskMap.put(resName, volumeNr, hostDiskMap);
+                    rc.resourceHostDiskMap.put(resName, volumeNr, hostDiskMap);
                 }
                 hostDiskMap.put(hostName, disk);
             } else if ("meta-disk".equals(option.getNodeName())
@@ -931,30 +804,33 @@ public class DrbdXml {
                     metaDiskIndex = "Flexible";
                 }
                 /* meta-disk */
-                Map<String, String> hostMetaDiskMap = resourceHostMetaDiskMap.get(resName, volumeNr);
+                Map<String, String> hostMetaDiskMap = rc.resourceHostMetaDiskMap.get(resName, volumeNr);
                 if (hostMetaDiskMap == null) {
                     hostMetaDiskMap = new HashMap<String, String>();
-                    resourceHostMetaDiskMap.put(resName, volumeNr, hostMetaDiskMap);
+                    rc.resourceHostMetaDiskMap.put(resName, volumeNr, hostMetaDiskMap);
                 }
                 hostMetaDiskMap.put(hostName, metaDisk);
 
                 /* meta-disk index */
-                Map<String, String> hostMetaDiskIndexMap = resourceHostMetaDiskIndexMap.get(resName, volumeNr);
+                Map<String, String> hostMetaDiskIndexMap = rc.resourceHostMetaDiskIndexMap.get(resName, volumeNr);
                 if (hostMetaDiskIndexMap == null) {
                     hostMetaDiskIndexMap = new HashMap<String, String>();
-                    resourceHostMetaDiskIndexMap.put(resName, volumeNr, hostMetaDiskIndexMap);
+                    rc.resourceHostMetaDiskIndexMap.put(resName, volumeNr, hostMetaDiskIndexMap);
                 }
                 hostMetaDiskIndexMap.put(hostName, metaDiskIndex);
             } else if ("address".equals(option.getNodeName())) {
                 /* since 8.4, it's outside of volume */
-                parseAddress(resName, hostName, option);
+                parseAddress(rc, resName, hostName, option);
             } else if ("proxy".equals(option.getNodeName())) {
-                parseProxyHostConfig(hostName, resName, option);
+                parseProxyHostConfig(rc, hostName, resName, option);
             }
         }
     }
 
-    private void parseProxyHostConfig(final String hostName, final String resName, final Node proxyNode) {
+    private void parseProxyHostConfig(final ResourceConfig rc,
+                                      final String hostName,
+                                      final String resName,
+                                      final Node proxyNode) {
         final String proxyHostName = XMLTools.getAttribute(proxyNode, "hostname");
         final NodeList options = proxyNode.getChildNodes();
         String insideIp = null;
@@ -971,12 +847,12 @@ public class DrbdXml {
                 outsidePort = XMLTools.getAttribute(option, "port");
             }
         }
-        resourceHostProxyMap.put(resName, hostName, new HostProxy(proxyHostName,
+        rc.resourceHostProxyMap.put(resName, hostName, new HostProxy(proxyHostName,
                                                                   new StringValue(insideIp),
                                                                   new StringValue(insidePort),
                                                                   new StringValue(outsideIp),
                                                                   new StringValue(outsidePort)));
-        proxyHostNames.add(proxyHostName);
+        rc.proxyHostNames.add(proxyHostName);
     }
 
     public Map<String, String> getHostDiskMap(final String resName, final String volumeNr) {
@@ -1040,25 +916,25 @@ public class DrbdXml {
     }
 
     /** Parses resource xml. */
-    private void parseConfigResourceNode(final Node resourceNode, final String resName) {
+    private void parseConfigResourceNode(final ResourceConfig rc, final Node resourceNode, final String resName) {
         final String resProtocol = XMLTools.getAttribute(resourceNode, PROTOCOL_PARAM);
         if (resProtocol != null) {
-            Map<String, Value> nameValueMap = optionsMap.get(resName + '.' + "resource");
+            Map<String, Value> nameValueMap = rc.optionsMap.get(resName + '.' + "resource");
             if (nameValueMap == null) {
                 nameValueMap = new HashMap<String, Value>();
             } else {
-                optionsMap.remove(resName + '.' + "resource");
+                rc.optionsMap.remove(resName + '.' + "resource");
             }
 
             nameValueMap.put(PROTOCOL_PARAM, new StringValue(resProtocol));
-            optionsMap.put(resName + '.' + "resource", nameValueMap);
+            rc.optionsMap.put(resName + '.' + "resource", nameValueMap);
         }
         final NodeList c = resourceNode.getChildNodes();
         for (int i = 0; i < c.getLength(); i++) {
             final Node n = c.item(i);
             if ("host".equals(n.getNodeName())) {
                 /* <host> */
-                parseHostConfig(resName, n);
+                parseHostConfig(rc, resName, n);
             } else if ("section".equals(n.getNodeName())
                        || ("#text".equals(n.getNodeName()) && !"".equals(n.getNodeValue().trim()))) {
                 final String secName;
@@ -1066,11 +942,11 @@ public class DrbdXml {
                     secName = "proxy";
                     /* workaround for broken proxy xml in common section
                        at least till drbd 8.4.2 */
-                    Map<String, Value> nameValueMap = optionsMap.get(resName + '.' + secName);
+                    Map<String, Value> nameValueMap = rc.optionsMap.get(resName + '.' + secName);
                     if (nameValueMap == null) {
                         nameValueMap = new HashMap<String, Value>();
                     } else {
-                        optionsMap.remove(resName + '.' + secName);
+                        rc.optionsMap.remove(resName + '.' + secName);
                     }
                     try {
                         final boolean isProxy = DrbdProxy.parse(this, n.getNodeValue(), nameValueMap);
@@ -1082,36 +958,33 @@ public class DrbdXml {
                         LOG.appWarning("parseConfigResourceNode: " + n.getNodeValue());
                         continue;
                     }
-                    optionsMap.put(resName + '.' + secName, nameValueMap);
+                    rc.optionsMap.put(resName + '.' + secName, nameValueMap);
                 } else {
                     /* <resource> */
                     secName = XMLTools.getAttribute(n, "name");
 
-                    Map<String, Value> nameValueMap = optionsMap.get(resName + '.' + secName);
+                    Map<String, Value> nameValueMap = rc.optionsMap.get(resName + '.' + secName);
                     if (nameValueMap == null) {
                         nameValueMap = new HashMap<String, Value>();
                     } else {
-                        optionsMap.remove(resName + '.' + secName);
+                        rc.optionsMap.remove(resName + '.' + secName);
                     }
 
                     parseConfigSectionNode(n, nameValueMap);
-                    optionsMap.put(resName + '.' + secName, nameValueMap);
+                    rc.optionsMap.put(resName + '.' + secName, nameValueMap);
                 }
-                if (!sectionParamsMap.containsKey(secName)
-                    && !sectionParamsMap.containsKey(secName + "-options")) {
-                    LOG.appWarning("parseConfigResourceNode: unknown section: " + secName);
-                    if (!unknownSections) {
-                        /* unknown section, so it's not removed. */
-                        progressIndicator.progressIndicatorFailed("DRBD: unknown section: " + secName);
-                        unknownSections = true;
-                    }
+                if (!catalog.hasSection(secName) && !catalog.hasSection(secName + "-options")) {
+                    rc.unknownSections.add(secName);
                 }
             }
         }
     }
 
-    /** Parses config xml from drbdadm dump-xml. */
-    private void parseConfig(final String configXML) {
+    /**
+     * Parses config xml from drbdadm dump-xml. The resources, that are the
+     * same as in the previous config, are not parsed again.
+     */
+    private void parseConfig(final String configXML, final Map<String, ResourceConfig> previousResourceConfigs) {
         final int start = configXML.indexOf("<config");
         if (start < 0) {
             final String c = configXML.trim();
@@ -1149,7 +1022,7 @@ public class DrbdXml {
             }
             /* <common> */
             if ("common".equals(resourceNode.getNodeName())) {
-                parseConfigResourceNode(resourceNode, "Section.Common");
+                updateResourceConfig(resourceNode, "Section.Common", previousResourceConfigs);
             }
             /* <resource> */
             if ("resource".equals(resourceNode.getNodeName())) {
@@ -1157,7 +1030,76 @@ public class DrbdXml {
                 if (!resourceList.contains(resName)) {
                     resourceList.add(resName);
                 }
-                parseConfigResourceNode(resourceNode, resName);
+                updateResourceConfig(resourceNode, resName, previousResourceConfigs);
+            }
+        }
+    }
+
+    private void updateResourceConfig(final Node resourceNode,
+                                      final String resName,
+                                      final Map<String, ResourceConfig> previousResourceConfigs) {
+        ResourceConfig rc = previousResourceConfigs.get(resName);
+        if (rc == null || !rc.resourceNode.isEqualNode(resourceNode)) {
+            rc = new ResourceConfig(resourceNode);
+            parseConfigResourceNode(rc, resourceNode, resName);
+        } else {
+            LOG.debug2("updateResourceConfig: unchanged resource: {}", resName);
+        }
+        resourceConfigs.put(resName, rc);
+        addResourceConfig(rc);
+    }
+
+    /**
+     * Adds the parsed resource to the maps. The maps of the resource are
+     * shared with the next DrbdXml objects, so they are copied, not changed,
+     * if this resource was already in an other config.
+     */
+    private void addResourceConfig(final ResourceConfig rc) {
+        resourceDeviceMap.putAll(rc.resourceDeviceMap);
+        deviceResourceMap.putAll(rc.deviceResourceMap);
+        deviceVolumeMap.putAll(rc.deviceVolumeMap);
+        mergeMaps(resourceHostIpMap, rc.resourceHostIpMap);
+        mergeMaps(resourceHostPortMap, rc.resourceHostPortMap);
+        mergeMaps(resourceHostFamilyMap, rc.resourceHostFamilyMap);
+        mergeMaps(optionsMap, rc.optionsMap);
+        mergeTables(resourceHostDiskMap, rc.resourceHostDiskMap);
+        mergeTables(resourceHostMetaDiskMap, rc.resourceHostMetaDiskMap);
+        mergeTables(resourceHostMetaDiskIndexMap, rc.resourceHostMetaDiskIndexMap);
+        resourceHostProxyMap.putAll(rc.resourceHostProxyMap);
+        proxyHostNames.addAll(rc.proxyHostNames);
+        for (final String secName : rc.unknownSections) {
+            LOG.appWarning("parseConfigResourceNode: unknown section: " + secName);
+            if (!unknownSections) {
+                /* unknown section, so it's not removed. */
+                progressIndicator.progressIndicatorFailed("DRBD: unknown section: " + secName);
+                unknownSections = true;
+            }
+        }
+    }
+
+    private static <K, V> void mergeMaps(final Map<String, Map<K, V>> maps, final Map<String, Map<K, V>> newMaps) {
+        for (final Map.Entry<String, Map<K, V>> newEntry : newMaps.entrySet()) {
+            final Map<K, V> map = maps.get(newEntry.getKey());
+            if (map == null) {
+                maps.put(newEntry.getKey(), newEntry.getValue());
+            } else {
+                final Map<K, V> merged = new HashMap<K, V>(map);
+                merged.putAll(newEntry.getValue());
+                maps.put(newEntry.getKey(), merged);
+            }
+        }
+    }
+
+    private static void mergeTables(final Table<String, String, Map<String, String>> table,
+                                    final Table<String, String, Map<String, String>> newTable) {
+        for (final Table.Cell<String, String, Map<String, String>> newCell : newTable.cellSet()) {
+            final Map<String, String> map = table.get(newCell.getRowKey(), newCell.getColumnKey());
+            if (map == null) {
+                table.put(newCell.getRowKey(), newCell.getColumnKey(), newCell.getValue());
+            } else {
+                final Map<String, String> merged = new HashMap<String, String>(map);
+                merged.putAll(newCell.getValue());
+                table.put(newCell.getRowKey(), newCell.getColumnKey(), merged);
             }
         }
     }
@@ -1221,6 +1163,15 @@ public class DrbdXml {
         return null;
     }
 
+    /** Returns device number from "minor" or since 8.4 "minor,res[volume]". */
+    private String getDevNr(final String devNrString) {
+        final Matcher mDev = EVENT_DEVICE_PATTERN.matcher(devNrString);
+        if (mDev.matches()) {
+            return mDev.group(1);
+        }
+        return devNrString;
+    }
+
     /** Return backing disk from device number. Can return null. */
     private String getBackingDisk(final String devNr, final String hostName) {
         final String device = "/dev/drbd" + devNr;
@@ -1262,12 +1213,7 @@ public class DrbdXml {
         } else {
             hostDrbdLoadedMap.put(hostName, true);
         }
-        /* since drbd 8.3 there is ro: instead of st: */
-        /* since drbd 8.4 there is ro: instead of st: */
-        Pattern p = Pattern.compile("^(\\d+)\\s+ST\\s+(\\S+)\\s+\\{\\s+cs:(\\S+)\\s+"
-                                    + "(?:st|ro):(\\S+)/(\\S+)\\s+ds:(\\S+)/(\\S+)\\s+(\\S+).*?");
-        Matcher m = p.matcher(output);
-        final Pattern pDev = Pattern.compile("^(\\d+),(\\S+)\\[(\\d+)\\]$");
+        Matcher m = EVENT_STATE_PATTERN.matcher(output);
         if (m.matches()) {
             /* String counter      = m.group(1); // not used */
             final String devNrString  = m.group(2);
@@ -1278,11 +1224,7 @@ public class DrbdXml {
             final String ds2          = m.group(7);
             final String flags        = m.group(8);
 
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-            }
+            final String devNr = getDevNr(devNrString);
             /* get blockdevice object from device */
             final String disk = getBackingDisk(devNr, hostName);
             if (disk != null) {
@@ -1306,18 +1248,13 @@ public class DrbdXml {
             return false;
         }
         /* 19 SP 0 16.9 */
-        p = Pattern.compile("^(\\d+)\\s+SP\\s+(\\S+)\\s(\\d+\\.\\d+).*");
-        m = p.matcher(output);
+        m = EVENT_SYNC_PATTERN.matcher(output);
         if (m.matches()) {
             /* String counter      = m.group(1); // not used */
             final String devNrString = m.group(2);
             final String synced = m.group(3);
 
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-            }
+            final String devNr = getDevNr(devNrString);
             final BlockDevInfo bdi = getBlockDevInfo(devNr, hostName, drbdGraph);
             if (bdi != null && bdi.getBlockDevice().isDrbd()) {
                 if (Tools.areEqual(bdi.getBlockDevice().getSyncedProgress(), synced)) {
@@ -1331,17 +1268,12 @@ public class DrbdXml {
             return false;
         }
         /* 19 UH 1 split-brain */
-        p = Pattern.compile("^(\\d+)\\s+UH\\s+(\\S+)\\s([a-z-]+).*");
-        m = p.matcher(output);
+        m = EVENT_USER_HELPER_PATTERN.matcher(output);
         if (m.matches()) {
             /* String counter      = m.group(1); // not used */
             final String devNrString = m.group(2);
             final String what = m.group(3);
-            final Matcher mDev = pDev.matcher(devNrString);
-            String devNr = devNrString;
-            if (mDev.matches()) { /* since 8.4 */
-                devNr = mDev.group(1);
-            }
+            final String devNr = getDevNr(devNrString);
             LOG.debug("parseDrbdEvent: event: " + devNr + " - " + what);
             if ("split-brain".equals(what)) {
                 final BlockDevInfo bdi = getBlockDevInfo(devNr, hostName, drbdGraph);
@@ -1394,63 +1326,38 @@ public class DrbdXml {
             final String value = m.group(1);
             final String u = m.group(2);
 
-            final Unit unit = parseUnit(param, u);
+            final Unit unit = catalog.parseUnit(param, u);
             return new StringValue(value, unit);
         }
         return new StringValue(v);
     }
 
-    private Unit parseUnit(final String param, final String u) {
-        if (!hasUnitPrefix(param)) {
-            return null;
-        }
-        final String unitType = getUnitLong(param);
-        if (unitType == null || unitType.isEmpty()) {
-            return parseSizeUnit(param, u);
-        } else {
-            return parseByteUnit(param, u);
-        }
-    }
-
-    private Unit parseSizeUnit(final String param, final String u) {
-        final String unitPart = getUnitPart(getUnitLong(param));
-        if (u == null || u.isEmpty()) {
-            return getUnitDefault(unitPart);
-        } else if ("k".equalsIgnoreCase(u)) {
-            return getUnitKi(unitPart);
-        } else if ("m".equalsIgnoreCase(u)) {
-            return getUnitMi(unitPart);
-        } else if ("g".equalsIgnoreCase(u)) {
-            return getUnitGi(unitPart);
-        } else if ("t".equalsIgnoreCase(u)) {
-            return getUnitTi(unitPart);
-        } else {
-            LOG.appError("can't parse unit: " + u + " param: " + param);
-        }
-        return null;
-    }
-
-    private Unit parseByteUnit(final String param, final String u) {
-        final String unitPart = getUnitPart(getUnitLong(param));
-        if (u == null || u.isEmpty()) {
-            return getUnitBytes(unitPart);
-        } else if ("k".equalsIgnoreCase(u)) {
-            return getUnitKiBytes(unitPart);
-        } else if ("m".equalsIgnoreCase(u)) {
-            return getUnitMiBytes(unitPart);
-        } else if ("g".equalsIgnoreCase(u)) {
-            return getUnitGiBytes(unitPart);
-        } else if ("t".equalsIgnoreCase(u)) {
-            return getUnitTiBytes(unitPart);
-        } else if ("s".equalsIgnoreCase(u)) {
-            return getUnitSectors(unitPart);
-        } else {
-            LOG.appError("can't parse unit: " + u + " param: " + param);
-        }
-        return null;
-    }
-
-    public class HostProxy {
+    /**
+     * Config of one resource, parsed from its node in the drbdadm dump-xml.
+     * It is reused by the next DrbdXml, if the resource doesn't change.
+     */
+    private static final class ResourceConfig {
+        private final Node resourceNode;
+        private final Map<String, Map<String, Value>> optionsMap = new HashMap<String, Map<String, Value>>();
+        private final Table<String, String, String> resourceDeviceMap = HashBasedTable.create();
+        private final Map<String, String> deviceResourceMap = new HashMap<String, String>();
+        private final Map<String, String> deviceVolumeMap = new HashMap<String, String>();
+        private final Table<String, String, Map<String, String>> resourceHostDiskMap = HashBasedTable.create();
+        private final Map<String, Map<String, String>> resourceHostIpMap = Maps.newHashMap();
+        private final Map<String, Map<String, String>> resourceHostPortMap = Maps.newHashMap();
+        private final Map<String, Map<String, String>> resourceHostFamilyMap = Maps.newHashMap();
+        private final Table<String, String, Map<String, String>> resourceHostMetaDiskMap = HashBasedTable.create();
+        private final Table<String, String, Map<String, String>> resourceHostMetaDiskIndexMap = HashBasedTable.create();
+        private final Table<String, String, HostProxy> resourceHostProxyMap = HashBasedTable.create();
+        private final Collection<String> proxyHostNames = new LinkedHashSet<String>();
+        private final Collection<String> unknownSections = new ArrayList<String>();
+
+        ResourceConfig(final Node resourceNode) {
+            this.resourceNode = resourceNode;
+        }
+    }
+
+    public static class HostProxy {
         private final String proxyHostName;
         private final Value insideIp;
         private final Value insidePort;
@@ -1492,37 +1399,6 @@ public class DrbdXml {
 
     /** Converts value to unit e.g. bytes. */
     public BigInteger convertToUnit(final String param, final Value value) {
-        final String unitPart = getUnitPart(getUnitLong(param));
-        final Unit unit = value.getUnit();
-        BigInteger num = new BigInteger(value.getValueForConfig());
-        if (getUnitPiBytes(unitPart).equals(unit)
-            || getUnitPi(unitPart).equals(unit)) {
-            num = num.multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO);
-        } else if (getUnitTiBytes(unitPart).equals(unit)
-                   || getUnitTi(unitPart).equals(unit)) {
-            num = num.multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO);
-        } else if (getUnitGiBytes(unitPart).equals(unit)
-                   || getUnitGi(unitPart).equals(unit)) {
-            num = num.multiply(KILO)
-                     .multiply(KILO)
-                     .multiply(KILO);
-        } else if (getUnitMiBytes(unitPart).equals(unit)
-                   || getUnitMi(unitPart).equals(unit)) {
-            num = num.multiply(KILO)
-                     .multiply(KILO);
-        } else if (getUnitKiBytes(unitPart).equals(unit)
-                   || getUnitKi(unitPart).equals(unit)) {
-            num = num.multiply(KILO);
-        } else {
-            LOG.appWarning("unknown unit: " + unit);
-        }
-        return num;
+        return catalog.convertToUnit(param, value);
     }
 }
@@ -74,7 +74,7 @@ public final class NetInterface extends ResourceValue implements Value {
      */
     public NetInterface(final String line) throws UnknownHostException {
         super();
-        LOG.debug1("NetInterface: " + line);
+        LOG.debug1("NetInterface: {}", line);
         final String[] cols = line.split(" ");
         if (cols.length < 4) {
             LOG.appWarning("NetInterface: cannot parse: " + line);
@@ -0,0 +1,67 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.drbd.ui;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+/**
+ * Map from host name and disk to the block device, so that the drbd events
+ * don't have to scan all the block devices. The disk can be the name, uuid
+ * or any of the ids of the block device.
+ */
+final class DiskIndex<T> {
+    private final Map<String, Map<String, T>> index = new ConcurrentHashMap<String, Map<String, T>>();
+    private final BiPredicate<T, String> isOfDisk;
+
+    DiskIndex(final BiPredicate<T, String> isOfDisk) {
+        this.isOfDisk = isOfDisk;
+    }
+
+    /**
+     * Returns the indexed block device, if it is still the same disk,
+     * otherwise scans for it and indexes the result.
+     */
+    T find(final String hostName, final String disk, final BiFunction<String, String, T> scan) {
+        final Map<String, T> diskIndex = index.get(hostName);
+        if (diskIndex != null) {
+            final T indexed = diskIndex.get(disk);
+            if (indexed != null && isOfDisk.test(indexed, disk)) {
+                return indexed;
+            }
+        }
+        final T found = scan.apply(hostName, disk);
+        if (found != null) {
+            index.computeIfAbsent(hostName, h -> new ConcurrentHashMap<String, T>()).put(disk, found);
+        }
+        return found;
+    }
+
+    /** Removes the block device, after it was removed from the host. */
+    void remove(final String hostName, final T blockDevice) {
+        final Map<String, T> diskIndex = index.get(hostName);
+        if (diskIndex != null) {
+            diskIndex.values().removeIf(indexed -> indexed == blockDevice);
+        }
+    }
+}
@@ -94,6 +94,8 @@ public class DrbdGraph extends ResourceGraph {
     private final Map<BlockDevice, Vertex> blockDeviceToVertexMap = new LinkedHashMap<BlockDevice, Vertex>();
     /** Map from host to the list of block devices. */
     private final Map<HostDrbdInfo, List<Vertex>> hostBDVerticesMap = new LinkedHashMap<HostDrbdInfo, List<Vertex>>();
+    /** Index of the block device info objects, for the drbd events. */
+    private final DiskIndex<BlockDevInfo> blockDevInfoIndex = new DiskIndex<BlockDevInfo>(this::isBlockDevInfoOfDisk);
     /** Map from graph edge to the drbd volume info object. */
     private final Map<Edge, VolumeInfo> edgeToDrbdVolumeMap = new LinkedHashMap<Edge, VolumeInfo>();
     /** Map from drbd volume info object to the graph edge. */
@@ -187,6 +189,7 @@ public class DrbdGraph extends ResourceGraph {
                     getVertexToMenus().remove(bdv);
                     bdiToVertexMap.remove(bdi);
                     blockDeviceToVertexMap.remove(bdi.getBlockDevice());
+                    blockDevInfoIndex.remove(hostDrbdInfo.toString(), bdi);
                     vertexToHostMap.remove(bdv);
                     vertexList.remove(bdv);
                     somethingChanged();
@@ -788,30 +791,30 @@ public class DrbdGraph extends ResourceGraph {
      */
     public BlockDevInfo findBlockDevInfo(final String hostName,
                                          final String disk) {
-        HostDrbdInfo hi = null;
-        for (final HostDrbdInfo h : hostBDVerticesMap.keySet()) {
-            hi = h;
-            if (hi.toString().equals(hostName)) {
-                break;
-            }
-        }
-        if (hi == null) {
-            return null;
-        }
-        for (final Vertex v : hostBDVerticesMap.get(hi)) {
-            final BlockDevInfo bdi = (BlockDevInfo) getInfo(v);
-            if (bdi == null) {
+        return blockDevInfoIndex.find(hostName, disk, this::scanBlockDevInfo);
+    }
+
+    private BlockDevInfo scanBlockDevInfo(final String hostName, final String disk) {
+        for (final Map.Entry<HostDrbdInfo, List<Vertex>> hostEntry : hostBDVerticesMap.entrySet()) {
+            if (!hostEntry.getKey().toString().equals(hostName)) {
                 continue;
             }
-            if (disk.equals(bdi.getName())
-                || disk.equals(bdi.getBlockDevice().getDiskUuid())
-                || bdi.getBlockDevice().getDiskIds().contains(disk)) {
-                return bdi;
+            for (final Vertex v : new ArrayList<Vertex>(hostEntry.getValue())) {
+                final BlockDevInfo bdi = (BlockDevInfo) getInfo(v);
+                if (bdi != null && isBlockDevInfoOfDisk(bdi, disk)) {
+                    return bdi;
+                }
             }
         }
         return null;
     }
 
+    private boolean isBlockDevInfoOfDisk(final BlockDevInfo bdi, final String disk) {
+        return disk.equals(bdi.getName())
+               || disk.equals(bdi.getBlockDevice().getDiskUuid())
+               || bdi.getBlockDevice().getDiskIds().contains(disk);
+    }
+
     /** Returns tool tip when mouse is over a block device vertex. */
     @Override
     public String getVertexToolTip(final Vertex v) {
@@ -52,6 +52,11 @@ public final class DrbdLog extends HostLogs {
         return "DrbdLog.log";
     }
 
+    @Override
+    protected String logFollowCommand() {
+        return "DrbdLog.logFollow";
+    }
+
     /** Returns which pattern names are selected by default. */
     @Override
     protected Set<String> getSelectedSet() {
@@ -46,6 +46,11 @@ public final class DrbdsLog extends HostLogs {
         return "DrbdLog.log";
     }
 
+    @Override
+    protected String logFollowCommand() {
+        return "DrbdLog.logFollow";
+    }
+
     @Override
     protected Set<String> getSelectedSet() {
         final Set<String> selected = new HashSet<String>();
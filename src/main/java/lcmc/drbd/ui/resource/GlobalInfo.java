@@ -24,6 +24,8 @@ package lcmc.drbd.ui.resource;
 import com.google.common.base.Optional;
 import lcmc.Exceptions;
 import lcmc.cluster.domain.Cluster;
+import lcmc.cluster.service.HostFanOut;
+import lcmc.cluster.service.ssh.ConfigBundle;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.cluster.ui.widget.Check;
 import lcmc.cluster.ui.widget.Widget;
@@ -100,6 +102,8 @@ public class GlobalInfo extends AbstractDrbdInfo {
     private ClusterTreeMenu clusterTreeMenu;
     @Inject
     private Dialogs dialogs;
+    @Inject
+    private HostFanOut hostFanOut;
 
     public void einit(final String name, final Browser browser) {
         super.einit(Optional.of(new ResourceValue(name)), name, browser);
@@ -809,6 +813,7 @@ public class GlobalInfo extends AbstractDrbdInfo {
         final Collection<Host> hosts = new LinkedHashSet<Host>(
                                                     getCluster().getHosts());
         hosts.addAll(getCluster().getProxyHosts());
+        final Map<Host, ConfigBundle> bundles = new LinkedHashMap<Host, ConfigBundle>();
         for (final Host host : hosts) {
             final StringBuilder globalConfig = new StringBuilder(160);
             globalConfig.append("## generated by drbd-gui\n\n");
@@ -892,37 +897,31 @@ public class GlobalInfo extends AbstractDrbdInfo {
                     preCommand = "cp -r /etc/drbd.d{,.bak.`date +'%s'`} 2>/dev/null";
                 }
             }
+            final ConfigBundle bundle = new ConfigBundle().preCommand(preCommand);
             if (bigDRBDConf) {
                 /* one big drbd.conf */
-                host.getSSH().createConfig(globalConfig
-                                           + commonSectionConfig
-                                           + "\n\n"
-                                           + Tools.join("\n", resConfigs.values()),
-                                           configName,
-                                           dir,
-                                           "0600",
-                                           makeBackup,
-                                           preCommand,
-                                           null);
+                bundle.file(globalConfig
+                            + commonSectionConfig
+                            + "\n\n"
+                            + Tools.join("\n", resConfigs.values()),
+                            dir + configName,
+                            "0600",
+                            makeBackup,
+                            dir + configName);
             } else {
-                /* global */
-                host.getSSH().createConfig(globalConfig + commonSectionConfig,
-                                           "global_common.conf",
-                                           dir + "drbd.d.temp/",
-                                           "0600",
-                                           false,
-                                           preCommand,
-                                           null);
+                /* global, the unchanged files are copied from drbd.d/ */
+                bundle.file(globalConfig + commonSectionConfig,
+                            dir + "drbd.d.temp/global_common.conf",
+                            "0600",
+                            false,
+                            dir + "drbd.d/global_common.conf");
                 /* *.res */
-                for (final String resConfigName : resConfigs.keySet()) {
-                    host.getSSH().createConfig(
-                                   resConfigs.get(resConfigName),
-                                   resConfigName + ".res",
-                                   dir + "drbd.d.temp/",
-                                   "0600",
-                                   false,
-                                   null,
-                                   null);
+                for (final Map.Entry<String, String> resConfig : resConfigs.entrySet()) {
+                    bundle.file(resConfig.getValue(),
+                                dir + "drbd.d.temp/" + resConfig.getKey() + ".res",
+                                "0600",
+                                false,
+                                dir + "drbd.d/" + resConfig.getKey() + ".res");
                 }
                 /* drbd.conf */
                 final StringBuilder tempDRBDConf = new StringBuilder(200);
@@ -930,31 +929,37 @@ public class GlobalInfo extends AbstractDrbdInfo {
                 tempDRBDConf.append("## generated by drbd-gui\n\n")
                             .append("include \"drbd.d/global_common.conf\";\n")
                             .append("include \"drbd.d/*.res\";");
-                host.getSSH().createConfig(tempDRBDConf.toString(),
-                                           configName + ".temp",
-                                           dir,
-                                           "0600",
-                                           false,
-                                           null,
-                                           null);
+                bundle.file(tempDRBDConf.toString(), dir + configName + ".temp", "0600", false, null);
                 final StringBuilder drbdConf = new StringBuilder(200);
                 /* drbd.conf -> drbd.d.temp/ (new config) */
                 drbdConf.append("## generated by drbd-gui\n\n");
                 drbdConf.append("include \"drbd.d.temp/global_common.conf\";\n");
                 drbdConf.append("include \"drbd.d.temp/*.res\";");
-                host.getSSH().createConfig(
-                               drbdConf.toString(),
-                               configName,
-                               dir,
-                               "0600",
-                               makeBackup,
-                               null,
-                               "rm -rf /etc/drbd.d 2>/dev/null; "
-                               + "cp -r /etc/drbd.d{.temp,} && "
-                               + "mv /etc/drbd.conf{.temp,} && "
-                               + "rm -rf /etc/drbd.d.temp/");
-                               /* all this is to stay atomic. */
+                bundle.file(drbdConf.toString(), dir + configName, "0600", makeBackup, null);
+                bundle.postCommand("rm -rf /etc/drbd.d 2>/dev/null; "
+                                   + "cp -r /etc/drbd.d{.temp,} && "
+                                   + "mv /etc/drbd.conf{.temp,} && "
+                                   + "rm -rf /etc/drbd.d.temp/");
+                                   /* all this is to stay atomic. */
             }
+            bundles.put(host, bundle);
+        }
+        createConfigs(bundles);
+    }
+
+    /**
+     * Installs the configs on all hosts at the same time. The hosts, that
+     * are not connected, are skipped.
+     */
+    private void createConfigs(final Map<Host, ConfigBundle> bundles) throws Exceptions.DrbdConfigException {
+        final Set<String> failedHosts =
+                hostFanOut.executeQuietly("createConfigs",
+                                          bundles.keySet(),
+                                          host -> !host.isConnected()
+                                                  || host.getSSH().createConfigs(bundles.get(host)));
+        if (!failedHosts.isEmpty()) {
+            throw new Exceptions.DrbdConfigException("could not install the drbd config on: "
+                                                     + Tools.join(", ", failedHosts));
         }
     }
 
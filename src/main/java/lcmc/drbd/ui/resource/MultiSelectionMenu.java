@@ -34,12 +34,12 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.swing.JColorChooser;
 
+import lcmc.cluster.service.HostFanOut;
 import lcmc.common.ui.Access;
 import lcmc.common.ui.CallbackAction;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.domain.AccessMode;
 import lcmc.common.domain.Application;
-import lcmc.common.ui.main.ProgressIndicator;
 import lcmc.host.domain.Host;
 import lcmc.drbd.domain.BlockDevice;
 import lcmc.cluster.ui.ClusterBrowser;
@@ -68,8 +68,6 @@ public class MultiSelectionMenu {
     @Inject
     private MainData mainData;
     @Inject
-    private ProgressIndicator progressIndicator;
-    @Inject
     private MenuFactory menuFactory;
     @Inject
     private Application application;
@@ -81,6 +79,8 @@ public class MultiSelectionMenu {
     private Provider<VGRemove> vgRemoveProvider;
     @Inject
     private Provider<LVCreate> lvCreateProvider;
+    @Inject
+    private HostFanOut hostFanOut;
 
     public List<UpdatableItem> getPulldownMenu(final MultiSelectionInfo multiSelectionInfo,
                                                final List<Info> selectedInfos) {
@@ -132,9 +132,9 @@ public class MultiSelectionMenu {
             .addAction(new MenuAction() {
                     @Override
                     public void run(final String text) {
-                        for (final HostDrbdInfo hi : selectedHostInfos) {
-                            DRBD.load(hi.getHost(), Application.RunMode.LIVE);
-                        }
+                        hostFanOut.execute(text,
+                                           getHosts(selectedHostInfos),
+                                           host -> DRBD.load(host, Application.RunMode.LIVE));
                         for (final HostDrbdInfo hi : selectedHostInfos) {
                             getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                         }
@@ -162,9 +162,12 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
-                    for (final HostDrbdInfo hi : selectedHostInfos) {
-                        DRBD.adjustApply(hi.getHost(), DRBD.ALL_DRBD_RESOURCES, null, Application.RunMode.LIVE);
-                    }
+                    hostFanOut.execute(text,
+                                       getHosts(selectedHostInfos),
+                                       host -> DRBD.adjustApply(host,
+                                                                DRBD.ALL_DRBD_RESOURCES,
+                                                                null,
+                                                                Application.RunMode.LIVE) == 0);
                     for (final HostDrbdInfo hi : selectedHostInfos) {
                         getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                     }
@@ -201,9 +204,9 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
-                    for (final HostDrbdInfo hi : selectedHostInfos) {
-                        DRBD.up(hi.getHost(), DRBD.ALL_DRBD_RESOURCES, null, Application.RunMode.LIVE);
-                    }
+                    hostFanOut.execute(text,
+                                       getHosts(selectedHostInfos),
+                                       host -> DRBD.up(host, DRBD.ALL_DRBD_RESOURCES, null, Application.RunMode.LIVE));
                 }});
         items.add(upAllItem);
         final ButtonCallback upAllItemCallback =
@@ -238,9 +241,9 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
-                    for (final HostDrbdInfo hi : selectedHostInfos) {
-                        DRBD.stopProxy(hi.getHost(), Application.RunMode.LIVE);
-                    }
+                    hostFanOut.execute(text,
+                                       getHosts(selectedHostInfos),
+                                       host -> DRBD.stopProxy(host, Application.RunMode.LIVE));
                     for (final HostDrbdInfo hi : selectedHostInfos) {
                         getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                     }
@@ -267,9 +270,9 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
-                    for (final HostDrbdInfo hi : selectedHostInfos) {
-                        DRBD.startProxy(hi.getHost(), Application.RunMode.LIVE);
-                    }
+                    hostFanOut.execute(text,
+                                       getHosts(selectedHostInfos),
+                                       host -> DRBD.startProxy(host, Application.RunMode.LIVE));
                     for (final HostDrbdInfo hi : selectedHostInfos) {
                         getBrowser().updateHWInfo(hi.getHost(), !Host.UPDATE_LVM);
                     }
@@ -326,16 +329,17 @@ public class MultiSelectionMenu {
                 public void run(final String text) {
                 /* at least one must be true */
                     final Collection<Host> hosts = new HashSet<Host>();
+                    final List<BlockDevInfo> pvCreateBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.canCreatePV() && (!bdi.getBlockDevice().isDrbd() || bdi.getBlockDevice().isPrimary())) {
-                            final boolean ret = bdi.pvCreate(Application.RunMode.LIVE);
-                            if (!ret) {
-                                progressIndicator.progressIndicatorFailed(
-                                        Tools.getString("BlockDevInfo.PVCreate.Failed", bdi.getName()));
-                            }
+                            pvCreateBlockDevInfos.add(bdi);
                             hosts.add(bdi.getHost());
                         }
                     }
+                    hostFanOut.execute(text,
+                                       pvCreateBlockDevInfos,
+                                       BlockDevInfo::getHost,
+                                       bdi -> bdi.pvCreate(Application.RunMode.LIVE));
                     for (final Host h : hosts) {
                         h.getBrowser().getClusterBrowser().updateHWInfo(h, Host.UPDATE_LVM);
                     }
@@ -368,17 +372,18 @@ public class MultiSelectionMenu {
                 @Override
                 public void run(final String text) {
                     final Collection<Host> hosts = new HashSet<Host>();
+                    final List<BlockDevInfo> pvRemoveBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.canRemovePV()
                                 && (!bdi.getBlockDevice().isDrbd() || !bdi.getBlockDevice().isDrbdPhysicalVolume())) {
-                            final boolean ret = bdi.pvRemove(Application.RunMode.LIVE);
-                            if (!ret) {
-                                progressIndicator.progressIndicatorFailed(
-                                        Tools.getString("BlockDevInfo.PVRemove.Failed", bdi.getName()));
-                            }
+                            pvRemoveBlockDevInfos.add(bdi);
                             hosts.add(bdi.getHost());
                         }
                     }
+                    hostFanOut.execute(text,
+                                       pvRemoveBlockDevInfos,
+                                       BlockDevInfo::getHost,
+                                       bdi -> bdi.pvRemove(Application.RunMode.LIVE));
                     for (final Host h : hosts) {
                         h.getBrowser().getClusterBrowser().updateHWInfo(h, Host.UPDATE_LVM);
                     }
@@ -558,7 +563,7 @@ public class MultiSelectionMenu {
     }
 
     /** Returns 'LV remove' menu item. */
-    private UpdatableItem getLVRemoveItem(final Iterable<BlockDevInfo> selectedBlockDevInfos) {
+    private UpdatableItem getLVRemoveItem(final Collection<BlockDevInfo> selectedBlockDevInfos) {
         return menuFactory.createMenuItem(
                     Tools.getString("MultiSelectionInfo.LVRemove"),
                     null,
@@ -589,9 +594,10 @@ public class MultiSelectionMenu {
                         Tools.getString("MultiSelectionInfo.LVRemove.Confirm.Desc", Tools.join(", ", bdNames)),
                         Tools.getString("MultiSelectionInfo.LVRemove.Confirm.Remove"),
                         Tools.getString("MultiSelectionInfo.LVRemove.Confirm.Cancel"))) {
-                    for (final BlockDevInfo bdi : selectedBlockDevInfos) {
-                        bdi.lvRemove(Application.RunMode.LIVE);
-                    }
+                    hostFanOut.execute(text,
+                                       selectedBlockDevInfos,
+                                       BlockDevInfo::getHost,
+                                       bdi -> bdi.lvRemove(Application.RunMode.LIVE));
                     for (final Host h : selectedHosts) {
                         getBrowser().updateHWInfo(h, Host.UPDATE_LVM);
                     }
@@ -650,14 +656,19 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
+                    final List<BlockDevInfo> detachBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.getBlockDevice().isDrbd()
                             && (access.isAdvancedMode() || !bdi.getDrbdVolumeInfo().isUsedByCRM())
                             && !bdi.getBlockDevice().isSyncing()
                             && !bdi.isDiskless(Application.RunMode.LIVE)) {
-                            bdi.detach(Application.RunMode.LIVE);
+                            detachBlockDevInfos.add(bdi);
                         }
                     }
+                    hostFanOut.run(text,
+                                   detachBlockDevInfos,
+                                   BlockDevInfo::getHost,
+                                   bdi -> bdi.detach(Application.RunMode.LIVE));
                 }});
         final ButtonCallback detachItemCallback =
               getBrowser().new DRBDMenuItemCallback(getBrowser().getDCHost())
@@ -722,14 +733,19 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
+                    final List<BlockDevInfo> attachBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.getBlockDevice().isDrbd()
                             && (access.isAdvancedMode() || !bdi.getDrbdVolumeInfo().isUsedByCRM())
                             && !bdi.getBlockDevice().isSyncing()
                             && bdi.isDiskless(Application.RunMode.LIVE)) {
-                            bdi.attach(Application.RunMode.LIVE);
+                            attachBlockDevInfos.add(bdi);
                         }
                     }
+                    hostFanOut.run(text,
+                                   attachBlockDevInfos,
+                                   BlockDevInfo::getHost,
+                                   bdi -> bdi.attach(Application.RunMode.LIVE));
                 }});
         final ButtonCallback attachItemCallback =
              getBrowser().new DRBDMenuItemCallback(getBrowser().getDCHost())
@@ -794,13 +810,18 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
+                    final List<BlockDevInfo> connectBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.getBlockDevice().isDrbd()
                             && (access.isAdvancedMode() || !bdi.getDrbdVolumeInfo().isUsedByCRM())
                             && !bdi.isConnectedOrWF(Application.RunMode.LIVE)) {
-                            bdi.connect(Application.RunMode.LIVE);
+                            connectBlockDevInfos.add(bdi);
                         }
                     }
+                    hostFanOut.run(text,
+                                   connectBlockDevInfos,
+                                   BlockDevInfo::getHost,
+                                   bdi -> bdi.connect(Application.RunMode.LIVE));
                 }});
         final ButtonCallback connectItemCallback =
               getBrowser().new DRBDMenuItemCallback(getBrowser().getDCHost())
@@ -870,6 +891,7 @@ public class MultiSelectionMenu {
                 .addAction(new MenuAction() {
                         @Override
                         public void run(final String text) {
+                    final List<BlockDevInfo> disconnectBlockDevInfos = new ArrayList<BlockDevInfo>();
                     for (final BlockDevInfo bdi : selectedBlockDevInfos) {
                         if (bdi.getBlockDevice().isDrbd()
                             && bdi.isConnectedOrWF(Application.RunMode.LIVE)
@@ -878,9 +900,13 @@ public class MultiSelectionMenu {
                                 || (bdi.getBlockDevice().isPrimary() && bdi.getBlockDevice().isSyncSource())
                                    || (bdi.getOtherBlockDevInfo().getBlockDevice().isPrimary()
                                        && bdi.getBlockDevice().isSyncTarget()))) {
-                            bdi.disconnect(Application.RunMode.LIVE);
+                            disconnectBlockDevInfos.add(bdi);
                         }
                     }
+                    hostFanOut.run(text,
+                                   disconnectBlockDevInfos,
+                                   BlockDevInfo::getHost,
+                                   bdi -> bdi.disconnect(Application.RunMode.LIVE));
                 }});
         final ButtonCallback disconnectItemCallback =
               getBrowser().new DRBDMenuItemCallback(getBrowser().getDCHost())
@@ -1497,4 +1523,12 @@ public class MultiSelectionMenu {
     private ClusterBrowser getBrowser() {
         return multiSelectionInfo.getBrowser();
     }
+
+    private List<Host> getHosts(final Iterable<HostDrbdInfo> hostInfos) {
+        final List<Host> hosts = new ArrayList<Host>();
+        for (final HostDrbdInfo hi : hostInfos) {
+            hosts.add(hi.getHost());
+        }
+        return hosts;
+    }
 }
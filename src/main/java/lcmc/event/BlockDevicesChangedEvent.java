@@ -25,7 +25,7 @@ import lcmc.host.domain.Host;
 
 import java.util.Collection;
 
-public class BlockDevicesChangedEvent {
+public class BlockDevicesChangedEvent implements CoalescableEvent {
     private final Host host;
     private final Collection<BlockDevice> blockDevices;
 
@@ -41,4 +41,9 @@ public class BlockDevicesChangedEvent {
     public Collection<BlockDevice> getBlockDevices() {
         return blockDevices;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
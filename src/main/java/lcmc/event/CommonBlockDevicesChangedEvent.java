@@ -25,7 +25,7 @@ import lcmc.cluster.ui.resource.CommonBlockDevInfo;
 
 import java.util.Collection;
 
-public class CommonBlockDevicesChangedEvent {
+public class CommonBlockDevicesChangedEvent implements CoalescableEvent {
     private final Cluster cluster;
     private final Collection<CommonBlockDevInfo> commonBlockDevViews;
 
@@ -43,4 +43,9 @@ public class CommonBlockDevicesChangedEvent {
     public Collection<CommonBlockDevInfo> getCommonBlockDevViews() {
         return commonBlockDevViews;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getCluster();
+    }
 }
@@ -24,7 +24,7 @@ import lcmc.cluster.domain.Cluster;
 
 import java.util.Set;
 
-public class CommonFileSystemsChangedEvent {
+public class CommonFileSystemsChangedEvent implements CoalescableEvent {
     private final Cluster cluster;
     private final Set<String> commonFileSystems;
 
@@ -40,4 +40,9 @@ public class CommonFileSystemsChangedEvent {
     public Set<String> getCommonFileSystems() {
         return commonFileSystems;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getCluster();
+    }
 }
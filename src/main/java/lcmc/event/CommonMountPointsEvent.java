@@ -24,7 +24,7 @@ import lcmc.cluster.domain.Cluster;
 
 import java.util.Set;
 
-public class CommonMountPointsEvent {
+public class CommonMountPointsEvent implements CoalescableEvent {
     private final Cluster cluster;
     private final Set<String> commonMountPoints;
 
@@ -40,4 +40,9 @@ public class CommonMountPointsEvent {
     public Set<String> getCommonMountPoints() {
         return commonMountPoints;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getCluster();
+    }
 }
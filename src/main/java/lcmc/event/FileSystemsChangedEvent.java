@@ -23,7 +23,7 @@ package lcmc.event;
 import lcmc.host.domain.Host;
 import java.util.Set;
 
-public class FileSystemsChangedEvent {
+public class FileSystemsChangedEvent implements CoalescableEvent {
     private final Host host;
     private final Set<String> fileSystems;
 
@@ -39,4 +39,9 @@ public class FileSystemsChangedEvent {
     public Set<String> getFileSystems() {
         return fileSystems;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
@@ -24,7 +24,7 @@ import lcmc.host.domain.Host;
 
 import java.util.Map;
 
-public class HwBlockDevicesDiskSpaceEvent {
+public class HwBlockDevicesDiskSpaceEvent implements CoalescableEvent {
     private final Host host;
     private final Map<String, String> diskSpaces;
 
@@ -40,4 +40,9 @@ public class HwBlockDevicesDiskSpaceEvent {
     public Map<String, String> getDiskSpaces() {
         return diskSpaces;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
@@ -25,7 +25,7 @@ import lcmc.host.domain.Host;
 
 import java.util.List;
 
-public class HwBridgesChangedEvent {
+public class HwBridgesChangedEvent implements CoalescableEvent {
     private final Host host;
     private final List<Value> bridges;
 
@@ -41,4 +41,9 @@ public class HwBridgesChangedEvent {
         this.host = host;
         this.bridges = bridges;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
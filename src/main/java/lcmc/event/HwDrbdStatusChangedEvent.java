@@ -22,7 +22,7 @@ package lcmc.event;
 
 import lcmc.host.domain.Host;
 
-public class HwDrbdStatusChangedEvent {
+public class HwDrbdStatusChangedEvent implements CoalescableEvent {
     private final Host host;
     private final boolean drbdStatusOk;
 
@@ -38,4 +38,9 @@ public class HwDrbdStatusChangedEvent {
     public boolean isDrbdStatusOk() {
         return drbdStatusOk;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
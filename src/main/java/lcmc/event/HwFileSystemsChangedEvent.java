@@ -24,7 +24,7 @@ import lcmc.host.domain.Host;
 
 import java.util.Set;
 
-public class HwFileSystemsChangedEvent {
+public class HwFileSystemsChangedEvent implements CoalescableEvent {
     private final Host host;
     private final Set<String> fileSystems;
 
@@ -40,4 +40,9 @@ public class HwFileSystemsChangedEvent {
     public Set<String> getFileSystems() {
         return fileSystems;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
@@ -24,7 +24,7 @@ import lcmc.host.domain.Host;
 
 import java.util.Set;
 
-public class HwMountPointsChangedEvent {
+public class HwMountPointsChangedEvent implements CoalescableEvent {
     private final Host host;
     private final Set<String> mountPoints;
 
@@ -40,4 +40,9 @@ public class HwMountPointsChangedEvent {
     public Set<String> getMountPoints() {
         return mountPoints;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
@@ -25,7 +25,7 @@ import lcmc.host.domain.Host;
 
 import java.util.List;
 
-public class NetInterfacesChangedEvent {
+public class NetInterfacesChangedEvent implements CoalescableEvent {
     private final Host host;
     private final List<NetInterface> netInterfaces;
 
@@ -41,4 +41,9 @@ public class NetInterfacesChangedEvent {
     public List<NetInterface> getNetInterfaces() {
         return netInterfaces;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getHost();
+    }
 }
@@ -24,7 +24,7 @@ import lcmc.cluster.domain.Network;
 
 import java.util.List;
 
-public class NetworkChangedEvent {
+public class NetworkChangedEvent implements CoalescableEvent {
 
     private final Cluster cluster;
     private final List<Network> commonNetworks;
@@ -41,4 +41,9 @@ public class NetworkChangedEvent {
     public List<Network> getCommonNetworks() {
         return commonNetworks;
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getCluster();
+    }
 }
@@ -95,8 +95,6 @@ public class Host implements Comparable<Host>, Value {
     public static final String PROXY_NOT_CONNECTED_MENU_TOOLTIP_TEXT = "not connected to the proxy host";
     /** Timeout after which the connection is considered to be dead. */
     private static final int PING_TIMEOUT = 40000;
-    private static final int DRBD_EVENTS_TIMEOUT = 40000;
-    private static final int CLUSTER_EVENTS_TIMEOUT = 40000;
 
     public static final String DEFAULT_HOSTNAME = "unknown";
 
@@ -117,8 +115,11 @@ public class Host implements Comparable<Host>, Value {
     private String username = null;
     private Color defaultHostColorInGraph;
     private Color savedHostColorInGraphs;
-    private ExecCommandThread drbdStatusThread = null;
-    private ExecCommandThread crmStatusThread = null;
+    private final StatusChannel statusChannel = new StatusChannel(this);
+    private StatusChannel.Subscription drbdStatus = null;
+    private StatusChannel.Subscription crmStatus = null;
+    /** Whether the cluster events are requested with the cib deltas. */
+    private volatile boolean crmStatusDelta = true;
     private String sshPort = null;
     private Boolean useSudo = null;
     private String sudoPassword = "";
@@ -354,17 +355,9 @@ public class Host implements Comparable<Host>, Value {
      * block device object. The command is 'drbdsetup /dev/drbdX events'
      * The session is stored, so that in can be stopped with 'stop' button.
      */
-    public void execDrbdStatusCommand(final ExecCallback execCallback, final NewOutputCallback outputCallback) {
-        if (drbdStatusThread == null) {
-            drbdStatusThread = ssh.execCommand(new ExecCommandConfig()
-                                                   .commandString("DRBD.getDrbdStatus")
-                                                   .inBash(false)
-                                                   .inSudo(false)
-                                                   .execCallback(execCallback)
-                                                   .newOutputCallback(outputCallback)
-                                                   .silentCommand()
-                                                   .silentOutput()
-                                                   .sshCommandTimeout(DRBD_EVENTS_TIMEOUT));
+    public void execDrbdStatusCommand(final ExecCallback execCallback, final StatusOutputCallback outputCallback) {
+        if (drbdStatus == null) {
+            drbdStatus = statusChannel.open(StatusChannel.Stream.DRBD, false, execCallback, outputCallback);
         } else {
             LOG.appWarning("execDrbdStatusCommand: trying to start started drbd status");
         }
@@ -372,17 +365,17 @@ public class Host implements Comparable<Host>, Value {
 
     /** Stops drbd status background process. */
     public void stopDrbdStatus() {
-        final ExecCommandThread dst = drbdStatusThread;
+        final StatusChannel.Subscription dst = drbdStatus;
         if (dst == null) {
             LOG.appWarning("execDrbdStatusCommand: trying to stop stopped drbd status");
             return;
         }
-        dst.cancelTheSession();
-        drbdStatusThread = null;
+        dst.cancel();
+        drbdStatus = null;
     }
 
     public void waitForDrbdStatusFinish() {
-        final ExecCommandThread dst = drbdStatusThread;
+        final StatusChannel.Subscription dst = drbdStatus;
         if (dst != null) {
             try {
                 /* it probably hangs after this timeout, so it will be
@@ -396,24 +389,16 @@ public class Host implements Comparable<Host>, Value {
     }
 
     public void execCrmStatusCommand(final ExecCallback execCallback,
-                                     final NewOutputCallback outputCallback) {
-        if (crmStatusThread == null) {
-            crmStatusThread = ssh.execCommand(new ExecCommandConfig()
-                                                 .commandString("Heartbeat.getClStatus")
-                                                 .inBash(false)
-                                                 .inSudo(false)
-                                                 .execCallback(execCallback)
-                                                 .newOutputCallback(outputCallback)
-                                                 .silentCommand()
-                                                 .silentOutput()
-                                                 .sshCommandTimeout(CLUSTER_EVENTS_TIMEOUT));
+                                     final StatusOutputCallback outputCallback) {
+        if (crmStatus == null) {
+            crmStatus = statusChannel.open(StatusChannel.Stream.CRM, crmStatusDelta, execCallback, outputCallback);
         } else {
             LOG.appWarning("execClStatusCommand: trying to start started status");
         }
     }
 
     public void waitForCrmStatusFinish() {
-        final ExecCommandThread cst = crmStatusThread;
+        final StatusChannel.Subscription cst = crmStatus;
         if (cst == null) {
             return;
         }
@@ -422,16 +407,25 @@ public class Host implements Comparable<Host>, Value {
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        crmStatusThread = null;
+        crmStatus = null;
+    }
+
+    public void setCrmStatusDelta(final boolean crmStatusDelta) {
+        this.crmStatusDelta = crmStatusDelta;
     }
 
     public void stopCrmStatus() {
-        final ExecCommandThread cst = crmStatusThread;
+        final StatusChannel.Subscription cst = crmStatus;
         if (cst == null) {
             LOG.appWarning("stopClStatus: trying to stop stopped status");
             return;
         }
-        cst.cancelTheSession();
+        cst.cancel();
+    }
+
+    /** Status commands, that run in the background. */
+    public StatusChannel getStatusChannel() {
+        return statusChannel;
     }
 
     /** Gets ipAddress. There can be more ips, delimited with "," */
@@ -696,19 +690,28 @@ public class Host implements Comparable<Host>, Value {
             if (sshGui == null) {
                 sshGui = new SSHGui(mainData.getMainFrame(), this, null);
             }
+            final long connectStart = System.currentTimeMillis();
 
             connect(sshGui,
                     new ConnectionCallback() {
                         @Override
                         public void done(final int flag) {
+                            final long connected = System.currentTimeMillis();
                             setConnected();
                             getSSH().execCommandAndWait(new ExecCommandConfig()
                                                             .command(":") /* activate sudo */
                                                             .silentCommand()
                                                             .silentOutput()
                                                             .sshCommandTimeout(10000));
-                                    getSSH().installGuiHelper();
+                            final long sudoActivated = System.currentTimeMillis();
+                            getSSH().installGuiHelper();
+                            final long guiHelperInstalled = System.currentTimeMillis();
                             hostParser.getAllInfo();
+                            final long infoLoaded = System.currentTimeMillis();
+                            LOG.info("connect: " + hostName + ": connect " + (connected - connectStart)
+                                     + " ms, sudo " + (sudoActivated - connected)
+                                     + " ms, gui-helper " + (guiHelperInstalled - sudoActivated)
+                                     + " ms, info " + (infoLoaded - guiHelperInstalled) + " ms");
                             if (useProgressIndicator) {
                                 progressIndicator.stopProgressIndicator(
                                         hostName,
@@ -0,0 +1,459 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lcmc.cluster.service.ssh.ExecCommandConfig;
+import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.common.domain.ExecCallback;
+import lcmc.common.domain.util.Tools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * The status commands of the host, that run all the time: the hw info
+ * daemon, the drbd events and the cluster events.
+ *
+ * With StatusChannel.Multiplexed they run in one status-mux helper process
+ * and one ssh session. The helper is started with the first stream and
+ * closed, when the last stream is canceled. The streams are started and
+ * stopped with the commands on the stdin of the helper and the
+ * StatusFrameDecoder hands over their frames to the callbacks of the
+ * streams. The helper, that doesn't send the frames, sends the same output
+ * as the commands, that run in their own sessions, with the text markers.
+ * Otherwise every stream runs in its own session.
+ */
+public final class StatusChannel {
+    private static final Logger LOG = LoggerFactory.getLogger(StatusChannel.class);
+    /** Timeout after which the status command is considered to be dead. */
+    private static final int STATUS_TIMEOUT = 40000;
+    /** Exit code of the canceled streams. */
+    private static final int CANCELED_EXIT_CODE = 130;
+    /** Exit code of the commands, that didn't run, because there is no connection. */
+    private static final int NOT_CONNECTED_EXIT_CODE = 139;
+    /** Status-mux protocol, that is understood. */
+    private static final String MUX_VERSION = "1";
+    /** After so many helpers, that exited before they were ready, every stream runs in its own session. */
+    private static final int MAX_FAILED_MUX_STARTS = 3;
+
+    private final Host host;
+    private volatile boolean multiplexed = "y".equals(Tools.getDefault("StatusChannel.Multiplexed"));
+    private final Lock mMuxLock = new ReentrantLock();
+    /** Running status-mux helper or null. */
+    private Mux mux = null;
+    private int lastStreamId = 0;
+    private int failedMuxStarts = 0;
+
+    StatusChannel(final Host host) {
+        this.host = host;
+    }
+
+    /**
+     * Starts the stream. The callbacks get the output and the exit code,
+     * like from the command, that runs in its own session.
+     */
+    public Subscription open(final Stream stream,
+                             final boolean delta,
+                             final ExecCallback execCallback,
+                             final StatusOutputCallback outputCallback) {
+        if (!multiplexed) {
+            return new Subscription(host.getSSH().execCommand(new ExecCommandConfig()
+                                                                  .commandString(stream.getCommand(delta))
+                                                                  .inBash(false)
+                                                                  .inSudo(false)
+                                                                  .execCallback(execCallback)
+                                                                  .newOutputCallback(outputCallback)
+                                                                  .silentCommand()
+                                                                  .silentOutput()
+                                                                  .sshCommandTimeout(STATUS_TIMEOUT)));
+        }
+        final Mux runningMux;
+        final Subscription subscription;
+        final boolean ready;
+        boolean created = false;
+        mMuxLock.lock();
+        try {
+            if (mux == null) {
+                mux = new Mux();
+                created = true;
+            }
+            runningMux = mux;
+            lastStreamId++;
+            final String id = stream.getName() + '-' + lastStreamId;
+            subscription = new Subscription(runningMux,
+                                            id,
+                                            "start " + stream.getName() + ' ' + id + ' '
+                                            + (delta ? stream.getDeltaVersion() : 0),
+                                            execCallback,
+                                            outputCallback);
+            runningMux.subscriptions.put(id, subscription);
+            ready = runningMux.ready;
+        } finally {
+            mMuxLock.unlock();
+        }
+        if (created) {
+            runningMux.start();
+        } else if (ready) {
+            runningMux.send(subscription.startCommand);
+        }
+        return subscription;
+    }
+
+    /** Streams, that the status-mux helper can run. */
+    public enum Stream {
+        /* --delta=<InfoDeltaApplier.DELTA_VERSION> */
+        HW("hw", "HostHWInfoDaemon", "HostHWInfoDaemon.Delta", 1),
+        DRBD("drbd", "DRBD.getDrbdStatus", "DRBD.getDrbdStatus", 0),
+        /* --delta=<CibDeltaApplier.DELTA_VERSION> */
+        CRM("crm", "Heartbeat.getClStatus", "Heartbeat.getClStatus.Delta", 1);
+
+        private final String name;
+        /** Command, that runs the stream in its own session. */
+        private final String command;
+        private final String deltaCommand;
+        private final int deltaVersion;
+
+        Stream(final String name, final String command, final String deltaCommand, final int deltaVersion) {
+            this.name = name;
+            this.command = command;
+            this.deltaCommand = deltaCommand;
+            this.deltaVersion = deltaVersion;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getCommand(final boolean delta) {
+            return delta ? deltaCommand : command;
+        }
+
+        int getDeltaVersion() {
+            return deltaVersion;
+        }
+    }
+
+    /** Stream, that runs in the background, until it exits or is canceled. */
+    public static final class Subscription {
+        /** Helper, that runs the stream, null if it runs in its own session. */
+        private final Mux mux;
+        private final ExecCommandThread thread;
+        private final String id;
+        private final String startCommand;
+        private final ExecCallback execCallback;
+        private final StatusOutputCallback outputCallback;
+        private final AtomicBoolean finishing = new AtomicBoolean(false);
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private Subscription(final ExecCommandThread thread) {
+            this.mux = null;
+            this.thread = thread;
+            this.id = null;
+            this.startCommand = null;
+            this.execCallback = null;
+            this.outputCallback = null;
+        }
+
+        private Subscription(final Mux mux,
+                             final String id,
+                             final String startCommand,
+                             final ExecCallback execCallback,
+                             final StatusOutputCallback outputCallback) {
+            this.mux = mux;
+            this.thread = null;
+            this.id = id;
+            this.startCommand = startCommand;
+            this.execCallback = execCallback;
+            this.outputCallback = outputCallback;
+        }
+
+        public void cancel() {
+            if (mux == null) {
+                thread.cancelTheSession();
+            } else {
+                mux.cancel(this);
+            }
+        }
+
+        /** Waits for the stream to finish. */
+        public void join() throws InterruptedException {
+            if (mux == null) {
+                thread.join();
+            } else {
+                finished.await();
+            }
+        }
+
+        public Subscription block() {
+            try {
+                join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return this;
+        }
+
+        /** Calls the exec callback once, after the stream exited. */
+        private void finish(final int exitCode) {
+            if (!finishing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (exitCode == 0) {
+                    execCallback.done("");
+                } else {
+                    execCallback.doneError("", exitCode);
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    /** One status-mux helper process. */
+    private final class Mux implements StatusFrameDecoder.Receiver {
+        /** Running streams by the id. */
+        private final Map<String, Subscription> subscriptions = new HashMap<String, Subscription>();
+        /** Whether the helper accepts the commands. */
+        private boolean ready = false;
+        /** The helper command, null till it is started. */
+        private ExecCommandThread thread = null;
+        /** Commands, that were sent before the helper command was started. */
+        private final List<String> pendingCommands = new ArrayList<String>();
+        private boolean stopped = false;
+        private final Lock mSendLock = new ReentrantLock();
+
+        /**
+         * Starts the helper, it can send its frames, before the command is
+         * returned, the commands are sent, after it is there.
+         */
+        void start() {
+            LOG.debug1("start: {}: start", host.getName());
+            final ExecCommandThread startedThread = host.getSSH().execCommand(new ExecCommandConfig()
+                                                   .commandString("HostStatusMux")
+                                                   .inBash(false)
+                                                   .inSudo(false)
+                                                   .execCallback(new ExecCallback() {
+                                                       @Override
+                                                       public void done(final String answer) {
+                                                           /* it exits only, if it was stopped */
+                                                           closed(CANCELED_EXIT_CODE);
+                                                       }
+
+                                                       @Override
+                                                       public void doneError(final String answer, final int exitCode) {
+                                                           closed(exitCode);
+                                                       }
+                                                   })
+                                                   .newByteOutputCallback(new StatusFrameDecoder(this))
+                                                   .silentCommand()
+                                                   .silentOutput()
+                                                   .sshCommandTimeout(STATUS_TIMEOUT));
+            mSendLock.lock();
+            try {
+                thread = startedThread;
+                if (stopped) {
+                    startedThread.cancelTheSession();
+                    return;
+                }
+                for (final String command : pendingCommands) {
+                    write(command);
+                }
+                pendingCommands.clear();
+            } finally {
+                mSendLock.unlock();
+            }
+        }
+
+        @Override
+        public void output(final String id, final String output) {
+            final Subscription subscription = getSubscription(id);
+            if (subscription != null) {
+                subscription.outputCallback.output(output);
+            }
+        }
+
+        @Override
+        public void frames(final String id, final List<StatusFrame> frames) {
+            final Subscription subscription = getSubscription(id);
+            if (subscription != null) {
+                subscription.outputCallback.frames(frames);
+            }
+        }
+
+        private Subscription getSubscription(final String id) {
+            mMuxLock.lock();
+            try {
+                return subscriptions.get(id);
+            } finally {
+                mMuxLock.unlock();
+            }
+        }
+
+        @Override
+        public void control(final String message) {
+            final String[] parts = message.split(" ");
+            if ("ready".equals(parts[0])) {
+                ready(parts.length > 1 ? parts[1] : null);
+            } else if ("end".equals(parts[0]) && parts.length > 2) {
+                end(parts[1], parts[2]);
+            } else if ("error".equals(parts[0])) {
+                LOG.appWarning("control: " + host.getName() + ": " + message);
+            }
+        }
+
+        private void ready(final String version) {
+            if (!MUX_VERSION.equals(version)) {
+                LOG.appWarning("ready: " + host.getName() + ": unknown status-mux version: " + version);
+            }
+            final List<String> startCommands = new ArrayList<String>();
+            mMuxLock.lock();
+            try {
+                ready = true;
+                failedMuxStarts = 0;
+                for (final Subscription subscription : subscriptions.values()) {
+                    startCommands.add(subscription.startCommand);
+                }
+            } finally {
+                mMuxLock.unlock();
+            }
+            for (final String startCommand : startCommands) {
+                send(startCommand);
+            }
+        }
+
+        private void end(final String id, final String exitCode) {
+            final Subscription subscription;
+            mMuxLock.lock();
+            try {
+                subscription = subscriptions.remove(id);
+            } finally {
+                mMuxLock.unlock();
+            }
+            if (subscription == null) {
+                return;
+            }
+            LOG.debug1("end: {}: {} exit code: {}", host.getName(), id, exitCode);
+            int ec;
+            try {
+                ec = Integer.parseInt(exitCode);
+            } catch (final NumberFormatException e) {
+                ec = 1;
+            }
+            subscription.finish(ec);
+        }
+
+        private void cancel(final Subscription subscription) {
+            final boolean last;
+            final boolean started;
+            mMuxLock.lock();
+            try {
+                if (subscriptions.remove(subscription.id) == null) {
+                    return;
+                }
+                last = subscriptions.isEmpty();
+                /* the start command is sent, when the helper is ready */
+                started = ready;
+                if (last && mux == this) {
+                    mux = null;
+                }
+            } finally {
+                mMuxLock.unlock();
+            }
+            if (last) {
+                LOG.debug1("cancel: {}: stop", host.getName());
+                stop();
+            } else if (started) {
+                send("stop " + subscription.id);
+            }
+            subscription.finish(CANCELED_EXIT_CODE);
+        }
+
+        /** The helper exited, all its streams are finished. */
+        private void closed(final int exitCode) {
+            final List<Subscription> running;
+            mMuxLock.lock();
+            try {
+                if (mux == this) {
+                    mux = null;
+                    if (!ready
+                        && exitCode != CANCELED_EXIT_CODE
+                        && exitCode != NOT_CONNECTED_EXIT_CODE
+                        && ++failedMuxStarts >= MAX_FAILED_MUX_STARTS
+                        && multiplexed) {
+                        /* e.g. the helper of an older version */
+                        LOG.appWarning("closed: " + host.getName()
+                                       + ": status-mux failed to start, running the status commands separately");
+                        multiplexed = false;
+                    }
+                }
+                running = new ArrayList<Subscription>(subscriptions.values());
+                subscriptions.clear();
+            } finally {
+                mMuxLock.unlock();
+            }
+            LOG.debug1("closed: {}: exit code: {}", host.getName(), exitCode);
+            for (final Subscription subscription : running) {
+                subscription.finish(exitCode);
+            }
+        }
+
+        private void send(final String command) {
+            mSendLock.lock();
+            try {
+                if (thread == null) {
+                    pendingCommands.add(command);
+                } else {
+                    write(command);
+                }
+            } finally {
+                mSendLock.unlock();
+            }
+        }
+
+        private void write(final String command) {
+            if (!thread.write(command + '\n')) {
+                LOG.debug1("write: {}: not running: {}", host.getName(), command);
+            }
+        }
+
+        private void stop() {
+            mSendLock.lock();
+            try {
+                stopped = true;
+                pendingCommands.clear();
+                if (thread != null) {
+                    thread.cancelTheSession();
+                }
+            } finally {
+                mSendLock.unlock();
+            }
+        }
+    }
+}
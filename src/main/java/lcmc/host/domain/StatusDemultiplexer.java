@@ -0,0 +1,101 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lcmc.common.domain.NewOutputCallback;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Splits the output of the status-mux helper into the streams. Every line is
+ * "<id>|<line>", where the id is the stream id or "mux" for the control
+ * messages. The lines of one stream, that come in one output, are handed
+ * over at once, with the "\r\n" line ends, like they come from the commands,
+ * that run in their own session.
+ */
+final class StatusDemultiplexer implements NewOutputCallback {
+    private static final Logger LOG = LoggerFactory.getLogger(StatusDemultiplexer.class);
+    static final String CONTROL_ID = "mux";
+    private static final String LINE_END = "\r\n";
+
+    private final Receiver receiver;
+    /** Output after the last line end. */
+    private final StringBuilder buffer = new StringBuilder(300);
+    /** Lines of the streams from the current output, by the stream id. */
+    private final Map<String, StringBuilder> streamOutputs = new LinkedHashMap<String, StringBuilder>();
+
+    StatusDemultiplexer(final Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void output(final String output) {
+        buffer.append(output);
+        int start = 0;
+        int end = buffer.indexOf("\n");
+        while (end >= 0) {
+            final int lineEnd = end > start && buffer.charAt(end - 1) == '\r' ? end - 1 : end;
+            line(start, lineEnd);
+            start = end + 1;
+            end = buffer.indexOf("\n", start);
+        }
+        buffer.delete(0, start);
+        flush();
+    }
+
+    private void line(final int start, final int end) {
+        final int bar = buffer.indexOf("|", start);
+        if (bar < 0 || bar > end) {
+            LOG.debug2("line: ignored: {}", buffer.substring(start, end));
+            return;
+        }
+        final String id = buffer.substring(start, bar);
+        if (CONTROL_ID.equals(id)) {
+            /* the output, that came before, is handed over first */
+            flush();
+            receiver.control(buffer.substring(bar + 1, end));
+            return;
+        }
+        StringBuilder streamOutput = streamOutputs.get(id);
+        if (streamOutput == null) {
+            streamOutput = new StringBuilder(300);
+            streamOutputs.put(id, streamOutput);
+        }
+        streamOutput.append(buffer, bar + 1, end).append(LINE_END);
+    }
+
+    private void flush() {
+        for (final Map.Entry<String, StringBuilder> streamOutput : streamOutputs.entrySet()) {
+            receiver.output(streamOutput.getKey(), streamOutput.getValue().toString());
+        }
+        streamOutputs.clear();
+    }
+
+    /** Gets the output of the streams and the control messages. */
+    interface Receiver {
+        void output(String id, String output);
+
+        void control(String message);
+    }
+}
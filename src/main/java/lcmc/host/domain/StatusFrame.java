@@ -0,0 +1,63 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+/**
+ * One frame from the status-mux helper:
+ * "\x1eF<type> <id> <timestamp> <length>\n<payload>", the length is the
+ * number of bytes of the payload. The timestamp is in nanoseconds.
+ */
+public final class StatusFrame {
+    private final String type;
+    private final String id;
+    private final long timestamp;
+    private final String payload;
+
+    StatusFrame(final String type, final String id, final long timestamp, final String payload) {
+        this.type = type;
+        this.id = id;
+        this.timestamp = timestamp;
+        this.payload = payload;
+    }
+
+    /** Type of the info, like "hw", "drbd" or "crm". */
+    public String getType() {
+        return type;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** The info with the "\n" line ends. */
+    public String getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return type + ' ' + id + ' ' + timestamp + ' ' + payload.length();
+    }
+}
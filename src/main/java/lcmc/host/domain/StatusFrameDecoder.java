@@ -0,0 +1,252 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lcmc.common.domain.NewByteOutputCallback;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Splits the output of the status-mux helper into the frames, see
+ * StatusFrame. The bytes from the ssh channel are copied into one buffer,
+ * that is reused, and the frames are cut out of it by their length, without
+ * searching for the markers. The "\r", that the tty adds, are dropped on the
+ * way, the helper sends the payloads without them. The frames of one
+ * stream, that come in one output, are handed over at once.
+ *
+ * An older helper sends the "<id>|<line>" lines instead, they are handed over
+ * to the StatusDemultiplexer.
+ */
+final class StatusFrameDecoder implements NewByteOutputCallback {
+    private static final Logger LOG = LoggerFactory.getLogger(StatusFrameDecoder.class);
+    private static final byte FRAME_START = 0x1e;
+    private static final byte FRAME_TAG = 'F';
+    /** Type of the control frames. */
+    private static final String CONTROL_TYPE = "control";
+    /** Header, that is longer, is broken. */
+    private static final int MAX_HEADER_LENGTH = 512;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final byte[] TEXT_CONTROL_PREFIX =
+                    (StatusDemultiplexer.CONTROL_ID + '|').getBytes(StandardCharsets.US_ASCII);
+
+    private enum Mode { UNKNOWN, FRAMES, TEXT }
+
+    private final Receiver receiver;
+    private final StatusDemultiplexer textDemultiplexer;
+    private Mode mode = Mode.UNKNOWN;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    /** Start of the bytes, that are not decoded yet. */
+    private int start = 0;
+    /** End of the bytes in the buffer. */
+    private int end = 0;
+    /** Frames of the streams from the current output, by the stream id. */
+    private final Map<String, List<StatusFrame>> streamFrames = new LinkedHashMap<String, List<StatusFrame>>();
+
+    StatusFrameDecoder(final Receiver receiver) {
+        this.receiver = receiver;
+        textDemultiplexer = new StatusDemultiplexer(receiver);
+    }
+
+    @Override
+    public void output(final byte[] bytes, final int offset, final int length) {
+        append(bytes, offset, length);
+        if (mode == Mode.UNKNOWN) {
+            detectMode();
+        }
+        if (mode == Mode.FRAMES) {
+            decodeFrames();
+        } else if (mode == Mode.TEXT) {
+            decodeText();
+        }
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+    }
+
+    private void append(final byte[] bytes, final int offset, final int length) {
+        if (end + length > buffer.length) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+            if (end + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, end + length));
+            }
+        }
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = bytes[i];
+            if (b != '\r') {
+                buffer[end] = b;
+                end++;
+            }
+        }
+    }
+
+    /** The helper starts with the "ready" control message in a frame or in a line. */
+    private void detectMode() {
+        while (start < end) {
+            if (buffer[start] == FRAME_START) {
+                mode = Mode.FRAMES;
+                return;
+            }
+            if (startsWith(TEXT_CONTROL_PREFIX)) {
+                LOG.debug1("detectMode: status-mux without frames");
+                mode = Mode.TEXT;
+                return;
+            }
+            int i = start;
+            while (i < end && buffer[i] != '\n' && buffer[i] != FRAME_START) {
+                i++;
+            }
+            if (i == end) {
+                /* the rest of the line is not here yet */
+                return;
+            }
+            LOG.debug2("detectMode: ignored: {}", text(start, i));
+            start = buffer[i] == '\n' ? i + 1 : i;
+        }
+    }
+
+    private void decodeText() {
+        int lineEnd = end - 1;
+        while (lineEnd >= start && buffer[lineEnd] != '\n') {
+            lineEnd--;
+        }
+        if (lineEnd < start) {
+            return;
+        }
+        textDemultiplexer.output(text(start, lineEnd + 1));
+        start = lineEnd + 1;
+    }
+
+    private void decodeFrames() {
+        while (start < end) {
+            if (buffer[start] != FRAME_START) {
+                final int next = indexOf(FRAME_START, start, end);
+                final int ignoredEnd = next < 0 ? end : next;
+                LOG.debug2("decodeFrames: ignored: {}", text(start, ignoredEnd));
+                start = ignoredEnd;
+                continue;
+            }
+            final int headerEnd = indexOf((byte) '\n', start, Math.min(end, start + MAX_HEADER_LENGTH));
+            if (headerEnd < 0) {
+                if (end - start < MAX_HEADER_LENGTH) {
+                    /* the rest of the header is not here yet */
+                    break;
+                }
+                LOG.appWarning("decodeFrames: header too long: " + text(start, start + MAX_HEADER_LENGTH));
+                start++;
+                continue;
+            }
+            final String header = text(start + 1, headerEnd);
+            final String[] fields = header.split(" ");
+            long timestamp = 0;
+            int length = -1;
+            if (fields.length == 4 && buffer[start + 1] == FRAME_TAG) {
+                try {
+                    timestamp = Long.parseLong(fields[2]);
+                    length = Integer.parseInt(fields[3]);
+                } catch (final NumberFormatException e) {
+                    length = -1;
+                }
+            }
+            if (length < 0) {
+                LOG.appWarning("decodeFrames: bad header: " + header);
+                start = headerEnd + 1;
+                continue;
+            }
+            final int payloadStart = headerEnd + 1;
+            if (end - payloadStart < length) {
+                /* the rest of the payload is not here yet */
+                break;
+            }
+            frame(new StatusFrame(fields[0].substring(1),
+                                  fields[1],
+                                  timestamp,
+                                  text(payloadStart, payloadStart + length)));
+            start = payloadStart + length;
+        }
+        flush();
+    }
+
+    private void frame(final StatusFrame frame) {
+        if (StatusDemultiplexer.CONTROL_ID.equals(frame.getId())) {
+            /* the frames, that came before, are handed over first */
+            flush();
+            if (CONTROL_TYPE.equals(frame.getType())) {
+                receiver.control(frame.getPayload());
+            } else {
+                LOG.debug2("frame: ignored: {}", frame);
+            }
+            return;
+        }
+        List<StatusFrame> frames = streamFrames.get(frame.getId());
+        if (frames == null) {
+            frames = new ArrayList<StatusFrame>();
+            streamFrames.put(frame.getId(), frames);
+        }
+        frames.add(frame);
+    }
+
+    private void flush() {
+        for (final Map.Entry<String, List<StatusFrame>> frames : streamFrames.entrySet()) {
+            receiver.frames(frames.getKey(), frames.getValue());
+        }
+        streamFrames.clear();
+    }
+
+    private boolean startsWith(final byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(final byte b, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String text(final int from, final int to) {
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /** Gets the frames of the streams and the control messages. */
+    interface Receiver extends StatusDemultiplexer.Receiver {
+        void frames(String id, List<StatusFrame> frames);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.List;
+
+import lcmc.common.domain.NewOutputCallback;
+
+/**
+ * Gets the output of a status stream. The streams of the status-mux helper
+ * come in the frames, the streams, that run in their own session, or from
+ * an older helper, come as the text with the markers.
+ */
+public interface StatusOutputCallback extends NewOutputCallback {
+    /** The frames of the stream, in the order they were sent. */
+    void frames(List<StatusFrame> frames);
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command with \@VARIABLES\@, that is split into the literal parts and the
+ * variables once, so that the replace hash can be substituted in one pass.
+ *
+ * The values are treated as replacement strings, like in String.replaceAll,
+ * because the callers escape them with Matcher.quoteReplacement.
+ */
+final class CommandTemplate {
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("@[A-Za-z0-9_-]+@");
+
+    /** Literal parts on the even and variables on the odd positions. */
+    private final String[] parts;
+    private final int length;
+
+    private CommandTemplate(final String[] parts, final int length) {
+        this.parts = parts;
+        this.length = length;
+    }
+
+    static CommandTemplate compile(final String command) {
+        final List<String> parts = new ArrayList<String>();
+        final Matcher m = VARIABLE_PATTERN.matcher(command);
+        int start = 0;
+        while (m.find()) {
+            parts.add(command.substring(start, m.start()));
+            parts.add(m.group());
+            start = m.end();
+        }
+        parts.add(command.substring(start));
+        return new CommandTemplate(parts.toArray(new String[parts.size()]), command.length());
+    }
+
+    String render(final Map<String, String> replaceHash) {
+        if (parts.length == 1) {
+            return parts[0];
+        }
+        final StringBuilder command = new StringBuilder(length + 64);
+        for (int i = 0; i < parts.length; i++) {
+            final String part = parts[i];
+            if (i % 2 == 0 || !replaceHash.containsKey(part)) {
+                command.append(part);
+            } else {
+                appendReplacement(command, part, replaceHash.get(part));
+            }
+        }
+        return command.toString();
+    }
+
+    /** Appends the value with the same escaping rules as String.replaceAll. */
+    private static void appendReplacement(final StringBuilder command, final String variable, final String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                i++;
+                command.append(value.charAt(i));
+            } else if (c == '$' && i + 1 < value.length() && value.charAt(i + 1) == '0') {
+                i++;
+                command.append(variable);
+            } else {
+                command.append(c);
+            }
+        }
+    }
+}
@@ -22,9 +22,12 @@ package lcmc.host.domain.parser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,6 +62,7 @@ public class DistributionDetector {
     private String kernelVersion = "";
     @Getter
     private String arch = "";
+    private volatile ResolvedCommands resolvedCommands = null;
 
     private static final Logger LOG = LoggerFactory.getLogger(Host.class);
 
@@ -147,6 +151,7 @@ public class DistributionDetector {
             arch0 = detectedArch;
         }
         this.arch = arch0;
+        getResolvedCommands();
     }
 
     /** Returns the detected info to show. */
@@ -182,11 +187,45 @@ public class DistributionDetector {
         if (text == null) {
             return null;
         }
+        final ResolvedCommands resolved = getResolvedCommands();
+        final String key = text + (inBash ? ";bash" : "") + (inSudo ? ";sudo" : "");
+        String ret = resolved.distCommands.get(key);
+        if (ret == null) {
+            ret = resolveDistCommand(resolved, text, inBash, inSudo);
+            resolved.distCommands.put(key, ret);
+        }
+        if (convertCmdCallback != null) {
+            ret = convertCmdCallback.convert(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns command from DistResource resource bundle with the
+     * \@VARIABLES\@ from the replace hash substituted in one pass.
+     */
+    public String getDistCommand(final String text, final Map<String, String> replaceHash) {
+        if (text == null) {
+            return null;
+        }
+        final ResolvedCommands resolved = getResolvedCommands();
+        CommandTemplate template = resolved.templates.get(text);
+        if (template == null) {
+            template = CommandTemplate.compile(getDistCommand(text, null, false, false));
+            resolved.templates.put(text, template);
+        }
+        return template.render(replaceHash);
+    }
+
+    private String resolveDistCommand(final ResolvedCommands resolved,
+                                      final String text,
+                                      final boolean inBash,
+                                      final boolean inSudo) {
         final String[] texts = text.split(";;;");
         final List<String> results =  new ArrayList<String>();
         int i = 0;
         for (final String t : texts) {
-            String distString = getDistString(t);
+            String distString = resolved.getString(t);
             if (distString == null) {
                 LOG.appWarning("getDistCommand: unknown command: " + t);
                 distString = t;
@@ -202,47 +241,40 @@ public class DistributionDetector {
             }
             i++;
         }
-        String ret;
         if (results.isEmpty()) {
-            ret = text;
-        } else {
-            ret = Tools.join(";;;", results.toArray(new String[results.size()]));
-        }
-        if (convertCmdCallback != null && ret != null) {
-            ret = convertCmdCallback.convert(ret);
+            return text;
         }
-        return ret;
+        return Tools.join(";;;", results.toArray(new String[results.size()]));
     }
 
     /** Returns string that is specific to a distribution and version. */
     public String getDistString(final String text) {
+        LOG.debug2("getDistString: text: " + text + " dist: " + distributionName + " version: " + distributionVersionString);
+        final String ret = getResolvedCommands().getString(text);
+        LOG.debug2("getDistString: ret: " + ret);
+        return ret;
+    }
+
+    /**
+     * Returns the DistResource strings for the current distribution, version
+     * and arch. They are read from the resource bundle once, when the
+     * detection finishes, and again only after the detected distribution
+     * changes.
+     */
+    private ResolvedCommands getResolvedCommands() {
         if (distributionName == null) {
             distributionName = "";
         }
         if (distributionVersionString == null) {
             distributionVersionString = "";
         }
-        final Locale locale = new Locale(distributionName, distributionVersionString);
-        LOG.debug2("getDistString: text: " + text + " dist: " + distributionName + " version: " + distributionVersionString);
-        final ResourceBundle resourceString = ResourceBundle.getBundle("lcmc.configs.DistResource", locale);
-        String ret;
-        try {
-            ret = resourceString.getString(text + '.' + arch);
-        } catch (final Exception e) {
-            ret = null;
+        final ResolvedCommands resolved = resolvedCommands;
+        if (resolved != null && resolved.isFor(distributionName, distributionVersionString, arch)) {
+            return resolved;
         }
-        if (ret == null) {
-            try {
-                if (ret == null) {
-                    ret = resourceString.getString(text);
-                }
-                LOG.debug2("getDistString: ret: " + ret);
-                return ret;
-            } catch (final RuntimeException e) {
-                return null;
-            }
-        }
-        return ret;
+        final ResolvedCommands newResolved = new ResolvedCommands(distributionName, distributionVersionString, arch);
+        resolvedCommands = newResolved;
+        return newResolved;
     }
 
     /**
@@ -301,15 +333,8 @@ public class DistributionDetector {
     /** Returns string that is specific to a distribution and version. */
     @SuppressWarnings("unchecked")
     public List<String> getDistStrings(final String text) {
-        if (distributionName == null) {
-            distributionName = "";
-        }
-        if (distributionVersionString == null) {
-            distributionVersionString = "";
-        }
-        final Locale locale = new Locale(distributionName, distributionVersionString);
         LOG.debug2("getDistStrings: text: " + text + " dist: " + distributionName + " version: " + distributionVersionString);
-        final ResourceBundle resourceString = ResourceBundle.getBundle("lcmc.configs.DistResource", locale);
+        final ResourceBundle resourceString = getResolvedCommands().bundle;
         List<String> ret;
         try {
             ret = (List<String>) resourceString.getObject(text);
@@ -318,4 +343,51 @@ public class DistributionDetector {
         }
         return ret;
     }
+
+    /**
+     * DistResource bundle for one distribution and version with all its
+     * string values in a hash map, so that the lookup doesn't go through the
+     * resource bundle chain and missing resource exceptions. The commands
+     * resolved by getDistCommand and their templates are memoized here too.
+     */
+    private static final class ResolvedCommands {
+        private final String distributionName;
+        private final String distributionVersionString;
+        private final String arch;
+        private final ResourceBundle bundle;
+        private final Map<String, String> strings = new HashMap<String, String>();
+        private final Map<String, String> distCommands = new ConcurrentHashMap<String, String>();
+        private final Map<String, CommandTemplate> templates = new ConcurrentHashMap<String, CommandTemplate>();
+
+        ResolvedCommands(final String distributionName, final String distributionVersionString, final String arch) {
+            this.distributionName = distributionName;
+            this.distributionVersionString = distributionVersionString;
+            this.arch = arch;
+            bundle = ResourceBundle.getBundle("lcmc.configs.DistResource",
+                                              new Locale(distributionName, distributionVersionString));
+            for (final String key : bundle.keySet()) {
+                final Object value = bundle.getObject(key);
+                if (value instanceof String) {
+                    strings.put(key, (String) value);
+                }
+            }
+            LOG.debug2("ResolvedCommands: dist: " + distributionName + " version: " + distributionVersionString
+                       + " strings: " + strings.size());
+        }
+
+        boolean isFor(final String distributionName, final String distributionVersionString, final String arch) {
+            return this.distributionName.equals(distributionName)
+                   && this.distributionVersionString.equals(distributionVersionString)
+                   && this.arch.equals(arch);
+        }
+
+        /** Returns the arch specific string or the string itself. */
+        String getString(final String text) {
+            final String ret = strings.get(text + '.' + arch);
+            if (ret != null) {
+                return ret;
+            }
+            return strings.get(text);
+        }
+    }
 }
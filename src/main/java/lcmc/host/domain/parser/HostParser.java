@@ -50,12 +50,10 @@ import lcmc.Exceptions;
 import lcmc.HwEventBus;
 import lcmc.cluster.domain.Cluster;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.common.domain.Application;
 import lcmc.common.domain.ConvertCmdCallback;
 import lcmc.common.domain.ExecCallback;
-import lcmc.common.domain.NewOutputCallback;
 import lcmc.common.domain.StringValue;
 import lcmc.common.domain.Value;
 import lcmc.common.domain.util.Tools;
@@ -74,6 +72,9 @@ import lcmc.event.HwFileSystemsChangedEvent;
 import lcmc.event.HwMountPointsChangedEvent;
 import lcmc.event.HwNetInterfacesChangedEvent;
 import lcmc.host.domain.Host;
+import lcmc.host.domain.StatusChannel;
+import lcmc.host.domain.StatusFrame;
+import lcmc.host.domain.StatusOutputCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.vm.domain.VmsXml;
@@ -178,11 +179,13 @@ public class HostParser {
     private final Lock mInfoTimestampLock = new ReentrantLock();
     private final Lock mUpdateVMSlock = new ReentrantLock();
     private final Lock mDRBDStatusLock = new ReentrantLock();
-    private ExecCommandThread serverStatusThread = null;
+    private volatile StatusChannel.Subscription serverStatus = null;
     private final CountDownLatch waitForServerStatusLatch = new CountDownLatch(1);
     /** Time stamp hash. */
     private final Map<String, Double> infoTimestamp = Maps.newHashMap();
     private boolean drbdStatusOk = false;
+    /** Whether the hw info daemon sends only the changed sections. */
+    private volatile boolean useHwInfoDelta = true;
 
     private static final String TOKEN_DISK_ID = "disk-id";
     private static final String TOKEN_UUID    = "uuid";
@@ -201,8 +204,20 @@ public class HostParser {
      */
     private final Map<String, Point2D> servicePositions = Maps.newHashMap();
 
+    /**
+     * Parses the host info and delivers the hw events, before it returns.
+     */
     public void parseHostInfo(final String ans) {
-        LOG.debug1("parseHostInfo: updating host info: " + host.getName());
+        updateHostInfo(ans);
+        hwEventBus.flush();
+    }
+
+    /**
+     * Parses the host info. The hw events are delivered later in the event bus
+     * thread, so that the next update can be read in the meantime.
+     */
+    private void updateHostInfo(final String ans) {
+        LOG.debug1("parseHostInfo: updating host info: {}", host.getName());
         final String[] lines = ans.split("\\r?\\n");
         final List<String> versionLines = Lists.newArrayList();
         final Map<String, BlockDevice> newBlockDevices = Maps.newLinkedHashMap();
@@ -353,13 +368,13 @@ public class HostParser {
             }
         }
 
-        LOG.debug1("parseHostInfo: "
-                + host.getName()
-                + ", pacemaker: " + pacemakerVersion
-                + ", corosync: " + corosyncVersion
-                + ", heartbeat: " + heartbeatVersion
-                + ", drbd: " + drbdHost.getDrbdUtilVersion()
-                + ", drbd module: " + drbdHost.getDrbdModuleVersion());
+        LOG.debug1("parseHostInfo: {}, pacemaker: {}, corosync: {}, heartbeat: {}, drbd: {}, drbd module: {}",
+                   host.getName(),
+                   pacemakerVersion,
+                   corosyncVersion,
+                   heartbeatVersion,
+                   drbdHost.getDrbdUtilVersion(),
+                   drbdHost.getDrbdModuleVersion());
 
         if (changedTypes.contains(NET_INFO_DELIM)) {
             hwEventBus.post(new HwNetInterfacesChangedEvent(host, newNetInterfaces));
@@ -741,22 +756,7 @@ public class HostParser {
      * what-with-what hash.
      */
     public String getDistCommand(final String commandString, final Map<String, String> replaceHash) {
-        return getDistCommand(
-                commandString,
-                command -> {
-					for (final String tag : replaceHash.keySet()) {
-						if (tag != null && command.contains(tag)) {
-							String s = replaceHash.get(tag);
-							if (s == null) {
-								s = "";
-							}
-							command = command.replaceAll(tag, s);
-						}
-					}
-					return command;
-				},
-                false,  /* in bash */
-                false); /* sudo */
+        return distributionDetector.getDistCommand(commandString, replaceHash);
     }
 
     /** Gets and stores info about the host. */
@@ -822,12 +822,11 @@ public class HostParser {
 
     /** Gets and stores hardware info about the host. */
     public void startHWInfoDaemon(final CategoryInfo[] infosToUpdate, final ResourceGraph[] graphs) {
-        LOG.debug1("startHWInfoDaemon: " + host.getName());
-        serverStatusThread = host.getSSH().execCommand(new ExecCommandConfig()
-                .commandString("HostHWInfoDaemon")
-                .inBash(false)
-                .inSudo(false)
-                .execCallback(new ExecCallback() {
+        LOG.debug1("startHWInfoDaemon: {}, delta: {}", host.getName(), useHwInfoDelta);
+        final StatusChannel.Subscription hwStatus = host.getStatusChannel().open(
+                StatusChannel.Stream.HW,
+                useHwInfoDelta,
+                new ExecCallback() {
                     @Override
                     public void done(final String ans) {
                         parseHostInfo(ans);
@@ -854,83 +853,10 @@ public class HostParser {
                         }
                         host.setLoadingError();
                     }
-                })
-                .newOutputCallback(new NewOutputCallback() {
-                    private final StringBuffer outputBuffer = new StringBuffer(300);
-                    @Override
-                    public void output(final String output) {
-                        outputBuffer.append(output);
-                        final ClusterBrowser cb = host.getBrowser().getClusterBrowser();
-                        String hw, vm, drbdConfig;
-                        String hwUpdate = null;
-                        String vmUpdate = null;
-                        String drbdUpdate = null;
-                        do {
-                            hw = getOutput("hw", outputBuffer);
-                            if (hw != null) {
-                                hwUpdate = hw;
-                            }
-                            vm = getOutput("vm", outputBuffer);
-                            if (vmStatusTryLock()) {
-                                if (vm != null) {
-                                    vmUpdate = vm;
-                                }
-                                vmStatusUnlock();
-                            }
-                            drbdStatusLock();
-                            drbdConfig = getOutput("drbd", outputBuffer);
-                            if (drbdConfig != null) {
-                                drbdUpdate = drbdConfig;
-                            }
-                            drbdStatusUnlock();
-                        } while (hw != null || vm != null || drbdConfig != null);
-
-                        Tools.chomp(outputBuffer);
-                        if (hwUpdate != null) {
-                            parseHostInfo(hwUpdate);
-                            for (final ResourceGraph g : graphs) {
-                                if (g != null) {
-                                    g.repaint();
-                                }
-                            }
-                        }
-                        if (vmUpdate != null) {
-                            final VmsXml newVmsXml = vmsXmlProvider.get();
-                            newVmsXml.init(host);
-                            if (newVmsXml.parseXml(vmUpdate)) {
-                                cb.vmsXmlPut(host, newVmsXml);
-                                cb.updateVms();
-                            }
-                        }
-                        if (drbdUpdate != null) {
-                            final DrbdXml dxml = drbdXmlProvider.get();
-                            dxml.init(host.getCluster().getHostsArray(), cb.getHostDrbdParameters());
-                            dxml.update(drbdUpdate);
-                            cb.setDrbdXml(dxml);
-                            swingUtils.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    host.getBrowser().getClusterBrowser().getGlobalInfo().setParameters();
-                                    cb.updateDrbdResources();
-                                }
-                            });
-                        }
-                        if (drbdUpdate != null
-                                || vmUpdate != null) {
-                            cb.updateHWInfo(host, !Host.UPDATE_LVM);
-                        }
-                        if (drbdUpdate != null) {
-                            cb.updateServerStatus(host);
-                        }
-                        if (getWaitForServerStatusLatch()) {
-                            cb.updateServerStatus(host);
-                        }
-                        host.setLoadingDone();
-                    }
-                })
-                .silentCommand()
-                .silentOutput()
-                .sshCommandTimeout(HW_INFO_TIMEOUT)).block();
+                },
+                new HwInfoOutput(new InfoDeltaApplier(), graphs));
+        serverStatus = hwStatus;
+        hwStatus.block();
     }
 
     public String getOutput(final String type, final StringBuffer buffer) {
@@ -950,20 +876,31 @@ public class HostParser {
             }  catch (final NumberFormatException nfe) {
                 LOG.debug("getOutput: could not parse: " + ts + ' ' + nfe);
             }
-            mInfoTimestampLock.lock();
-            if (timestamp != null
-                    && (!infoTimestamp.containsKey(type) || timestamp >= infoTimestamp.get(type))) {
-                infoTimestamp.put(type, timestamp);
-                mInfoTimestampLock.unlock();
+            if (timestamp != null && isNewInfo(type, timestamp)) {
                 out = buffer.substring(s2 + 2, e);
-            } else {
-                mInfoTimestampLock.unlock();
             }
             buffer.delete(0, e + infoEndLength + 2);
         }
         return out;
     }
 
+    /**
+     * Returns whether the info is not older than the last one of this type.
+     * The timestamp is in nanoseconds.
+     */
+    public boolean isNewInfo(final String type, final double timestamp) {
+        mInfoTimestampLock.lock();
+        try {
+            if (!infoTimestamp.containsKey(type) || timestamp >= infoTimestamp.get(type)) {
+                infoTimestamp.put(type, timestamp);
+                return true;
+            }
+            return false;
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
+    }
+
     public void vmStatusLock() {
         mUpdateVMSlock.lock();
     }
@@ -1000,13 +937,13 @@ public class HostParser {
 
     /** Stops server (hw) status background process. */
     public void stopServerStatus() {
-        final ExecCommandThread sst = serverStatusThread;
+        final StatusChannel.Subscription sst = serverStatus;
         if (sst == null) {
             LOG.appWarning("trying to stop stopped server status");
             return;
         }
-        sst.cancelTheSession();
-        serverStatusThread = null;
+        sst.cancel();
+        serverStatus = null;
     }
 
     public long getFreeInVolumeGroup(final String volumeGroup) {
@@ -1396,4 +1333,149 @@ public class HostParser {
         }
     }
 
+    /**
+     * Output of the hw info daemon. The infos come in the frames, or between
+     * the text markers, from the daemon, that runs in its own session.
+     */
+    private final class HwInfoOutput implements StatusOutputCallback {
+        private final InfoDeltaApplier infoDeltaApplier;
+        private final ResourceGraph[] graphs;
+        private final StringBuffer outputBuffer = new StringBuffer(300);
+        /** Applied vm delta, that waits for the vm status lock. */
+        private String pendingVmUpdate = null;
+        /* updates from the current output */
+        private final List<String> hwUpdates = new ArrayList<String>();
+        private String vmUpdate = null;
+        private String drbdUpdate = null;
+        /** The stream was stopped after a missed delta, startServerStatus starts it again. */
+        private boolean restarting = false;
+
+        HwInfoOutput(final InfoDeltaApplier infoDeltaApplier, final ResourceGraph[] graphs) {
+            this.infoDeltaApplier = infoDeltaApplier;
+            this.graphs = graphs;
+        }
+
+        @Override
+        public void output(final String output) {
+            outputBuffer.append(output);
+            String hw, hwDelta, vm, vmDelta, drbdConfig;
+            do {
+                hw = getOutput("hw", outputBuffer);
+                collect("hw", hw);
+                hwDelta = getOutput("hw-delta", outputBuffer);
+                collect("hw-delta", hwDelta);
+                vm = getOutput("vm", outputBuffer);
+                collect("vm", vm);
+                vmDelta = getOutput("vm-delta", outputBuffer);
+                collect("vm-delta", vmDelta);
+                drbdConfig = getOutput("drbd", outputBuffer);
+                collect("drbd", drbdConfig);
+            } while (hw != null || hwDelta != null || vm != null || vmDelta != null || drbdConfig != null);
+            Tools.chomp(outputBuffer);
+            update();
+        }
+
+        @Override
+        public void frames(final List<StatusFrame> frames) {
+            for (final StatusFrame frame : frames) {
+                if (isNewInfo(frame.getType(), frame.getTimestamp())) {
+                    collect(frame.getType(), frame.getPayload());
+                }
+            }
+            update();
+        }
+
+        private void collect(final String type, final String info) {
+            if (info == null) {
+                return;
+            }
+            if ("hw".equals(type)) {
+                hwUpdates.clear();
+                hwUpdates.add(info);
+            } else if ("hw-delta".equals(type)) {
+                infoDeltaApplier.applyHwDelta(info).ifPresent(hwUpdates::add);
+            } else if ("vm".equals(type)) {
+                if (vmStatusTryLock()) {
+                    vmUpdate = info;
+                    vmStatusUnlock();
+                }
+            } else if ("vm-delta".equals(type)) {
+                infoDeltaApplier.applyVmDelta(info).ifPresent(xml -> pendingVmUpdate = xml);
+            } else if ("drbd".equals(type)) {
+                drbdStatusLock();
+                drbdUpdate = info;
+                drbdStatusUnlock();
+            } else {
+                LOG.debug2("collect: {}: ignored: {}: {}", host.getName(), type, info);
+            }
+        }
+
+        /** Applies the updates from the current output. */
+        private void update() {
+            final ClusterBrowser cb = host.getBrowser().getClusterBrowser();
+            if (pendingVmUpdate != null && vmStatusTryLock()) {
+                vmUpdate = pendingVmUpdate;
+                pendingVmUpdate = null;
+                vmStatusUnlock();
+            }
+            if (infoDeltaApplier.isVersionMismatch()) {
+                LOG.appWarning("startHWInfoDaemon: " + host.getName()
+                               + ": delta version mismatch, restarting with full info");
+                useHwInfoDelta = false;
+                stopServerStatus();
+            } else if (infoDeltaApplier.isOutOfSync() && !restarting) {
+                LOG.debug("startHWInfoDaemon: " + host.getName() + ": missed delta, restarting with full info");
+                restarting = true;
+                stopServerStatus();
+            }
+
+            if (!hwUpdates.isEmpty()) {
+                for (final String hwUpdate : hwUpdates) {
+                    updateHostInfo(hwUpdate);
+                }
+                /* the graphs show the hw state from the events */
+                hwEventBus.flush();
+                for (final ResourceGraph g : graphs) {
+                    if (g != null) {
+                        g.repaint();
+                    }
+                }
+            }
+            if (vmUpdate != null) {
+                final VmsXml newVmsXml = vmsXmlProvider.get();
+                newVmsXml.init(host);
+                if (newVmsXml.parseXml(vmUpdate, cb.getVmsXml(host))) {
+                    cb.vmsXmlPut(host, newVmsXml);
+                    cb.updateVms();
+                }
+            }
+            if (drbdUpdate != null) {
+                final DrbdXml dxml = drbdXmlProvider.get();
+                dxml.init(host.getCluster().getHostsArray(), cb.getHostDrbdParameters());
+                dxml.update(drbdUpdate, cb.getDrbdXml());
+                cb.setDrbdXml(dxml);
+                swingUtils.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        host.getBrowser().getClusterBrowser().getGlobalInfo().setParameters();
+                        cb.updateDrbdResources();
+                    }
+                });
+            }
+            if (drbdUpdate != null
+                    || vmUpdate != null) {
+                cb.updateHWInfo(host, !Host.UPDATE_LVM);
+            }
+            if (drbdUpdate != null) {
+                cb.updateServerStatus(host);
+            }
+            if (getWaitForServerStatusLatch()) {
+                cb.updateServerStatus(host);
+            }
+            host.setLoadingDone();
+            hwUpdates.clear();
+            vmUpdate = null;
+            drbdUpdate = null;
+        }
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain.parser;
+
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.Maps;
+
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Applies the output of the hw-info-daemon in the delta mode, where only
+ * the changed sections are sent.
+ *
+ * Every delta starts with a "delta-version:1 seq:N full:0|1 [md5:M]" line.
+ * The hw sections are complete, so they are parsed as they come. The vm
+ * parts ("@@ version", "@@ vm key", "@@ vm-removed key", "@@ networks") are
+ * applied to the previous vm info and the whole vms xml is built again.
+ *
+ * If a delta is missed, the applier is out of sync and drops all further
+ * deltas, the stream must be restarted, so that it begins with a full info.
+ */
+public class InfoDeltaApplier {
+    private static final Logger LOG = LoggerFactory.getLogger(InfoDeltaApplier.class);
+    public static final int DELTA_VERSION = 1;
+
+    private static final String VERSION_TOKEN = "delta-version";
+    private static final String SEQ_TOKEN = "seq";
+    private static final String FULL_TOKEN = "full";
+    private static final String MD5_TOKEN = "md5";
+
+    private static final String VM_PART_PREFIX = "@@ ";
+    private static final String VM_VERSION_PART = "version";
+    private static final String VM_PART = "vm ";
+    private static final String VM_REMOVED_PART = "vm-removed ";
+    private static final String VM_NETWORKS_PART = "networks";
+
+    private volatile boolean versionMismatch = false;
+    private volatile boolean outOfSync = false;
+    private boolean hwReceived = false;
+    private int hwSeq = 0;
+    private int vmSeq = 0;
+    private boolean vmBaseReceived = false;
+    private String vmVersion = "";
+    private final Map<String, String> vms = Maps.newLinkedHashMap();
+    private String vmNetworks = "";
+
+    /** Returns hw info sections, that can be parsed with parseHostInfo. */
+    public synchronized Optional<String> applyHwDelta(final String delta) {
+        final int headerEnd = delta.indexOf('\n');
+        final Optional<Map<String, String>> header = parseHeader(delta, headerEnd);
+        if (!header.isPresent()) {
+            return Optional.empty();
+        }
+        if (outOfSync) {
+            return Optional.empty();
+        }
+        final int seq = getInt(header.get(), SEQ_TOKEN);
+        if (hwReceived && !isFull(header.get()) && seq != hwSeq + 1) {
+            LOG.appWarning("applyHwDelta: missed hw delta: " + hwSeq + " -> " + seq);
+            outOfSync = true;
+            return Optional.empty();
+        }
+        hwReceived = true;
+        hwSeq = seq;
+        return Optional.of(delta.substring(headerEnd + 1));
+    }
+
+    /** Returns the whole vms xml with the delta applied. */
+    public synchronized Optional<String> applyVmDelta(final String delta) {
+        final int headerEnd = delta.indexOf('\n');
+        final Optional<Map<String, String>> header = parseHeader(delta, headerEnd);
+        if (!header.isPresent()) {
+            return Optional.empty();
+        }
+        if (outOfSync) {
+            return Optional.empty();
+        }
+        final int seq = getInt(header.get(), SEQ_TOKEN);
+        if (isFull(header.get())) {
+            vmVersion = "";
+            vms.clear();
+            vmNetworks = "";
+            vmBaseReceived = true;
+        } else if (!vmBaseReceived) {
+            LOG.debug("applyVmDelta: no full vm info yet, waiting");
+            return Optional.empty();
+        } else if (seq != vmSeq + 1) {
+            LOG.appWarning("applyVmDelta: missed vm delta: " + vmSeq + " -> " + seq);
+            outOfSync = true;
+            return Optional.empty();
+        }
+        vmSeq = seq;
+        applyVmParts(delta.substring(headerEnd + 1));
+        return Optional.of(buildVmsXml(header.get().get(MD5_TOKEN)));
+    }
+
+    /** Returns true if the helper sends another version of deltas. */
+    public boolean isVersionMismatch() {
+        return versionMismatch;
+    }
+
+    /** Returns true if a delta was missed and the stream must start again with a full info. */
+    public boolean isOutOfSync() {
+        return outOfSync;
+    }
+
+    private void applyVmParts(final String parts) {
+        String part = null;
+        final StringBuilder content = new StringBuilder();
+        for (final String line : parts.split("(?<=\n)")) {
+            if (line.startsWith(VM_PART_PREFIX)) {
+                applyVmPart(part, content.toString());
+                part = line.substring(VM_PART_PREFIX.length()).trim();
+                content.setLength(0);
+            } else {
+                content.append(line);
+            }
+        }
+        applyVmPart(part, content.toString());
+    }
+
+    private void applyVmPart(final String part, final String content) {
+        if (part == null) {
+            return;
+        }
+        if (VM_VERSION_PART.equals(part)) {
+            vmVersion = content;
+        } else if (VM_NETWORKS_PART.equals(part)) {
+            vmNetworks = content;
+        } else if (part.startsWith(VM_REMOVED_PART)) {
+            vms.remove(part.substring(VM_REMOVED_PART.length()));
+        } else if (part.startsWith(VM_PART)) {
+            vms.put(part.substring(VM_PART.length()), content);
+        } else {
+            LOG.appWarning("applyVmPart: unknown part: " + part);
+        }
+    }
+
+    private String buildVmsXml(final String md5) {
+        final StringBuilder xml = new StringBuilder(vmVersion.length() + vmNetworks.length() + 100);
+        xml.append("<vms md5=\"").append(md5).append("\">\n");
+        xml.append(vmVersion);
+        for (final String vm : vms.values()) {
+            xml.append(vm);
+        }
+        xml.append(vmNetworks);
+        xml.append("</vms>\n");
+        return xml.toString();
+    }
+
+    private Optional<Map<String, String>> parseHeader(final String delta, final int headerEnd) {
+        if (headerEnd < 0) {
+            LOG.appWarning("parseHeader: delta without header");
+            return Optional.empty();
+        }
+        final Map<String, String> header = Maps.newHashMap();
+        for (final String token : delta.substring(0, headerEnd).trim().split("\\s+")) {
+            final int colon = token.indexOf(':');
+            if (colon > 0) {
+                header.put(token.substring(0, colon), token.substring(colon + 1));
+            }
+        }
+        if (!Integer.toString(DELTA_VERSION).equals(header.get(VERSION_TOKEN))) {
+            LOG.appWarning("parseHeader: unsupported delta version: " + header.get(VERSION_TOKEN));
+            versionMismatch = true;
+            return Optional.empty();
+        }
+        return Optional.of(header);
+    }
+
+    private boolean isFull(final Map<String, String> header) {
+        return "1".equals(header.get(FULL_TOKEN));
+    }
+
+    private int getInt(final Map<String, String> header, final String token) {
+        try {
+            return Integer.parseInt(header.get(token));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+}
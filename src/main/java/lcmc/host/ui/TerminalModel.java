@@ -0,0 +1,244 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.ui;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+/**
+ * Position of the cursor in the terminal and the parser of the terminal
+ * output. The output with the CR, BS and the escape sequences is turned into
+ * a list of edits of the document, every edit is a run of the characters
+ * with the same color, that are inserted at once.
+ *
+ * An escape sequence, that is not finished, is continued in the next
+ * output.
+ */
+final class TerminalModel {
+    /** "[0;32" */
+    private static final Pattern COLOR_PATTERN = Pattern.compile("^\\[\\d+;(\\d+)$");
+    /** "[0;1;32" */
+    private static final Pattern COLOR_BOLD_PATTERN = Pattern.compile("^\\[\\d+;\\d+;(\\d+)$");
+    private static final Pattern CHAR_COUNT_PATTERN = Pattern.compile("^\\[(\\d+)$");
+
+    private final Map<String, Color> terminalColor;
+    private final Color defaultColor;
+    /** Beginning of the previous line. */
+    private int prevLine = 0;
+    /** Position of the cursor in the text. */
+    private int pos = 0;
+    /** Maximum position of the cursor in the text. */
+    private int maxPos = 0;
+    private boolean inEscape = false;
+    private final StringBuilder escape = new StringBuilder(10);
+
+    TerminalModel(final Map<String, Color> terminalColor, final Color defaultColor) {
+        this.terminalColor = terminalColor;
+        this.defaultColor = defaultColor;
+    }
+
+    /**
+     * Returns the edits for the output. The foreground of the colorAS is
+     * changed by the color escape sequences, like in a terminal.
+     */
+    List<Edit> parse(final CharSequence text, final MutableAttributeSet colorAS) {
+        final List<Edit> edits = new ArrayList<Edit>();
+        AttributeSet runAttributes = null;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (inEscape) {
+                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    /* we are done */
+                    inEscape = false;
+                    if (c == 'm') {
+                        final Color newColor = getColorFromString(escape);
+                        StyleConstants.setForeground(colorAS, newColor == null ? defaultColor : newColor);
+                        runAttributes = null;
+                    } else if (c == 'G') {
+                        pos = prevLine + getCharCount(escape);
+                        if (pos > maxPos) {
+                            if (runAttributes == null) {
+                                runAttributes = new SimpleAttributeSet(colorAS);
+                            }
+                            final StringBuilder spaces = new StringBuilder(pos - maxPos);
+                            while (spaces.length() < pos - maxPos) {
+                                spaces.append(' ');
+                            }
+                            addEdit(edits, maxPos, 0, spaces, runAttributes);
+                            maxPos = pos;
+                        }
+                    }
+                } else if (c != 8 && c != 13) {
+                    escape.append(c);
+                }
+                continue;
+            }
+            if (c == 8) { /* one position to the left */
+                if (pos > 0) {
+                    pos--;
+                }
+                continue;
+            } else if (c == 13 && i < length - 1 && text.charAt(i + 1) == 10) { /* new line */
+                prevLine = maxPos + 2;
+                pos = maxPos;
+            } else if (c == 13) { /* beginning of the same line */
+                pos = prevLine;
+                continue;
+            } else if (c == 27) {
+                /* funny colors, e.g. in sles */
+                inEscape = true;
+                escape.setLength(0);
+                continue;
+            }
+            if (runAttributes == null) {
+                runAttributes = new SimpleAttributeSet(colorAS);
+            }
+            addEdit(edits, pos, pos < maxPos ? 1 : 0, c, runAttributes);
+            pos++;
+            if (maxPos < pos) {
+                maxPos = pos;
+            }
+        }
+        return edits;
+    }
+
+    /** Moves the cursor after the document changed from the outside. */
+    void setEnd(final int end) {
+        pos = end + pos - maxPos;
+        maxPos = end;
+    }
+
+    /** Starts a new line after the command, that was entered. */
+    void startLine(final int end) {
+        prevLine = end + 1;
+        pos = end;
+        maxPos = end;
+    }
+
+    /** Moves the cursor after the first characters were removed. */
+    void removedFromStart(final int length) {
+        prevLine = Math.max(0, prevLine - length);
+        pos = Math.max(0, pos - length);
+        maxPos = Math.max(0, maxPos - length);
+    }
+
+    void reset() {
+        pos = 0;
+        maxPos = 0;
+        inEscape = false;
+    }
+
+    int getPos() {
+        return pos;
+    }
+
+    int getMaxPos() {
+        return maxPos;
+    }
+
+    /**
+     * Extends the last edit, if the characters follow it. Characters that
+     * overwrite the text can only be added, while the edit doesn't insert
+     * anything yet.
+     */
+    private void addEdit(final List<Edit> edits,
+                         final int offset,
+                         final int removeLength,
+                         final Object text,
+                         final AttributeSet attributes) {
+        if (!edits.isEmpty()) {
+            final Edit last = edits.get(edits.size() - 1);
+            if (last.attributes == attributes
+                && last.offset + last.text.length() == offset
+                && (removeLength == 0 || last.text.length() == last.removeLength)) {
+                last.text.append(text);
+                last.removeLength += removeLength;
+                return;
+            }
+        }
+        edits.add(new Edit(offset, removeLength, new StringBuilder().append(text), attributes));
+    }
+
+    /** Returns terminal output color. */
+    private Color getColorFromString(final CharSequence s) {
+        /* "]" default color */
+        final Matcher m1 = COLOR_PATTERN.matcher(s);
+        if (m1.matches()) {
+            /* can be null */
+            return terminalColor.get(m1.group(1));
+        }
+        final Matcher m2 = COLOR_BOLD_PATTERN.matcher(s);
+        if (m2.matches()) {
+            /* can be null */
+            return terminalColor.get(m2.group(1));
+        }
+        return null;
+    }
+
+    private int getCharCount(final CharSequence s) {
+        final Matcher m1 = CHAR_COUNT_PATTERN.matcher(s);
+        if (m1.matches()) {
+            return Integer.parseInt(m1.group(1));
+        }
+        return 0;
+    }
+
+    /** Replaces removeLength characters at the offset with the text. */
+    static final class Edit {
+        private final int offset;
+        private int removeLength;
+        private final StringBuilder text;
+        private final AttributeSet attributes;
+
+        Edit(final int offset, final int removeLength, final StringBuilder text, final AttributeSet attributes) {
+            this.offset = offset;
+            this.removeLength = removeLength;
+            this.text = text;
+            this.attributes = attributes;
+        }
+
+        int getOffset() {
+            return offset;
+        }
+
+        int getRemoveLength() {
+            return removeLength;
+        }
+
+        String getText() {
+            return text.toString();
+        }
+
+        AttributeSet getAttributes() {
+            return attributes;
+        }
+    }
+}
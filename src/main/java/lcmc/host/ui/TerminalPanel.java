@@ -27,13 +27,13 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,6 +47,7 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 import javax.swing.text.DefaultCaret;
 import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
@@ -165,17 +166,19 @@ public class TerminalPanel extends JScrollPane {
     private int commandOffset = 0;
     private boolean userCommand = false;
     private boolean editEnabled = false;
-    /** Beginning of the previous line. */
-    private int prevLine = 0;
-    /** Position of the cursor in the text. */
-    private int pos = 0;
+    /** Position of the cursor and the parser of the output. */
+    private TerminalModel terminalModel;
     /** Position in terminal area lock. */
     private final Lock mPosLock = new ReentrantLock();
-    /** Maximum position of the cursor in the text. */
-    private int maxPos = 0;
     /** Terminal output colors. */
     private final Map<String, Color> terminalColor = new HashMap<String, Color>();
     private Color defaultOutputColor;
+    /** Output, that waits to be appended in the next flush. */
+    private final List<PendingOutput> pendingOutputs = new ArrayList<PendingOutput>();
+    private final Lock mPendingOutputLock = new ReentrantLock();
+    private boolean flushScheduled = false;
+    private final int maxLines = Tools.getDefaultInt("TerminalPanel.MaxLines");
+    private final int flushChars = Tools.getDefaultInt("TerminalPanel.FlushChars");
     @Inject
     private MainData mainData;
     @Inject
@@ -267,6 +270,7 @@ public class TerminalPanel extends JScrollPane {
         outputColor = new SimpleAttributeSet();
         defaultOutputColor = Tools.getDefaultColor("TerminalPanel.Output");
         StyleConstants.setForeground(outputColor, defaultOutputColor);
+        terminalModel = new TerminalModel(terminalColor, defaultOutputColor);
 
         promptColor = new SimpleAttributeSet();
         StyleConstants.setForeground(promptColor, host.getPmColors()[0]);
@@ -279,125 +283,134 @@ public class TerminalPanel extends JScrollPane {
         setMaximumSize(getPreferredSize());
     }
 
-    /** Returns terminal output color. */
-    private Color getColorFromString(final CharSequence s) {
-        /* "]" default color */
-        if ("[".equals(s)) {
-            return null;
-        }
-        final Pattern p1 = Pattern.compile("^\\[\\d+;(\\d+)$");
-        final Matcher m1 = p1.matcher(s);
-        if (m1.matches()) {
-            final String c = m1.group(1);
-            /* can be null */
-            return terminalColor.get(c);
-        }
-        /* [0;1;32 */
-        final Pattern p2 = Pattern.compile("^\\[\\d+;\\d+;(\\d+)$");
-        final Matcher m2 = p2.matcher(s);
-        if (m2.matches()) {
-            final String c = m2.group(1);
-            /* can be null */
-            return terminalColor.get(c);
+    /** Appends a text whith specified color to the terminal area. */
+    private void append(final CharSequence text, final MutableAttributeSet colorAS) {
+        userCommand = false;
+        final MyDocument doc = (MyDocument) terminalArea.getStyledDocument();
+        mPosLock.lock();
+        try {
+            terminalModel.setEnd(doc.getLength());
+            for (final TerminalModel.Edit edit : terminalModel.parse(text, colorAS)) {
+                try {
+                    /* don't let the document move the output after the command */
+                    commandOffset = edit.getOffset();
+                    if (edit.getRemoveLength() > 0) {
+                        doc.removeForced(edit.getOffset(), edit.getRemoveLength());
+                    }
+                    doc.insertString(edit.getOffset(), edit.getText(), edit.getAttributes());
+                } catch (final BadLocationException e) {
+                    LOG.appError("append: terminalPanel pos: " + edit.getOffset(), e);
+                }
+            }
+            trimScrollback(doc);
+            commandOffset = doc.getLength();
+            terminalArea.setCaretPosition(doc.getLength());
+        } finally {
+            mPosLock.unlock();
         }
-        return null;
+        userCommand = true;
     }
 
-    /** Get char count. */
-    private int getCharCount(final CharSequence s) {
-        final Pattern p1 = Pattern.compile("^\\[(\\d+)$");
-        final Matcher m1 = p1.matcher(s);
-        if (m1.matches()) {
-            return Integer.parseInt(m1.group(1));
+    /** Removes the oldest lines, if there are more than maxLines. */
+    private void trimScrollback(final MyDocument doc) {
+        final Element root = doc.getDefaultRootElement();
+        final int excess = root.getElementCount() - maxLines;
+        if (maxLines <= 0 || excess <= 0) {
+            return;
+        }
+        final int length = root.getElement(excess).getStartOffset();
+        try {
+            doc.removeForced(0, length);
+            terminalModel.removedFromStart(length);
+        } catch (final BadLocationException e) {
+            LOG.appWarning("trimScrollback: " + e);
         }
-        return 0;
     }
 
-
-    /** Appends a text whith specified color to the terminal area. */
-    private void append(final String text, final MutableAttributeSet colorAS) {
-        userCommand = false;
-        final MyDocument doc = (MyDocument) terminalArea.getStyledDocument();
-        mPosLock.lock();
-        final int end = terminalArea.getDocument().getLength();
-        pos = end + pos - maxPos;
-        maxPos = end;
-        final char[] chars = text.toCharArray();
-        StringBuilder colorString = new StringBuilder(10);
-        boolean inside = false;
-        for (int i = 0; i < chars.length; i++) {
-            final char c = chars[i];
-            final String s = Character.toString(c);
-            boolean printit = true;
-            if (c == 8) { /* one position to the left */
-                printit = false;
-                pos--;
-            } else if (i < chars.length - 1 && c == 13 && chars[i + 1] == 10) { /* new line */
-                prevLine = maxPos + 2;
-                pos = maxPos;
-            } else if (c == 13) { /* beginning of the same line */
-                pos = prevLine;
-                printit = false;
-            } else if (c == 27) {
-                /* funny colors, e.g. in sles */
-                inside = true;
-                printit = false;
-                colorString = new StringBuilder(10);
+    /**
+     * Queues the output, all the output, that comes until the next flush,
+     * is appended at once. Big output is appended in parts, so that the gui
+     * stays responsive.
+     */
+    private void appendLater(final String text, final MutableAttributeSet colorAS) {
+        mPendingOutputLock.lock();
+        try {
+            pendingOutputs.add(new PendingOutput(text, colorAS));
+            if (flushScheduled) {
+                return;
             }
-            if (inside) {
-                if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
-                    /* we are done */
-                    inside = false;
-                    if (c == 'm') {
-                        Color newColor = getColorFromString(colorString.toString());
-
-                        if (newColor == null) {
-                            newColor = defaultOutputColor;
-                        }
-                        StyleConstants.setForeground(colorAS, newColor);
-                        colorString = new StringBuilder(10);
-                    } else if (c == 'G') {
-                        final int g = getCharCount(colorString.toString());
-                        pos = prevLine + g;
-                        while (pos > maxPos) {
-                            try {
-                                doc.insertString(maxPos, " ", colorAS);
-                                maxPos++;
-                            } catch (final BadLocationException e1) {
-                                LOG.appError("append: terminalPanel pos: " + pos, e1);
-                            }
-                        }
-                    }
-                } else if (printit) {
-                    colorString.append(s);
-                }
-                printit = false;
+            flushScheduled = true;
+        } finally {
+            mPendingOutputLock.unlock();
+        }
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                flushPendingOutputs();
             }
+        });
+    }
 
-            if (printit) {
-                if (pos < maxPos) {
-                    try {
-                        commandOffset = pos - 1;
-                        doc.removeForced(pos, 1);
-                    } catch (final BadLocationException e) {
-                        LOG.appError("append: terminalPanel pos: " + pos, e);
-                    }
-                }
-                try {
-                    doc.insertString(pos, s, colorAS);
-                } catch (final BadLocationException e1) {
-                    LOG.appError("append: terminalPanel pos: " + pos, e1);
-                }
-                pos++;
-                if (maxPos < pos) {
-                    maxPos = pos;
+    private void flushPendingOutputs() {
+        final List<PendingOutput> outputs = new ArrayList<PendingOutput>();
+        mPendingOutputLock.lock();
+        try {
+            int chars = 0;
+            while (!pendingOutputs.isEmpty() && (outputs.isEmpty() || chars < flushChars)) {
+                final PendingOutput output = pendingOutputs.get(0);
+                final int splitIndex = getSplitIndex(output.text, flushChars - chars);
+                if (splitIndex < output.text.length()) {
+                    outputs.add(new PendingOutput(output.text.substring(0, splitIndex), output.colorAS));
+                    pendingOutputs.set(0, new PendingOutput(output.text.substring(splitIndex), output.colorAS));
+                } else {
+                    outputs.add(pendingOutputs.remove(0));
                 }
+                chars += splitIndex;
             }
+        } finally {
+            mPendingOutputLock.unlock();
         }
-        commandOffset = terminalArea.getDocument().getLength();
-        terminalArea.setCaretPosition(terminalArea.getDocument().getLength());
-        mPosLock.unlock();
-        userCommand = true;
+        /* the output with the same color is appended at once */
+        final StringBuilder text = new StringBuilder();
+        MutableAttributeSet colorAS = null;
+        for (final PendingOutput output : outputs) {
+            if (output.colorAS != colorAS && text.length() > 0) {
+                append(text, colorAS);
+                text.setLength(0);
+            }
+            colorAS = output.colorAS;
+            text.append(output.text);
+        }
+        if (text.length() > 0) {
+            append(text, colorAS);
+        }
+        mPendingOutputLock.lock();
+        try {
+            if (pendingOutputs.isEmpty()) {
+                flushScheduled = false;
+                return;
+            }
+        } finally {
+            mPendingOutputLock.unlock();
+        }
+        swingUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                flushPendingOutputs();
+            }
+        });
+    }
+
+    /** Returns where to split the text, CR LF is not split. */
+    private static int getSplitIndex(final String text, final int maxChars) {
+        if (text.length() <= maxChars) {
+            return text.length();
+        }
+        final int index = Math.max(1, maxChars);
+        if (text.charAt(index - 1) == 13 && index < text.length() && text.charAt(index) == 10) {
+            return index + 1;
+        }
+        return index;
     }
 
     /** Sets the terminal area editable. */
@@ -457,76 +470,45 @@ public class TerminalPanel extends JScrollPane {
      * and scrolls the text up.
      */
     public void nextCommand() {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(prompt(), promptColor);
-            }
-        });
+        appendLater(prompt(), promptColor);
     }
 
     /** Adds command to the terminal textarea and scrolls up. */
     public void addCommand(final String command) {
         final String[] lines = command.split("\\r?\\n");
-
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(lines[0], commandColor);
-                for (int i = 1; i < lines.length; i++) {
-                    append(" \\\n> " + lines[i], commandColor);
-                }
-                append("\n", commandColor);
-            }
-        });
+        appendLater(lines[0], commandColor);
+        for (int i = 1; i < lines.length; i++) {
+            appendLater(" \\\n> " + lines[i], commandColor);
+        }
+        appendLater("\n", commandColor);
     }
 
     /** Adds command output to the terminal textarea and scrolls up. */
     public void addCommandOutput(final String output) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(output, outputColor);
-            }
-        });
+        appendLater(output, outputColor);
     }
 
     /** Adds array of command output to the terminal textarea and scrolls up. */
     public void addCommandOutput(final String[] output) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                for (int i = 0; i < output.length; i++) {
-                    if (output[i] != null) {
-                        String newLine = "";
-                        if (i != output.length - 1) {
-                            newLine = "\n";
-                        }
-                        append(output[i] + newLine, outputColor);
-                    }
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] != null) {
+                String newLine = "";
+                if (i != output.length - 1) {
+                    newLine = "\n";
                 }
+                appendLater(output[i] + newLine, outputColor);
             }
-        });
+        }
     }
 
     /** Adds content string (output of a command) to the terminal area. */
     public void addContent(final String c) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, outputColor);
-            }
-        });
+        appendLater(c, outputColor);
     }
 
     /** Adds content to the terminal textarea and scrolls up. */
     public void addContentErr(final String c) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, errorColor);
-            }
-        });
+        appendLater(c, errorColor);
     }
 
     /** Starts action after cheat was entered. */
@@ -607,8 +589,7 @@ public class TerminalPanel extends JScrollPane {
                 mPosLock.lock();
                 try {
                     commandOffset = 0;
-                    pos = 0;
-                    maxPos = 0;
+                    terminalModel.reset();
                     doc.removeForced(0, doc.getLength());
                 } finally {
                     mPosLock.unlock();
@@ -646,9 +627,7 @@ public class TerminalPanel extends JScrollPane {
                         final int end = terminalArea.getDocument().getLength();
                         super.insertString(end, "\n", commandColor);
                         final String command = (getText(commandOffset, end - commandOffset) + str).trim();
-                        prevLine = end + 1;
-                        pos = end;
-                        maxPos = end;
+                        terminalModel.startLine(end);
                         execCommand(command);
                     } else {
                         super.insertString(offs, str, commandColor);
@@ -703,6 +682,17 @@ public class TerminalPanel extends JScrollPane {
         }
     }
 
+    /** Output with its color, that waits to be appended. */
+    private static final class PendingOutput {
+        private final String text;
+        private final MutableAttributeSet colorAS;
+
+        PendingOutput(final String text, final MutableAttributeSet colorAS) {
+            this.text = text;
+            this.colorAS = colorAS;
+        }
+    }
+
     /**
      * Do gui actions when we are in the god mode.
      * - enable/disable look and feel menu etc
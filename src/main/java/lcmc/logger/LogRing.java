@@ -0,0 +1,124 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Circular log of the last messages, that can be written from many threads
+ * without locking. The entries are allocated once, a writer takes the next
+ * sequence number and writes its message into the entry with this number.
+ * The message is formatted only when the log is read.
+ *
+ * The sequence number of every entry tells which message is in it, BUSY
+ * while it is being written. A reader skips the entries that changed while
+ * they were read.
+ */
+final class LogRing {
+    private static final long EMPTY = -1;
+    private static final long BUSY = Long.MIN_VALUE;
+    private final Entry[] entries;
+    /** Sequence number of the message in every entry. */
+    private final AtomicLongArray entrySequences;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    LogRing(final int size) {
+        entries = new Entry[size];
+        entrySequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            entrySequences.set(i, EMPTY);
+        }
+    }
+
+    void add(final String message) {
+        add(null, null, -1, message);
+    }
+
+    /**
+     * Adds the message, the prefix, the time and the class name are
+     * prepended to it, if they are set.
+     */
+    void add(final String prefix, final String className, final long seconds, final String message) {
+        final long sequence = nextSequence.getAndIncrement();
+        final int index = (int) (sequence % entries.length);
+        while (true) {
+            final long current = entrySequences.get(index);
+            if (current > sequence) {
+                /* overtaken by a newer message */
+                return;
+            }
+            if (current != BUSY && entrySequences.compareAndSet(index, current, BUSY)) {
+                break;
+            }
+            Thread.yield();
+        }
+        final Entry entry = entries[index];
+        entry.prefix = prefix;
+        entry.className = className;
+        entry.seconds = seconds;
+        entry.message = message;
+        entrySequences.set(index, sequence);
+    }
+
+    /** Appends the messages from the oldest, every message in a new line. */
+    void appendTo(final StringBuilder out) {
+        final long end = nextSequence.get();
+        final Entry copy = new Entry();
+        for (long sequence = Math.max(0, end - entries.length); sequence < end; sequence++) {
+            final int index = (int) (sequence % entries.length);
+            if (entrySequences.get(index) != sequence) {
+                continue;
+            }
+            final Entry entry = entries[index];
+            copy.prefix = entry.prefix;
+            copy.className = entry.className;
+            copy.seconds = entry.seconds;
+            copy.message = entry.message;
+            if (entrySequences.get(index) != sequence) {
+                continue;
+            }
+            copy.appendTo(out);
+            out.append('\n');
+        }
+    }
+
+    private static final class Entry {
+        private volatile String prefix;
+        private volatile String className;
+        private volatile long seconds;
+        private volatile String message;
+
+        void appendTo(final StringBuilder out) {
+            if (prefix != null) {
+                out.append(prefix);
+            }
+            if (seconds >= 0) {
+                out.append('[').append(seconds).append("s] ");
+            }
+            if (className != null) {
+                out.append(className).append(": ");
+            }
+            out.append(message);
+        }
+    }
+}
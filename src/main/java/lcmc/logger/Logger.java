@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
@@ -63,6 +64,8 @@ public final class Logger {
     private final Collection<String> appWarningHash = new HashSet<String>();
     /** Map with all errors, so that they don't appear more than once. */
     private final Collection<String> appErrorHash = new HashSet<String>();
+    /** Version of the debug levels in the upper half, debug level of this class in the lower half. */
+    private volatile long cachedDebugLevel = Long.MIN_VALUE;
 
     public Logger(final String className) {
         this.className = className;
@@ -95,6 +98,51 @@ public final class Logger {
         debug(TRACE_STRING, msg, 3);
     }
 
+    /** The message is created only, if it will be logged. */
+    public void debug(final Supplier<String> msg) {
+        debug(DEBUG_STRING, msg, 0);
+    }
+
+    public void debug1(final Supplier<String> msg) {
+        debug(DEBUG1_STRING, msg, 1);
+    }
+
+    public void debug2(final Supplier<String> msg) {
+        debug(DEBUG2_STRING, msg, 2);
+    }
+
+    public void trace(final Supplier<String> msg) {
+        debug(TRACE_STRING, msg, 3);
+    }
+
+    /**
+     * The "{}" in the pattern are replaced by the arguments, only if the
+     * message will be logged.
+     */
+    public void debug(final String pattern, final Object... args) {
+        debug(DEBUG_STRING, pattern, args, 0);
+    }
+
+    public void debug1(final String pattern, final Object... args) {
+        debug(DEBUG1_STRING, pattern, args, 1);
+    }
+
+    public void debug2(final String pattern, final Object... args) {
+        debug(DEBUG2_STRING, pattern, args, 2);
+    }
+
+    public void trace(final String pattern, final Object... args) {
+        debug(TRACE_STRING, pattern, args, 3);
+    }
+
+    /**
+     * Returns whether the messages with this level are logged. They are kept
+     * in the log buffer one level above the debug level, for the bug reports.
+     */
+    public boolean isDebugEnabled(final int level) {
+        return level <= getDebugLevel() + 1;
+    }
+
     /**
      * Prints debug message to the stdout. Only messages with level smaller
      * or equal than debug level will be printed.
@@ -105,21 +153,61 @@ public final class Logger {
      *          level of this message.
      */
     private void debug(final String prefix, final String msg, final int level) {
-        if (level <= LoggerFactory.getDebugLevel() + 1) {
-            final String msg0 = new StringBuilder()
-                                .append(prefix)
-                                .append('[')
-                                .append(secondsSinceStart())
-                                .append("s] ")
-                                .append(className)
-                                .append(": ")
-                                .append(msg)
-                                .toString();
-            if (level <= LoggerFactory.getDebugLevel()) {
-                System.out.println(msg0);
+        final int debugLevel = getDebugLevel();
+        if (level <= debugLevel + 1) {
+            final long seconds = secondsSinceStart();
+            if (level <= debugLevel) {
+                System.out.println(new StringBuilder()
+                                   .append(prefix)
+                                   .append('[')
+                                   .append(seconds)
+                                   .append("s] ")
+                                   .append(className)
+                                   .append(": ")
+                                   .append(msg)
+                                   .toString());
+            }
+            LoggerFactory.LOG_BUFFER.add(prefix, className, seconds, msg);
+        }
+    }
+
+    private void debug(final String prefix, final Supplier<String> msg, final int level) {
+        if (isDebugEnabled(level)) {
+            debug(prefix, msg.get(), level);
+        }
+    }
+
+    private void debug(final String prefix, final String pattern, final Object[] args, final int level) {
+        if (isDebugEnabled(level)) {
+            debug(prefix, format(pattern, args), level);
+        }
+    }
+
+    /** Debug level of this class, it is recomputed after the debug levels change. */
+    private int getDebugLevel() {
+        final long cached = cachedDebugLevel;
+        final int version = LoggerFactory.getDebugLevelsVersion();
+        if ((int) (cached >>> 32) == version && cached != Long.MIN_VALUE) {
+            return (int) cached;
+        }
+        final int level = LoggerFactory.getDebugLevel(className);
+        cachedDebugLevel = ((long) version << 32) | (level & 0xFFFFFFFFL);
+        return level;
+    }
+
+    static String format(final String pattern, final Object... args) {
+        final StringBuilder out = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (final Object arg : args) {
+            final int placeholder = pattern.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
             }
-            LoggerFactory.LOG_BUFFER.add(msg0);
+            out.append(pattern, start, placeholder).append(arg);
+            start = placeholder + 2;
         }
+        out.append(pattern, start, pattern.length());
+        return out.toString();
     }
 
     /**
@@ -22,27 +22,31 @@ package lcmc.logger;
 
 import java.util.HashMap;
 import java.util.Map;
-import org.apache.commons.collections15.Buffer;
-import org.apache.commons.collections15.BufferUtils;
-import org.apache.commons.collections15.buffer.CircularFifoBuffer;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class LoggerFactory {
     private static final Map<String, Logger> LOGGER_MAP = new HashMap<String, Logger>();
-    private static int debugLevel = -1;
+    private static volatile int debugLevel = -1;
+    /** Class or package name -> debug level, that overrides the global one. */
+    private static final Map<String, Integer> CLASS_DEBUG_LEVELS = new ConcurrentHashMap<String, Integer>();
+    /** Incremented on every change of the debug levels, so that loggers recompute their level. */
+    private static volatile int debugLevelsVersion = 0;
     private static boolean showAppWarning = false;
     /** Whether application errors should show a dialog. */
     private static boolean showAppError = false;
     private static final int CIRCULAR_LOG_SIZE = 200;
-    /** Synchronized, Circular log. */
-    static final Buffer<String> LOG_BUFFER =
-                                  BufferUtils.synchronizedBuffer(new CircularFifoBuffer<String>(CIRCULAR_LOG_SIZE));
-    public static void incrementDebugLevel() {
+    /** Circular log. */
+    static final LogRing LOG_BUFFER = new LogRing(CIRCULAR_LOG_SIZE);
+
+    public static synchronized void incrementDebugLevel() {
         debugLevel++;
+        debugLevelsVersion++;
         System.out.println("debug level: " + debugLevel);
     }
 
-    public static void decrementDebugLevel() {
+    public static synchronized void decrementDebugLevel() {
         debugLevel--;
+        debugLevelsVersion++;
         System.out.println("debug level: " + debugLevel);
     }
 
@@ -54,8 +58,44 @@ public final class LoggerFactory {
      * @param level
      *          debug level usually from 0 to 2. 0 means no debug output.
      */
-    public static void setDebugLevel(final int level) {
+    public static synchronized void setDebugLevel(final int level) {
         debugLevel = level;
+        debugLevelsVersion++;
+    }
+
+    /**
+     * Sets the debug level of the class, or of all the classes in the
+     * package. The most specific name wins. It can be changed at runtime.
+     */
+    public static synchronized void setDebugLevel(final String classOrPackageName, final int level) {
+        CLASS_DEBUG_LEVELS.put(classOrPackageName, level);
+        debugLevelsVersion++;
+    }
+
+    /** Removes the debug level of the class or package, the global one is used. */
+    public static synchronized void removeDebugLevel(final String classOrPackageName) {
+        CLASS_DEBUG_LEVELS.remove(classOrPackageName);
+        debugLevelsVersion++;
+    }
+
+    static int getDebugLevelsVersion() {
+        return debugLevelsVersion;
+    }
+
+    /** Returns the debug level of the class. */
+    static int getDebugLevel(final String className) {
+        String name = className;
+        while (true) {
+            final Integer level = CLASS_DEBUG_LEVELS.get(name);
+            if (level != null) {
+                return level;
+            }
+            final int lastDot = name.lastIndexOf('.');
+            if (lastDot < 0) {
+                return debugLevel;
+            }
+            name = name.substring(0, lastDot);
+        }
     }
 
     public static void setShowAppWarning(final boolean aw) {
@@ -90,11 +130,7 @@ public final class LoggerFactory {
     /** Return the whole log buffer. */
     public static String getLogBuffer() {
         final StringBuilder lb = new StringBuilder();
-        synchronized (LOG_BUFFER) {
-            for (final String l : LOG_BUFFER) {
-                lb.append(l).append('\n');
-            }
-        }
+        LOG_BUFFER.appendTo(lb);
         return lb.toString();
     }
 
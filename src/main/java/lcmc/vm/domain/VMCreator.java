@@ -25,9 +25,7 @@ import java.util.Map;
 import java.util.Optional;
 
 import javax.inject.Named;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -125,7 +123,6 @@ class VMCreator {
     }
 
     public void modifyDomain(final Node domainNode) {
-        final var xpath = XPathFactory.newInstance().newXPath();
         final Map<String, String> paths = new HashMap<>();
         paths.put(VMParams.VM_PARAM_MEMORY, "memory");
         paths.put(VMParams.VM_PARAM_CURRENTMEMORY, "currentMemory");
@@ -154,7 +151,7 @@ class VMCreator {
                 if (path == null) {
                     continue;
                 }
-                final NodeList nodes = (NodeList) xpath.evaluate(path, domainNode, XPathConstants.NODESET);
+                final NodeList nodes = XMLTools.evaluateNodes(path, domainNode);
                 Element node = (Element) nodes.item(0);
                 if (node == null) {
                     continue;
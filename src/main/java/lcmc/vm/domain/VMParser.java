@@ -111,6 +111,33 @@ public class VMParser {
         namesToConfigs.put(domainName, configName);
     }
 
+    /**
+     * Takes over the parsed data of the domain, that didn't change since the
+     * previous update.
+     */
+    public void copyDomain(final VMParser previousParser, final String domainName) {
+        final DomainData domainData = previousParser.domainDataMap.get(domainName);
+        if (domainData == null) {
+            return;
+        }
+        domainDataMap.put(domainName, domainData);
+        if (previousParser.domainNames.contains(domainName) && !domainNames.contains(domainName)) {
+            domainNames.add(domainName);
+        }
+        for (final Map.Entry<Value, String> configToName : previousParser.configsToNames.entrySet()) {
+            if (domainName.equals(configToName.getValue())) {
+                configsToNames.put(configToName.getKey(), domainName);
+            }
+        }
+        usedMacAddresses.addAll(domainData.getInterfacesMap().keySet());
+        for (final DiskData diskData : domainData.getDisksMap().values()) {
+            final String dir = Tools.getDirectoryPart(diskData.getSourceFile());
+            if (dir != null) {
+                sourceFileDirs.add(dir);
+            }
+        }
+    }
+
     public String getValue(final String name, final String param) {
         return getDomainData(name).getValue(param);
     }
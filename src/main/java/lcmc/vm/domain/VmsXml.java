@@ -23,30 +23,24 @@
 
 package lcmc.vm.domain;
 
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Named;
 import javax.inject.Provider;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import lcmc.host.domain.Host;
 import lcmc.common.domain.StringValue;
@@ -74,6 +68,7 @@ import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -89,6 +84,7 @@ public class VmsXml {
     private Provider<VMCreator> vmCreatorProvider;
 
     private final Map<String, String> namesToConfigs = new HashMap<String, String>();
+    private final Map<String, String> domainChecksums = new HashMap<String, String>();
 
     /** Returns string representation of the port; it can be autoport. */
     static String portString(final String port) {
@@ -194,9 +190,8 @@ public class VmsXml {
     /** Map from domain name and network name to the network data. */
     private Host definedOnHost;
 
-    private final ReadWriteLock mXMLDocumentLock = new ReentrantReadWriteLock();
-    private final Lock mXMLDocumentReadLock = mXMLDocumentLock.readLock();
-    private final Lock mXMLDocumentWriteLock = mXMLDocumentLock.writeLock();
+    /** The document is created from the old config, when it's needed. */
+    private final Lock mXMLDocumentLock = new ReentrantLock();
     private Document xmlDocument = null;
     private String oldConfig = null;
 
@@ -205,42 +200,57 @@ public class VmsXml {
     }
 
     public Node getDomainNode(final String domainName) {
-        mXMLDocumentReadLock.lock();
-        final Document document;
-        try {
-            document = xmlDocument;
-        } finally {
-            mXMLDocumentReadLock.unlock();
+        final Document document = getXMLDocument();
+        final Node vmsNode = document == null ? null : XMLTools.getChildNode(document, "vms");
+        if (vmsNode == null) {
+            LOG.appWarning("getDomainNode: could not find xml for " + domainName);
+            return null;
         }
-        final XPath xpath = XPathFactory.newInstance().newXPath();
-        final Node domainNode;
-        try {
-            final String path = "//vms/vm[@name='" + domainName + "']/config/domain";
-            final NodeList domainNodes = (NodeList) xpath.evaluate(path, document, XPathConstants.NODESET);
-            if (domainNodes.getLength() == 1) {
-                domainNode = domainNodes.item(0);
-            } else if (domainNodes.getLength() >= 1) {
-                LOG.appError("getDomainNode: " + domainNodes.getLength() + " supposedly unique " + domainName + " configs.");
-                return null;
-            } else {
-                LOG.appWarning("getDomainNode: could not find xml for " + domainName);
-                return null;
+        Node domainNode = null;
+        int count = 0;
+        final NodeList vms = vmsNode.getChildNodes();
+        for (int i = 0; i < vms.getLength(); i++) {
+            final Node vmNode = vms.item(i);
+            if (!"vm".equals(vmNode.getNodeName())
+                || !domainName.equals(XMLTools.getAttribute(vmNode, VMParams.VM_PARAM_NAME))) {
+                continue;
             }
-        } catch (final XPathExpressionException e) {
-            LOG.appError("getDomainNode: could not evaluate: ", e);
+            final Node configNode = XMLTools.getChildNode(vmNode, "config");
+            if (configNode == null) {
+                continue;
+            }
+            final Node node = XMLTools.getChildNode(configNode, "domain");
+            if (node != null) {
+                domainNode = node;
+                count++;
+            }
+        }
+        if (count > 1) {
+            LOG.appError("getDomainNode: " + count + " supposedly unique " + domainName + " configs.");
+            return null;
+        } else if (domainNode == null) {
+            LOG.appWarning("getDomainNode: could not find xml for " + domainName);
             return null;
         }
         return domainNode;
     }
 
+    private Document getXMLDocument() {
+        mXMLDocumentLock.lock();
+        try {
+            if (xmlDocument == null && oldConfig != null) {
+                xmlDocument = XMLTools.getXMLDocument(oldConfig);
+            }
+            return xmlDocument;
+        } finally {
+            mXMLDocumentLock.unlock();
+        }
+    }
+
     private void saveDomainXML(final String configName, final Node node, final String defineCommand) {
         final String xml;
         try {
-            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            final StreamResult res = new StreamResult(new StringWriter());
-            final Source src = new DOMSource(node);
-            transformer.transform(src, res);
-            xml = res.getWriter().toString();
+            xml = XMLTools.toXML(node);
         } catch (final TransformerException e) {
             LOG.appError("saveDomainXML: " + e.getMessageAndLocation(), e);
             return;
@@ -250,10 +260,9 @@ public class VmsXml {
         }
     }
 
-    private Node getDevicesNode(final XPath xpath, final Node domainNode) {
+    private Node getDevicesNode(final Node domainNode) {
         try {
-            final String devicesPath = "devices";
-            final NodeList devicesNodes = (NodeList) xpath.evaluate(devicesPath, domainNode, XPathConstants.NODESET);
+            final NodeList devicesNodes = XMLTools.evaluateNodes("devices", domainNode);
             if (devicesNodes.getLength() != 1) {
                 LOG.appWarning("getDevicesNode: nodes: " + devicesNodes.getLength());
                 return null;
@@ -421,13 +430,12 @@ public class VmsXml {
         if (domainNode == null) {
             return;
         }
-        final XPath xpath = XPathFactory.newInstance().newXPath();
-        final Node devicesNode = getDevicesNode(xpath, domainNode);
+        final Node devicesNode = getDevicesNode(domainNode);
         if (devicesNode == null) {
             return;
         }
         try {
-            final NodeList nodes = (NodeList) xpath.evaluate(path, domainNode, XPathConstants.NODESET);
+            final NodeList nodes = XMLTools.evaluateNodes(path, domainNode);
             Element hwNode = vhc.getElement(nodes, parametersMap);
             if (hwNode == null) {
                 hwNode = (Element) devicesNode.appendChild(domainNode.getOwnerDocument().createElement(elementName));
@@ -471,9 +479,8 @@ public class VmsXml {
         if (domainNode == null) {
             return;
         }
-        final XPath xpath = XPathFactory.newInstance().newXPath();
         try {
-            final NodeList nodes = (NodeList) xpath.evaluate(path, domainNode, XPathConstants.NODESET);
+            final NodeList nodes = XMLTools.evaluateNodes(path, domainNode);
             final Element hwNode = vhc.getElement(nodes, parametersMap);
             if (hwNode != null) {
                 hwNode.getParentNode().removeChild(hwNode);
@@ -665,6 +672,14 @@ public class VmsXml {
     }
 
     public boolean parseXml() {
+        return parseXml((VmsXml) null);
+    }
+
+    /**
+     * Parses the vm info from the host. The domains, that have the same
+     * checksum as in the previous vms xml, are taken over from there.
+     */
+    public boolean parseXml(final VmsXml previousVmsXml) {
         final String command = definedOnHost.getHostParser().getDistCommand("VMSXML.GetData", (ConvertCmdCallback) null);
         final SshOutput ret = definedOnHost.captureCommand(new ExecCommandConfig().command(command)
                                                                                   .silentCommand()
@@ -676,45 +691,134 @@ public class VmsXml {
         if (output == null) {
             return false;
         }
-        return parseXml(output);
+        return parseXml(output, previousVmsXml);
     }
 
     public boolean parseXml(final String xml) {
+        return parseXml(xml, null);
+    }
+
+    public boolean parseXml(final String xml, final VmsXml previousVmsXml) {
         oldConfig = xml;
-        final Document document = XMLTools.getXMLDocument(xml);
-        mXMLDocumentWriteLock.lock();
+        mXMLDocumentLock.lock();
         try {
-            xmlDocument = document;
+            xmlDocument = null;
         } finally {
-            mXMLDocumentWriteLock.unlock();
+            mXMLDocumentLock.unlock();
         }
-        if (document == null) {
+        if (xml == null || xml.trim().isEmpty()) {
             return false;
         }
-        final Node vmsNode = XMLTools.getChildNode(document, "vms");
-        final String md5 = XMLTools.getAttribute(vmsNode, "md5");
-        if (md5 == null || md5.equals(definedOnHost.getVMInfoMD5())) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XMLTools.createXMLStreamReader(xml.trim());
+            if (!XMLTools.nextChildElement(reader) || !"vms".equals(reader.getLocalName())) {
+                return false;
+            }
+            final String md5 = reader.getAttributeValue(null, "md5");
+            if (md5 == null || md5.equals(definedOnHost.getVMInfoMD5())) {
+                return false;
+            }
+            final Document document = createDocument();
+            final Set<String> seenDomains = new HashSet<String>();
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("net".equals(name)) {
+                    networkParser.parseNetwork(XMLTools.readElement(reader, document));
+                } else if ("vm".equals(name)) {
+                    final String domainName = reader.getAttributeValue(null, VMParams.VM_PARAM_NAME);
+                    final String checksum = reader.getAttributeValue(null, "md5");
+                    final boolean firstConfig = seenDomains.add(domainName);
+                    /* domains with more configs are taken over only, if the first one is unchanged */
+                    if (firstConfig
+                        && checksum != null
+                        && previousVmsXml != null
+                        && checksum.equals(previousVmsXml.getDomainChecksum(domainName))) {
+                        copyDomain(previousVmsXml, domainName, checksum);
+                        XMLTools.skipElement(reader);
+                        continue;
+                    }
+                    final Node vmNode = XMLTools.readElement(reader, document);
+                    vmParser.parseVM(vmNode, definedOnHost, namesToConfigs);
+                    if (checksum == null) {
+                        addDomainChecksum(vmNode);
+                    } else {
+                        putDomainChecksum(domainName, checksum);
+                    }
+                } else if ("version".equals(name)) {
+                    definedOnHost.getHostParser().setLibvirtVersion(XMLTools.readText(reader));
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            /* only now, a failed parse must not hide the same info next time */
+            definedOnHost.setVMInfoMD5(md5);
+            return true;
+        } catch (final XMLStreamException e) {
+            LOG.appError("parseXml: could not parse: " + xml, e);
             return false;
+        } finally {
+            XMLTools.close(reader);
         }
-        definedOnHost.setVMInfoMD5(md5);
-        final NodeList vms = vmsNode.getChildNodes();
-        for (int i = 0; i < vms.getLength(); i++) {
-            final Node node = vms.item(i);
-            if ("net".equals(node.getNodeName())) {
-                networkParser.parseNetwork(node);
-            } else if ("vm".equals(node.getNodeName())) {
-                vmParser.parseVM(node, definedOnHost, namesToConfigs);
-            } else if ("version".equals(node.getNodeName())) {
-                definedOnHost.getHostParser().setLibvirtVersion(XMLTools.getText(node));
-            }
+    }
+
+    private void copyDomain(final VmsXml previousVmsXml, final String domainName, final String checksum) {
+        vmParser.copyDomain(previousVmsXml.vmParser, domainName);
+        final String configName = previousVmsXml.namesToConfigs.get(domainName);
+        if (configName != null) {
+            namesToConfigs.put(domainName, configName);
         }
-        return true;
+        domainChecksums.put(domainName, checksum);
     }
 
     public Collection<String> getDomainNames() {
         return vmParser.getDomainNames();
     }
 
+    /**
+     * Returns checksum of everything that the host reported about the
+     * domain, so that the unchanged domains don't have to be updated.
+     */
+    public String getDomainChecksum(final String domainName) {
+        return domainChecksums.get(domainName);
+    }
+
+    private void addDomainChecksum(final Node vmNode) {
+        final String domainName = XMLTools.getAttribute(vmNode, VMParams.VM_PARAM_NAME);
+        final Hasher hasher = Hashing.md5().newHasher();
+        putNode(hasher, vmNode);
+        putDomainChecksum(domainName, hasher.hash().toString());
+    }
+
+    private void putDomainChecksum(final String domainName, final String checksum) {
+        final String otherChecksum = domainChecksums.get(domainName);
+        if (otherChecksum == null) {
+            domainChecksums.put(domainName, checksum);
+        } else {
+            /* same domain name with other virsh options */
+            domainChecksums.put(domainName, otherChecksum + ',' + checksum);
+        }
+    }
+
+    private void putNode(final Hasher hasher, final Node node) {
+        hasher.putString(node.getNodeName(), StandardCharsets.UTF_8);
+        final String value = node.getNodeValue();
+        if (value != null) {
+            hasher.putString(value, StandardCharsets.UTF_8);
+        }
+        final NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                putNode(hasher, attributes.item(i));
+            }
+        }
+        final NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            putNode(hasher, children.item(i));
+        }
+        hasher.putChar('/');
+    }
+
     public boolean isRunning(final String domainName) {
         return vmParser.isRunning(domainName);
     }
@@ -985,14 +1089,6 @@ public class VmsXml {
     }
 
     private Document createDocument() {
-        final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-        final DocumentBuilder db;
-        try {
-            db = dbf.newDocumentBuilder();
-        } catch (final ParserConfigurationException pce) {
-            throw new RuntimeException("cannot configure parser", pce);
-        }
-        return db.newDocument();
+        return XMLTools.createDocument();
     }
 }
@@ -22,9 +22,12 @@
 
 package lcmc.vm.service;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import lcmc.AppContext;
+import lcmc.cluster.service.HostFanOut;
 import lcmc.configs.DistResource;
 import lcmc.host.domain.Host;
 import lcmc.common.domain.util.Tools;
@@ -56,15 +59,16 @@ public final class VIRSH {
     }
 
 
-    /** Executes the specified virsh commands on the specified hosts. */
+    /** Executes the specified virsh commands on the specified hosts at once. */
     private static boolean execCommand(final Host[] hosts, final Map<Host, String> hostCommands) {
-        for (final Host host : hosts) {
-            final String commands = hostCommands.get(host);
-            if (!commands.isEmpty() && !execCommand(host, commands)) {
-                return false;
-            }
-        }
-        return true;
+        return AppContext.getBean(HostFanOut.class).execute(Tools.getString("VIRSH.SetParameters"),
+                                                            Arrays.asList(hosts),
+                                                            host -> {
+                                                                final String commands = hostCommands.get(host);
+                                                                return commands == null
+                                                                       || commands.isEmpty()
+                                                                       || execCommand(host, commands);
+                                                            });
     }
 
     /** Sets paramters with virsh command. */
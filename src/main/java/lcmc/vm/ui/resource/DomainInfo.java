@@ -4035,6 +4035,19 @@ public class DomainInfo extends EditableInfo {
         return usedByCRM;
     }
 
+    /**
+     * Whether the domain is starting, shutting down, suspending or resuming,
+     * so that the progress must be updated even if the domain didn't change.
+     */
+    public boolean isInTransition() {
+        mTransitionReadLock.lock();
+        try {
+            return !starting.isEmpty() || !shuttingdown.isEmpty() || !suspending.isEmpty() || !resuming.isEmpty();
+        } finally {
+            mTransitionReadLock.unlock();
+        }
+    }
+
     public void setUsedByCRM(final boolean usedByCRM) {
         this.usedByCRM = usedByCRM;
     }
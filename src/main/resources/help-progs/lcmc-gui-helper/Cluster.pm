@@ -18,22 +18,50 @@ sub init() {
 }
 
 sub get_cluster_events {
+    my $delta = shift // 0;
     my $kidpid;
     die "can't fork: $!" unless defined($kidpid = fork());
     if ($kidpid) {
         # parent
-        do_cluster_events();
+        if ($delta == $Main::DELTA_VERSION) {
+            do_cluster_events_delta();
+        }
+        else {
+            do_cluster_events();
+        }
         kill 1, $kidpid;
     }
     else {
         # kid
         while (1) {
-            print "---reset---\n"; # reset timeout
+            Main::print_keepalive("---reset---\n");
             sleep $CLUSTER_INFO_INTERVAL;
         }
     }
 }
 
+# prints the cluster status between the ---start--- and ---done--- markers,
+# or as a frame
+sub print_status {
+    my $info = shift;
+    if ($Main::FRAMES) {
+        Main::print_frame("crm", $info);
+        return;
+    }
+    print "---start---\n";
+    print $info;
+    print "---done---\n";
+}
+
+sub print_error {
+    my $error = shift;
+    if ($Main::FRAMES) {
+        Main::print_frame("error", $error);
+        return;
+    }
+    print "ERROR: $error";
+}
+
 sub do_cluster_events {
     my $libpath = Host_software::get_hb_lib_path();
     my $hb_version = Command::_exec("$libpath/heartbeat -V 2>/dev/null") || "";
@@ -46,9 +74,7 @@ sub do_cluster_events {
             " PATH=$pcmk_path exec cibmon -dV -m1 2>&1";
     }
     if ($info) {
-        print "---start---\n";
-        print $info;
-        print "---done---\n";
+        print_status($info);
         my $prev_info = 0;
         if (!open EVENTS, "$command|") {
             Log::print_warning("can't execute $command\n");
@@ -59,7 +85,7 @@ sub do_cluster_events {
                 # pcmk 1.1.8, it's an error, but
                 # still indicates an event
                 if (/signon to CIB failed/i) {
-                    print "ERROR: signon to CIB failed";
+                    print_error("signon to CIB failed");
                     return;
                 }
                 elsif (/error:/
@@ -67,9 +93,7 @@ sub do_cluster_events {
                     || /Local-only Change:/) {
                     my $cluster_info = get_cluster_info($hb_version);
                     if ($cluster_info ne $prev_info) {
-                        print "---start---\n";
-                        print $cluster_info;
-                        print "---done---\n";
+                        print_status($cluster_info);
                         $prev_info = $cluster_info;
                     }
                 }
@@ -77,10 +101,194 @@ sub do_cluster_events {
         }
     }
     else {
-        print "ERROR: cib connection error";
+        print_error("cib connection error");
     }
 }
 
+# same as do_cluster_events, but after the first full cib only the changed
+# parts of the cib are sent as a cibadmin-delta command
+sub do_cluster_events_delta {
+    my $libpath = Host_software::get_hb_lib_path();
+    my $hb_version = Command::_exec("$libpath/heartbeat -V 2>/dev/null") || "";
+    my %prev_units;
+    my $prev_status = 0;
+    my $seq = 0;
+    my $info = get_cluster_info_delta($hb_version, \%prev_units, 1, \$prev_status, $seq + 1);
+    my $pcmk_path = "/usr/libexec/pacemaker:/usr/lib/heartbeat:/usr/lib64/heartbeat:/usr/lib/pacemaker:/usr/lib64/pacemaker:/usr/lib/x86_64-linux-gnu/pacemaker";
+    my $command =
+        "PATH=$pcmk_path exec cibmon -udVVVV -m1 2>&1";
+    if ($hb_version && (Host_software::compare_versions($hb_version, "2.1.4") <= 0)) {
+        $command =
+            " PATH=$pcmk_path exec cibmon -dV -m1 2>&1";
+    }
+    if ($info) {
+        $seq++;
+        print_status($info);
+        if (!open EVENTS, "$command|") {
+            Log::print_warning("can't execute $command\n");
+            return;
+        }
+        else {
+            while (<EVENTS>) {
+                if (/signon to CIB failed/i) {
+                    print_error("signon to CIB failed");
+                    return;
+                }
+                elsif (/error:/
+                    || /Diff: ---/
+                    || /Local-only Change:/) {
+                    my $full = $seq % $Main::DELTA_FULL_INTERVAL == 0;
+                    my $cluster_info =
+                        get_cluster_info_delta($hb_version,
+                                               \%prev_units,
+                                               $full,
+                                               \$prev_status,
+                                               $seq + 1);
+                    if ($cluster_info) {
+                        $seq++;
+                        print_status($cluster_info);
+                    }
+                }
+            }
+        }
+    }
+    else {
+        print_error("cib connection error");
+    }
+}
+
+# returns the resource status and the cib units, that changed since the
+# last call, or an empty string if nothing changed
+sub get_cluster_info_delta {
+    my $hb_version = shift;
+    my $prev_units = shift;
+    my $full = shift;
+    my $prev_status = shift;
+    my $seq = shift;
+    my ($info, $fenced_nodes) = get_resource_status($hb_version);
+    my $cibinfo = Command::_exec("/usr/sbin/cibadmin -Ql || cat /var/lib/pacemaker/cib/cib.xml /var/lib/heartbeat/crm/cib.xml 2>/dev/null");
+    if (!$cibinfo) {
+        return "";
+    }
+    my %units;
+    my @order;
+    for my $unit (["fenced", $fenced_nodes], @{split_cib($cibinfo)}) {
+        my ($key, $xml) = @$unit;
+        $units{$key} = $xml;
+        push @order, $key;
+    }
+    my $delta = "";
+    for my $key (@order) {
+        if ($full || !defined $$prev_units{$key}
+            || $$prev_units{$key} ne $units{$key}) {
+            $delta .= "@@ $key\n$units{$key}\n";
+        }
+    }
+    if (!$full) {
+        for my $key (sort keys %$prev_units) {
+            if (!defined $units{$key}) {
+                $delta .= "@@ removed $key\n";
+            }
+        }
+    }
+    %$prev_units = %units;
+    if (!$delta && $info eq $$prev_status) {
+        return "";
+    }
+    $$prev_status = $info;
+    my $res_status = "res_status";
+    my $cibquery = "cibadmin-delta";
+    return "$res_status\nok\n$info\n>>>$res_status\n"
+        . "$cibquery\nok\n"
+        . Main::delta_header($seq, $full, "")
+        . $delta
+        . ">>>$cibquery\n";
+}
+
+# Splits the cib into units, that are compared and sent separately: the cib
+# element without children, every section of the configuration and every
+# node, resource, constraint and node_state. Returns a list of [key, xml]
+# in the document order, where the key is "cib", "configuration <name>" or
+# "<nodes|resources|constraints|status> <id>".
+sub split_cib {
+    my $cib = shift;
+    my @units;
+    my @path;
+    my $unit_key;
+    my $unit_start;
+    my $unit_depth;
+    my $unit_hashed;
+    my %hashed_keys;
+    my $tag = qr/<(\/?)([A-Za-z_][\w.:-]*)((?:[^>"']|"[^"]*"|'[^']*')*?)(\/?)>/;
+    while ($cib =~ /$tag/g) {
+        my ($closing, $name, $attrs, $empty) = ($1, $2, $3, $4);
+        my $start = $-[0];
+        my $end = $+[0];
+        if ($closing) {
+            pop @path;
+            if ($unit_key && @path == $unit_depth) {
+                my $xml = substr($cib, $unit_start, $end - $unit_start);
+                if ($unit_hashed) {
+                    $unit_key = hashed_unit_key($unit_key, $xml, \%hashed_keys);
+                }
+                push @units, [$unit_key, $xml];
+                $unit_key = undef;
+            }
+            next;
+        }
+        if (!$unit_key) {
+            my $parent = join "/", @path;
+            my $key;
+            $unit_hashed = 0;
+            if ($parent eq "" && $name eq "cib") {
+                push @units, ["cib", "<cib$attrs/>"];
+            }
+            elsif ($parent eq "cib/configuration"
+                   && $name !~ /^(nodes|resources|constraints)$/) {
+                $key = "configuration $name";
+            }
+            elsif ($parent =~ /^cib\/configuration\/(nodes|resources|constraints)$/
+                   || $parent eq "cib/status") {
+                my $section = (split "/", $parent)[-1];
+                # units without id get the hash of the content at the end,
+                # the position would change the keys of all the next ones
+                $unit_hashed = $attrs !~ /(?:^|\s)id="([^"]*)"/;
+                $key = $unit_hashed ? "$section $name" : "$section $1";
+            }
+            if ($key) {
+                if ($empty) {
+                    my $xml = substr($cib, $start, $end - $start);
+                    if ($unit_hashed) {
+                        $key = hashed_unit_key($key, $xml, \%hashed_keys);
+                    }
+                    push @units, [$key, $xml];
+                    next;
+                }
+                $unit_key = $key;
+                $unit_start = $start;
+                $unit_depth = @path;
+            }
+        }
+        push @path, $name if !$empty;
+    }
+    return \@units;
+}
+
+#
+# Returns the key of a unit without id: the element name with the md5 of
+# its content. Units with the same content get a counter.
+sub hashed_unit_key {
+    my $key = shift;
+    my $xml = shift;
+    my $hashed_keys = shift;
+    $key .= "-" . Digest::MD5::md5_hex($xml);
+    my $count = ++$hashed_keys->{$key};
+    if ($count > 1) {
+        $key .= "-$count";
+    }
+    return $key;
+}
+
 #
 # Get info from ptest and make xml from it. This is used only to find out
 # if a resource is running, not running and/or unmanaged
@@ -300,14 +508,28 @@ sub get_existing_resources {
     return \%existing_rscs;
 }
 
+# selected: only the specified "class:provider:name" resource agents
+# configured-except: the configured resource agents without the specified ones
+# checksums: checksums of the resource agents, to see what changed
 sub get_resource_agents {
     my $type = shift // "";
+    my @selected = @_;
     my $existing_rscs_ocf;
     my $existing_rscs_stonith;
-    if ("configured" eq $type) {
-        my $existing_rscs = get_existing_resources();
+    if ("checksums" eq $type) {
+        get_resource_agent_checksums();
+        return;
+    }
+    if ("configured" eq $type || "selected" eq $type || "configured-except" eq $type) {
+        my $existing_rscs = "selected" eq $type
+                            ? get_selected_resources(@selected)
+                            : get_existing_resources();
+        if ("configured-except" eq $type) {
+            remove_selected_resources($existing_rscs, get_selected_resources(@selected));
+        }
         $existing_rscs_ocf = $$existing_rscs{"ocf"};
         $existing_rscs_stonith = $$existing_rscs{"stonith"};
+        $type = "configured";
     }
     print "class:ocf\n";
     get_ocf_resources($type, $existing_rscs_ocf);
@@ -328,6 +550,64 @@ sub get_resource_agents {
     }
 }
 
+sub get_selected_resources {
+    my %selected_rscs;
+    for (@_) {
+        my ($class, $prov, $name) = split /:/, $_, 3;
+        next if !defined $name;
+        $selected_rscs{$class}{$prov}{$name} = 1;
+    }
+    return \%selected_rscs;
+}
+
+sub remove_selected_resources {
+    my $rscs = shift;
+    my $selected = shift;
+    for my $class (keys %$selected) {
+        next if !$$rscs{$class};
+        for my $prov (keys %{$$selected{$class}}) {
+            next if !$$rscs{$class}{$prov};
+            for my $name (keys %{$$selected{$class}{$prov}}) {
+                delete $$rscs{$class}{$prov}{$name};
+            }
+        }
+    }
+}
+
+sub get_resource_agent_checksums {
+    if (opendir my $dfh, "$OCF_RESOURCE_DIR") {
+        for my $prov (sort grep {/^[^.]/} readdir $dfh) {
+            opendir my $d2fh, "$OCF_RESOURCE_DIR/$prov" or next;
+            for my $s (sort grep {/^[^.]/ && !/\.metadata$/} readdir $d2fh) {
+                my $md5 = get_file_md5("$OCF_RESOURCE_DIR/$prov/$s") or next;
+                my $ra_name = $s;
+                $ra_name =~ s/\.sh$//;
+                print "ra-checksum:ocf $prov $ra_name $md5\n";
+            }
+        }
+    }
+    if (-e $STONITH_ADMIN_PROG) {
+        # the stonith meta-data come from pacemaker, they change with the
+        # list of the devices or with pacemaker itself
+        my $list = Command::_exec("$STONITH_ADMIN_PROG -I");
+        my $md5 = Digest::MD5::md5_hex($list
+                    . Command::_exec("$STONITH_ADMIN_PROG --version 2>/dev/null"));
+        for my $name (split /\n/, $list) {
+            next if $name !~ /^\S+$/;
+            print "ra-checksum:stonith heartbeat $name $md5\n";
+        }
+    }
+}
+
+sub get_file_md5 {
+    my $file = shift;
+    open my $fh, "<", $file or return;
+    binmode $fh;
+    my $md5 = Digest::MD5->new->addfile($fh)->hexdigest;
+    close $fh;
+    return $md5;
+}
+
 sub get_ocf_resources {
     my $type = shift // "";
     my $existing_rscs = shift;
@@ -364,6 +644,10 @@ sub get_ocf_resource {
         print "ra:$s\n";
     }
     else {
+        if (!-e "$OCF_RESOURCE_DIR/$prov/$s" && -e "$OCF_RESOURCE_DIR/$prov/$s.sh") {
+            # configured or selected agents come without .sh
+            $s .= ".sh";
+        }
         my $ra_name = $s;
         $ra_name =~ s/\.sh$//;
         print "ra-name:$ra_name\n";
@@ -23,7 +23,7 @@ sub get_drbd_events {
     }
     else {
         while (1) {
-            print "\n"; # reset timeout
+            Main::print_keepalive("\n");
             sleep $DRBD_INFO_INTERVAL;
         }
     }
@@ -31,7 +31,12 @@ sub get_drbd_events {
 
 sub do_drbd_events {
     if (!-e $PROC_DRBD) {
-        print "--nm--\n";
+        if ($Main::FRAMES) {
+            Main::print_frame("nm", "");
+        }
+        else {
+            print "--nm--\n";
+        }
         return;
     }
     my ($v1, $v2) = Host_software::get_drbd_version();
@@ -52,15 +57,10 @@ sub do_drbd_events {
             if ($_ && $_ !~ /\d+\s+(ZZ|\?\?)/) {
                 my $drbd_info = get_drbd_dump_xml();
                 if ($drbd_info ne $prev_drbd_info) {
-                    print "--drbd-info-start--"
-                        . `date +%s%N`;
-                    print $drbd_info;
-                    print "--drbd-info-end--\n";
+                    Main::print_info("drbd", $drbd_info);
                     $prev_drbd_info = $drbd_info;
                 }
-                print "--event-info-start--" . `date +%s%N`;
-                print "$_";
-                print "--event-info-end--\n";
+                Main::print_info("event", $_);
             }
         }
     }
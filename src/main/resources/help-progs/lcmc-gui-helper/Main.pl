@@ -26,6 +26,7 @@ $| = 1;
 use Fcntl qw(F_GETFL F_SETFL O_NONBLOCK);
 use POSIX qw(:errno_h); # EAGAIN
 use Digest::MD5;
+use Time::HiRes ();
 
 use Socket;
 
@@ -49,6 +50,30 @@ for (keys %ENV) {
 
     our $HW_INFO_INTERVAL = 10;
 
+    # delta protocol of the hw-info-daemon and of the cluster events, the gui
+    # requests it with --delta=<version>, other versions get the full
+    # snapshots.
+    our $DELTA_OP = "--delta";
+    our $DELTA_VERSION = 1;
+    # every n-th iteration all sections are sent
+    our $DELTA_FULL_INTERVAL = 30;
+
+    # the status-mux sends the frames instead of the text markers with
+    # --frames=<version>, see print_frame.
+    our $FRAMES_OP = "--frames";
+    our $FRAMES_VERSION = 1;
+    our $FRAMES = 0;
+    # the stream, that the frames belong to
+    our $FRAME_ID = "-";
+    our @HW_SECTIONS = ("net-info", "bridge-info", "filesystems-info",
+                        "disk-space", "crypto-info", "qemu-keymaps-info",
+                        "cpu-map-model-info", "cpu-map-vendor-info",
+                        "mount-points-info", "drbd-proxy-info",
+                        "installation-info", "version-info", "vg-info",
+                        "disk-info");
+    # the gui parses these sections together
+    our %HW_DISK_SECTIONS = ("vg-info" => 1, "disk-info" => 1);
+
     our $NO_LVM_CACHE = 0;
 
     start(\@ARGV);
@@ -98,7 +123,7 @@ for (keys %ENV) {
             print Host_software::get_version_info();
         }
         elsif ($action eq "hw-info-daemon") {
-            start_hw_info_daemon();
+            hw_info_daemon($$helper_options{$DELTA_OP});
         }
         elsif ($action eq "hw-info") {
             print get_hw_info();
@@ -174,13 +199,11 @@ for (keys %ENV) {
             Drbd::get_drbd_xml();
         }
         elsif ($action eq "get-cluster-events") {
-            my $ret = Cluster::get_cluster_events();
-            if ($ret) {
-                print "---start---\n";
-                print "$ret\n";
-                print "---done---\n";
-                exit 1;
-            }
+            exit cluster_events($$helper_options{$DELTA_OP});
+        }
+        elsif ($action eq "status-mux") {
+            my $frames = $$helper_options{$FRAMES_OP} || 0;
+            Status_mux::start_mux($frames == $FRAMES_VERSION);
         }
         elsif ($action eq "get-cluster-metadata") {
             Cluster::get_cluster_metadata();
@@ -218,6 +241,58 @@ for (keys %ENV) {
         }
     }
 
+    sub hw_info_daemon {
+        my $delta = shift || 0;
+        if ($delta == $DELTA_VERSION) {
+            start_hw_info_delta_daemon();
+        }
+        else {
+            start_hw_info_daemon();
+        }
+    }
+
+    # returns the exit code
+    sub cluster_events {
+        my $delta = shift;
+        my $ret = Cluster::get_cluster_events($delta);
+        if ($ret) {
+            Cluster::print_status("$ret\n");
+            return 1;
+        }
+        return 0;
+    }
+
+    # prints the info between the --<type>-info-start--<timestamp> and
+    # --<type>-info-end-- markers, or as a frame
+    sub print_info {
+        my ($type, $info) = @_;
+        if ($FRAMES) {
+            print_frame($type, $info);
+            return;
+        }
+        print "--$type-info-start--" . `date +%s%N`;
+        print $info;
+        print "--$type-info-end--\n";
+    }
+
+    # "\x1eF<type> <id> <timestamp> <length>\n<payload>", the length is in
+    # bytes. The payload is sent without "\r", so that the gui can remove
+    # the ones, that the tty adds.
+    sub print_frame {
+        my ($type, $payload) = @_;
+        $payload //= "";
+        $payload =~ tr/\r//d;
+        utf8::encode($payload) if utf8::is_utf8($payload);
+        my ($s, $us) = Time::HiRes::gettimeofday();
+        my $timestamp = sprintf("%d%06d000", $s, $us);
+        print "\x1eF$type $FRAME_ID $timestamp " . length($payload) . "\n" . $payload;
+    }
+
+    # resets the ssh timeout, the status-mux sends its own pings instead
+    sub print_keepalive {
+        print $_[0] if !$FRAMES;
+    }
+
     # periodic stuff
     sub start_hw_info_daemon {
         my $prev_hw_info = 0;
@@ -227,7 +302,7 @@ for (keys %ENV) {
         my $count = 0;
         my $use_lvm_cache = 0;
         while (1) {
-            print "\n";
+            print_keepalive("\n");
             if (Disk::noLvmCache()) {
                 $use_lvm_cache = 0;
                 Disk::useLvmCache();
@@ -240,10 +315,8 @@ for (keys %ENV) {
                 $hw_info .= "disk-info\n";
                 $hw_info .= Disk::get_disk_info($use_lvm_cache, $drbd_devs);
                 if ($hw_info ne $prev_hw_info) {
-                    print "--hw-info-start--" . `date +%s%N`;
-                    print $hw_info;
+                    print_info("hw", $hw_info);
                     $prev_hw_info = $hw_info;
-                    print "--hw-info-end--\n";
                 }
                 $count = 0;
             }
@@ -254,25 +327,68 @@ for (keys %ENV) {
                 $hw_info_lazy .= "disk-info\n";
                 $hw_info_lazy .= Disk::get_disk_info($use_lvm_cache, $drbd_devs);
                 if ($hw_info_lazy ne $prev_hw_info_lazy) {
-                    print "--hw-info-start--" . `date +%s%N`;
-                    print $hw_info_lazy;
-                    print "--hw-info-end--\n";
+                    print_info("hw", $hw_info_lazy);
                     $prev_hw_info_lazy = $hw_info_lazy;
                 }
             }
             $use_lvm_cache = 1;
             my $vm_info = VM::get_vm_info();
             if ($vm_info ne $prev_vm_info) {
-                print "--vm-info-start--" . `date +%s%N`;
-                print $vm_info;
-                print "--vm-info-end--\n";
+                print_info("vm", $vm_info);
                 $prev_vm_info = $vm_info;
             }
             my $drbd_info = Drbd::get_drbd_dump_xml();
             if ($drbd_info ne $prev_drbd_info) {
-                print "--drbd-info-start--" . `date +%s%N`;
-                print $drbd_info;
-                print "--drbd-info-end--\n";
+                print_info("drbd", $drbd_info);
+                $prev_drbd_info = $drbd_info;
+            }
+            sleep $HW_INFO_INTERVAL;
+            $count++;
+        }
+    }
+
+    # periodic stuff, only the sections that changed are sent
+    sub start_hw_info_delta_daemon {
+        my %prev_hw_sections;
+        my %prev_vm_parts;
+        my $prev_drbd_info = 0;
+        my $hw_seq = 0;
+        my $vm_seq = 0;
+        my $count = 0;
+        my $use_lvm_cache = 0;
+        while (1) {
+            print_keepalive("\n");
+            if (Disk::noLvmCache()) {
+                $use_lvm_cache = 0;
+                Disk::useLvmCache();
+            }
+            my $full = $count % $DELTA_FULL_INTERVAL == 0;
+            my $drbd_devs = Drbd::get_drbd_devs();
+            my $hw_info;
+            if ($count % 5 == 0) {
+                $hw_info = get_hw_info();
+            }
+            else {
+                $hw_info = get_hw_info_lazy();
+            }
+            $hw_info .= "vg-info\n";
+            $hw_info .= Disk::get_vg_info($use_lvm_cache);
+            $hw_info .= "disk-info\n";
+            $hw_info .= Disk::get_disk_info($use_lvm_cache, $drbd_devs);
+            my $hw_delta = get_hw_info_delta(\%prev_hw_sections, $hw_info, $full);
+            if ($hw_delta) {
+                $hw_seq++;
+                print_info("hw-delta", delta_header($hw_seq, $full, "") . $hw_delta);
+            }
+            $use_lvm_cache = 1;
+            my ($vm_delta, $md5) = VM::get_vm_info_delta(\%prev_vm_parts, $full);
+            if ($vm_delta) {
+                $vm_seq++;
+                print_info("vm-delta", delta_header($vm_seq, $full, $md5) . $vm_delta);
+            }
+            my $drbd_info = Drbd::get_drbd_dump_xml();
+            if ($drbd_info ne $prev_drbd_info) {
+                print_info("drbd", $drbd_info);
                 $prev_drbd_info = $drbd_info;
             }
             sleep $HW_INFO_INTERVAL;
@@ -280,6 +396,61 @@ for (keys %ENV) {
         }
     }
 
+    sub delta_header {
+        my $seq = shift;
+        my $full = shift;
+        my $md5 = shift;
+        my $header = "delta-version:$DELTA_VERSION seq:$seq full:"
+            . ($full ? 1 : 0);
+        if ($md5) {
+            $header .= " md5:$md5";
+        }
+        return "$header\n";
+    }
+
+    # returns the sections from the hw info, that changed since the last call
+    sub get_hw_info_delta {
+        my $prev_sections = shift;
+        my $hw_info = shift;
+        my $full = shift;
+        my %is_section = map { $_ => 1 } @HW_SECTIONS;
+        my %sections;
+        my @order;
+        my $section;
+        for my $line (split /^/, $hw_info) {
+            my $name = $line;
+            chomp $name;
+            if ($is_section{$name}) {
+                $section = $name;
+                push @order, $name;
+                $sections{$name} = "";
+                next;
+            }
+            next if !defined $section;
+            $sections{$section} .= $line;
+        }
+        my $disks_changed = 0;
+        for my $name (keys %HW_DISK_SECTIONS) {
+            if (!defined $$prev_sections{$name}
+                || !defined $sections{$name}
+                || $$prev_sections{$name} ne $sections{$name}) {
+                $disks_changed = 1;
+            }
+        }
+        my $out = "";
+        for my $name (@order) {
+            if ($full
+                || !defined $$prev_sections{$name}
+                || $$prev_sections{$name} ne $sections{$name}
+                || ($HW_DISK_SECTIONS{$name} && $disks_changed)) {
+                $out .= "$name\n";
+                $out .= $sections{$name};
+            }
+            $$prev_sections{$name} = $sections{$name};
+        }
+        return $out;
+    }
+
     sub get_hw_info {
         my $out = "net-info\n";
         $out .= Network::get_net_info();
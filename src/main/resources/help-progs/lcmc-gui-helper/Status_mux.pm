@@ -0,0 +1,267 @@
+package Status_mux;
+# status-mux: runs the hw info daemon, the drbd events and the cluster events
+# in one process, so that the gui needs only one ssh session per host for all
+# the status updates.
+#
+# The gui starts and stops the streams with lines on stdin:
+#   start <type> <id> <delta version>   type is hw, drbd or crm
+#   stop <id>
+# Every stream runs in its own child process, at most one of every type, and
+# every line of its output is sent as "<id>|<line>". The control messages are
+# sent as "mux|<message>":
+#   mux|ready <version>      the commands are accepted
+#   mux|end <id> <exit code> the stream has exited on its own
+#   mux|ping                 reset timeout
+#
+# With --frames=1 the streams send the frames instead of the text markers, see
+# Main::print_frame, and the mux sends only whole frames. The output, that is
+# not in a frame, is sent as a "text" frame and the control messages as
+# "control" frames with the "mux" id.
+
+use POSIX qw(:errno_h :sys_wait_h);
+use Fcntl qw(F_GETFL F_SETFL O_NONBLOCK);
+
+our $MUX_VERSION = 1;
+our $PING_INTERVAL = 10;
+our $READ_SIZE = 65536;
+
+our %STREAMS = (
+    "hw"   => sub { Main::hw_info_daemon(shift); return 0; },
+    "drbd" => sub { Drbd::get_drbd_events(); return 0; },
+    "crm"  => sub { return Main::cluster_events(shift); },
+);
+
+# id => {type, pid, fh, buf}
+my %children;
+# pids of the stopped streams, that are not reaped yet
+my %stopped;
+
+sub start_mux {
+    my $frames = shift;
+    $Main::FRAMES = $frames ? 1 : 0;
+    $Main::FRAME_ID = "mux";
+    $SIG{$_} = \&stop_mux for qw(HUP INT TERM PIPE);
+    disable_echo();
+    print_line("mux", "ready $MUX_VERSION");
+    my $commands = "";
+    my $last_ping = time;
+    while (1) {
+        my $rin = "";
+        vec($rin, fileno(STDIN), 1) = 1;
+        for my $child (values %children) {
+            vec($rin, fileno($$child{fh}), 1) = 1 if $$child{fh};
+        }
+        my $rout;
+        if (select($rout = $rin, undef, undef, 1) > 0) {
+            if (vec($rout, fileno(STDIN), 1)) {
+                my $len = sysread(STDIN, $commands, 4096, length $commands);
+                if (defined $len ? $len == 0 : $! != EINTR && $! != EAGAIN) {
+                    # the gui is gone
+                    stop_mux();
+                }
+                while ($commands =~ s/^([^\n]*)\n//) {
+                    command($1);
+                }
+            }
+            for my $id (keys %children) {
+                my $child = $children{$id};
+                if ($$child{fh} && vec($rout, fileno($$child{fh}), 1)) {
+                    read_child($id, $child);
+                }
+            }
+        }
+        reap_children();
+        if (time - $last_ping >= $PING_INTERVAL) {
+            print_line("mux", "ping");
+            $last_ping = time;
+        }
+    }
+}
+
+sub command {
+    my $command = shift;
+    $command =~ s/\r$//;
+    my ($op, @args) = split /\s+/, $command;
+    return if !$op;
+    if ($op eq "start") {
+        my ($type, $id, $delta) = @args;
+        if (!$type || !$STREAMS{$type} || !$id || $id =~ /\|/) {
+            print_line("mux", "error bad command: $command");
+            return;
+        }
+        start_stream($type, $id, $delta);
+    }
+    elsif ($op eq "stop") {
+        stop_stream($args[0]) if $args[0];
+    }
+    else {
+        print_line("mux", "error unknown command: $op");
+    }
+}
+
+sub start_stream {
+    my ($type, $id, $delta) = @_;
+    for (grep { $children{$_}{type} eq $type || $_ eq $id } keys %children) {
+        stop_stream($_);
+    }
+    my ($reader, $writer);
+    if (!pipe($reader, $writer)) {
+        print_line("mux", "end $id 1");
+        return;
+    }
+    my $pid = fork();
+    if (!defined $pid) {
+        close $reader;
+        close $writer;
+        print_line("mux", "end $id 1");
+        return;
+    }
+    if ($pid == 0) {
+        # kid, in its own process group, so that it can be stopped with
+        # its own kids.
+        $SIG{$_} = "DEFAULT" for qw(HUP INT TERM PIPE);
+        setpgrp(0, 0);
+        $Main::FRAME_ID = $id;
+        close $reader;
+        close $$_{fh} for grep { $$_{fh} } values %children;
+        open STDIN, "<", "/dev/null";
+        open STDOUT, ">&", $writer;
+        open STDERR, ">&", $writer;
+        close $writer;
+        $| = 1;
+        exit($STREAMS{$type}->($delta) || 0);
+    }
+    close $writer;
+    my $flags = fcntl($reader, F_GETFL, 0);
+    fcntl($reader, F_SETFL, $flags | O_NONBLOCK) if defined $flags;
+    $children{$id} = {type => $type, pid => $pid, fh => $reader, buf => ""};
+}
+
+sub stop_stream {
+    my $id = shift;
+    my $child = delete $children{$id};
+    return if !$child;
+    kill_child($$child{pid});
+    close $$child{fh} if $$child{fh};
+    $stopped{$$child{pid}} = 1;
+}
+
+sub kill_child {
+    my $pid = shift;
+    kill "TERM", -$pid;
+    kill "TERM", $pid;
+}
+
+# returns the number of bytes read
+sub read_child {
+    my ($id, $child) = @_;
+    my $len = sysread($$child{fh}, $$child{buf}, $READ_SIZE, length $$child{buf});
+    if (!defined $len) {
+        return 0 if $! == EAGAIN || $! == EINTR;
+        $len = 0;
+    }
+    if ($len == 0) {
+        # eof, the exit code comes with the reaping
+        close $$child{fh};
+        $$child{fh} = undef;
+    }
+    if ($Main::FRAMES) {
+        forward_frames($id, $child);
+        return $len;
+    }
+    my $end = rindex($$child{buf}, "\n");
+    if ($end >= 0) {
+        my $lines = substr($$child{buf}, 0, $end + 1, "");
+        $lines =~ s/^/$id|/mg;
+        print_lines($lines);
+    }
+    return $len;
+}
+
+# sends the whole frames from the buffer, the text between them is sent in
+# the "text" frames.
+sub forward_frames {
+    my ($id, $child) = @_;
+    my $buf = \$$child{buf};
+    while (length $$buf) {
+        if ($$buf =~ /^\x1eF\S+ \S+ \d+ (\d+)\n/) {
+            my $frame_length = $+[0] + $1;
+            return if length $$buf < $frame_length;
+            print_lines(substr($$buf, 0, $frame_length, ""));
+        }
+        elsif ($$buf =~ /^\x1e[^\n]{0,255}$/) {
+            # the rest of the header is not here yet
+            return;
+        }
+        else {
+            my $end = index($$buf, "\x1e", 1);
+            if ($end < 0) {
+                $end = rindex($$buf, "\n") + 1;
+                return if $end == 0;
+            }
+            print_frame($id, "text", substr($$buf, 0, $end, ""));
+        }
+    }
+}
+
+sub reap_children {
+    while ((my $pid = waitpid(-1, WNOHANG)) > 0) {
+        my $status = $?;
+        if (delete $stopped{$pid}) {
+            next;
+        }
+        my ($id) = grep { $children{$_}{pid} == $pid } keys %children;
+        next if !$id;
+        my $child = delete $children{$id};
+        # the kids of the stream may be still running
+        kill_child($pid);
+        while ($$child{fh} && read_child($id, $child)) {
+        }
+        close $$child{fh} if $$child{fh};
+        if (length $$child{buf}) {
+            if ($Main::FRAMES) {
+                print_frame($id, "text", $$child{buf});
+            }
+            else {
+                print_line($id, $$child{buf});
+            }
+        }
+        my $exit_code = $status & 127 ? 128 + ($status & 127) : $status >> 8;
+        print_line("mux", "end $id $exit_code");
+    }
+}
+
+sub stop_mux {
+    for my $id (keys %children) {
+        kill_child($children{$id}{pid});
+    }
+    exit 0;
+}
+
+sub print_line {
+    my ($type, $line) = @_;
+    if ($Main::FRAMES && $type eq "mux") {
+        print_frame("mux", "control", $line);
+        return;
+    }
+    print_lines("$type|$line\n");
+}
+
+sub print_frame {
+    my ($id, $type, $payload) = @_;
+    local $Main::FRAME_ID = $id;
+    Main::print_frame($type, $payload) or stop_mux();
+}
+
+sub print_lines {
+    print $_[0] or stop_mux();
+}
+
+# the commands on stdin must not be echoed back with the output
+sub disable_echo {
+    return if !-t STDIN;
+    my $termios = POSIX::Termios->new;
+    return if !$termios->getattr(fileno(STDIN));
+    $termios->setlflag($termios->getlflag & ~(POSIX::ECHO() | POSIX::ECHONL()));
+    $termios->setattr(fileno(STDIN), POSIX::TCSANOW());
+}
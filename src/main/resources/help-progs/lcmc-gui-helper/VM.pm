@@ -82,6 +82,72 @@ sub get_vm_networks {
 
 
 sub get_vm_info {
+    my ($libvirt_version, $vms, $networks) = get_vm_info_parts();
+    my $out = "<version>$libvirt_version</version>\n";
+    for (@$vms) {
+        $out .= $$_[1];
+    }
+    if ($networks) {
+        $out .= $networks;
+    }
+    my $md5 = Digest::MD5::md5_hex($out);
+    my $ret = "<vms md5=\"$md5\">\n";
+    $ret .= $out;
+    $ret .= "</vms>\n";
+    return $ret;
+}
+
+# returns the vm info parts, that changed since the last call, and md5 of
+# the whole vm info. Every part starts with a "@@ <part>" line.
+sub get_vm_info_delta {
+    my $prev = shift;
+    my $full = shift;
+    my ($libvirt_version, $vms, $networks) = get_vm_info_parts();
+    my $all = "<version>$libvirt_version</version>\n";
+    my $out = "";
+    if ($full
+        || !defined $$prev{version}
+        || $$prev{version} ne $libvirt_version) {
+        $out .= "@@ version\n";
+        $out .= "<version>$libvirt_version</version>\n";
+    }
+    my $prev_vms = $$prev{vms} || {};
+    my %current_vms;
+    for (@$vms) {
+        my ($key, $vm) = @$_;
+        $all .= $vm;
+        $current_vms{$key} = $vm;
+        if ($full
+            || !defined $$prev_vms{$key}
+            || $$prev_vms{$key} ne $vm) {
+            $out .= "@@ vm $key\n";
+            $out .= $vm;
+        }
+    }
+    if (!$full) {
+        for my $key (sort keys %$prev_vms) {
+            if (!exists $current_vms{$key}) {
+                $out .= "@@ vm-removed $key\n";
+            }
+        }
+    }
+    if ($networks) {
+        $all .= $networks;
+    }
+    if ($full
+        || !defined $$prev{networks}
+        || $$prev{networks} ne $networks) {
+        $out .= "@@ networks\n";
+        $out .= $networks;
+    }
+    $$prev{version} = $libvirt_version;
+    $$prev{vms} = \%current_vms;
+    $$prev{networks} = $networks;
+    return ($out, Digest::MD5::md5_hex($all));
+}
+
+# returns libvirt version, list of [key, <vm> element] and <net> elements.
+sub get_vm_info_parts {
     my $networks = get_vm_networks();
     my %autostart;
     for (Command::_exec("ls /etc/libvirt/qemu/autostart/*.xml 2>/dev/null; ls /etc/xen/auto/ 2>/dev/null")) {
@@ -93,7 +159,7 @@ sub get_vm_info {
     if (Command::_exec("$VIRSH_COMMAND version 2>/dev/null") =~ /libvirt\s+([0-9\.]+)/) {
         $libvirt_version = $1;
     }
-    my $out = "<version>$libvirt_version</version>\n";
+    my @vms;
     OPTIONS:
     for my $options (@VM_OPTIONS) {
         if ($DISABLE_VM_OPTIONS{$options}) {
@@ -131,7 +197,7 @@ sub get_vm_info {
             my $config;
             $config =
                 Command::_exec("$VIRSH_COMMAND_NO_RO $options dumpxml --security-info $name 2>/dev/null") || "";
-            $out .= "<vm name=\"$name\"";
+            my $out = "<vm name=\"$name\"";
             if ($autostart{$name}) {
                 $out .= ' autostart="True"';
             }
@@ -157,14 +223,16 @@ sub get_vm_info {
                 $out .= "</config-in-etc>\n";
             }
             $out .= "</vm>\n";
+            # the checksum of the domain, so that only the changed domains
+            # have to be parsed again
+            my $vm_md5 = Digest::MD5::md5_hex($out);
+            $out =~ s/^<vm /<vm md5="$vm_md5" /;
+            my $key = $name;
+            if ($options) {
+                $key .= " $options";
+            }
+            push @vms, [$key, $out];
         }
     }
-    if ($networks) {
-        $out .= $networks;
-    }
-    my $md5 = Digest::MD5::md5_hex($out);
-    my $ret = "<vms md5=\"$md5\">\n";
-    $ret .= $out;
-    $ret .= "</vms>\n";
-    return $ret;
+    return ($libvirt_version, \@vms, $networks);
 }
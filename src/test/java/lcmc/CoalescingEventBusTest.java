@@ -0,0 +1,165 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.eventbus.Subscribe;
+
+import lcmc.event.CoalescableEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoalescingEventBusTest {
+    private CoalescingEventBus eventBus;
+    private final List<Object> received = new ArrayList<Object>();
+
+    @Before
+    public void setUp() {
+        eventBus = new CoalescingEventBus("test");
+        eventBus.register(this);
+    }
+
+    @Subscribe
+    public void onHostEvent(final HostEvent event) {
+        received.add(event);
+    }
+
+    @Subscribe
+    public void onString(final String event) {
+        received.add(event);
+    }
+
+    @Test
+    public void latestEventOfTheSameHostShouldWin() {
+        final HostEvent first = new HostEvent("host1");
+        final HostEvent second = new HostEvent("host1");
+        final HostEvent otherHost = new HostEvent("host2");
+
+        eventBus.post(first);
+        eventBus.post(otherHost);
+        eventBus.post(second);
+        eventBus.flush();
+
+        assertThat(received).containsExactly(otherHost, second);
+        assertThat(eventBus.getCoalescedEvents()).isEqualTo(1);
+        assertThat(eventBus.getPendingEvents()).isEqualTo(0);
+    }
+
+    @Test
+    public void otherEventsShouldBeDeliveredInOrder() {
+        eventBus.post("a");
+        eventBus.post("a");
+        eventBus.post("b");
+        eventBus.flush();
+
+        assertThat(received).containsExactly("a", "a", "b");
+        assertThat(eventBus.getCoalescedEvents()).isEqualTo(0);
+    }
+
+    @Test
+    public void subscriberStatsShouldCountTheEvents() {
+        eventBus.post("a");
+        eventBus.post(new HostEvent("host1"));
+        eventBus.post(new HostEvent("host2"));
+        eventBus.flush();
+
+        for (final CoalescingEventBus.SubscriberStats stats : eventBus.getSubscriberStats()) {
+            if (stats.getSubscriber().contains("onHostEvent")) {
+                assertThat(stats.getInvocations()).isEqualTo(2);
+            } else {
+                assertThat(stats.getInvocations()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    public void unregisteredSubscriberShouldNotGetEvents() {
+        eventBus.unregister(this);
+
+        eventBus.post("a");
+        eventBus.flush();
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void objectRegisteredTwiceShouldGetTheEventOnce() {
+        eventBus.register(this);
+
+        eventBus.post("a");
+        eventBus.flush();
+
+        assertThat(received).containsExactly("a");
+    }
+
+    @Test
+    public void overriddenSubscriberShouldGetTheEventOnce() {
+        final List<String> overridden = new ArrayList<String>();
+        eventBus.register(new OverridingSubscriber(overridden));
+
+        eventBus.post("a");
+        eventBus.flush();
+
+        assertThat(overridden).containsExactly("override: a");
+    }
+
+    private static class BaseSubscriber {
+        protected final List<String> received;
+
+        BaseSubscriber(final List<String> received) {
+            this.received = received;
+        }
+
+        @Subscribe
+        public void onString(final String event) {
+            received.add("base: " + event);
+        }
+    }
+
+    private static final class OverridingSubscriber extends BaseSubscriber {
+        OverridingSubscriber(final List<String> received) {
+            super(received);
+        }
+
+        @Override
+        @Subscribe
+        public void onString(final String event) {
+            received.add("override: " + event);
+        }
+    }
+
+    private static final class HostEvent implements CoalescableEvent {
+        private final String host;
+
+        HostEvent(final String host) {
+            this.host = host;
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return host;
+        }
+    }
+}
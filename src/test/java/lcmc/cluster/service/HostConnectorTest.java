@@ -0,0 +1,116 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lcmc.cluster.service.ssh.Ssh;
+import lcmc.cluster.ui.SSHGui;
+import lcmc.host.domain.Host;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HostConnectorTest {
+    @Mock
+    private Host host1;
+    @Mock
+    private Host host2;
+    @Mock
+    private Host host3;
+    @Mock
+    private Ssh ssh1;
+    @Mock
+    private Ssh ssh2;
+    @Mock
+    private Ssh ssh3;
+    private final HostConnector hostConnector = new HostConnector();
+
+    @Before
+    public void setUp() {
+        when(host1.getSSH()).thenReturn(ssh1);
+        when(host2.getSSH()).thenReturn(ssh2);
+        when(host3.getSSH()).thenReturn(ssh3);
+        when(host1.isConnected()).thenReturn(false, true);
+        when(ssh1.getLastSuccessfulDsaKey()).thenReturn("dsa");
+        when(ssh1.getLastSuccessfulRsaKey()).thenReturn("rsa");
+        when(ssh1.getLastSuccessfulPassword()).thenReturn("pwd");
+    }
+
+    @Test
+    public void otherHostsShouldTryTheFirstPassword() {
+        final boolean ret = hostConnector.connect(Arrays.asList(host1, host2, host3), null, true, 1);
+
+        assertThat(ret).isTrue();
+        verify(host1).connect((SSHGui) isNull(), anyBoolean(), anyInt());
+        verify(ssh1).waitForConnection();
+        verify(ssh2).setPasswords("dsa", "rsa", "pwd");
+        verify(ssh3).setPasswords("dsa", "rsa", "pwd");
+        verify(ssh2).waitForConnection();
+        verify(ssh3).waitForConnection();
+    }
+
+    @Test
+    public void otherHostsShouldConnectInParallel() {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final Answer<Void> waitForTheOther = new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws InterruptedException {
+                bothStarted.countDown();
+                assertThat(bothStarted.await(10, TimeUnit.SECONDS)).isTrue();
+                return null;
+            }
+        };
+        doAnswer(waitForTheOther).when(ssh2).waitForConnection();
+        doAnswer(waitForTheOther).when(ssh3).waitForConnection();
+
+        hostConnector.connect(Arrays.asList(host1, host2, host3), null, true, 1);
+
+        assertThat(bothStarted.getCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void canceledFirstHostShouldStopConnecting() {
+        when(ssh1.isConnectionCanceled()).thenReturn(true);
+
+        final boolean ret = hostConnector.connect(Arrays.asList(host1, host2), null, true, 1);
+
+        assertThat(ret).isFalse();
+        verify(host2, never()).connect((SSHGui) isNull(), anyBoolean(), anyInt());
+        verify(ssh2, never()).setPasswords(anyString(), anyString(), anyString());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lcmc.common.ui.main.ProgressIndicator;
+import lcmc.host.domain.Host;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HostFanOutTest {
+    @Mock
+    private ProgressIndicator progressIndicator;
+    @Mock
+    private Host host1;
+    @Mock
+    private Host host2;
+    @InjectMocks
+    private HostFanOut hostFanOut;
+
+    @Before
+    public void setUp() {
+        when(host1.getName()).thenReturn("host1");
+        when(host2.getName()).thenReturn("host2");
+    }
+
+    @Test
+    public void hostsShouldRunInParallel() {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+
+        final boolean ret = hostFanOut.execute("action", Arrays.asList(host1, host2), host -> {
+            bothStarted.countDown();
+            try {
+                return bothStarted.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                return false;
+            }
+        });
+
+        assertThat(ret).isTrue();
+        verify(progressIndicator).startProgressIndicator("action");
+        verify(progressIndicator).stopProgressIndicator("action");
+        verify(progressIndicator, never()).progressIndicatorFailed(anyString());
+    }
+
+    @Test
+    public void itemsOfOneHostShouldRunInOrder() {
+        final List<String> done = Collections.synchronizedList(new ArrayList<String>());
+
+        hostFanOut.run("action",
+                       Arrays.asList("a1", "b1", "a2", "b2", "a3"),
+                       item -> item.startsWith("a") ? host1 : host2,
+                       done::add);
+
+        assertThat(done).containsSubsequence("a1", "a2", "a3");
+        assertThat(done).containsSubsequence("b1", "b2");
+        assertThat(done).hasSize(5);
+    }
+
+    @Test
+    public void failedHostsShouldBeReportedTogether() {
+        final boolean ret = hostFanOut.execute("action", Arrays.asList(host1, host2), host -> {
+            if (host == host2) {
+                throw new IllegalStateException("failed");
+            }
+            return false;
+        });
+
+        assertThat(ret).isFalse();
+        verify(progressIndicator).progressIndicatorFailed("action: failed on host1, host2");
+    }
+
+    @Test
+    public void quietExecutionShouldOnlyReturnTheFailedHosts() {
+        final Set<String> failedHosts = hostFanOut.executeQuietly("action",
+                                                                  Arrays.asList(host1, host2),
+                                                                  host -> host == host1);
+
+        assertThat(failedHosts).containsExactly("host2");
+        verifyZeroInteractions(progressIndicator);
+    }
+}
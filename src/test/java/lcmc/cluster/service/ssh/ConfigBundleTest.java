@@ -0,0 +1,115 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public final class ConfigBundleTest {
+    /* md5 of "global {}\n" */
+    private static final String GLOBAL_MD5 = "28350f249c462b7c363153038a0adf84";
+    /* md5 of "resource r0 {}\n" */
+    private static final String R0_MD5 = "5d52a1e8455b906b93ff355c975184ec";
+
+    private ConfigBundle bundle() {
+        return new ConfigBundle()
+                .preCommand("cp -r /etc/drbd.d{,.bak} 2>/dev/null")
+                .file("global {}", "/etc/drbd.d.temp/global_common.conf", "0600", false,
+                      "/etc/drbd.d/global_common.conf")
+                .file("resource r0 {}", "/etc/drbd.d.temp/r0.res", "0600", false, "/etc/drbd.d/r0.res")
+                .file("include \"drbd.d.temp/*.res\";", "/etc/drbd.conf", "0600", true, null)
+                .postCommand("cp -r /etc/drbd.d{.temp,}");
+    }
+
+    @Test
+    public void checksumCommandShouldListInstalledFiles() {
+        assertThat(bundle().checksumCommand())
+                .isEqualTo("md5sum /etc/drbd.d/global_common.conf /etc/drbd.d/r0.res 2>/dev/null;true");
+    }
+
+    @Test
+    public void checksumCommandShouldBeNullWithoutInstalledFiles() {
+        assertThat(new ConfigBundle().file("x", "/tmp/x", null, false, null).checksumCommand()).isNull();
+    }
+
+    @Test
+    public void checksumsShouldBeParsed() {
+        final Map<String, String> checksums = ConfigBundle.parseChecksums(
+                        GLOBAL_MD5 + "  /etc/drbd.d/global_common.conf\r\n"
+                        + "md5sum: /etc/drbd.d/r0.res: No such file or directory\n");
+        assertThat(checksums.size()).isEqualTo(1);
+        assertThat(checksums.get("/etc/drbd.d/global_common.conf")).isEqualTo(GLOBAL_MD5);
+    }
+
+    @Test
+    public void allFilesShouldBeSentWithoutChecksums() {
+        final ConfigBundle bundle = bundle();
+        final String script = bundle.installScript(Collections.<String, String>emptyMap());
+        assertThat(bundle.changedFiles(Collections.<String, String>emptyMap())).isEqualTo(3);
+        assertThat(script.startsWith("#!/bin/bash\ncp -r /etc/drbd.d{,.bak} 2>/dev/null\n")).isTrue();
+        assertThat(script.contains("cat >/etc/drbd.d.temp/r0.res.new <<'LCMC_CONFIG_END' || exit\n"
+                                   + "resource r0 {}\nLCMC_CONFIG_END\n")).isTrue();
+        assertThat(script.contains("cp /etc/drbd.conf{,.bak} 2>/dev/null\n")).isTrue();
+        assertThat(script.endsWith("cp -r /etc/drbd.d{.temp,}\n")).isTrue();
+    }
+
+    @Test
+    public void unchangedFilesShouldBeCopiedOnTheHost() {
+        final ConfigBundle bundle = bundle();
+        final Map<String, String> checksums = new HashMap<String, String>();
+        checksums.put("/etc/drbd.d/r0.res", R0_MD5);
+        checksums.put("/etc/drbd.d/global_common.conf", "0000");
+        final String script = bundle.installScript(checksums);
+        assertThat(bundle.changedFiles(checksums)).isEqualTo(2);
+        assertThat(script.contains("cp /etc/drbd.d/r0.res /etc/drbd.d.temp/r0.res.new || exit\n")).isTrue();
+        assertThat(script.contains("resource r0 {}")).isFalse();
+        assertThat(script.contains("global {}")).isTrue();
+    }
+
+    @Test
+    public void unchangedFileShouldBeSkipped() {
+        final ConfigBundle bundle = new ConfigBundle().file("resource r0 {}", "/etc/drbd.conf", "0600", true,
+                                                            "/etc/drbd.conf");
+        final String script =
+                bundle.installScript(Collections.singletonMap("/etc/drbd.conf", R0_MD5));
+        assertThat(script).isEqualTo("#!/bin/bash\n");
+    }
+
+    @Test
+    public void hereDocEndShouldNotBeInTheConfig() {
+        final String script = new ConfigBundle().file("a\nLCMC_CONFIG_END\nb", "/tmp/x", null, false, null)
+                                                .installScript(Collections.<String, String>emptyMap());
+        assertThat(script.contains("<<'LCMC_CONFIG_END1'")).isTrue();
+        assertThat(script.endsWith("a\nLCMC_CONFIG_END\nb\nLCMC_CONFIG_END1\nmv /tmp/x.new /tmp/x || exit\n"))
+                .isTrue();
+    }
+
+    @Test
+    public void remoteFilenamesShouldNotHaveTheContents() {
+        assertThat(bundle().remoteFilenames()).containsExactly("/etc/drbd.d.temp/global_common.conf",
+                                                                "/etc/drbd.d.temp/r0.res",
+                                                                "/etc/drbd.conf");
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoalescedRepaintTest {
+    private static final int DELAY = 50;
+    private ScheduledExecutorService scheduler;
+    private final AtomicInteger repaints = new AtomicInteger();
+    private volatile CountDownLatch repainted = new CountDownLatch(1);
+    private CoalescedRepaint repaint;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        repaint = new CoalescedRepaint(scheduler, DELAY, () -> {
+            repaints.incrementAndGet();
+            repainted.countDown();
+        });
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void requestsWithinTheDelayShouldBeRepaintedOnce() throws InterruptedException {
+        repaint.request();
+        repaint.request();
+        repaint.request();
+
+        assertThat(repainted.await(1, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(DELAY * 2);
+        assertThat(repaints.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void requestAfterTheRepaintShouldBeRepaintedAgain() throws InterruptedException {
+        repaint.request();
+        assertThat(repainted.await(1, TimeUnit.SECONDS)).isTrue();
+        repainted = new CountDownLatch(1);
+
+        repaint.request();
+
+        assertThat(repainted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(repaints.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class DomainChecksumsTest {
+    @Test
+    public void checksumsShouldBeMergedFromAllHostsAndSorted() {
+        final Map<String, Map<String, String>> hostDomainChecksums = new LinkedHashMap<String, Map<String, String>>();
+        hostDomainChecksums.put("host1", domains("vm2", "a2", "vm1", "a1"));
+        hostDomainChecksums.put("host2", domains("vm1", "b1", "vm3", "b3"));
+
+        final Map<String, String> checksums = DomainChecksums.merge(hostDomainChecksums);
+
+        assertThat(new ArrayList<String>(checksums.keySet())).containsExactly("vm1", "vm2", "vm3");
+        assertThat(checksums.get("vm1")).isEqualTo("host1:a1 host2:b1 ");
+        assertThat(checksums.get("vm3")).isEqualTo("host2:b3 ");
+    }
+
+    @Test
+    public void unchangedDomainShouldBeSkipped() {
+        final DomainChecksums appliedChecksums = new DomainChecksums();
+
+        assertThat(appliedChecksums.apply("vm1", "host1:a1 ")).isTrue();
+        assertThat(appliedChecksums.apply("vm1", "host1:a1 ")).isFalse();
+        assertThat(appliedChecksums.apply("vm1", "host1:a1 host2:b1 ")).isTrue();
+        assertThat(appliedChecksums.apply("vm1", "host1:a1 host2:b1 ")).isFalse();
+    }
+
+    @Test
+    public void removedDomainShouldBeUpdatedWhenItComesBack() {
+        final DomainChecksums appliedChecksums = new DomainChecksums();
+        appliedChecksums.apply("vm1", "host1:a1 ");
+        appliedChecksums.apply("vm2", "host1:a2 ");
+
+        appliedChecksums.remove("vm1");
+
+        assertThat(appliedChecksums.apply("vm1", "host1:a1 ")).isTrue();
+        assertThat(appliedChecksums.apply("vm2", "host1:a2 ")).isFalse();
+    }
+
+    @Test
+    public void newDomainsShouldBeInsertedInOrder() {
+        final List<String> childNames = new ArrayList<String>(Arrays.asList("vm2", "vm5"));
+
+        for (final String domainName : Arrays.asList("vm1", "vm3", "vm4", "vm6")) {
+            childNames.add(DomainChecksums.getInsertIndex(childNames, domainName), domainName);
+        }
+
+        assertThat(childNames).containsExactly("vm1", "vm2", "vm3", "vm4", "vm5", "vm6");
+    }
+
+    @Test
+    public void newDomainsWithoutNameShouldBeSkipped() {
+        final List<String> childNames = Arrays.asList("vm1", null, "vm3", null);
+
+        assertThat(DomainChecksums.getInsertIndex(childNames, "vm0")).isEqualTo(0);
+        assertThat(DomainChecksums.getInsertIndex(childNames, "vm2")).isEqualTo(1);
+        assertThat(DomainChecksums.getInsertIndex(childNames, "vm4")).isEqualTo(3);
+        assertThat(DomainChecksums.getInsertIndex(new ArrayList<String>(), "vm1")).isEqualTo(0);
+    }
+
+    private static Map<String, String> domains(final String... nameChecksums) {
+        final Map<String, String> domainChecksums = new LinkedHashMap<String, String>();
+        for (int i = 0; i < nameChecksums.length; i += 2) {
+            domainChecksums.put(nameChecksums[i], nameChecksums[i + 1]);
+        }
+        return domainChecksums;
+    }
+}
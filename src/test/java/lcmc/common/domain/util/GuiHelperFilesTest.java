@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import org.junit.Test;
 
+import com.google.common.hash.Hashing;
+
 import lombok.val;
 
 public class GuiHelperFilesTest {
@@ -15,4 +17,13 @@ public class GuiHelperFilesTest {
         assertThat(guiHelper).contains("#!/usr/bin/perl");
         assertThat(guiHelper).contains("package Log");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void checksumShouldBeOfTheInstalledHelper() {
+        val guiHelperBytes = guiHelperFiles.getGuiHelperBytes();
+
+        assertThat(guiHelperBytes[guiHelperBytes.length - 1]).isEqualTo((byte) '\n');
+        assertThat(guiHelperFiles.getGuiHelperMd5()).isEqualTo(Hashing.md5().hashBytes(guiHelperBytes).toString());
+        assertThat(guiHelperFiles.getGuiHelperBytes()).isSameAs(guiHelperBytes);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lcmc.common.ui.main.MainData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AnimationClockTest {
+    @Mock
+    private MainData mainData;
+    @InjectMocks
+    private final AnimationClock animationClock = new AnimationClock();
+
+    @Before
+    public void setUp() {
+        when(mainData.getAnimFPS()).thenReturn(20.0f);
+    }
+
+    @Test
+    public void clockShouldStopAfterTheLastAnimation() {
+        final AtomicInteger frames1 = new AtomicInteger();
+        final AtomicInteger frames2 = new AtomicInteger();
+        animationClock.start(now -> frames1.incrementAndGet() < 2);
+        animationClock.start(now -> frames2.incrementAndGet() < 3);
+
+        assertThat(animationClock.isRunning()).isTrue();
+        animationClock.tick();
+        animationClock.tick();
+        assertThat(animationClock.isRunning()).isTrue();
+        animationClock.tick();
+        animationClock.tick();
+
+        assertThat(animationClock.isRunning()).isFalse();
+        assertThat(frames1.get()).isEqualTo(2);
+        assertThat(frames2.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void failedAnimationShouldBeStopped() {
+        animationClock.start(now -> {
+            throw new IllegalStateException("test");
+        });
+
+        animationClock.tick();
+
+        assertThat(animationClock.isRunning()).isFalse();
+    }
+
+    @Test
+    public void clockShouldSlowDownWithoutFocus() {
+        /* no window is focused in the tests */
+        assertThat(animationClock.getInterval()).isEqualTo(500);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class LogFollowOffsetsTest {
+    private final LogFollowOffsets followOffsets = new LogFollowOffsets();
+
+    @Test
+    public void offsetShouldBeUnknownAtFirst() {
+        assertThat(followOffsets.getOffset("node1")).isEqualTo(LogFollowOffsets.UNKNOWN_OFFSET);
+    }
+
+    @Test
+    public void sizeShouldBecomeTheNextOffset() {
+        final String newLines = followOffsets.update("node1", "1234\nOct 18 10:00:01 node1 crmd: a\n");
+
+        assertThat(newLines).isEqualTo("Oct 18 10:00:01 node1 crmd: a\n");
+        assertThat(followOffsets.getOffset("node1")).isEqualTo(1234L);
+        assertThat(followOffsets.getOffset("node2")).isEqualTo(LogFollowOffsets.UNKNOWN_OFFSET);
+    }
+
+    @Test
+    public void sizeWithoutLinesShouldGiveNoLines() {
+        assertThat(followOffsets.update("node1", "1234\n")).isEmpty();
+        assertThat(followOffsets.update("node1", "1240")).isEmpty();
+        assertThat(followOffsets.getOffset("node1")).isEqualTo(1240L);
+    }
+
+    @Test
+    public void errorShouldResetTheOffset() {
+        followOffsets.update("node1", "1234\n");
+
+        assertThat(followOffsets.update("node1", "node1: connection closed\n")).isNull();
+        assertThat(followOffsets.getOffset("node1")).isEqualTo(LogFollowOffsets.UNKNOWN_OFFSET);
+    }
+
+    @Test
+    public void clearShouldResetAllOffsets() {
+        followOffsets.update("node1", "1234\n");
+        followOffsets.update("node2", "5678\n");
+
+        followOffsets.clear();
+
+        assertThat(followOffsets.getOffset("node1")).isEqualTo(LogFollowOffsets.UNKNOWN_OFFSET);
+        assertThat(followOffsets.getOffset("node2")).isEqualTo(LogFollowOffsets.UNKNOWN_OFFSET);
+    }
+}
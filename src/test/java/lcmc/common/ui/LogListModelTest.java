@@ -0,0 +1,83 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LogListModelTest {
+    private final LogListModel logListModel = new LogListModel(3);
+
+    @Test
+    public void rowsShouldBeAppended() {
+        logListModel.append(rows("a", "b"));
+        logListModel.append(rows("c"));
+
+        assertThat(getTexts()).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void oldestRowsShouldBeRemoved() {
+        logListModel.append(rows("a", "b"));
+        logListModel.append(rows("c", "d"));
+        logListModel.append(rows("e"));
+
+        assertThat(getTexts()).containsExactly("c", "d", "e");
+    }
+
+    @Test
+    public void onlyTheLastRowsShouldBeKept() {
+        logListModel.append(rows("a"));
+        logListModel.append(rows("b", "c", "d", "e"));
+
+        assertThat(getTexts()).containsExactly("c", "d", "e");
+    }
+
+    @Test
+    public void clearShouldRemoveAllRows() {
+        logListModel.append(rows("a", "b", "c", "d"));
+
+        logListModel.clear();
+        logListModel.append(rows("e"));
+
+        assertThat(getTexts()).containsExactly("e");
+    }
+
+    private List<LogListModel.Row> rows(final String... texts) {
+        final List<LogListModel.Row> rows = new ArrayList<LogListModel.Row>();
+        for (final String text : texts) {
+            rows.add(new LogListModel.Row(text, false));
+        }
+        return rows;
+    }
+
+    private List<String> getTexts() {
+        final List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < logListModel.getSize(); i++) {
+            texts.add(logListModel.getElementAt(i).getText());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LogMergerTest {
+    private static final String HOST1 = "Oct 18 10:00:01 node1 crmd: a\r\n"
+                                        + "Oct 18 10:00:03 node1 crmd: c\r\n"
+                                        + "  continued\r\n";
+    private static final String HOST2 = "Oct 18 10:00:02 node2 crmd: b\r\n"
+                                        + "Oct 18 10:00:04 node2 crmd: d\r\n";
+
+    private final LogMerger logMerger = new LogMerger();
+
+    @Test
+    public void linesShouldBeMergedByTime() {
+        final List<LogMerger.Line> lines = logMerger.merge(Arrays.asList(HOST1, HOST2));
+
+        assertThat(getTexts(lines)).containsExactly("Oct 18 10:00:01 node1 crmd: a",
+                                                    "Oct 18 10:00:02 node2 crmd: b",
+                                                    "Oct 18 10:00:03 node1 crmd: c",
+                                                    "  continued",
+                                                    "Oct 18 10:00:04 node2 crmd: d");
+        assertThat(lines.get(1).getHost()).isEqualTo("node2");
+        assertThat(lines.get(3).getHost()).isNull();
+    }
+
+    @Test
+    public void missingOutputShouldBeIgnored() {
+        assertThat(logMerger.merge(Arrays.asList(null, HOST2))).hasSize(2);
+    }
+
+    private List<String> getTexts(final Iterable<LogMerger.Line> lines) {
+        final List<String> texts = new ArrayList<String>();
+        for (final LogMerger.Line line : lines) {
+            texts.add(line.getText());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.ScheduledFuture;
+
+import lcmc.common.ui.PendingParameterChecks.PendingCheck;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PendingParameterChecksTest {
+    @Mock
+    private ParameterCheckScheduler parameterCheckScheduler;
+    @Mock
+    private ScheduledFuture<?> future;
+    @Mock
+    private Runnable checkTask;
+    private PendingParameterChecks pendingChecks;
+
+    @Before
+    public void setUp() {
+        doReturn(future).when(parameterCheckScheduler).schedule(any(Runnable.class));
+        pendingChecks = new PendingParameterChecks(parameterCheckScheduler, checkTask);
+    }
+
+    @Test
+    public void everyChangeShouldPostponeTheCheck() {
+        pendingChecks.add(check("a"));
+        pendingChecks.add(check("b"));
+        pendingChecks.add(check("a"));
+
+        verify(parameterCheckScheduler, times(3)).schedule(checkTask);
+        verify(future, times(2)).cancel(false);
+    }
+
+    @Test
+    public void changesOfTheSameParameterShouldBeMerged() {
+        final PendingCheck a1 = check("a");
+        final PendingCheck b = check("b");
+        final PendingCheck a2 = check("a");
+        pendingChecks.add(a1);
+        pendingChecks.add(b);
+        pendingChecks.add(a2);
+
+        assertThat(pendingChecks.take().getChecks()).containsExactly(a2, b);
+        assertThat(pendingChecks.take().getChecks()).isEmpty();
+    }
+
+    @Test
+    public void currentCheckShouldNotBeRequeued() {
+        final PendingCheck a = check("a");
+        pendingChecks.add(a);
+
+        final PendingParameterChecks.Batch batch = pendingChecks.take();
+
+        assertThat(pendingChecks.requeueIfStale(batch)).isFalse();
+        assertThat(pendingChecks.take().getChecks()).isEmpty();
+    }
+
+    @Test
+    public void overtakenCheckShouldBeDoneWithTheNewerOne() {
+        final PendingCheck a1 = check("a");
+        final PendingCheck b = check("b");
+        pendingChecks.add(a1);
+        pendingChecks.add(b);
+        final PendingParameterChecks.Batch batch = pendingChecks.take();
+        final PendingCheck a2 = check("a");
+        final PendingCheck c = check("c");
+        pendingChecks.add(a2);
+        pendingChecks.add(c);
+
+        assertThat(pendingChecks.requeueIfStale(batch)).isTrue();
+
+        assertThat(pendingChecks.take().getChecks()).containsExactly(a2, b, c);
+    }
+
+    private PendingCheck check(final String param) {
+        return new PendingCheck(null, null, param, new String[]{param}, null);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CibDeltaApplierTest {
+    private static final String FULL_CIB = "delta-version:1 seq:1 full:1\n"
+                                           + "@@ fenced\n\n"
+                                           + "@@ cib\n<cib epoch=\"1\"/>\n"
+                                           + "@@ configuration crm_config\n<crm_config/>\n"
+                                           + "@@ resources g1\n<group id=\"g1\">\n<primitive id=\"r1\"/>\n</group>\n"
+                                           + "@@ resources r2\n<primitive id=\"r2\"/>\n"
+                                           + "@@ constraints o1\n<rsc_order id=\"o1\" first=\"r2\" then=\"g1\"/>\n";
+
+    private final CibDeltaApplier cibDeltaApplier = new CibDeltaApplier();
+
+    @Before
+    public void setUp() {
+        cibDeltaApplier.apply(FULL_CIB);
+    }
+
+    @Test
+    public void fullCibShouldChangeAllResources() {
+        assertThat(cibDeltaApplier.getChangedIds().isPresent()).isFalse();
+        assertThat(cibDeltaApplier.getChangedNodes().isPresent()).isFalse();
+        assertThat(cibDeltaApplier.getCibXml()).contains("<primitive id=\"r2\"/>");
+    }
+
+    @Test
+    public void changedResourceShouldKeepItsPosition() {
+        final String delta = "delta-version:1 seq:2 full:0\n"
+                             + "@@ resources g1\n<group id=\"g1\">\n<primitive id=\"r3\"/>\n</group>\n";
+
+        assertThat(cibDeltaApplier.apply(delta)).isTrue();
+        assertThat(cibDeltaApplier.getChangedIds().get()).containsOnly("g1", "r1", "r3");
+        assertThat(cibDeltaApplier.getCibXml()).contains("<primitive id=\"r3\"/>\n</group><primitive id=\"r2\"/>");
+    }
+
+    @Test
+    public void removedConstraintShouldChangeItsResources() {
+        final String delta = "delta-version:1 seq:2 full:0\n@@ removed constraints o1\n";
+
+        assertThat(cibDeltaApplier.apply(delta)).isTrue();
+        assertThat(cibDeltaApplier.getChangedIds().get()).containsOnly("r2", "g1");
+        assertThat(cibDeltaApplier.getCibXml()).doesNotContain("rsc_order");
+    }
+
+    @Test
+    public void changedNodeStatesShouldKeepTheConfiguration() {
+        final String delta = "delta-version:1 seq:2 full:0\n"
+                             + "@@ cib\n<cib epoch=\"2\"/>\n"
+                             + "@@ status n1\n<node_state id=\"n1\" uname=\"Node1\"/>\n";
+
+        assertThat(cibDeltaApplier.apply(delta)).isTrue();
+        assertThat(cibDeltaApplier.getChangedNodes().get()).containsOnly("node1");
+        assertThat(cibDeltaApplier.getChangedIds().get()).isEmpty();
+    }
+
+    @Test
+    public void changedResourceShouldChangeMoreThanNodeStates() {
+        final String delta = "delta-version:1 seq:2 full:0\n"
+                             + "@@ status n1\n<node_state id=\"n1\" uname=\"node1\"/>\n"
+                             + "@@ resources r2\n<primitive id=\"r2\" type=\"Dummy\"/>\n";
+
+        assertThat(cibDeltaApplier.apply(delta)).isTrue();
+        assertThat(cibDeltaApplier.getChangedNodes().isPresent()).isFalse();
+        assertThat(cibDeltaApplier.getChangedIds().get()).containsOnly("r2");
+    }
+
+    @Test
+    public void missedDeltaShouldRequireFullCib() {
+        final String delta = "delta-version:1 seq:3 full:0\n@@ status n1\n<node_state id=\"n1\"/>\n";
+
+        assertThat(cibDeltaApplier.apply(delta)).isFalse();
+        assertThat(cibDeltaApplier.isOutOfSync()).isTrue();
+        assertThat(cibDeltaApplier.isVersionMismatch()).isFalse();
+    }
+}
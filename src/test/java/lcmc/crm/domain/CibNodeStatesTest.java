@@ -0,0 +1,108 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import lcmc.common.domain.XMLTools;
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.HostParser;
+import lcmc.testutils.SyntheticCib;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.w3c.dom.Document;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CibNodeStatesTest {
+    private static final String ORPHAN = "<lrm_resource id=\"orphan\" type=\"Dummy\" class=\"ocf\""
+                                         + " provider=\"heartbeat\">\n</lrm_resource>\n";
+    @Mock
+    private Host host;
+    @Mock
+    private HostParser hostParser;
+    @InjectMocks
+    private CrmXml crmXml;
+
+    @Before
+    public void setUp() {
+        when(host.getHostParser()).thenReturn(hostParser);
+        when(hostParser.getPacemakerVersion()).thenReturn("1.1.12");
+    }
+
+    @Test
+    public void changedNodeStateShouldBeTheSameAsFullCib() {
+        final String cib = SyntheticCib.cib(20);
+        final CibQuery previous = crmXml.parseCibQuery(XMLTools.getXMLDocument(cib));
+        final Document changed = XMLTools.getXMLDocument(changeNode2(cib));
+
+        final CibQuery full = crmXml.parseCibQuery(changed);
+        final CibQuery nodeStates = crmXml.parseNodeStates(previous, changed, Collections.singleton("node2"));
+
+        assertEqualStatus(nodeStates, full);
+        assertThat(nodeStates.getNodeOnline()).containsEntry("node2", "no").containsEntry("node1", "yes");
+        assertThat(nodeStates.getOrphaned()).containsOnly("orphan");
+        assertThat(previous.getOrphaned()).isEmpty();
+        assertThat(previous.getNodeOnline()).containsEntry("node2", "yes");
+    }
+
+    @Test
+    public void orphanShouldBeRemovedWithItsNodeState() {
+        final String cib = SyntheticCib.cib(20);
+        final CibQuery previous = crmXml.parseCibQuery(XMLTools.getXMLDocument(changeNode2(cib)));
+        final Document changed = XMLTools.getXMLDocument(cib);
+
+        final CibQuery full = crmXml.parseCibQuery(changed);
+        final CibQuery nodeStates = crmXml.parseNodeStates(previous, changed, Collections.singleton("node2"));
+
+        assertEqualStatus(nodeStates, full);
+        assertThat(nodeStates.getOrphaned()).isEmpty();
+        assertThat(nodeStates.getResourceType()).doesNotContainKey("orphan");
+    }
+
+    /** Sets node2 offline, changes its fail count and adds an orphaned resource to it. */
+    private String changeNode2(final String cib) {
+        return cib.replace("uname=\"node2\" in_ccm=\"true\" crmd=\"online\"",
+                           "uname=\"node2\" in_ccm=\"true\" crmd=\"offline\"")
+                  .replace("status-2-fail-count-res_0\" name=\"fail-count-res_0\" value=\"1\"",
+                           "status-2-fail-count-res_0\" name=\"fail-count-res_0\" value=\"2\"")
+                  .replace("<lrm id=\"2\">\n<lrm_resources>\n", "<lrm id=\"2\">\n<lrm_resources>\n" + ORPHAN);
+    }
+
+    private void assertEqualStatus(final CibQuery nodeStates, final CibQuery full) {
+        assertThat(nodeStates.getNodeOnline()).isEqualTo(full.getNodeOnline());
+        assertThat(nodeStates.getNodePending()).isEqualTo(full.getNodePending());
+        assertThat(nodeStates.getNodeFailedCount()).isEqualTo(full.getNodeFailedCount());
+        assertThat(nodeStates.getResourceFailedCloneIds()).isEqualTo(full.getResourceFailedCloneIds());
+        assertThat(nodeStates.getInLRM()).isEqualTo(full.getInLRM());
+        assertThat(nodeStates.getOrphaned()).isEqualTo(full.getOrphaned());
+        assertThat(nodeStates.getResourceType().keySet()).isEqualTo(full.getResourceType().keySet());
+        assertThat(nodeStates.getResourceParameters()).isEqualTo(full.getResourceParameters());
+        assertThat(nodeStates.getGroupsToResources()).isEqualTo(full.getGroupsToResources());
+        assertThat(nodeStates.getDC()).isEqualTo(full.getDC()).isEqualTo("node1");
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.HostParser;
+import lcmc.testutils.SyntheticCib;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CibStreamParserTest {
+    @Mock
+    private Host host;
+    @Mock
+    private HostParser hostParser;
+    @InjectMocks
+    private CrmXml crmXml;
+
+    @Before
+    public void setUp() {
+        when(host.getHostParser()).thenReturn(hostParser);
+        when(hostParser.getPacemakerVersion()).thenReturn("1.1.12");
+    }
+
+    @Test
+    public void streamingCibQueryShouldBeTheSameAsDom() {
+        final String cib = SyntheticCib.cib(50);
+
+        final CibQuery dom = crmXml.parseCibQueryWithDom(cib);
+        final CibQuery streaming = crmXml.parseCibQueryStreaming(cib);
+
+        assertThat(streaming.getGroupsToResources()).isEqualTo(dom.getGroupsToResources()).hasSize(11);
+        assertThat(streaming.getCloneToResource()).isEqualTo(dom.getCloneToResource()).hasSize(5);
+        assertThat(streaming.getResourceParameters()).isEqualTo(dom.getResourceParameters());
+        assertThat(streaming.getOperationsId()).isEqualTo(dom.getOperationsId());
+        assertThat(streaming.getMetaAttrsId()).isEqualTo(dom.getMetaAttrsId());
+        assertThat(streaming.getCrmConfig()).isEqualTo(dom.getCrmConfig()).containsEntry("stonith-enabled", "false");
+        assertThat(streaming.getNodeParameters()).isEqualTo(dom.getNodeParameters());
+        assertThat(streaming.getNodeOnline()).isEqualTo(dom.getNodeOnline()).containsEntry("node2", "yes");
+        assertThat(streaming.getDC()).isEqualTo(dom.getDC()).isEqualTo("node1");
+        assertThat(streaming.getInLRM()).isEqualTo(dom.getInLRM());
+        assertThat(streaming.getOrphaned()).isEqualTo(dom.getOrphaned()).isEmpty();
+        assertThat(streaming.getNodeFailedCount()).isEqualTo(dom.getNodeFailedCount());
+        assertThat(streaming.getResourceFailedCloneIds()).isEqualTo(dom.getResourceFailedCloneIds());
+        assertThat(streaming.getColocationId().keySet()).isEqualTo(dom.getColocationId().keySet());
+        assertThat(streaming.getOrderId().keySet()).isEqualTo(dom.getOrderId().keySet());
+        assertThat(streaming.getLocationsId()).isEqualTo(dom.getLocationsId());
+        assertThat(streaming.getResHostToLocId()).isEqualTo(dom.getResHostToLocId());
+    }
+
+    @Test
+    public void streamingResourceAttributesShouldBeTheSameAsDom() {
+        final String cib = "<pcmk><cib dc-uuid=\"1\"><configuration><crm_config>"
+                           + "<cluster_property_set id=\"c\"/></crm_config>"
+                           + "<nodes><node id=\"1\" uname=\"node1\"/></nodes><resources>"
+                           + "<primitive id=\"st\" class=\"stonith\" type=\"null\">"
+                           + "<instance_attributes id=\"st-ia\">"
+                           + "<nvpair id=\"st-p\" name=\"priority\" value=\"3\"/></instance_attributes>"
+                           + "<operations id-ref=\"r1-ops\"/><meta_attributes id-ref=\"r1-meta\"/></primitive>"
+                           + "<master id=\"ms\"><meta_attributes id=\"ms-meta\">"
+                           + "<nvpair id=\"ms-t\" name=\"target-role\" value=\"Started\"/></meta_attributes>"
+                           + "<group id=\"g\"><meta_attributes id=\"g-meta\">"
+                           + "<nvpair id=\"g-o\" name=\"ordered\" value=\"false\"/></meta_attributes>"
+                           + "<primitive id=\"r1\" class=\"ocf\" provider=\"heartbeat\" type=\"Dummy\">"
+                           + "<operations id=\"r1-ops\"><op id=\"r1-mon\" name=\"monitor\" interval=\"10s\">"
+                           + "<instance_attributes id=\"r1-mon-ia\">"
+                           + "<nvpair id=\"r1-cl\" name=\"OCF_CHECK_LEVEL\" value=\"10\"/>"
+                           + "</instance_attributes></op></operations>"
+                           + "<meta_attributes id=\"r1-meta\"/></primitive></group></master>"
+                           + "</resources><constraints/></configuration><status>"
+                           + "<node_state id=\"1\" uname=\"node1\" in_ccm=\"true\" crmd=\"online\" join=\"member\">"
+                           + "<lrm id=\"1\"><lrm_resources><lrm_resource id=\"old\" class=\"ocf\" type=\"Dummy\">"
+                           + "<lrm_rsc_op id=\"old_last_0\" operation=\"stop\"/></lrm_resource></lrm_resources></lrm>"
+                           + "</node_state></status></cib></pcmk>";
+
+        final CibQuery dom = crmXml.parseCibQueryWithDom(cib);
+        final CibQuery streaming = crmXml.parseCibQueryStreaming(cib);
+
+        assertThat(streaming.getResourceParameters()).isEqualTo(dom.getResourceParameters());
+        assertThat(streaming.getResourceParametersNvpairsIds()).isEqualTo(dom.getResourceParametersNvpairsIds());
+        assertThat(streaming.getResourceParameters().get("st"))
+                .containsEntry(CrmXml.STONITH_PRIORITY_INSTANCE_ATTR, "3");
+        assertThat(streaming.getResourceParameters().get("g")).containsEntry(CrmXml.GROUP_ORDERED_META_ATTR, "false");
+        assertThat(streaming.getResourceParameters().get("ms")).containsEntry("target-role", "started");
+        assertThat(streaming.getOperations()).isEqualTo(dom.getOperations());
+        assertThat(streaming.getOperations().get("r1", "monitor", CrmXml.PARAM_OCF_CHECK_LEVEL).getValueForConfig())
+                .isEqualTo("10");
+        assertThat(streaming.getOperationsRefs()).isEqualTo(dom.getOperationsRefs()).containsEntry("st", "r1");
+        assertThat(streaming.getMetaAttrsRefs()).isEqualTo(dom.getMetaAttrsRefs()).containsEntry("st", "r1");
+        assertThat(streaming.getResOpIds()).isEqualTo(dom.getResOpIds());
+        assertThat(streaming.getGroupsToResources()).isEqualTo(dom.getGroupsToResources());
+        assertThat(streaming.getCloneToResource()).isEqualTo(dom.getCloneToResource()).containsEntry("ms", "g");
+        assertThat(streaming.getMasterList()).isEqualTo(dom.getMasterList()).containsExactly("ms");
+        assertThat(streaming.getOrphaned()).isEqualTo(dom.getOrphaned()).containsExactly("old");
+        assertThat(streaming.getInLRM()).isEqualTo(dom.getInLRM());
+    }
+
+    @Test
+    public void cibWithoutResourcesShouldKeepCrmConfig() {
+        final String cib = "<pcmk><cib><configuration><crm_config><cluster_property_set id=\"c\">"
+                           + "<nvpair name=\"stonith-enabled\" value=\"false\"/>"
+                           + "</cluster_property_set></crm_config></configuration></cib></pcmk>";
+
+        final CibQuery streaming = crmXml.parseCibQueryStreaming(cib);
+
+        assertThat(streaming.getCrmConfig()).isEqualTo(crmXml.parseCibQueryWithDom(cib).getCrmConfig())
+                                            .containsEntry("stonith-enabled", "false");
+        assertThat(streaming.getGroupsToResources()).isEmpty();
+    }
+
+    @Test
+    public void streamingResStatusShouldBeTheSameAsDom() {
+        final String resStatus = SyntheticCib.resourceStatus(20);
+
+        final Map<String, CrmXml.ResourceStatus> dom = crmXml.parseResStatusWithDom(resStatus);
+        final Map<String, CrmXml.ResourceStatus> streaming = CibStreamParser.parseResStatus(resStatus);
+
+        assertThat(streaming.keySet()).isEqualTo(dom.keySet()).hasSize(20);
+        for (final Map.Entry<String, CrmXml.ResourceStatus> resource : dom.entrySet()) {
+            final CrmXml.ResourceStatus status = streaming.get(resource.getKey());
+            assertThat(status.getRunningOnNodes()).isEqualTo(resource.getValue().getRunningOnNodes());
+            assertThat(status.getAllocationScores()).isEqualTo(resource.getValue().getAllocationScores());
+            assertThat(status.isManagedByCrm()).isEqualTo(resource.getValue().isManagedByCrm());
+        }
+    }
+
+    @Test
+    public void resStatusWithoutResourcesShouldBeNull() {
+        assertThat(CibStreamParser.parseResStatus("<crm_mon/>")).isNull();
+        assertThat(CibStreamParser.parseResStatus("no resources defined!")).isNull();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.crm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import lcmc.cluster.service.ssh.ExecCommandConfig;
+import lcmc.cluster.service.ssh.SshOutput;
+import lcmc.common.domain.Application;
+import lcmc.crm.domain.PtestData;
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.HostParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CRMTest {
+    private static final String PTEST_OUTPUT = "LogActions: Start res1\t(node1)\n"
+                                               + CRM.PTEST_END_DELIM + "\n<cib/>";
+    @Mock
+    private Host host;
+    @Mock
+    private HostParser hostParser;
+
+    @Before
+    public void setUp() {
+        when(host.getName()).thenReturn("host");
+        when(host.getHostParser()).thenReturn(hostParser);
+        when(host.getDistCommand(eq("CRM.erase"), anyMapOf(String.class, String.class))).thenReturn("erase-1");
+        when(host.getDistCommand(eq("CRM.standByOff"), anyMapOf(String.class, String.class)))
+                .thenReturn("standby-off-1");
+        when(host.captureCommand(any(ExecCommandConfig.class))).thenReturn(new SshOutput(PTEST_OUTPUT, 0));
+    }
+
+    @Test
+    public void testCommandsShouldRunWithThePtest() {
+        assertThat(CRM.erase(host, Application.RunMode.TEST)).isTrue();
+        assertThat(CRM.standByOff(host, host, Application.RunMode.TEST)).isTrue();
+
+        final PtestData ptestData = CRM.getPtest(host, 1);
+
+        final ArgumentCaptor<ExecCommandConfig> command = ArgumentCaptor.forClass(ExecCommandConfig.class);
+        verify(host, times(1)).captureCommand(command.capture());
+        assertThat(command.getValue().getCommand()).contains("\nerase-1\nstandby-off-1\n");
+        assertThat(ptestData.getToolTip()).contains("Start res1");
+    }
+
+    @Test
+    public void samePtestShouldBeCached() {
+        CRM.erase(host, Application.RunMode.TEST);
+        final PtestData ptestData = CRM.getPtest(host, 1);
+        CRM.erase(host, Application.RunMode.TEST);
+
+        assertThat(CRM.getPtest(host, 1)).isSameAs(ptestData);
+        verify(host, times(1)).captureCommand(any(ExecCommandConfig.class));
+    }
+
+    @Test
+    public void otherHostWithTheSameNameShouldNotBeCached() {
+        final Host otherHost = mock(Host.class);
+        when(otherHost.getName()).thenReturn("host");
+        when(otherHost.captureCommand(any(ExecCommandConfig.class))).thenReturn(new SshOutput(PTEST_OUTPUT, 0));
+        final PtestData ptestData = CRM.getPtest(host, 1);
+
+        assertThat(CRM.getPtest(otherHost, 1)).isNotSameAs(ptestData);
+        verify(otherHost, times(1)).captureCommand(any(ExecCommandConfig.class));
+    }
+
+    @Test
+    public void ptestShouldRunAgainAfterCibChange() {
+        CRM.erase(host, Application.RunMode.TEST);
+        final PtestData ptestData = CRM.getPtest(host, 1);
+        CRM.erase(host, Application.RunMode.TEST);
+
+        assertThat(CRM.getPtest(host, 2)).isNotSameAs(ptestData);
+        verify(host, times(2)).captureCommand(any(ExecCommandConfig.class));
+    }
+
+    @Test
+    public void ptestShouldRunAgainWithOtherChanges() {
+        CRM.erase(host, Application.RunMode.TEST);
+        final PtestData ptestData = CRM.getPtest(host, 1);
+        CRM.standByOff(host, host, Application.RunMode.TEST);
+
+        assertThat(CRM.getPtest(host, 1)).isNotSameAs(ptestData);
+        verify(host, times(2)).captureCommand(any(ExecCommandConfig.class));
+    }
+}
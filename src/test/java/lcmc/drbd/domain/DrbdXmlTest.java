@@ -38,7 +38,9 @@ import java.io.IOException;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -209,6 +211,51 @@ public class DrbdXmlTest {
         assertThat(newArrayList(drbdXml.getSectionParams("COMMAND")), is(asList(OPTION1, OPTION2, OPTION3, OPTION4, "fence-peer", "after-resync-target", "split-brain", "become-primary-on", "verify-alg")));
     }
 
+    @Test
+    public void parametersShouldBeSharedWithTheSameOutput() {
+        val otherDrbdXml = new DrbdXml();
+
+        otherDrbdXml.parseDrbdParameters(host1, output, new Host[]{host1, host2});
+
+        assertThat(otherDrbdXml.getDrbdParam(OPTION1), sameInstance(drbdXml.getDrbdParam(OPTION1)));
+        assertThat(otherDrbdXml.getPossibleChoices("become-primary-on"),
+                   is(drbdXml.getPossibleChoices("become-primary-on")));
+    }
+
+    @Test
+    public void unchangedResourceShouldBeTakenOverFromThePreviousConfig() {
+        drbdXml.update(config("/dev/sdb1"));
+        val newDrbdXml = new DrbdXml();
+        newDrbdXml.parseDrbdParameters(host1, output, new Host[]{host1, host2});
+
+        newDrbdXml.update(config("/dev/sdc1"), drbdXml);
+
+        assertThat(newDrbdXml.getHostDiskMap("r0", "0"), sameInstance(drbdXml.getHostDiskMap("r0", "0")));
+        assertThat(newDrbdXml.getHostDiskMap("r1", "0"), not(sameInstance(drbdXml.getHostDiskMap("r1", "0"))));
+        assertThat(newDrbdXml.getHostDiskMap("r1", "0").get("HOST1"), is("/dev/sdc1"));
+        assertThat(drbdXml.getHostDiskMap("r1", "0").get("HOST1"), is("/dev/sdb1"));
+        assertThat(newDrbdXml.getResources(), is(new String[]{"r0", "r1"}));
+        assertThat(newDrbdXml.getDrbdDevice("r0", "0"), is("/dev/drbd0"));
+        assertThat(newDrbdXml.getVirtualInterfacePort("HOST1", "r1"), is("7789"));
+    }
+
+    private String config(final String r1Disk) {
+        return "<config file=\"/etc/drbd.conf\">\n"
+               + resource("r0", "/dev/drbd0", "/dev/sda1", "7788")
+               + resource("r1", "/dev/drbd1", r1Disk, "7789")
+               + "</config>\n";
+    }
+
+    private String resource(final String name, final String device, final String disk, final String port) {
+        return "<resource name=\"" + name + "\">\n"
+               + "<host name=\"HOST1\">\n"
+               + "<volume vnr=\"0\"><device>" + device + "</device><disk>" + disk + "</disk>"
+               + "<meta-disk>internal</meta-disk></volume>\n"
+               + "<address family=\"ipv4\" port=\"" + port + "\">10.0.0.1</address>\n"
+               + "</host>\n"
+               + "</resource>\n";
+    }
+
     private String readFile(final String resourceName) {
         try {
             return Resources.toString(Resources.getResource(resourceName), Charsets.UTF_8);
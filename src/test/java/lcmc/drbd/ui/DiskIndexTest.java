@@ -0,0 +1,116 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.drbd.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiskIndexTest {
+    private final List<Disk> disks = new ArrayList<Disk>();
+    private int scans;
+    private DiskIndex<Disk> diskIndex;
+
+    @Before
+    public void setUp() {
+        diskIndex = new DiskIndex<Disk>(Disk::isOfDisk);
+    }
+
+    @Test
+    public void indexedDiskShouldNotBeScannedAgain() {
+        final Disk sda = new Disk("/dev/sda", "uuid-a");
+        disks.add(sda);
+
+        assertThat(find("host", "uuid-a")).isEqualTo(sda);
+        assertThat(find("host", "uuid-a")).isEqualTo(sda);
+        assertThat(scans).isEqualTo(1);
+    }
+
+    @Test
+    public void changedDiskShouldBeScannedAgain() {
+        final Disk sda = new Disk("/dev/sda", "uuid-a");
+        disks.add(sda);
+        find("host", "uuid-a");
+        sda.ids = Arrays.asList("uuid-b");
+        final Disk sdb = new Disk("/dev/sdb", "uuid-a");
+        disks.add(0, sdb);
+
+        assertThat(find("host", "uuid-a")).isEqualTo(sdb);
+        assertThat(scans).isEqualTo(2);
+    }
+
+    @Test
+    public void removedDiskShouldBeScannedAgain() {
+        final Disk sda = new Disk("/dev/sda", "uuid-a");
+        disks.add(sda);
+        find("host", "/dev/sda");
+        find("host", "uuid-a");
+        diskIndex.remove("host", sda);
+        disks.remove(sda);
+
+        assertThat(find("host", "/dev/sda")).isNull();
+        assertThat(find("host", "uuid-a")).isNull();
+        assertThat(scans).isEqualTo(4);
+    }
+
+    @Test
+    public void hostsShouldBeIndexedSeparately() {
+        final Disk sda = new Disk("/dev/sda", "uuid-a");
+        disks.add(sda);
+        find("host1", "/dev/sda");
+        diskIndex.remove("host2", sda);
+
+        assertThat(find("host1", "/dev/sda")).isEqualTo(sda);
+        assertThat(find("host2", "/dev/sda")).isEqualTo(sda);
+        assertThat(scans).isEqualTo(2);
+    }
+
+    private Disk find(final String hostName, final String disk) {
+        return diskIndex.find(hostName, disk, (h, d) -> {
+            scans++;
+            for (final Disk candidate : disks) {
+                if (candidate.isOfDisk(d)) {
+                    return candidate;
+                }
+            }
+            return null;
+        });
+    }
+
+    private static class Disk {
+        private final String name;
+        private List<String> ids;
+
+        Disk(final String name, final String... ids) {
+            this.name = name;
+            this.ids = Arrays.asList(ids);
+        }
+
+        boolean isOfDisk(final String disk) {
+            return disk.equals(name) || ids.contains(disk);
+        }
+    }
+}
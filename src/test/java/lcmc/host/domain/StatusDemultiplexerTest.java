@@ -0,0 +1,83 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatusDemultiplexerTest {
+    private final List<String> received = new ArrayList<String>();
+    private StatusDemultiplexer demultiplexer;
+
+    @Before
+    public void setUp() {
+        demultiplexer = new StatusDemultiplexer(new StatusDemultiplexer.Receiver() {
+            @Override
+            public void output(final String id, final String output) {
+                received.add(id + ':' + output);
+            }
+
+            @Override
+            public void control(final String message) {
+                received.add("control:" + message);
+            }
+        });
+    }
+
+    @Test
+    public void linesOfOneStreamShouldBeHandedOverAtOnce() {
+        demultiplexer.output("hw-1|--hw-info-start--1\r\ndrbd-2|--nm--\r\nhw-1|a\r\nhw-1|--hw-info-end--\r\n");
+
+        assertThat(received).containsExactly("hw-1:--hw-info-start--1\r\na\r\n--hw-info-end--\r\n",
+                                             "drbd-2:--nm--\r\n");
+    }
+
+    @Test
+    public void lineShouldContinueInNextOutput() {
+        demultiplexer.output("crm-3|---sta");
+        demultiplexer.output("rt---\r\ncrm-3|");
+
+        assertThat(received).containsExactly("crm-3:---start---\r\n");
+
+        demultiplexer.output("\r\n");
+
+        assertThat(received).containsExactly("crm-3:---start---\r\n", "crm-3:\r\n");
+    }
+
+    @Test
+    public void outputBeforeControlMessageShouldBeHandedOverFirst() {
+        demultiplexer.output("drbd-2|x\r\nmux|end drbd-2 1\r\ndrbd-4|y\r\n");
+
+        assertThat(received).containsExactly("drbd-2:x\r\n", "control:end drbd-2 1", "drbd-4:y\r\n");
+    }
+
+    @Test
+    public void linesWithoutIdShouldBeIgnored() {
+        demultiplexer.output("[sudo] password:\r\nhw-1|z\n");
+
+        assertThat(received).containsExactly("hw-1:z\r\n");
+    }
+}
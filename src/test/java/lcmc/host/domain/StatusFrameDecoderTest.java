@@ -0,0 +1,97 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatusFrameDecoderTest {
+    private final List<String> received = new ArrayList<String>();
+    private StatusFrameDecoder decoder;
+
+    @Before
+    public void setUp() {
+        decoder = new StatusFrameDecoder(new StatusFrameDecoder.Receiver() {
+            @Override
+            public void frames(final String id, final List<StatusFrame> frames) {
+                for (final StatusFrame frame : frames) {
+                    received.add(id + ':' + frame.getType() + ':' + frame.getTimestamp() + ':' + frame.getPayload());
+                }
+            }
+
+            @Override
+            public void output(final String id, final String output) {
+                received.add(id + ':' + output);
+            }
+
+            @Override
+            public void control(final String message) {
+                received.add("control:" + message);
+            }
+        });
+    }
+
+    @Test
+    public void framesShouldBeCutByTheirLength() {
+        output("\u001eFcontrol mux 1 7\r\nready 1\u001eFhw hw-1 2 8\r\n--a--\r\nb\r\n\u001eFcrm crm-2 3 0\r\n");
+
+        assertThat(received).containsExactly("control:ready 1", "hw-1:hw:2:--a--\nb\n", "crm-2:crm:3:");
+    }
+
+    @Test
+    public void frameShouldContinueInNextOutput() {
+        output("\u001eFvm hw-1 5 6\r\n\u00c3");
+        output("\u00a9\r\nxy");
+
+        assertThat(received).isEmpty();
+
+        output("z\u001eFcontrol mux 6 10\r\nend hw-1 0");
+
+        assertThat(received).containsExactly("hw-1:vm:5:\u00e9\nxyz", "control:end hw-1 0");
+    }
+
+    @Test
+    public void textBetweenFramesShouldBeIgnored() {
+        output("\r\n\u001eFtext drbd-3 1 2\r\nx\r\n\r\nwarning\r\n\u001eFnm drbd-3 2 0\r\n");
+
+        assertThat(received).containsExactly("drbd-3:text:1:x\n", "drbd-3:nm:2:");
+    }
+
+    @Test
+    public void linesShouldBeHandedOverWithoutFrames() {
+        output("\r\nmux|ready 1\r\ncrm-2|---start---\r\ncrm-2|");
+        output("---done---\r\n");
+
+        assertThat(received).containsExactly("control:ready 1", "crm-2:---start---\r\n", "crm-2:---done---\r\n");
+    }
+
+    /** Sends every char as one byte, like in latin-1. */
+    private void output(final String bytes) {
+        final byte[] buffer = bytes.getBytes(StandardCharsets.ISO_8859_1);
+        decoder.output(buffer, 0, buffer.length);
+    }
+}
@@ -26,7 +26,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
 
 import com.google.common.collect.ImmutableList;
 
@@ -115,6 +118,37 @@ public class DistributionDetectorTest {
         assertNull(getDistCommand(null, null, true, true));
     }
 
+    @Test
+    public void replaceHashShouldBeSubstituted() {
+        final Map<String, String> replaceHash = new HashMap<String, String>();
+        replaceHash.put("@SIZE@", "10G");
+        replaceHash.put("@DEVICE@", Matcher.quoteReplacement("/dev/vg$0/lv\\1"));
+
+        assertEquals(lcmc.configs.DistResource.SUDO + "lvresize -L10G /dev/vg$0/lv\\1",
+                     getDetector().getDistCommand("LVM.resize", replaceHash));
+    }
+
+    @Test
+    public void memoizedCommandShouldBeConvertedAgain() {
+        final DistributionDetector distributionDetector = getDetector();
+        distributionDetector.getDistCommand("Corosync.startCorosync", null, false, false);
+
+        assertEquals("sudo /etc/init.d/corosync start",
+                     distributionDetector.getDistCommand("Corosync.startCorosync", getConvertCallback(), false, false));
+    }
+
+    private DistributionDetector getDetector() {
+        final DistributionDetector distributionDetector = new DistributionDetector(null);
+        distributionDetector.detect(ImmutableList.of("Linux",
+                                                     "x86_64",
+                                                     "3.16.0-4-amd64",
+                                                     "8.6",
+                                                     "debian",
+                                                     "debian",
+                                                     "8.6"));
+        return distributionDetector;
+    }
+
     private String getDistCommand(final String text,
                                   final ConvertCmdCallback convertCmdCallback,
                                   final boolean inBash,
@@ -0,0 +1,104 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class InfoDeltaApplierTest {
+    private final InfoDeltaApplier infoDeltaApplier = new InfoDeltaApplier();
+
+    @Test
+    public void hwDeltaShouldBeReturnedWithoutHeader() {
+        final String delta = "delta-version:1 seq:2 full:0\r\ndisk-space\r\n/dev/sda1 5\r\n";
+
+        assertThat(infoDeltaApplier.applyHwDelta(delta)).contains("disk-space\r\n/dev/sda1 5\r\n");
+        assertThat(infoDeltaApplier.isVersionMismatch()).isFalse();
+    }
+
+    @Test
+    public void unknownVersionShouldBeAMismatch() {
+        final String delta = "delta-version:2 seq:1 full:1\r\ndisk-space\r\n";
+
+        assertThat(infoDeltaApplier.applyHwDelta(delta)).isEmpty();
+        assertThat(infoDeltaApplier.isVersionMismatch()).isTrue();
+    }
+
+    @Test
+    public void vmDeltaShouldWaitForFullInfo() {
+        final String delta = "delta-version:1 seq:2 full:0 md5:abc\r\n@@ vm-removed vm1\r\n";
+
+        assertThat(infoDeltaApplier.applyVmDelta(delta)).isEmpty();
+    }
+
+    @Test
+    public void vmDeltaShouldBeAppliedToFullInfo() {
+        infoDeltaApplier.applyVmDelta("delta-version:1 seq:1 full:1 md5:m1\r\n"
+                                      + "@@ version\r\n<version>1.2</version>\r\n"
+                                      + "@@ vm vm1\r\n<vm name=\"vm1\">\r\n</vm>\r\n"
+                                      + "@@ vm vm2\r\n<vm name=\"vm2\">\r\n</vm>\r\n"
+                                      + "@@ networks\r\n<net name=\"default\">\r\n</net>\r\n");
+
+        final String delta = "delta-version:1 seq:2 full:0 md5:m2\r\n"
+                             + "@@ vm vm2\r\n<vm name=\"vm2\" autostart=\"True\">\r\n</vm>\r\n"
+                             + "@@ vm-removed vm1\r\n";
+
+        assertThat(infoDeltaApplier.applyVmDelta(delta)).contains("<vms md5=\"m2\">\n"
+                                                                  + "<version>1.2</version>\r\n"
+                                                                  + "<vm name=\"vm2\" autostart=\"True\">\r\n</vm>\r\n"
+                                                                  + "<net name=\"default\">\r\n</net>\r\n"
+                                                                  + "</vms>\n");
+    }
+
+    @Test
+    public void missedHwDeltaShouldBeDroppedAndOutOfSync() {
+        infoDeltaApplier.applyHwDelta("delta-version:1 seq:1 full:1\r\ndisk-space\r\n/dev/sda1 5\r\n");
+
+        assertThat(infoDeltaApplier.applyHwDelta("delta-version:1 seq:3 full:0\r\ndisk-space\r\n/dev/sda1 7\r\n"))
+                .isEmpty();
+        assertThat(infoDeltaApplier.isOutOfSync()).isTrue();
+        assertThat(infoDeltaApplier.applyHwDelta("delta-version:1 seq:4 full:0\r\ndisk-space\r\n/dev/sda1 8\r\n"))
+                .isEmpty();
+    }
+
+    @Test
+    public void missedVmDeltaShouldBeDroppedAndOutOfSync() {
+        infoDeltaApplier.applyVmDelta("delta-version:1 seq:1 full:1 md5:m1\r\n"
+                                      + "@@ vm vm1\r\n<vm name=\"vm1\">\r\n</vm>\r\n");
+
+        final String delta = "delta-version:1 seq:3 full:0 md5:m3\r\n@@ vm-removed vm1\r\n";
+
+        assertThat(infoDeltaApplier.applyVmDelta(delta)).isEmpty();
+        assertThat(infoDeltaApplier.isOutOfSync()).isTrue();
+        assertThat(infoDeltaApplier.isVersionMismatch()).isFalse();
+    }
+
+    @Test
+    public void deltasInOrderShouldStayInSync() {
+        infoDeltaApplier.applyVmDelta("delta-version:1 seq:1 full:1 md5:m1\r\n");
+        infoDeltaApplier.applyVmDelta("delta-version:1 seq:2 full:0 md5:m2\r\n");
+        infoDeltaApplier.applyHwDelta("delta-version:1 seq:1 full:1\r\ndisk-space\r\n");
+        infoDeltaApplier.applyHwDelta("delta-version:1 seq:2 full:0\r\ndisk-space\r\n");
+
+        assertThat(infoDeltaApplier.isOutOfSync()).isFalse();
+    }
+}
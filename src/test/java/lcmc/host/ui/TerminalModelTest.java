@@ -0,0 +1,103 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.ui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerminalModelTest {
+    private TerminalModel terminalModel;
+    private MutableAttributeSet colorAS;
+
+    @Before
+    public void setUp() {
+        final Map<String, Color> terminalColor = new HashMap<String, Color>();
+        terminalColor.put("32", Color.GREEN);
+        terminalModel = new TerminalModel(terminalColor, Color.WHITE);
+        colorAS = new SimpleAttributeSet();
+        StyleConstants.setForeground(colorAS, Color.WHITE);
+    }
+
+    @Test
+    public void outputShouldBeInsertedInOneEdit() {
+        final List<TerminalModel.Edit> edits = terminalModel.parse("line 1\r\nline 2\r\n", colorAS);
+
+        assertThat(edits).hasSize(1);
+        assertThat(edits.get(0).getOffset()).isEqualTo(0);
+        assertThat(edits.get(0).getRemoveLength()).isEqualTo(0);
+        assertThat(edits.get(0).getText()).isEqualTo("line 1\r\nline 2\r\n");
+        assertThat(terminalModel.getMaxPos()).isEqualTo(16);
+    }
+
+    @Test
+    public void colorShouldStartNewEdit() {
+        final List<TerminalModel.Edit> edits = terminalModel.parse("a \u001b[0;32mok\u001b[0m b", colorAS);
+
+        assertThat(edits).hasSize(3);
+        assertThat(edits.get(0).getText()).isEqualTo("a ");
+        assertThat(edits.get(1).getText()).isEqualTo("ok");
+        assertThat(StyleConstants.getForeground(edits.get(1).getAttributes())).isEqualTo(Color.GREEN);
+        assertThat(StyleConstants.getForeground(edits.get(2).getAttributes())).isEqualTo(Color.WHITE);
+    }
+
+    @Test
+    public void carriageReturnShouldOverwriteTheLine() {
+        terminalModel.parse("x\r\n 10%", colorAS);
+
+        final List<TerminalModel.Edit> edits = terminalModel.parse("\r 100%", colorAS);
+
+        assertThat(edits).hasSize(1);
+        assertThat(edits.get(0).getOffset()).isEqualTo(3);
+        assertThat(edits.get(0).getRemoveLength()).isEqualTo(4);
+        assertThat(edits.get(0).getText()).isEqualTo(" 100%");
+        assertThat(terminalModel.getMaxPos()).isEqualTo(8);
+    }
+
+    @Test
+    public void escapeSequenceShouldContinueInNextOutput() {
+        terminalModel.parse("\u001b[0;3", colorAS);
+
+        final List<TerminalModel.Edit> edits = terminalModel.parse("2mok", colorAS);
+
+        assertThat(edits).hasSize(1);
+        assertThat(edits.get(0).getText()).isEqualTo("ok");
+        assertThat(StyleConstants.getForeground(edits.get(0).getAttributes())).isEqualTo(Color.GREEN);
+    }
+
+    @Test
+    public void columnShouldBePaddedWithSpaces() {
+        final List<TerminalModel.Edit> edits = terminalModel.parse("ab\u001b[5Gc", colorAS);
+
+        assertThat(edits).hasSize(1);
+        assertThat(edits.get(0).getText()).isEqualTo("ab   c");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LoggerTest {
+    @After
+    public void tearDown() {
+        LoggerFactory.setDebugLevel(-1);
+        LoggerFactory.removeDebugLevel("lcmc.logger");
+        LoggerFactory.removeDebugLevel(LoggerTest.class.getName());
+    }
+
+    @Test
+    public void patternShouldBeFilledWithArguments() {
+        assertThat(Logger.format("a: {}, b: {}", "x", 2)).isEqualTo("a: x, b: 2");
+        assertThat(Logger.format("a: {}", "x", "y")).isEqualTo("a: x");
+        assertThat(Logger.format("a: {} {}", "x")).isEqualTo("a: x {}");
+    }
+
+    @Test
+    public void supplierShouldNotBeCalledWhenDebugIsOff() {
+        final Logger logger = LoggerFactory.getLogger(LoggerTest.class);
+        final Supplier<String> failing = () -> {
+            throw new AssertionError("message created");
+        };
+
+        logger.debug2(failing);
+        logger.trace(failing);
+    }
+
+    @Test
+    public void mostSpecificDebugLevelShouldWin() {
+        final Logger logger = LoggerFactory.getLogger(LoggerTest.class);
+        assertThat(logger.isDebugEnabled(1)).isFalse();
+
+        LoggerFactory.setDebugLevel("lcmc.logger", 2);
+        assertThat(logger.isDebugEnabled(3)).isTrue();
+
+        LoggerFactory.setDebugLevel(LoggerTest.class.getName(), 0);
+        assertThat(logger.isDebugEnabled(1)).isTrue();
+        assertThat(logger.isDebugEnabled(2)).isFalse();
+
+        LoggerFactory.removeDebugLevel(LoggerTest.class.getName());
+        assertThat(logger.isDebugEnabled(3)).isTrue();
+    }
+
+    @Test
+    public void logRingShouldKeepTheLastMessages() {
+        final LogRing logRing = new LogRing(3);
+        logRing.add("m1");
+        logRing.add("DEBUG   : ", "lcmc.A", 5, "m2");
+        logRing.add("m3");
+        logRing.add("m4");
+
+        final StringBuilder out = new StringBuilder();
+        logRing.appendTo(out);
+
+        assertThat(out.toString()).isEqualTo("DEBUG   : [5s] lcmc.A: m2\nm3\nm4\n");
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.testutils;
+
+/**
+ * Builds the cib and the resource status, as they come from the
+ * lcmc-gui-helper, for the specified number of resources. Every fifth
+ * resource is in a group, every tenth is a clone and every group has
+ * colocation and order constraints. The update number changes the
+ * num_updates of the cib and the allocation scores, so that the consecutive
+ * updates are not the same.
+ */
+public final class SyntheticCib {
+    public static final String[] NODES = {"node1", "node2", "node3"};
+
+    private SyntheticCib() {
+    }
+
+    public static String cib(final int resources) {
+        return cib(NODES, resources, 3);
+    }
+
+    public static String cib(final String[] nodes, final int resources, final int update) {
+        final StringBuilder xml = new StringBuilder(resources * 2000);
+        xml.append("<pcmk>\n<fenced>\n</fenced>\n");
+        xml.append("<cib epoch=\"12\" num_updates=\"").append(update).append("\" admin_epoch=\"0\" dc-uuid=\"1\">\n");
+        xml.append("<configuration>\n<crm_config>\n<cluster_property_set id=\"cib-bootstrap-options\">\n");
+        xml.append("<nvpair id=\"o-stonith\" name=\"stonith-enabled\" value=\"false\"/>\n");
+        xml.append("<nvpair id=\"o-quorum\" name=\"no-quorum-policy\" value=\"ignore\"/>\n");
+        xml.append("</cluster_property_set>\n</crm_config>\n<nodes>\n");
+        for (int n = 0; n < nodes.length; n++) {
+            xml.append("<node id=\"").append(n + 1).append("\" uname=\"").append(nodes[n]).append("\">\n");
+            xml.append("<instance_attributes id=\"na-").append(n + 1).append("\">\n");
+            xml.append("<nvpair id=\"na-").append(n + 1).append("-standby\" name=\"standby\" value=\"off\"/>\n");
+            xml.append("</instance_attributes>\n</node>\n");
+        }
+        xml.append("</nodes>\n<resources>\n");
+        for (int i = 0; i < resources; i++) {
+            if (i % 10 == 9) {
+                xml.append("<clone id=\"cl_").append(i).append("\">\n");
+                xml.append("<meta_attributes id=\"cl_").append(i).append("-meta\">\n");
+                xml.append("<nvpair id=\"cl_").append(i).append("-max\" name=\"clone-max\" value=\"3\"/>\n");
+                xml.append("</meta_attributes>\n");
+                primitive(xml, i);
+                xml.append("</clone>\n");
+            } else if (i % 5 == 4) {
+                xml.append("<group id=\"grp_").append(i).append("\">\n");
+                primitive(xml, i);
+                xml.append("</group>\n");
+            } else {
+                primitive(xml, i);
+            }
+        }
+        xml.append("</resources>\n<constraints>\n");
+        for (int i = 0; i < resources; i++) {
+            if (i % 5 == 4 && i % 10 != 9) {
+                xml.append("<rsc_colocation id=\"col_").append(i).append("\" rsc=\"grp_").append(i)
+                   .append("\" with-rsc=\"res_").append(i - 1).append("\" score=\"INFINITY\"/>\n");
+                xml.append("<rsc_order id=\"ord_").append(i).append("\" first=\"res_").append(i - 1)
+                   .append("\" then=\"grp_").append(i).append("\" score=\"INFINITY\"/>\n");
+            } else if (i % 3 == 0) {
+                xml.append("<rsc_location id=\"loc_").append(i).append("\" rsc=\"res_").append(i)
+                   .append("\" node=\"").append(nodes[i % nodes.length]).append("\" score=\"100\"/>\n");
+            }
+        }
+        xml.append("</constraints>\n</configuration>\n<status>\n");
+        for (int n = 0; n < nodes.length; n++) {
+            xml.append("<node_state id=\"").append(n + 1).append("\" uname=\"").append(nodes[n])
+               .append("\" in_ccm=\"true\" crmd=\"online\" join=\"member\" expected=\"member\">\n");
+            xml.append("<transient_attributes id=\"").append(n + 1).append("\">\n");
+            xml.append("<instance_attributes id=\"status-").append(n + 1).append("\">\n");
+            xml.append("<nvpair id=\"status-").append(n + 1)
+               .append("-fail-count-res_0\" name=\"fail-count-res_0\" value=\"1\"/>\n");
+            xml.append("</instance_attributes>\n</transient_attributes>\n");
+            xml.append("<lrm id=\"").append(n + 1).append("\">\n<lrm_resources>\n");
+            for (int i = 0; i < resources; i++) {
+                final String id = i % 10 == 9 ? "res_" + i + ':' + n : "res_" + i;
+                xml.append("<lrm_resource id=\"").append(id)
+                   .append("\" type=\"Dummy\" class=\"ocf\" provider=\"heartbeat\">\n");
+                xml.append("<lrm_rsc_op id=\"").append(id).append("_last_0\" operation=\"start\" rc-code=\"0\"")
+                   .append(" call-id=\"").append(i).append("\" transition-key=\"3:1:0:abc\"/>\n");
+                xml.append("</lrm_resource>\n");
+            }
+            xml.append("</lrm_resources>\n</lrm>\n</node_state>\n");
+        }
+        xml.append("</status>\n</cib>\n</pcmk>\n");
+        return xml.toString();
+    }
+
+    public static String resourceStatus(final int resources) {
+        return resourceStatus(NODES, resources, 0);
+    }
+
+    public static String resourceStatus(final String[] nodes, final int resources, final int update) {
+        final StringBuilder xml = new StringBuilder(resources * 300);
+        xml.append("<resource_status>\n");
+        for (int i = 0; i < resources; i++) {
+            xml.append("<resource id=\"res_").append(i).append("\" managed=\"managed\">\n");
+            if (i % 10 == 9) {
+                for (final String node : nodes) {
+                    xml.append("<started>").append(node).append("</started>\n");
+                }
+            } else {
+                xml.append("<started>").append(nodes[i % nodes.length]).append("</started>\n");
+            }
+            xml.append("<scores>\n");
+            for (final String node : nodes) {
+                xml.append("<score host=\"").append(node).append("\" score=\"").append((i + update) % 7)
+                   .append("\"/>\n");
+            }
+            xml.append("</scores>\n</resource>\n");
+        }
+        xml.append("</resource_status>\n");
+        return xml.toString();
+    }
+
+    private static void primitive(final StringBuilder xml, final int i) {
+        xml.append("<primitive id=\"res_").append(i).append("\" class=\"ocf\" provider=\"heartbeat\" type=\"Dummy\">\n");
+        xml.append("<instance_attributes id=\"res_").append(i).append("-ia\">\n");
+        xml.append("<nvpair id=\"res_").append(i).append("-state\" name=\"state\" value=\"/var/run/res_")
+           .append(i).append("\"/>\n");
+        xml.append("</instance_attributes>\n<operations>\n");
+        xml.append("<op id=\"res_").append(i).append("-start\" name=\"start\" timeout=\"20s\" interval=\"0\"/>\n");
+        xml.append("<op id=\"res_").append(i).append("-monitor\" name=\"monitor\" timeout=\"20s\" interval=\"10s\"/>\n");
+        xml.append("</operations>\n<meta_attributes id=\"res_").append(i).append("-meta\">\n");
+        xml.append("<nvpair id=\"res_").append(i).append("-target\" name=\"target-role\" value=\"started\"/>\n");
+        xml.append("</meta_attributes>\n</primitive>\n");
+    }
+}
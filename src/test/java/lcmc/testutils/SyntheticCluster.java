@@ -0,0 +1,196 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2016, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.testutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the outputs of the lcmc-gui-helper for a cluster with the specified
+ * number of nodes, primitives, drbd volumes and vms: the hw info and the vms
+ * of every node, the crm status, the "drbdadm dump-xml" config and the drbd
+ * events. The outputs with the consecutive update numbers differ like the
+ * consecutive status updates do: the disk space, the cib, the drbd states and
+ * every tenth vm change.
+ *
+ * Every drbd volume is in its own resource on two neighbouring nodes and
+ * every vm runs on one node.
+ */
+public final class SyntheticCluster {
+    private final String[] nodes;
+    private final int primitives;
+    private final int drbdVolumes;
+    private final int vms;
+
+    public SyntheticCluster(final int nodes, final int primitives, final int drbdVolumes, final int vms) {
+        this.nodes = new String[nodes];
+        for (int n = 0; n < nodes; n++) {
+            this.nodes[n] = "node" + (n + 1);
+        }
+        this.primitives = primitives;
+        this.drbdVolumes = drbdVolumes;
+        this.vms = vms;
+    }
+
+    public String[] getNodes() {
+        return nodes.clone();
+    }
+
+    /** Returns the output of the hw info daemon with all the sections. */
+    public String hwInfo(final int node, final int update) {
+        final StringBuilder out = new StringBuilder(2000 + drbdVolumes * 200);
+        out.append("net-info\n");
+        out.append("lo ipv4 127.0.0.1 8\n");
+        out.append("eth0 ipv4 192.168.133.").append(node + 101).append(" 24\n");
+        out.append("eth1 ipv4 10.10.0.").append(node + 1).append(" 24\n");
+        out.append("br0 ipv4 192.168.122.").append(node + 1).append(" 24 bridge\n");
+        out.append("bridge-info\nbr0\nvirbr0\n");
+        out.append("filesystems-info\nbtrfs\next3\next4\nxfs\n");
+        out.append("disk-space\n");
+        out.append("/dev/sda1 ").append(40 + update % 10).append('\n');
+        for (final int volume : nodeVolumes(node)) {
+            out.append("/dev/drbd").append(volume).append(' ').append((volume + update) % 100).append('\n');
+        }
+        out.append("crypto-info\ncrc32c\nmd5\nsha1\nsha256\n");
+        out.append("qemu-keymaps-info\nde\nen-us\nfr\n");
+        out.append("cpu-map-model-info\nSandyBridge\nHaswell\nOpteron_G5\n");
+        out.append("cpu-map-vendor-info\nAMD\nIntel\n");
+        out.append("mount-points-info\n/\n/boot\n/mnt/data\n");
+        out.append("drbd-proxy-info\n");
+        out.append("installation-info\n");
+        out.append("pm:1.1.12\ncs:2.3.4\ncs-rc:on\ncs-ais-conf:on\ncs-running:on\npcmk-rc:off\n");
+        out.append("pcmk-running:on\ndrbd-loaded:on\nhn:").append(nodes[node]).append('\n');
+        out.append("version-info\nLinux\nx86_64\n3.16.0-4-amd64\n8.0\ndebian\n");
+        out.append("vg-info\nvg0 ").append(102400 - drbdVolumes * 1024).append('\n');
+        out.append("disk-info\n");
+        out.append("/dev/sda uuid:/dev/disk/by-uuid/0 disk-id:/dev/disk/by-id/ata-disk-").append(node)
+           .append(" size:488386584\n");
+        out.append("/dev/sda1 uuid:/dev/disk/by-uuid/1 size:1953792 mp:/ fs:ext4\n");
+        out.append("/dev/sda2 uuid:/dev/disk/by-uuid/2 size:486430720 pv:vg0\n");
+        for (final int volume : nodeVolumes(node)) {
+            out.append("/dev/vg0/drbd").append(volume).append(" uuid:/dev/disk/by-uuid/lv").append(volume)
+               .append(" size:1048576 lv:drbd").append(volume).append(" vg:vg0\n");
+            out.append("/dev/drbd").append(volume).append(" uuid:/dev/disk/by-uuid/drbd").append(volume)
+               .append(" size:1048540\n");
+        }
+        return out.toString();
+    }
+
+    /** Returns the crm status with the resource status and the cib. */
+    public String crmStatus(final int update) {
+        return "res_status\nok\n" + SyntheticCib.resourceStatus(nodes, primitives, update) + ">>>res_status\n"
+               + "cibadmin\nok\n" + SyntheticCib.cib(nodes, primitives, update) + ">>>cibadmin\n";
+    }
+
+    /** Returns the output of "drbdadm dump-xml". */
+    public String drbdConfig() {
+        final StringBuilder xml = new StringBuilder(1000 + drbdVolumes * 1000);
+        xml.append("<config file=\"/etc/drbd.conf\">\n<common>\n<section name=\"net\">\n");
+        xml.append("<option name=\"protocol\" value=\"C\"/>\n</section>\n</common>\n");
+        for (int volume = 0; volume < drbdVolumes; volume++) {
+            xml.append("<resource name=\"r").append(volume).append("\">\n");
+            for (final int node : volumeNodes(volume)) {
+                xml.append("<host name=\"").append(nodes[node]).append("\">\n<volume vnr=\"0\">\n");
+                xml.append("<device minor=\"").append(volume).append("\">/dev/drbd").append(volume)
+                   .append("</device>\n");
+                xml.append("<disk>/dev/vg0/drbd").append(volume).append("</disk>\n");
+                xml.append("<meta-disk>internal</meta-disk>\n</volume>\n");
+                xml.append("<address family=\"ipv4\" port=\"").append(7788 + volume).append("\">10.10.0.")
+                   .append(node + 1).append("</address>\n</host>\n");
+            }
+            xml.append("<section name=\"disk\">\n<option name=\"resync-rate\" value=\"100M\"/>\n</section>\n");
+            xml.append("</resource>\n");
+        }
+        xml.append("</config>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Returns the drbd events from the node, the state of every volume and
+     * the sync progress of the volumes, that are syncing.
+     */
+    public List<String> drbdEvents(final int node, final int update) {
+        final List<String> events = new ArrayList<String>();
+        int counter = update * drbdVolumes * 2;
+        for (final int volume : nodeVolumes(node)) {
+            final boolean primary = volume % nodes.length == node;
+            final String roles = primary ? "Primary/Secondary" : "Secondary/Primary";
+            if ((volume + update) % 2 == 0) {
+                events.add(counter++ + " ST " + volume + " { cs:Connected ro:" + roles
+                           + " ds:UpToDate/UpToDate r----- }");
+            } else {
+                final String disks = primary ? "UpToDate/Inconsistent" : "Inconsistent/UpToDate";
+                events.add(counter++ + " ST " + volume + " { cs:" + (primary ? "SyncSource" : "SyncTarget")
+                           + " ro:" + roles + " ds:" + disks + " r----- }");
+                events.add(counter++ + " SP " + volume + ' ' + update % 100 + ".5");
+            }
+        }
+        return events;
+    }
+
+    /** Returns the vms xml of the node, as the gui helper sends it. */
+    public String vmsXml(final int node, final int update) {
+        final StringBuilder xml = new StringBuilder(1000 + vms * 1500);
+        xml.append("<vms md5=\"all-").append(node).append('-').append(update).append("\">\n");
+        xml.append("<version>1.2.9</version>\n");
+        for (int vm = node; vm < vms; vm += nodes.length) {
+            /* every tenth vm changes with every update */
+            final int version = (vm + update) / 10;
+            xml.append("<vm md5=\"md5-").append(vm).append('-').append(version).append("\" name=\"vm").append(vm)
+               .append("\" autostart=\"False\">\n");
+            xml.append("<info>\nState: running\nCPU(s): 2\n</info>\n");
+            xml.append("<vncdisplay>:").append(vm).append("</vncdisplay>\n");
+            xml.append("<config>\n<domain type=\"kvm\"><name>vm").append(vm).append("</name>");
+            xml.append("<memory unit=\"KiB\">").append(524288 + version % 2 * 524288).append("</memory>");
+            xml.append("<vcpu>2</vcpu><os><type arch=\"x86_64\" machine=\"pc\">hvm</type>");
+            xml.append("<boot dev=\"hd\"/></os><devices>");
+            xml.append("<disk type=\"file\" device=\"disk\"><driver name=\"qemu\" type=\"qcow2\"/>");
+            xml.append("<source file=\"/var/lib/libvirt/images/vm").append(vm).append(".qcow2\"/>");
+            xml.append("<target dev=\"vda\" bus=\"virtio\"/></disk>");
+            xml.append("<interface type=\"bridge\"><mac address=\"52:54:00:00:")
+               .append(String.format("%02x:%02x", vm / 256 % 256, vm % 256)).append("\"/>");
+            xml.append("<source bridge=\"br0\"/><model type=\"virtio\"/></interface>");
+            xml.append("<graphics type=\"vnc\" port=\"-1\" autoport=\"yes\"/>");
+            xml.append("<input type=\"tablet\" bus=\"usb\"/></devices></domain>\n</config>\n</vm>\n");
+        }
+        xml.append("</vms>\n");
+        return xml.toString();
+    }
+
+    private int[] volumeNodes(final int volume) {
+        if (nodes.length == 1) {
+            return new int[]{0};
+        }
+        return new int[]{volume % nodes.length, (volume + 1) % nodes.length};
+    }
+
+    private List<Integer> nodeVolumes(final int node) {
+        final List<Integer> volumes = new ArrayList<Integer>();
+        for (int volume = 0; volume < drbdVolumes; volume++) {
+            for (final int volumeNode : volumeNodes(volume)) {
+                if (volumeNode == node) {
+                    volumes.add(volume);
+                }
+            }
+        }
+        return volumes;
+    }
+}
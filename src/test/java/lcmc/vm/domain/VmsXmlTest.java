@@ -20,10 +20,16 @@
 
 package lcmc.vm.domain;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import lcmc.common.domain.StringValue;
+import lcmc.host.domain.Host;
+import lcmc.host.domain.parser.HostParser;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 
 public final class VmsXmlTest {
@@ -78,4 +84,50 @@ public final class VmsXmlTest {
         assertEquals(-1, VmsXml.convertToKilobytes(new StringValue("P")));
         assertEquals(-1, VmsXml.convertToKilobytes(new StringValue("-3")));
     }
+
+    @Test
+    public void unchangedDomainShouldBeTakenOverFromPreviousVmsXml() {
+        final Host host = mock(Host.class);
+        when(host.getName()).thenReturn("host1");
+        when(host.getHostParser()).thenReturn(mock(HostParser.class));
+        final VmsXml previousVmsXml = createVmsXml(host);
+        assertThat(previousVmsXml.parseXml(vms("all1", vm("vm1", "a1", "1") + vm("vm2", "b1", "1")))).isTrue();
+
+        final VmsXml vmsXml = createVmsXml(host);
+        /* vm1 has the same checksum, so its changed vcpu must not be parsed */
+        assertThat(vmsXml.parseXml(vms("all2", vm("vm1", "a1", "4") + vm("vm2", "b2", "2")), previousVmsXml))
+                .isTrue();
+
+        assertThat(vmsXml.getDomainNames()).containsExactly("vm1", "vm2");
+        assertThat(vmsXml.getValue("vm1", VMParams.VM_PARAM_VCPU)).isEqualTo("1");
+        assertThat(vmsXml.getValue("vm2", VMParams.VM_PARAM_VCPU)).isEqualTo("2");
+        assertThat(vmsXml.getDomainChecksum("vm1")).isEqualTo("a1");
+        assertThat(vmsXml.getDomainChecksum("vm2")).isEqualTo("b2");
+        assertThat(vmsXml.getNameFromConfig("/etc/libvirt/qemu/vm1.xml")).isEqualTo("vm1");
+        assertThat(vmsXml.getUsedMacAddresses()).contains("52:54:00:00:00:01", "52:54:00:00:00:02");
+        assertThat(vmsXml.getDomainNode("vm1")).isNotNull();
+    }
+
+    private VmsXml createVmsXml(final Host host) {
+        final VmsXml vmsXml = new VmsXml();
+        ReflectionTestUtils.setField(vmsXml, "vmParser", new VMParser());
+        ReflectionTestUtils.setField(vmsXml, "networkParser", mock(NetworkParser.class));
+        vmsXml.init(host);
+        return vmsXml;
+    }
+
+    private String vms(final String md5, final String vms) {
+        return "<vms md5=\"" + md5 + "\">\n<version>1.2.0</version>\n" + vms + "</vms>\n";
+    }
+
+    private String vm(final String name, final String md5, final String vcpu) {
+        return "<vm md5=\"" + md5 + "\" name=\"" + name + "\" autostart=\"False\">\n"
+               + "<info>\nState: running\n</info>\n"
+               + "<vncdisplay>:1</vncdisplay>\n"
+               + "<config>\n<domain type=\"kvm\"><name>" + name + "</name><vcpu>" + vcpu + "</vcpu>"
+               + "<devices><interface type=\"network\"><mac address=\"52:54:00:00:00:0" + vcpu.charAt(0)
+               + "\"/><source network=\"default\"/></interface>"
+               + "<input type=\"tablet\" bus=\"usb\"/></devices></domain>\n</config>\n"
+               + "</vm>\n";
+    }
 }